@@ -0,0 +1,84 @@
+package com.phantom_strike.ecs;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Structural changes a system makes while it runs, held back until {@link SystemScheduler}
+ * flushes them between phases. Families don't change under the systems of a phase, so
+ * systems that only change structure through a buffer need not write
+ * {@link Component#STRUCTURE} and may share a phase. An entity destroyed through a buffer
+ * is still there, and still in its families, until the flush.
+ * <p>
+ * Changes are applied in the order they were made, and each system has its own buffer,
+ * flushed in registration order, so a tick comes out the same whether a phase ran in
+ * parallel or not.
+ */
+public final class CommandBuffer {
+    private static final int DESTROY = 0;
+    private static final int ADD = 1;
+    private static final int REMOVE = 2;
+    private static final int RUN = 3;
+
+    private final EntityWorld world;
+    // Three ints per change: what, entity (or index into runs), components
+    private final IntArray commands = new IntArray();
+    private final Array<Runnable> runs = new Array<>();
+
+    public CommandBuffer(EntityWorld world) {
+        this.world = world;
+    }
+
+    public void destroy(int entity) {
+        commands.add(DESTROY, entity, 0);
+    }
+
+    public void add(int entity, int components) {
+        commands.add(ADD, entity, components);
+    }
+
+    public void remove(int entity, int components) {
+        commands.add(REMOVE, entity, components);
+    }
+
+    /** Runs {@code command} at the flush, in order with the other changes; for creating entities. */
+    public void defer(Runnable command) {
+        commands.add(RUN, runs.size, 0);
+        runs.add(command);
+    }
+
+    public boolean isEmpty() {
+        return commands.size == 0;
+    }
+
+    /** Applies every change and empties the buffer. */
+    public void flush() {
+        int[] items = commands.items;
+        for (int i = 0; i < commands.size; i += 3) {
+            int entity = items[i + 1];
+            switch (items[i]) {
+                case DESTROY:
+                    // Two systems may both have finished off the same entity; the second is ignored
+                    world.destroy(entity);
+                    break;
+                case ADD:
+                    world.add(entity, items[i + 2]);
+                    break;
+                case REMOVE:
+                    world.remove(entity, items[i + 2]);
+                    break;
+                case RUN:
+                    runs.get(entity).run();
+                    break;
+            }
+        }
+        commands.clear();
+        runs.clear();
+    }
+
+    /** Drops every change without applying it. */
+    public void clear() {
+        commands.clear();
+        runs.clear();
+    }
+}
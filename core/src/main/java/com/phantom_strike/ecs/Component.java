@@ -0,0 +1,39 @@
+package com.phantom_strike.ecs;
+
+/**
+ * Component bits. An entity's mask is the OR of the components it currently has,
+ * and the data for each component lives in the matching arrays of {@link EntityWorld}.
+ */
+public final class Component {
+    public static final int POSITION = 1;            // x, y
+    public static final int VELOCITY = 1 << 1;       // vx, vy
+    public static final int TEAM = 1 << 2;           // team
+    public static final int HEALTH = 1 << 3;         // health
+    public static final int RESPAWN = 1 << 4;        // respawnTimer (timer handle), respawnX, respawnY; present while dead
+    public static final int AI = 1 << 5;             // aiRole, nextThink, thinkInterval, intentX, intentY
+    public static final int COLLIDER = 1 << 6;       // width, height, objectType, spawnTick
+    public static final int PICKUP = 1 << 7;         // pickupAmount
+    public static final int TELEPORT = 1 << 8;       // teleportTarget
+    public static final int STICKMAN = 1 << 9;       // facingRight, shooting, nextShot (tick a manual shot is allowed again),
+                                                     // nextTeleport (tick a teleporter can take the player again)
+    public static final int PROJECTILE = 1 << 10;    // viewLag (ticks back its hits are judged); bullets, moved by VELOCITY
+
+    /**
+     * Pseudo-component written by systems that create or destroy entities or add and
+     * remove components there and then. Such systems never share a phase with anything
+     * else; systems that go through a {@link CommandBuffer} instead don't write it.
+     */
+    public static final int STRUCTURE = 1 << 30;
+
+    /** Pseudo-component for match-wide state (scores, cooldowns) that lives outside the world. */
+    public static final int MATCH = 1 << 29;
+
+    /** Pseudo-component for the teams' influence maps. */
+    public static final int INFLUENCE = 1 << 28;
+
+    /** Every pseudo-component. They aren't tied to entities, so any two systems can clash over one. */
+    public static final int PSEUDO = STRUCTURE | MATCH | INFLUENCE;
+
+    private Component() {
+    }
+}
@@ -0,0 +1,44 @@
+package com.phantom_strike.ecs;
+
+/**
+ * A unit of per-tick simulation work. The component masks it reads and writes let
+ * {@link SystemScheduler} run systems side by side when their write sets don't overlap.
+ * <p>
+ * Component data is shared by every kind of entity, so the masks alone would keep, say,
+ * a system moving bullets apart from one reading where players are. Kinds narrow them:
+ * a kind is one of the tag components {@link Component#STICKMAN},
+ * {@link Component#PROJECTILE} or {@link Component#COLLIDER}, and a system says which
+ * kinds of entity it touches at all and which it writes to. Two systems only clash over
+ * a component if one writes it on a kind the other touches. Pseudo-components belong to
+ * no entity and always clash.
+ */
+public interface EntitySystem {
+    /** Every kind of entity; the default, which is always safe. */
+    int ALL_KINDS = ~0;
+
+    /** Components (and pseudo-components) this system reads. */
+    int reads();
+
+    /** Components (and pseudo-components) this system writes. */
+    int writes();
+
+    /** Kinds of entity whose components this system reads or writes. */
+    default int kinds() {
+        return ALL_KINDS;
+    }
+
+    /** Kinds of entity whose components this system writes; a subset of {@link #kinds()}. */
+    default int writeKinds() {
+        return kinds();
+    }
+
+    /**
+     * Where this system puts its structural changes, flushed after its phase, or null if
+     * it makes them directly (and writes {@link Component#STRUCTURE}) or makes none.
+     */
+    default CommandBuffer commands() {
+        return null;
+    }
+
+    void update(float deltaTime);
+}
@@ -0,0 +1,342 @@
+package com.phantom_strike.ecs;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Entity store. Entities are plain ints and every component is a set of primitive
+ * arrays indexed by entity, so systems read contiguous memory instead of chasing
+ * object references. Arrays are replaced when the world grows; do not cache them
+ * across a call that may create entities.
+ */
+public class EntityWorld {
+    private int capacity;
+    private int[] masks;
+    private int highWater;
+    private int alive;
+    private final IntArray freeIds = new IntArray();
+    private final Array<Family> families = new Array<>();
+
+    // POSITION
+    public float[] x, y;
+    // VELOCITY
+    public float[] vx, vy;
+    // TEAM
+    public byte[] team;
+    // HEALTH
+    public int[] health;
+    // RESPAWN
+    public long[] respawnTimer;
+    public float[] respawnX, respawnY;
+    // AI
+    public byte[] aiRole;
+    public long[] nextThink;
+    public int[] thinkInterval;
+    public float[] intentX, intentY;
+    // COLLIDER
+    public float[] width, height;
+    public byte[] objectType;
+    public long[] spawnTick;
+    // PICKUP
+    public int[] pickupAmount;
+    // TELEPORT
+    public int[] teleportTarget;
+    // STICKMAN
+    public boolean[] facingRight, shooting;
+    public long[] nextShot, nextTeleport;
+    // PROJECTILE
+    public int[] viewLag;
+
+    public EntityWorld(int initialCapacity) {
+        capacity = Math.max(16, initialCapacity);
+        masks = new int[capacity];
+        x = new float[capacity];
+        y = new float[capacity];
+        vx = new float[capacity];
+        vy = new float[capacity];
+        team = new byte[capacity];
+        health = new int[capacity];
+        respawnTimer = new long[capacity];
+        respawnX = new float[capacity];
+        respawnY = new float[capacity];
+        aiRole = new byte[capacity];
+        nextThink = new long[capacity];
+        thinkInterval = new int[capacity];
+        intentX = new float[capacity];
+        intentY = new float[capacity];
+        width = new float[capacity];
+        height = new float[capacity];
+        objectType = new byte[capacity];
+        spawnTick = new long[capacity];
+        pickupAmount = new int[capacity];
+        teleportTarget = new int[capacity];
+        facingRight = new boolean[capacity];
+        shooting = new boolean[capacity];
+        nextShot = new long[capacity];
+        nextTeleport = new long[capacity];
+        viewLag = new int[capacity];
+    }
+
+    /** Returns a family tracking entities with all of {@code all} and none of {@code none}. */
+    public Family family(int all, int none) {
+        for (int i = 0; i < families.size; i++) {
+            Family family = families.get(i);
+            if (family.all == all && family.none == none) return family;
+        }
+        Family family = new Family(all, none, capacity);
+        for (int e = 0; e < highWater; e++) {
+            family.update(e, masks[e]);
+        }
+        families.add(family);
+        return family;
+    }
+
+    public Family family(int all) {
+        return family(all, 0);
+    }
+
+    /** Creates an entity with the given components. Component data starts zeroed. */
+    public int create(int mask) {
+        int e;
+        if (freeIds.size > 0) {
+            e = freeIds.pop();
+        } else {
+            if (highWater == capacity) grow(capacity * 2);
+            e = highWater++;
+        }
+        clear(e);
+        alive++;
+        setMask(e, mask);
+        return e;
+    }
+
+    public void destroy(int entity) {
+        if (masks[entity] == 0) return;
+        setMask(entity, 0);
+        alive--;
+        freeIds.add(entity);
+    }
+
+    public void add(int entity, int components) {
+        setMask(entity, masks[entity] | components);
+    }
+
+    public void remove(int entity, int components) {
+        setMask(entity, masks[entity] & ~components);
+    }
+
+    public boolean has(int entity, int components) {
+        return (masks[entity] & components) == components;
+    }
+
+    public int mask(int entity) {
+        return masks[entity];
+    }
+
+    public boolean isAlive(int entity) {
+        return entity >= 0 && entity < highWater && masks[entity] != 0;
+    }
+
+    /** Number of live entities. */
+    public int size() {
+        return alive;
+    }
+
+    /** One past the highest entity id handed out so far. */
+    public int highWater() {
+        return highWater;
+    }
+
+    /** Destroys every entity and resets id allocation. Families stay registered. */
+    public void clearAll() {
+        for (int e = 0; e < highWater; e++) {
+            if (masks[e] != 0) setMask(e, 0);
+        }
+        highWater = 0;
+        alive = 0;
+        freeIds.clear();
+    }
+
+    /**
+     * Writes every entity, the id allocator and the order of every family, so that
+     * {@link #load} brings back a world that iterates and hands out ids exactly as this one.
+     */
+    public void save(ByteBuffer out) {
+        int n = highWater;
+        out.putInt(n);
+        out.putInt(alive);
+        out.putInt(freeIds.size);
+        for (int i = 0; i < freeIds.size; i++) out.putInt(freeIds.get(i));
+        putInts(out, masks, n);
+        putFloats(out, x, n);
+        putFloats(out, y, n);
+        putFloats(out, vx, n);
+        putFloats(out, vy, n);
+        putBytes(out, team, n);
+        putInts(out, health, n);
+        putLongs(out, respawnTimer, n);
+        putFloats(out, respawnX, n);
+        putFloats(out, respawnY, n);
+        putBytes(out, aiRole, n);
+        putLongs(out, nextThink, n);
+        putInts(out, thinkInterval, n);
+        putFloats(out, intentX, n);
+        putFloats(out, intentY, n);
+        putFloats(out, width, n);
+        putFloats(out, height, n);
+        putBytes(out, objectType, n);
+        putLongs(out, spawnTick, n);
+        putInts(out, pickupAmount, n);
+        putInts(out, teleportTarget, n);
+        putBooleans(out, facingRight, n);
+        putBooleans(out, shooting, n);
+        putLongs(out, nextShot, n);
+        putLongs(out, nextTeleport, n);
+        putInts(out, viewLag, n);
+        out.putInt(families.size);
+        for (int i = 0; i < families.size; i++) families.get(i).save(out);
+    }
+
+    /** Replaces everything with what {@link #save} wrote. The same families have to be registered. */
+    public void load(ByteBuffer in) {
+        int n = in.getInt();
+        if (n > capacity) grow(Math.max(n, capacity * 2));
+        // Ids past the saved ones were never handed out
+        Arrays.fill(masks, n, Math.max(n, highWater), 0);
+        highWater = n;
+        alive = in.getInt();
+        freeIds.clear();
+        for (int i = in.getInt(); i > 0; i--) freeIds.add(in.getInt());
+        getInts(in, masks, n);
+        getFloats(in, x, n);
+        getFloats(in, y, n);
+        getFloats(in, vx, n);
+        getFloats(in, vy, n);
+        getBytes(in, team, n);
+        getInts(in, health, n);
+        getLongs(in, respawnTimer, n);
+        getFloats(in, respawnX, n);
+        getFloats(in, respawnY, n);
+        getBytes(in, aiRole, n);
+        getLongs(in, nextThink, n);
+        getInts(in, thinkInterval, n);
+        getFloats(in, intentX, n);
+        getFloats(in, intentY, n);
+        getFloats(in, width, n);
+        getFloats(in, height, n);
+        getBytes(in, objectType, n);
+        getLongs(in, spawnTick, n);
+        getInts(in, pickupAmount, n);
+        getInts(in, teleportTarget, n);
+        getBooleans(in, facingRight, n);
+        getBooleans(in, shooting, n);
+        getLongs(in, nextShot, n);
+        getLongs(in, nextTeleport, n);
+        getInts(in, viewLag, n);
+        if (in.getInt() != families.size) throw new IllegalStateException("Saved world has other families");
+        for (int i = 0; i < families.size; i++) families.get(i).load(in);
+    }
+
+    private static void putInts(ByteBuffer out, int[] a, int n) {
+        for (int i = 0; i < n; i++) out.putInt(a[i]);
+    }
+
+    private static void putLongs(ByteBuffer out, long[] a, int n) {
+        for (int i = 0; i < n; i++) out.putLong(a[i]);
+    }
+
+    private static void putFloats(ByteBuffer out, float[] a, int n) {
+        for (int i = 0; i < n; i++) out.putFloat(a[i]);
+    }
+
+    private static void putBytes(ByteBuffer out, byte[] a, int n) {
+        out.put(a, 0, n);
+    }
+
+    private static void putBooleans(ByteBuffer out, boolean[] a, int n) {
+        for (int i = 0; i < n; i++) out.put(a[i] ? (byte)1 : 0);
+    }
+
+    private static void getInts(ByteBuffer in, int[] a, int n) {
+        for (int i = 0; i < n; i++) a[i] = in.getInt();
+    }
+
+    private static void getLongs(ByteBuffer in, long[] a, int n) {
+        for (int i = 0; i < n; i++) a[i] = in.getLong();
+    }
+
+    private static void getFloats(ByteBuffer in, float[] a, int n) {
+        for (int i = 0; i < n; i++) a[i] = in.getFloat();
+    }
+
+    private static void getBytes(ByteBuffer in, byte[] a, int n) {
+        in.get(a, 0, n);
+    }
+
+    private static void getBooleans(ByteBuffer in, boolean[] a, int n) {
+        for (int i = 0; i < n; i++) a[i] = in.get() != 0;
+    }
+
+    private void setMask(int entity, int mask) {
+        masks[entity] = mask;
+        for (int i = 0; i < families.size; i++) {
+            families.get(i).update(entity, mask);
+        }
+    }
+
+    private void clear(int e) {
+        x[e] = y[e] = vx[e] = vy[e] = 0;
+        team[e] = 0;
+        health[e] = 0;
+        respawnTimer[e] = 0;
+        respawnX[e] = respawnY[e] = 0;
+        aiRole[e] = 0;
+        nextThink[e] = 0;
+        thinkInterval[e] = 0;
+        intentX[e] = intentY[e] = 0;
+        width[e] = height[e] = 0;
+        spawnTick[e] = 0;
+        objectType[e] = 0;
+        pickupAmount[e] = 0;
+        teleportTarget[e] = -1;
+        facingRight[e] = shooting[e] = false;
+        nextShot[e] = nextTeleport[e] = 0;
+        viewLag[e] = 0;
+    }
+
+    private void grow(int newCapacity) {
+        capacity = newCapacity;
+        masks = Arrays.copyOf(masks, newCapacity);
+        x = Arrays.copyOf(x, newCapacity);
+        y = Arrays.copyOf(y, newCapacity);
+        vx = Arrays.copyOf(vx, newCapacity);
+        vy = Arrays.copyOf(vy, newCapacity);
+        team = Arrays.copyOf(team, newCapacity);
+        health = Arrays.copyOf(health, newCapacity);
+        respawnTimer = Arrays.copyOf(respawnTimer, newCapacity);
+        respawnX = Arrays.copyOf(respawnX, newCapacity);
+        respawnY = Arrays.copyOf(respawnY, newCapacity);
+        aiRole = Arrays.copyOf(aiRole, newCapacity);
+        nextThink = Arrays.copyOf(nextThink, newCapacity);
+        thinkInterval = Arrays.copyOf(thinkInterval, newCapacity);
+        intentX = Arrays.copyOf(intentX, newCapacity);
+        intentY = Arrays.copyOf(intentY, newCapacity);
+        width = Arrays.copyOf(width, newCapacity);
+        height = Arrays.copyOf(height, newCapacity);
+        objectType = Arrays.copyOf(objectType, newCapacity);
+        spawnTick = Arrays.copyOf(spawnTick, newCapacity);
+        pickupAmount = Arrays.copyOf(pickupAmount, newCapacity);
+        teleportTarget = Arrays.copyOf(teleportTarget, newCapacity);
+        facingRight = Arrays.copyOf(facingRight, newCapacity);
+        shooting = Arrays.copyOf(shooting, newCapacity);
+        nextShot = Arrays.copyOf(nextShot, newCapacity);
+        nextTeleport = Arrays.copyOf(nextTeleport, newCapacity);
+        viewLag = Arrays.copyOf(viewLag, newCapacity);
+        for (int i = 0; i < families.size; i++) {
+            families.get(i).grow(newCapacity);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.phantom_strike.ecs;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The set of entities that have every component in {@code all} and none in {@code none}.
+ * Membership is kept up to date by {@link EntityWorld} as masks change, so systems
+ * iterate a packed int array instead of testing every entity.
+ * <p>
+ * Removal swaps the last member into the freed slot. Iterate from {@code size() - 1}
+ * down to 0 when the loop body may remove the current entity; entities created
+ * during the loop are appended and therefore not visited.
+ */
+public final class Family {
+    final int all;
+    final int none;
+    private int[] members = new int[16];
+    private int[] slot; // entity -> index in members, or -1
+    private int size;
+
+    Family(int all, int none, int capacity) {
+        this.all = all;
+        this.none = none;
+        slot = new int[capacity];
+        Arrays.fill(slot, -1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int get(int index) {
+        return members[index];
+    }
+
+    public boolean contains(int entity) {
+        return entity < slot.length && slot[entity] >= 0;
+    }
+
+    boolean matches(int mask) {
+        return (mask & all) == all && (mask & none) == 0;
+    }
+
+    void update(int entity, int mask) {
+        boolean member = slot[entity] >= 0;
+        boolean match = mask != 0 && matches(mask);
+        if (match && !member) {
+            if (size == members.length) members = Arrays.copyOf(members, size * 2);
+            slot[entity] = size;
+            members[size++] = entity;
+        } else if (!match && member) {
+            int index = slot[entity];
+            int last = members[--size];
+            members[index] = last;
+            slot[last] = index;
+            slot[entity] = -1;
+        }
+    }
+
+    // Members in order; see EntityWorld.save
+    void save(ByteBuffer out) {
+        out.putInt(size);
+        for (int i = 0; i < size; i++) out.putInt(members[i]);
+    }
+
+    void load(ByteBuffer in) {
+        for (int i = 0; i < size; i++) slot[members[i]] = -1;
+        size = in.getInt();
+        if (size > members.length) members = Arrays.copyOf(members, Math.max(size, members.length * 2));
+        for (int i = 0; i < size; i++) {
+            members[i] = in.getInt();
+            slot[members[i]] = i;
+        }
+    }
+
+    void grow(int capacity) {
+        int old = slot.length;
+        slot = Arrays.copyOf(slot, capacity);
+        Arrays.fill(slot, old, capacity, -1);
+    }
+}
@@ -0,0 +1,95 @@
+package com.phantom_strike.ecs;
+
+import com.badlogic.gdx.utils.Array;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Runs systems in registration order, grouped into phases. A system joins the current
+ * phase when it clashes with none of the systems already in it: neither writes anything
+ * the other touches, on a kind of entity the other touches (see {@link EntitySystem}).
+ * Otherwise it starts a new phase. Systems inside one phase may run in parallel, and
+ * their {@link CommandBuffer}s are flushed in registration order once the phase is done.
+ */
+public class SystemScheduler {
+    private final Array<EntitySystem> systems = new Array<>();
+    private final Array<Array<EntitySystem>> phases = new Array<>();
+    private ForkJoinPool pool;
+    private boolean dirty;
+
+    public void add(EntitySystem system) {
+        systems.add(system);
+        dirty = true;
+    }
+
+    /** Runs multi-system phases on {@code pool}, or serially when it is null (the default). */
+    public void setParallel(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public int systemCount() {
+        return systems.size;
+    }
+
+    public int phaseCount() {
+        if (dirty) buildPhases();
+        return phases.size;
+    }
+
+    public void update(float deltaTime) {
+        if (dirty) buildPhases();
+        for (int p = 0; p < phases.size; p++) {
+            Array<EntitySystem> phase = phases.get(p);
+            if (pool == null || phase.size == 1) {
+                for (int i = 0; i < phase.size; i++) {
+                    phase.get(i).update(deltaTime);
+                }
+            } else {
+                runParallel(phase, deltaTime);
+            }
+            for (int i = 0; i < phase.size; i++) {
+                CommandBuffer commands = phase.get(i).commands();
+                if (commands != null) commands.flush();
+            }
+        }
+    }
+
+    private void runParallel(Array<EntitySystem> phase, float deltaTime) {
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[phase.size];
+        for (int i = 0; i < phase.size; i++) {
+            EntitySystem system = phase.get(i);
+            tasks[i] = pool.submit(() -> system.update(deltaTime));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    private void buildPhases() {
+        phases.clear();
+        Array<EntitySystem> current = null;
+        for (int i = 0; i < systems.size; i++) {
+            EntitySystem system = systems.get(i);
+            boolean conflicts = current == null;
+            for (int j = 0; !conflicts && j < current.size; j++) {
+                conflicts = clash(system, current.get(j)) || clash(current.get(j), system);
+            }
+            if (conflicts) {
+                current = new Array<>();
+                phases.add(current);
+            }
+            current.add(system);
+        }
+        dirty = false;
+    }
+
+    // Whether a's writes get in the way of anything b does
+    private static boolean clash(EntitySystem a, EntitySystem b) {
+        int writes = a.writes();
+        int touches = b.reads() | b.writes();
+        if (((writes | b.writes()) & Component.STRUCTURE) != 0) return true;
+        if ((writes & touches & Component.PSEUDO) != 0) return true;
+        return (writes & touches & ~Component.PSEUDO) != 0 && (a.writeKinds() & b.kinds()) != 0;
+    }
+}
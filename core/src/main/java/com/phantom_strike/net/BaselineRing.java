@@ -0,0 +1,48 @@
+package com.phantom_strike.net;
+
+/**
+ * The last few snapshots exchanged with one peer, indexed by tick. The server keeps what
+ * it sent each client so it can diff against whichever one the client acknowledges; the
+ * client keeps what it decoded so it can rebuild the next diff. States are reused in
+ * place as the ring wraps.
+ */
+public final class BaselineRing {
+    /** Ticks covered, about a second. Only the ticks that had a snapshot use their slot. */
+    public static final int SIZE = 64;
+
+    private final WorldState[] states = new WorldState[SIZE];
+
+    public BaselineRing() {
+        for (int i = 0; i < SIZE; i++) {
+            states[i] = new WorldState();
+        }
+    }
+
+    /** The state for {@code tick}, or null if it was never stored or has been overwritten. */
+    public WorldState get(long tick) {
+        if (tick < 0) return null;
+        WorldState state = states[slot(tick)];
+        return state.tick == tick ? state : null;
+    }
+
+    /**
+     * Empties the slot for {@code tick} and returns it to be filled. This overwrites the
+     * state from {@link #SIZE} ticks earlier, so don't claim while still reading that one.
+     */
+    public WorldState claim(long tick) {
+        WorldState state = states[slot(tick)];
+        state.clear(tick);
+        return state;
+    }
+
+    /** Forgets everything, e.g. when a peer reconnects. */
+    public void reset() {
+        for (WorldState state : states) {
+            state.clear(-1);
+        }
+    }
+
+    private static int slot(long tick) {
+        return (int)(tick & (SIZE - 1));
+    }
+}
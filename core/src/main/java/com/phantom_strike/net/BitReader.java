@@ -0,0 +1,60 @@
+package com.phantom_strike.net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads what {@link BitWriter} wrote. Reusable through {@link #wrap}. Reading past the end
+ * of the buffer gives zero bits and sets {@link #isOverrun()} rather than throwing, so a
+ * truncated datagram decodes to something harmless that the caller then drops.
+ */
+public final class BitReader {
+    private ByteBuffer buffer;
+    private long pending;
+    private int pendingBits;
+    private boolean overrun;
+
+    /** Starts reading at the buffer's position. */
+    public BitReader wrap(ByteBuffer buffer) {
+        this.buffer = buffer;
+        pending = 0;
+        pendingBits = 0;
+        overrun = false;
+        return this;
+    }
+
+    /** Reads {@code bits} bits as an unsigned value. */
+    public int read(int bits) {
+        while (pendingBits < bits) {
+            int next = 0;
+            if (buffer.hasRemaining()) {
+                next = buffer.get() & 0xFF;
+            } else {
+                overrun = true;
+            }
+            pending = (pending << 8) | next;
+            pendingBits += 8;
+        }
+        pendingBits -= bits;
+        return (int)((pending >>> pendingBits) & BitWriter.mask(bits));
+    }
+
+    public boolean readBoolean() {
+        return read(1) != 0;
+    }
+
+    /** Reads a value written by {@link BitWriter#writeSigned}. */
+    public int readSigned(int bits) {
+        int zigzag = read(bits);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    /** Bits left to read. */
+    public int bitsRemaining() {
+        return pendingBits + 8 * buffer.remaining();
+    }
+
+    /** Whether anything was read past the end of the buffer since {@link #wrap}. */
+    public boolean isOverrun() {
+        return overrun;
+    }
+}
@@ -0,0 +1,77 @@
+package com.phantom_strike.net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes values of any width up to 32 bits into a {@link ByteBuffer}, most significant bit
+ * first. Reusable: {@link #wrap} points it at the next buffer, so encoding allocates nothing.
+ */
+public final class BitWriter {
+    private ByteBuffer buffer;
+    private long pending;
+    private int pendingBits;
+    private int written;
+    private int capacity;
+
+    /** Starts writing at the buffer's position; at most its remaining bytes are used. */
+    public BitWriter wrap(ByteBuffer buffer) {
+        this.buffer = buffer;
+        pending = 0;
+        pendingBits = 0;
+        written = 0;
+        capacity = buffer.remaining() * 8;
+        return this;
+    }
+
+    /** Writes the low {@code bits} bits of {@code value}. */
+    public void write(int value, int bits) {
+        if (written + bits > capacity) throw new IllegalStateException("Bit buffer overflow");
+        pending = (pending << bits) | (value & mask(bits));
+        pendingBits += bits;
+        written += bits;
+        while (pendingBits >= 8) {
+            pendingBits -= 8;
+            buffer.put((byte)(pending >>> pendingBits));
+        }
+    }
+
+    public void writeBoolean(boolean value) {
+        write(value ? 1 : 0, 1);
+    }
+
+    /** Writes a signed value in zigzag form, so small magnitudes of either sign stay small. */
+    public void writeSigned(int value, int bits) {
+        write((value << 1) ^ (value >> 31), bits);
+    }
+
+    public int bitsWritten() {
+        return written;
+    }
+
+    public int bitsRemaining() {
+        return capacity - written;
+    }
+
+    /** Holds back {@code bits} from {@link #bitsRemaining}, for something written after what comes next. */
+    public void reserve(int bits) {
+        capacity -= bits;
+    }
+
+    /** Gives back what {@link #reserve} held. */
+    public void unreserve(int bits) {
+        capacity += bits;
+    }
+
+    /** Pads the last byte with zeros and writes it out. The buffer's position ends after it. */
+    public void flush() {
+        if (pendingBits > 0) {
+            buffer.put((byte)(pending << (8 - pendingBits)));
+            written += 8 - pendingBits;
+            pendingBits = 0;
+        }
+    }
+
+    static long mask(int bits) {
+        return (1L << bits) - 1;
+    }
+}
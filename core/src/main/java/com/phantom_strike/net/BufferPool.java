@@ -0,0 +1,42 @@
+package com.phantom_strike.net;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Reusable direct buffers for outgoing datagrams. Direct buffers go to the socket without
+ * an extra copy, but are slow to allocate and free, so they're kept rather than dropped.
+ * Not thread-safe; give each sending thread its own pool.
+ */
+public final class BufferPool {
+    private final int bufferSize;
+    private ByteBuffer[] free = new ByteBuffer[8];
+    private int count;
+    private int allocated;
+
+    public BufferPool(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    /** A cleared buffer of {@code bufferSize} bytes. */
+    public ByteBuffer acquire() {
+        if (count == 0) {
+            allocated++;
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        ByteBuffer buffer = free[--count];
+        free[count] = null;
+        buffer.clear();
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (count == free.length) free = Arrays.copyOf(free, count * 2);
+        free[count++] = buffer;
+    }
+
+    /** Buffers created so far; stays flat once the pool has warmed up. */
+    public int allocated() {
+        return allocated;
+    }
+}
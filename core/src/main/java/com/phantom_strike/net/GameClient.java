@@ -0,0 +1,296 @@
+package com.phantom_strike.net;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.phantom_strike.sim.GameMap;
+import com.phantom_strike.sim.GameRules;
+import com.phantom_strike.sim.Match;
+import com.phantom_strike.sim.MatchConfig;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Client side of a networked match. Keeps asking the server to join until it's accepted,
+ * then builds a {@link Match} from the server's seed and settings, so the map and ids
+ * match, and overwrites its dynamic state with every newer snapshot. Snapshots are diffs
+ * against one we acknowledged, so decoded states are kept in a {@link BaselineRing}. Only
+ * what's near our player is exact; players elsewhere get coarse, occasional positions.
+ * <p>
+ * The local copy is never stepped; the server decides everything. The one exception is
+ * our own player, which {@link Prediction} moves as soon as a key is pressed and puts
+ * right whenever a snapshot disagrees. Call {@link #update} and {@link #poll()} once per
+ * frame from the thread that reads the match. Nothing here blocks.
+ */
+public class GameClient implements Closeable {
+    // As Match: a long stall doesn't turn into a burst of commands
+    private static final int MAX_TICKS_PER_FRAME = 5;
+    // Player, seed, players per team, health packs, map id
+    private static final int ACCEPT_BYTES = 2 + 8 + 2 + 2 + 8;
+
+    private final DatagramChannel channel;
+    private final SocketAddress server;
+    private final ByteBuffer in = ByteBuffer.allocate(Protocol.MAX_PACKET);
+    private final ByteBuffer out = ByteBuffer.allocate(Protocol.MAX_PACKET);
+    private final BaselineRing received = new BaselineRing();
+    private final BitReader bits = new BitReader();
+    private final IntArray removed = new IntArray();
+    private final Prediction prediction = new Prediction();
+
+    private Match match;
+    private GameMap map;
+    private int player = -1;
+    private boolean refused;
+    private boolean wrongMap;
+    private long lastSnapshotTick = -1;
+    private int snapshots;
+    private int deltaSnapshots;
+    private int undecodable;
+    private int malformed;
+    private long lastConnectAttempt;
+    private long lastHeard;
+    private int inputSequence;
+    private byte shots;
+    private byte teamSwitches;
+    private float accumulator;
+
+    public GameClient(InetSocketAddress server) throws IOException {
+        this.server = server;
+        channel = DatagramChannel.open();
+        channel.configureBlocking(false);
+        channel.connect(server);
+        lastHeard = System.nanoTime();
+    }
+
+    /**
+     * The map the server plays on, if it isn't generated from the seed; it has to be the
+     * same one. Call before {@link #poll()}.
+     */
+    public void setMap(GameMap map) {
+        this.map = map;
+    }
+
+    /** Sends a join request if still waiting, then reads every datagram that has arrived. */
+    public void poll() throws IOException {
+        long now = System.nanoTime();
+        if (match == null && !refused && now - lastConnectAttempt >= seconds(Protocol.CONNECT_RETRY)) {
+            lastConnectAttempt = now;
+            out.clear();
+            out.put(Protocol.CONNECT);
+            send();
+        }
+
+        while (true) {
+            in.clear();
+            SocketAddress from;
+            try {
+                from = channel.receive(in);
+            } catch (PortUnreachableException e) {
+                // Nobody listening yet; keep retrying the connect
+                break;
+            }
+            if (from == null) break;
+            in.flip();
+            if (!in.hasRemaining()) continue;
+            lastHeard = now;
+            switch (in.get()) {
+                case Protocol.ACCEPT:
+                    if (match == null) accept();
+                    break;
+                case Protocol.SNAPSHOT:
+                    if (match != null) snapshot();
+                    break;
+                case Protocol.DISCONNECT:
+                    refused = true;
+                    break;
+            }
+        }
+    }
+
+    private void snapshot() {
+        if (in.remaining() < 4 + Snapshot.PEEK_BYTES) {
+            malformed++;
+            return;
+        }
+        int appliedCommand = in.getInt();
+        // Snapshots can arrive out of order; an older one would roll the state back
+        long tick = Snapshot.peekTick(in);
+        if (tick <= lastSnapshotTick) return;
+        long baselineTick = Snapshot.peekBaseline(in);
+        WorldState baseline = received.get(baselineTick);
+        if (baselineTick >= 0 && baseline == null) {
+            // Diffed against a state we no longer have; the next one will use a newer ack
+            undecodable++;
+            return;
+        }
+        WorldState state = received.claim(tick);
+        // Far players are never in the near state, so the far section can go in first and
+        // the whole packet is checked before any of it touches the match
+        if (!Snapshot.decode(bits.wrap(in), baseline, state, removed) || !state.fits(match.getWorld())
+            || !Snapshot.decodeFar(bits, match, state)) {
+            // Truncated or corrupt; nothing may diff against what's left in the slot
+            state.clear(-1);
+            malformed++;
+            return;
+        }
+        state.applyTo(match);
+        prediction.reconcile(match, player, appliedCommand);
+        lastSnapshotTick = tick;
+        snapshots++;
+        if (baseline != null) deltaSnapshots++;
+    }
+
+    private void accept() throws IOException {
+        if (in.remaining() < ACCEPT_BYTES) {
+            malformed++;
+            return;
+        }
+        int player = in.getShort();
+        MatchConfig config = new MatchConfig();
+        config.seed = in.getLong();
+        config.playersPerTeam = in.getShort();
+        config.healthPacks = in.getShort();
+        if (player < 0 || config.playersPerTeam <= 0 || config.healthPacks < 0) {
+            malformed++;
+            return;
+        }
+        config.humanPlayer = false;
+        if (in.getLong() != (map != null ? map.id() : 0)) {
+            // Not a map we can build; the server would take our seat until we time out
+            wrongMap = true;
+            refused = true;
+            out.clear();
+            out.put(Protocol.DISCONNECT);
+            send();
+            return;
+        }
+        config.map = map;
+        this.player = player;
+        match = new Match(config);
+        match.setLocalPlayer(player);
+    }
+
+    /**
+     * Turns this frame's controls into a command for every tick that has passed, predicts
+     * each one and sends the latest few. {@code buttons} are held {@link
+     * com.phantom_strike.sim.PlayerInput} bits; {@code fire} and {@code switchTeam} are
+     * presses, folded into running counts so a lost packet doesn't lose them. Call every
+     * frame, even with nothing pressed: the server takes silence for a dropped connection.
+     */
+    public void update(float deltaTime, int buttons, boolean fire, boolean switchTeam) throws IOException {
+        if (match == null) return;
+        if (fire) shots++;
+        if (switchTeam) teamSwitches++;
+        accumulator = Math.min(accumulator + deltaTime, MAX_TICKS_PER_FRAME * GameRules.TICK_DURATION);
+        while (accumulator >= GameRules.TICK_DURATION) {
+            accumulator -= GameRules.TICK_DURATION;
+            prediction.step(match, player, buttons);
+        }
+
+        out.clear();
+        out.put(Protocol.INPUT);
+        out.putInt(++inputSequence);
+        out.put(shots);
+        out.put(teamSwitches);
+        out.putInt((int)lastSnapshotTick);
+        int newest = prediction.newest();
+        int count = Math.min(newest, Protocol.INPUT_COMMANDS);
+        out.putInt(newest);
+        out.put((byte)count);
+        for (int command = newest - count + 1; command <= newest; command++) {
+            out.put((byte)prediction.buttons(command));
+        }
+        send();
+    }
+
+    private void send() throws IOException {
+        out.flip();
+        try {
+            channel.write(out);
+        } catch (PortUnreachableException e) {
+            // Reported for an earlier datagram; the server may not be up yet
+        }
+    }
+
+    /** The server's match as last reported, or null until the server accepts us. */
+    public Match getMatch() {
+        return match;
+    }
+
+    public boolean isConnected() {
+        return match != null && !refused && !isTimedOut();
+    }
+
+    /** Whether the server turned us away (full) or dropped us. */
+    public boolean isRefused() {
+        return refused;
+    }
+
+    /** Whether we left because the server plays on a different map than {@link #setMap} gave. */
+    public boolean isWrongMap() {
+        return wrongMap;
+    }
+
+    public boolean isTimedOut() {
+        return System.nanoTime() - lastHeard > seconds(Protocol.TIMEOUT);
+    }
+
+    /** The player this client controls on the server. */
+    public int getPlayer() {
+        return player;
+    }
+
+    public long getLastSnapshotTick() {
+        return lastSnapshotTick;
+    }
+
+    public Prediction getPrediction() {
+        return prediction;
+    }
+
+    /** Snapshots applied so far; late and duplicate ones are not counted. */
+    public int getSnapshotCount() {
+        return snapshots;
+    }
+
+    /** Snapshots that were diffs against an earlier one rather than full state. */
+    public int getDeltaSnapshotCount() {
+        return deltaSnapshots;
+    }
+
+    /** Snapshots dropped because their baseline had already left the ring. */
+    public int getUndecodableCount() {
+        return undecodable;
+    }
+
+    /** Datagrams dropped because they were truncated or corrupt. */
+    public int getMalformedCount() {
+        return malformed;
+    }
+
+    public SocketAddress getServer() {
+        return server;
+    }
+
+    /** Tells the server we're leaving and closes the socket. */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (match != null && !refused) {
+                out.clear();
+                out.put(Protocol.DISCONNECT);
+                send();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static long seconds(float s) {
+        return (long)(s * 1e9);
+    }
+}
@@ -0,0 +1,107 @@
+package com.phantom_strike.net;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.phantom_strike.ecs.EntityWorld;
+import com.phantom_strike.ecs.Family;
+import com.phantom_strike.sim.Match;
+
+import java.util.Arrays;
+
+/**
+ * What one client is told about: every entity in the grid cells around its view, kept
+ * up to date by {@link InterestManager} as things cross cells and as the view moves, and
+ * every {@link #FAR_INTERVAL} snapshots a coarse update for a few players outside it. The
+ * client's own player is always a member.
+ */
+public final class Interest {
+    /** Snapshots between far sections that carry records. */
+    public static final int FAR_INTERVAL = 4;
+
+    final int player;
+    // Cells covered, inclusive; empty until the manager first places the view
+    int column0;
+    int row0;
+    int column1 = -1;
+    int row1 = -1;
+
+    private final IntArray members = new IntArray(false, 64);
+    private int[] slot = new int[0]; // entity -> index in members, or -1
+    private final IntArray sorted = new IntArray();
+    private final IntArray far = new IntArray();
+    private int farCursor;
+    private int snapshots;
+
+    Interest(int player) {
+        this.player = player;
+        add(player);
+    }
+
+    public int getPlayer() {
+        return player;
+    }
+
+    /** Entities currently relevant to this client. */
+    public int size() {
+        return members.size;
+    }
+
+    public boolean contains(int entity) {
+        return entity < slot.length && slot[entity] >= 0;
+    }
+
+    boolean covers(int column, int row) {
+        return column >= column0 && column <= column1 && row >= row0 && row <= row1;
+    }
+
+    void add(int entity) {
+        if (contains(entity)) return;
+        if (entity >= slot.length) {
+            int old = slot.length;
+            slot = Arrays.copyOf(slot, Math.max(entity + 1, old * 2));
+            Arrays.fill(slot, old, slot.length, -1);
+        }
+        slot[entity] = members.size;
+        members.add(entity);
+    }
+
+    void remove(int entity) {
+        if (entity == player || !contains(entity)) return;
+        int index = slot[entity];
+        int last = members.pop();
+        if (last != entity) {
+            members.set(index, last);
+            slot[last] = index;
+        }
+        slot[entity] = -1;
+    }
+
+    /** Quantizes the members into {@code out}, ready to diff against this client's baseline. */
+    public void buildView(Match match, WorldState out) {
+        sorted.clear();
+        sorted.addAll(members);
+        sorted.sort();
+        EntityWorld world = match.getWorld();
+        out.begin(match);
+        for (int i = 0; i < sorted.size; i++) {
+            out.addEntity(world, sorted.get(i));
+        }
+    }
+
+    /**
+     * Writes the far section. Most snapshots carry an empty one; every
+     * {@link #FAR_INTERVAL}th carries the next few non-members, round-robin over the players.
+     */
+    public void writeFar(Match match, BitWriter out) {
+        far.clear();
+        if (snapshots++ % FAR_INTERVAL == 0) {
+            Family players = match.getPlayers();
+            int n = 0;
+            for (; n < players.size() && far.size < Snapshot.MAX_FAR_RECORDS; n++) {
+                int p = players.get((farCursor + n) % players.size());
+                if (!contains(p)) far.add(p);
+            }
+            farCursor = players.size() > 0 ? (farCursor + n) % players.size() : 0;
+        }
+        Snapshot.encodeFar(match.getWorld(), far, out);
+    }
+}
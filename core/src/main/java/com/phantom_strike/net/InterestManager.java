@@ -0,0 +1,169 @@
+package com.phantom_strike.net;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.phantom_strike.ecs.EntityWorld;
+import com.phantom_strike.ecs.Family;
+import com.phantom_strike.sim.Match;
+import com.phantom_strike.spatial.DynamicGrid;
+
+import static com.phantom_strike.sim.GameRules.*;
+
+/**
+ * Keeps every client's {@link Interest} current. Replicated entities live in a
+ * {@link DynamicGrid}, and each cell lists the interests whose view covers it. When an
+ * entity crosses into another cell only the interests of those two cells hear about it,
+ * and when a view moves only the cells along its edges change hands. So the work per
+ * client follows what happens near it, not how much is going on elsewhere.
+ * <p>
+ * Call {@link #update()} before building the views for a round of snapshots.
+ */
+public class InterestManager implements DynamicGrid.Listener {
+    public static final float CELL_SIZE = 200;
+    // The client's viewport and the margin its camera keeps from the world's edges
+    private static final float VIEW_HALF_WIDTH = 640;
+    private static final float VIEW_HALF_HEIGHT = 360;
+    private static final float CAMERA_MARGIN = 50;
+    // The camera trails the player, and things about to come into view should already be there
+    private static final float VIEW_PADDING = 200;
+
+    private final Match match;
+    private final DynamicGrid grid = new DynamicGrid(WORLD_WIDTH, WORLD_HEIGHT, CELL_SIZE);
+    private final Array<Interest>[] subscribers;
+    private final IntArray tracked = new IntArray(false, 256);
+    private final Array<Interest> interests = new Array<>(false, 16);
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public InterestManager(Match match) {
+        this.match = match;
+        subscribers = new Array[grid.columns() * grid.rows()];
+        for (int i = 0; i < subscribers.length; i++) {
+            subscribers[i] = new Array<>(false, 4);
+        }
+        grid.setListener(this);
+        // Health packs are created with the match and never destroyed, so this is the only time we look for them
+        EntityWorld world = match.getWorld();
+        for (int e = 0; e < world.highWater(); e++) {
+            if (WorldState.isReplicated(world, e)) track(e);
+        }
+    }
+
+    /** Starts tracking what a client controlling {@code player} should see. */
+    public Interest add(int player) {
+        Interest interest = new Interest(player);
+        interests.add(interest);
+        follow(interest);
+        return interest;
+    }
+
+    public void remove(Interest interest) {
+        interests.removeValue(interest, true);
+        for (int row = interest.row0; row <= interest.row1; row++) {
+            for (int column = interest.column0; column <= interest.column1; column++) {
+                subscribers[grid.cell(column, row)].removeValue(interest, true);
+            }
+        }
+    }
+
+    /** Moves entities between cells, picks up new and destroyed ones, then moves every view. */
+    public void update() {
+        EntityWorld world = match.getWorld();
+        for (int i = tracked.size - 1; i >= 0; i--) {
+            int e = tracked.get(i);
+            if (WorldState.isReplicated(world, e)) {
+                grid.move(e, world.x[e], world.y[e]);
+            } else {
+                tracked.removeIndex(i);
+                grid.remove(e);
+            }
+        }
+        trackNew(match.getPlayers());
+        trackNew(match.getBullets());
+        for (int i = 0; i < interests.size; i++) {
+            follow(interests.get(i));
+        }
+    }
+
+    @Override
+    public void moved(int entity, int from, int to) {
+        if (from >= 0) {
+            Array<Interest> leaving = subscribers[from];
+            for (int i = 0; i < leaving.size; i++) {
+                Interest interest = leaving.get(i);
+                if (!covers(interest, to)) interest.remove(entity);
+            }
+        }
+        if (to >= 0) {
+            Array<Interest> entering = subscribers[to];
+            for (int i = 0; i < entering.size; i++) {
+                Interest interest = entering.get(i);
+                if (!covers(interest, from)) interest.add(entity);
+            }
+        }
+    }
+
+    private void trackNew(Family family) {
+        for (int i = 0; i < family.size(); i++) {
+            int e = family.get(i);
+            if (grid.cellOf(e) < 0) track(e);
+        }
+    }
+
+    private void track(int e) {
+        tracked.add(e);
+        EntityWorld world = match.getWorld();
+        grid.move(e, world.x[e], world.y[e]);
+    }
+
+    // Centres the view where the client's camera will be and swaps the cells along its edges
+    private void follow(Interest interest) {
+        EntityWorld world = match.getWorld();
+        int p = interest.player;
+        float x = clamp(world.x[p] + STICKMAN_WIDTH / 2, VIEW_HALF_WIDTH + CAMERA_MARGIN,
+                        WORLD_WIDTH - VIEW_HALF_WIDTH - CAMERA_MARGIN);
+        float y = clamp(world.y[p] + STICKMAN_HEIGHT / 2, VIEW_HALF_HEIGHT + CAMERA_MARGIN,
+                        WORLD_HEIGHT - VIEW_HALF_HEIGHT - CAMERA_MARGIN);
+        int column0 = grid.column(x - VIEW_HALF_WIDTH - VIEW_PADDING);
+        int column1 = grid.column(x + VIEW_HALF_WIDTH + VIEW_PADDING);
+        int row0 = grid.row(y - VIEW_HALF_HEIGHT - VIEW_PADDING);
+        int row1 = grid.row(y + VIEW_HALF_HEIGHT + VIEW_PADDING);
+        if (column0 == interest.column0 && column1 == interest.column1
+            && row0 == interest.row0 && row1 == interest.row1) {
+            return;
+        }
+
+        int oldColumn0 = interest.column0, oldColumn1 = interest.column1;
+        int oldRow0 = interest.row0, oldRow1 = interest.row1;
+        interest.column0 = column0;
+        interest.column1 = column1;
+        interest.row0 = row0;
+        interest.row1 = row1;
+        for (int row = oldRow0; row <= oldRow1; row++) {
+            for (int column = oldColumn0; column <= oldColumn1; column++) {
+                if (interest.covers(column, row)) continue;
+                int cell = grid.cell(column, row);
+                subscribers[cell].removeValue(interest, true);
+                IntArray entities = grid.entities(cell);
+                for (int i = 0; i < entities.size; i++) interest.remove(entities.get(i));
+            }
+        }
+        for (int row = row0; row <= row1; row++) {
+            for (int column = column0; column <= column1; column++) {
+                boolean covered = column >= oldColumn0 && column <= oldColumn1 && row >= oldRow0 && row <= oldRow1;
+                if (covered) continue;
+                int cell = grid.cell(column, row);
+                subscribers[cell].add(interest);
+                IntArray entities = grid.entities(cell);
+                for (int i = 0; i < entities.size; i++) interest.add(entities.get(i));
+            }
+        }
+    }
+
+    private boolean covers(Interest interest, int cell) {
+        return cell >= 0 && interest.covers(cell % grid.columns(), cell / grid.columns());
+    }
+
+    private static float clamp(float value, float min, float max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,98 @@
+package com.phantom_strike.net;
+
+import com.phantom_strike.ecs.EntityWorld;
+import com.phantom_strike.sim.Match;
+
+/**
+ * Client-side prediction of the local player. Every tick's buttons become a numbered
+ * command that is applied to the local match straight away and kept in a ring with the
+ * position it led to. Snapshots say which command the server applied last; the player is
+ * put back where the server has it and the commands it hasn't applied yet are replayed
+ * on top, so the player stays responsive and still ends up wherever the server decides.
+ * <p>
+ * A correction is counted when the server's position after a command differs from the
+ * one predicted for it by more than {@link #TOLERANCE}.
+ */
+public final class Prediction {
+    /** Commands kept; two seconds at the tick rate. Must be a power of two. */
+    public static final int SIZE = 128;
+    private static final int MASK = SIZE - 1;
+    /** Pixels of disagreement, summed over both axes, tolerated before it counts as a correction. */
+    public static final float TOLERANCE = 1;
+
+    private final byte[] buttons = new byte[SIZE];
+    private final float[] x = new float[SIZE];
+    private final float[] y = new float[SIZE];
+    private int newest;
+    private int lastChecked;
+    private int checked;
+    private int corrections;
+    private double correctionDistance;
+    private float maxCorrection;
+
+    /** Applies one tick of {@code buttons} to the player and records it as the next command. */
+    public void step(Match match, int player, int buttons) {
+        int command = ++newest;
+        this.buttons[command & MASK] = (byte)buttons;
+        apply(match, player, command);
+    }
+
+    /**
+     * Call after a snapshot has been applied to the match: checks the prediction for
+     * {@code applied}, the last command the server had applied, then replays the newer ones.
+     */
+    public void reconcile(Match match, int player, int applied) {
+        EntityWorld world = match.getWorld();
+        int i = applied & MASK;
+        // The server may report the same command again when it ran short of input; count each once
+        if (applied > lastChecked && newest - applied < SIZE && !match.isRespawning(player)) {
+            lastChecked = applied;
+            checked++;
+            float error = Math.abs(world.x[player] - x[i]) + Math.abs(world.y[player] - y[i]);
+            if (error > TOLERANCE) {
+                corrections++;
+                correctionDistance += error;
+                maxCorrection = Math.max(maxCorrection, error);
+            }
+        }
+        for (int command = Math.max(applied + 1, newest - SIZE + 1); command <= newest; command++) {
+            apply(match, player, command);
+        }
+    }
+
+    private void apply(Match match, int player, int command) {
+        int i = command & MASK;
+        match.predictMovement(player, buttons[i]);
+        EntityWorld world = match.getWorld();
+        x[i] = world.x[player];
+        y[i] = world.y[player];
+    }
+
+    /** Number of the newest command. */
+    public int newest() {
+        return newest;
+    }
+
+    /** Buttons of a command still in the ring. */
+    public int buttons(int command) {
+        return buttons[command & MASK];
+    }
+
+    /** Commands whose prediction was compared with the server's result. */
+    public int getChecked() {
+        return checked;
+    }
+
+    public int getCorrections() {
+        return corrections;
+    }
+
+    /** Average distance the player was moved by a correction. */
+    public float getMeanCorrection() {
+        return corrections == 0 ? 0 : (float)(correctionDistance / corrections);
+    }
+
+    public float getMaxCorrection() {
+        return maxCorrection;
+    }
+}
@@ -0,0 +1,44 @@
+package com.phantom_strike.net;
+
+/**
+ * Datagram layout shared by {@link GameClient} and the server. Every packet starts with a
+ * one-byte type; multi-byte values are big-endian, as {@link java.nio.ByteBuffer} writes them.
+ * <pre>
+ * CONNECT     client to server, resent until accepted
+ * ACCEPT      player id (short), seed (long), players per team (short), health packs (short),
+ *             map id (long), 0 for the one generated from the seed
+ * INPUT       sequence (int), shots (byte), team switches (byte), acknowledged snapshot tick (int),
+ *             newest command (int), command count (byte), buttons (byte) per command, oldest first
+ * SNAPSHOT    last command applied to the client's player (int), then bit-packed, see {@link Snapshot}
+ * DISCONNECT  either way; from the server it means the client was refused or dropped
+ * </pre>
+ * Shots and team switches are running counts rather than flags, so a press survives lost
+ * or duplicated input packets: the server acts once whenever the count moves on. The
+ * acknowledged tick tells the server which snapshot it can diff the next one against.
+ * <p>
+ * Held buttons go as commands, one per client tick, numbered so the server applies each
+ * once and in order. Every INPUT repeats the last few, so a lost packet loses none; the
+ * server reports which one it applied last so the client can reconcile its prediction.
+ */
+public final class Protocol {
+    public static final byte CONNECT = 1;
+    public static final byte ACCEPT = 2;
+    public static final byte INPUT = 3;
+    public static final byte SNAPSHOT = 4;
+    public static final byte DISCONNECT = 5;
+
+    public static final int DEFAULT_PORT = 27015;
+    /** Largest datagram either side sends; stays under a typical path MTU. */
+    public static final int MAX_PACKET = 1200;
+    /** Server ticks between snapshots. */
+    public static final int SNAPSHOT_INTERVAL = 2;
+    /** Commands repeated in every INPUT. */
+    public static final int INPUT_COMMANDS = 8;
+    /** Seconds without a packet before the other side is considered gone. */
+    public static final float TIMEOUT = 5;
+    /** Seconds between connection attempts while waiting for ACCEPT. */
+    public static final float CONNECT_RETRY = 0.25f;
+
+    private Protocol() {
+    }
+}
@@ -0,0 +1,363 @@
+package com.phantom_strike.net;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.phantom_strike.ecs.Component;
+import com.phantom_strike.ecs.EntityWorld;
+import com.phantom_strike.sim.Match;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bit-packed snapshot of a {@link WorldState}, delta-encoded against a baseline the
+ * client has acknowledged. Entities that haven't changed since the baseline cost nothing,
+ * and a moving player costs a couple of bytes. Without a baseline every entity is sent
+ * in full.
+ * <pre>
+ * tick (32), baseline tick (32, all ones for none), red score (8), blue score (8), winner (2)
+ * removed:  { 1, id } ... 0
+ * entities: { 1, id, new (1), fields } ... 0
+ * far:      count (5), { id (16), x (12), y (12), flags } ...
+ * </pre>
+ * Ids are sent as the gap from the previous id when that's small. A new entity sends its
+ * kind, flags and every field. A changed one sends a bit per field, then the fields that
+ * changed, positions as a short delta where they fit.
+ * <p>
+ * Entities that don't fit into the buffer are left out. What the client will end up with
+ * is recorded in {@code sent}: it keeps its baseline copy of anything left out, so the
+ * next diff picks them up. Encoding and decoding allocate nothing once the states have
+ * grown to the entity count.
+ * <p>
+ * The far section trails the entities: coarse, undiffed positions of players outside
+ * the client's {@link Interest}, a few at a time, so it can still draw the rest of the map.
+ */
+public final class Snapshot {
+    private static final int NO_BASELINE = -1;
+    private static final int GAP_BITS = 3;
+    private static final int ID_BITS = 16;
+    private static final int KIND_BITS = 2;
+    private static final int SCORE_BITS = 8;
+    private static final int DELTA_BITS = 8;
+    private static final int HEADER_BITS = 32 + 32 + 2 * SCORE_BITS + 2;
+    // Upper bound on one entity record, so we can stop before running out of room
+    private static final int MAX_ENTITY_BITS = 1 + 1 + ID_BITS + 1 + KIND_BITS + WorldState.FLAG_BITS
+        + 2 * (1 + WorldState.POSITION_BITS) + 2 * WorldState.VELOCITY_BITS + WorldState.HEALTH_BITS + 6;
+
+    /** Most players one far section carries. */
+    public static final int MAX_FAR_RECORDS = 24;
+    private static final int FAR_COUNT_BITS = 5;
+    // Far positions drop the low bits: 8 px steps instead of an eighth of one
+    private static final int FAR_SHIFT = 6;
+    private static final int FAR_POSITION_BITS = WorldState.POSITION_BITS - FAR_SHIFT;
+    private static final int FAR_RECORD_BITS = ID_BITS + 2 * FAR_POSITION_BITS + WorldState.FLAG_BITS;
+    /** Room to {@link BitWriter#reserve} while encoding the entities, so the far section always fits. */
+    public static final int FAR_BITS = FAR_COUNT_BITS + MAX_FAR_RECORDS * FAR_RECORD_BITS;
+    /** Bytes a snapshot needs before {@link #peekTick} and {@link #peekBaseline} can be used. */
+    public static final int PEEK_BYTES = 8;
+
+    // Field change bits
+    private static final int CHANGED_X = 1;
+    private static final int CHANGED_Y = 1 << 1;
+    private static final int CHANGED_VELOCITY = 1 << 2;
+    private static final int CHANGED_HEALTH = 1 << 3;
+    private static final int CHANGED_FLAGS = 1 << 4;
+    private static final int CHANGE_BITS = 5;
+
+    private Snapshot() {
+    }
+
+    /**
+     * Encodes {@code current} against {@code baseline} (null for a full snapshot) and
+     * records in {@code sent} the state the client will have after decoding it. If the
+     * removals since {@code baseline} don't fit, the snapshot goes out in full instead.
+     */
+    public static void encode(WorldState current, WorldState baseline, WorldState sent, BitWriter out) {
+        // The client must get every removal, so if they don't all fit (thousands of them)
+        // send everything in full instead, which needs none
+        if (baseline != null && !removalsFit(current, baseline, out.bitsRemaining() - HEADER_BITS - 2)) {
+            baseline = null;
+        }
+        sent.clear(current.tick);
+        sent.redScore = current.redScore;
+        sent.blueScore = current.blueScore;
+        sent.winner = current.winner;
+        out.write((int)current.tick, 32);
+        out.write(baseline != null ? (int)baseline.tick : NO_BASELINE, 32);
+        out.write(current.redScore, SCORE_BITS);
+        out.write(current.blueScore, SCORE_BITS);
+        out.write(current.winner, 2);
+
+        // Removals first; room for them was checked above
+        int previous = -1;
+        if (baseline != null) {
+            int c = 0;
+            for (int b = 0; b < baseline.count; b++) {
+                int id = baseline.id[b];
+                while (c < current.count && current.id[c] < id) c++;
+                if (c < current.count && current.id[c] == id) continue;
+                out.write(1, 1);
+                previous = writeId(out, id, previous);
+            }
+        }
+        out.write(0, 1);
+
+        int b = 0;
+        previous = -1;
+        for (int c = 0; c < current.count; c++) {
+            int id = current.id[c];
+            // Baseline entities before this one were removed, and the client drops them too
+            while (baseline != null && b < baseline.count && baseline.id[b] < id) b++;
+            int base = baseline != null && b < baseline.count && baseline.id[b] == id ? b : -1;
+
+            if (out.bitsRemaining() < MAX_ENTITY_BITS + 1) {
+                // Out of room: the client keeps what it had
+                if (base >= 0) sent.addCopy(baseline, base);
+                continue;
+            }
+            if (base >= 0 && baseline.kind[base] == current.kind[c]) {
+                int changes = changes(current, c, baseline, base);
+                if (changes == 0) {
+                    sent.addCopy(baseline, base);
+                    continue;
+                }
+                out.write(1, 1);
+                previous = writeId(out, id, previous);
+                out.write(0, 1);
+                writeChanges(out, current, c, baseline, base, changes);
+            } else {
+                out.write(1, 1);
+                previous = writeId(out, id, previous);
+                out.write(1, 1);
+                writeFull(out, current, c);
+            }
+            sent.addCopy(current, c);
+        }
+        out.write(0, 1);
+    }
+
+    // Whether the removals from baseline to current, each with its continue bit, fit in room
+    private static boolean removalsFit(WorldState current, WorldState baseline, int room) {
+        // Every baseline entity removed, with full ids, still fits: the usual case
+        if (baseline.count * (1 + 1 + ID_BITS) <= room) return true;
+        int bits = 0;
+        int previous = -1;
+        int c = 0;
+        for (int b = 0; b < baseline.count; b++) {
+            int id = baseline.id[b];
+            while (c < current.count && current.id[c] < id) c++;
+            if (c < current.count && current.id[c] == id) continue;
+            bits += 1 + idBits(id, previous);
+            previous = id;
+        }
+        return bits <= room;
+    }
+
+    /** Tick of the snapshot in {@code in}, without consuming anything. */
+    public static long peekTick(ByteBuffer in) {
+        return in.getInt(in.position()) & 0xFFFFFFFFL;
+    }
+
+    /** Tick of the baseline the snapshot in {@code in} was diffed against, or -1. */
+    public static long peekBaseline(ByteBuffer in) {
+        int tick = in.getInt(in.position() + 4);
+        return tick == NO_BASELINE ? -1 : tick & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Decodes a snapshot into {@code out}. {@code baseline} must be the state named by
+     * {@link #peekBaseline}, or null when that is -1. {@code removed} is scratch space.
+     * Returns false if the snapshot is truncated or doesn't make sense against the
+     * baseline; {@code out} then holds nothing worth keeping.
+     */
+    public static boolean decode(BitReader in, WorldState baseline, WorldState out, IntArray removed) {
+        long tick = in.read(32) & 0xFFFFFFFFL;
+        in.read(32);
+        out.clear(tick);
+        out.redScore = in.read(SCORE_BITS);
+        out.blueScore = in.read(SCORE_BITS);
+        out.winner = in.read(2);
+
+        removed.clear();
+        int previous = -1;
+        while (in.readBoolean()) {
+            int id = readId(in, previous);
+            if (id <= previous) return false;
+            removed.add(previous = id);
+        }
+
+        int b = 0;
+        int r = 0;
+        int baseCount = baseline != null ? baseline.count : 0;
+        int next = readNext(in, -1);
+        while (b < baseCount || next != Integer.MAX_VALUE) {
+            int baseId = b < baseCount ? baseline.id[b] : Integer.MAX_VALUE;
+            if (baseId < next) {
+                // Unchanged since the baseline, unless it was removed
+                while (r < removed.size && removed.get(r) < baseId) r++;
+                if (r >= removed.size || removed.get(r) != baseId) out.addCopy(baseline, b);
+                b++;
+                continue;
+            }
+            boolean isNew = in.readBoolean();
+            if (isNew) {
+                if (!readFull(in, next, out)) return false;
+            } else {
+                // A delta for an entity the baseline doesn't have
+                if (baseId != next) return false;
+                readChanges(in, baseline, b, out);
+            }
+            if (baseId == next) b++;
+            previous = next;
+            next = readNext(in, previous);
+            // Ids only go up; anything else is corrupt, and would loop or misorder the state
+            if (next <= previous) return false;
+        }
+        return !in.isOverrun();
+    }
+
+    /** Writes the far section: up to {@link #MAX_FAR_RECORDS} of {@code players}, none if it's empty. */
+    public static void encodeFar(EntityWorld world, IntArray players, BitWriter out) {
+        int count = Math.min(players.size, MAX_FAR_RECORDS);
+        out.write(count, FAR_COUNT_BITS);
+        for (int i = 0; i < count; i++) {
+            int p = players.get(i);
+            out.write(p, ID_BITS);
+            out.write(WorldState.position(world.x[p]) >> FAR_SHIFT, FAR_POSITION_BITS);
+            out.write(WorldState.position(world.y[p]) >> FAR_SHIFT, FAR_POSITION_BITS);
+            out.write(WorldState.playerFlags(world, p), WorldState.FLAG_BITS);
+        }
+    }
+
+    /**
+     * Reads the far section that follows {@link #decode} and writes it into the client's
+     * match. Players in {@code near}, the state just decoded, are exact already and skipped,
+     * as are ids that aren't players. Returns false, having written nothing, if the section
+     * is cut short.
+     */
+    public static boolean decodeFar(BitReader in, Match match, WorldState near) {
+        EntityWorld world = match.getWorld();
+        int count = in.read(FAR_COUNT_BITS);
+        // Check it's all there before writing any of it
+        if (in.isOverrun() || in.bitsRemaining() < count * FAR_RECORD_BITS) return false;
+        for (int i = 0; i < count; i++) {
+            int p = in.read(ID_BITS);
+            // Middle of the coarse step
+            int x = (in.read(FAR_POSITION_BITS) << FAR_SHIFT) + (1 << (FAR_SHIFT - 1));
+            int y = (in.read(FAR_POSITION_BITS) << FAR_SHIFT) + (1 << (FAR_SHIFT - 1));
+            int flags = in.read(WorldState.FLAG_BITS);
+            if (near.indexOf(p) >= 0 || !world.isAlive(p) || !world.has(p, Component.STICKMAN)) continue;
+            // Velocity isn't sent; zero rather than stale
+            WorldState.applyPlayer(world, p, WorldState.position(x), WorldState.position(y), 0, 0, flags);
+        }
+        return true;
+    }
+
+    private static int changes(WorldState current, int c, WorldState baseline, int b) {
+        int changes = 0;
+        if (current.x[c] != baseline.x[b]) changes |= CHANGED_X;
+        if (current.y[c] != baseline.y[b]) changes |= CHANGED_Y;
+        if (current.vx[c] != baseline.vx[b] || current.vy[c] != baseline.vy[b]) changes |= CHANGED_VELOCITY;
+        if (current.health[c] != baseline.health[b]) changes |= CHANGED_HEALTH;
+        if (current.flags[c] != baseline.flags[b]) changes |= CHANGED_FLAGS;
+        return changes;
+    }
+
+    private static void writeChanges(BitWriter out, WorldState current, int c, WorldState baseline, int b,
+                                     int changes) {
+        out.write(changes, CHANGE_BITS);
+        if ((changes & CHANGED_X) != 0) writePosition(out, current.x[c], baseline.x[b]);
+        if ((changes & CHANGED_Y) != 0) writePosition(out, current.y[c], baseline.y[b]);
+        if ((changes & CHANGED_VELOCITY) != 0) {
+            out.writeSigned(current.vx[c], WorldState.VELOCITY_BITS);
+            out.writeSigned(current.vy[c], WorldState.VELOCITY_BITS);
+        }
+        if ((changes & CHANGED_HEALTH) != 0) out.write(current.health[c], WorldState.HEALTH_BITS);
+        if ((changes & CHANGED_FLAGS) != 0) out.write(current.flags[c], WorldState.FLAG_BITS);
+    }
+
+    private static void readChanges(BitReader in, WorldState baseline, int b, WorldState out) {
+        int i = out.addCopy(baseline, b);
+        int changes = in.read(CHANGE_BITS);
+        if ((changes & CHANGED_X) != 0) out.x[i] = readPosition(in, baseline.x[b]);
+        if ((changes & CHANGED_Y) != 0) out.y[i] = readPosition(in, baseline.y[b]);
+        if ((changes & CHANGED_VELOCITY) != 0) {
+            out.vx[i] = in.readSigned(WorldState.VELOCITY_BITS);
+            out.vy[i] = in.readSigned(WorldState.VELOCITY_BITS);
+        }
+        if ((changes & CHANGED_HEALTH) != 0) out.health[i] = in.read(WorldState.HEALTH_BITS);
+        if ((changes & CHANGED_FLAGS) != 0) out.flags[i] = in.read(WorldState.FLAG_BITS);
+    }
+
+    private static void writeFull(BitWriter out, WorldState state, int i) {
+        int kind = state.kind[i];
+        out.write(kind, KIND_BITS);
+        out.write(state.flags[i], WorldState.FLAG_BITS);
+        out.write(state.x[i], WorldState.POSITION_BITS);
+        out.write(state.y[i], WorldState.POSITION_BITS);
+        // Packs don't move or take damage
+        if (kind == WorldState.PACK) return;
+        out.writeSigned(state.vx[i], WorldState.VELOCITY_BITS);
+        out.writeSigned(state.vy[i], WorldState.VELOCITY_BITS);
+        if (kind == WorldState.PLAYER) out.write(state.health[i], WorldState.HEALTH_BITS);
+    }
+
+    // False for a kind we don't know
+    private static boolean readFull(BitReader in, int id, WorldState out) {
+        int kind = in.read(KIND_BITS);
+        if (kind > WorldState.PACK) return false;
+        int flags = in.read(WorldState.FLAG_BITS);
+        int x = in.read(WorldState.POSITION_BITS);
+        int y = in.read(WorldState.POSITION_BITS);
+        int vx = 0, vy = 0, health = 0;
+        if (kind != WorldState.PACK) {
+            vx = in.readSigned(WorldState.VELOCITY_BITS);
+            vy = in.readSigned(WorldState.VELOCITY_BITS);
+            if (kind == WorldState.PLAYER) health = in.read(WorldState.HEALTH_BITS);
+        }
+        out.add(id, kind, flags, x, y, vx, vy, health);
+        return true;
+    }
+
+    private static void writePosition(BitWriter out, int value, int base) {
+        int delta = value - base;
+        int limit = (1 << (DELTA_BITS - 1)) - 1;
+        if (delta >= -limit && delta <= limit) {
+            out.write(0, 1);
+            out.writeSigned(delta, DELTA_BITS);
+        } else {
+            out.write(1, 1);
+            out.write(value, WorldState.POSITION_BITS);
+        }
+    }
+
+    private static int readPosition(BitReader in, int base) {
+        if (!in.readBoolean()) return base + in.readSigned(DELTA_BITS);
+        return in.read(WorldState.POSITION_BITS);
+    }
+
+    private static int writeId(BitWriter out, int id, int previous) {
+        int gap = id - previous - 1;
+        if (gap < (1 << GAP_BITS)) {
+            out.write(0, 1);
+            out.write(gap, GAP_BITS);
+        } else {
+            out.write(1, 1);
+            out.write(id, ID_BITS);
+        }
+        return id;
+    }
+
+    // What writeId takes for id
+    private static int idBits(int id, int previous) {
+        return 1 + (id - previous - 1 < (1 << GAP_BITS) ? GAP_BITS : ID_BITS);
+    }
+
+    // The next entity id, or Integer.MAX_VALUE after the last
+    private static int readNext(BitReader in, int previous) {
+        return in.readBoolean() ? readId(in, previous) : Integer.MAX_VALUE;
+    }
+
+    private static int readId(BitReader in, int previous) {
+        if (!in.readBoolean()) return previous + 1 + in.read(GAP_BITS);
+        return in.read(ID_BITS);
+    }
+}
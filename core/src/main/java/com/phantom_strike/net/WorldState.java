@@ -0,0 +1,279 @@
+package com.phantom_strike.net;
+
+import com.phantom_strike.ecs.Component;
+import com.phantom_strike.ecs.EntityWorld;
+import com.phantom_strike.ecs.Family;
+import com.phantom_strike.sim.Match;
+import com.phantom_strike.sim.ObjectType;
+import com.phantom_strike.sim.Team;
+
+import java.util.Arrays;
+
+/**
+ * The replicated part of a match, quantized to the precision it goes over the wire with:
+ * players, bullets and health packs sorted by entity id, plus the scores. Both sides keep
+ * a ring of these; the server diffs the current one against what a client last
+ * acknowledged, and the client rebuilds the same state from that diff.
+ * <p>
+ * Positions are kept in eighths of a pixel, velocities in whole pixels per second.
+ */
+public final class WorldState {
+    public static final int PLAYER = 0;
+    public static final int BULLET = 1;
+    public static final int PACK = 2;
+
+    // Flags
+    static final int RED = 1;
+    static final int FACING_RIGHT = 1 << 1;
+    static final int SHOOTING = 1 << 2;
+    static final int RESPAWNING = 1 << 3;
+    static final int ACTIVE = 1 << 4;
+    static final int FLAG_BITS = 5;
+
+    static final int POSITION_BITS = 18;
+    static final int VELOCITY_BITS = 12;
+    static final int HEALTH_BITS = 7;
+    private static final float POSITION_SCALE = 8;
+    // Lets things sit a little off the left and bottom edges
+    private static final float POSITION_OFFSET = 1024;
+    private static final int PACK_ACTIVE = Component.COLLIDER | Component.PICKUP;
+
+    long tick = -1;
+    int redScore;
+    int blueScore;
+    /** 0 while playing, 1 red won, 2 blue won. */
+    int winner;
+
+    int count;
+    int[] id = new int[0];
+    byte[] kind = new byte[0];
+    int[] flags = new int[0];
+    int[] x = new int[0];
+    int[] y = new int[0];
+    int[] vx = new int[0];
+    int[] vy = new int[0];
+    int[] health = new int[0];
+
+    public long tick() {
+        return tick;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    void clear(long tick) {
+        this.tick = tick;
+        count = 0;
+    }
+
+    /** Appends an entity; ids must be added in increasing order. Returns its index. */
+    int add(int entity, int kind, int flags, int x, int y, int vx, int vy, int health) {
+        if (count == id.length) grow(Math.max(64, count * 2));
+        int i = count++;
+        id[i] = entity;
+        this.kind[i] = (byte)kind;
+        this.flags[i] = flags;
+        this.x[i] = x;
+        this.y[i] = y;
+        this.vx[i] = vx;
+        this.vy[i] = vy;
+        this.health[i] = health;
+        return i;
+    }
+
+    int addCopy(WorldState from, int i) {
+        return add(from.id[i], from.kind[i], from.flags[i], from.x[i], from.y[i], from.vx[i], from.vy[i],
+                   from.health[i]);
+    }
+
+    /** Makes sure {@code entities} fit without growing. */
+    public void ensureCapacity(int entities) {
+        if (entities > id.length) grow(entities);
+    }
+
+    private void grow(int capacity) {
+        id = Arrays.copyOf(id, capacity);
+        kind = Arrays.copyOf(kind, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        vx = Arrays.copyOf(vx, capacity);
+        vy = Arrays.copyOf(vy, capacity);
+        health = Arrays.copyOf(health, capacity);
+    }
+
+    /** Quantizes the match's current state into this one. Ids come out sorted because the world is scanned in order. */
+    public void capture(Match match) {
+        begin(match);
+        EntityWorld world = match.getWorld();
+        for (int e = 0; e < world.highWater(); e++) {
+            addEntity(world, e);
+        }
+    }
+
+    /** Empties this state and takes the tick and scores from the match; entities are added with {@link #addEntity}. */
+    public void begin(Match match) {
+        clear(match.getTick());
+        redScore = match.getRedTeamScore();
+        blueScore = match.getBlueTeamScore();
+        winner = !match.isGameOver() ? 0 : match.getWinningTeam().equals("RED") ? 1 : 2;
+    }
+
+    /**
+     * Quantizes and appends one entity if it is replicated at all: a player, a bullet or a
+     * health pack. Ids must be added in increasing order.
+     */
+    public boolean addEntity(EntityWorld world, int e) {
+        int mask = world.mask(e);
+        if ((mask & Component.STICKMAN) != 0) {
+            add(e, PLAYER, playerFlags(world, e), position(world.x[e]), position(world.y[e]),
+                velocity(world.vx[e]), velocity(world.vy[e]),
+                Math.max(0, Math.min(world.health[e], (1 << HEALTH_BITS) - 1)));
+        } else if ((mask & Component.PROJECTILE) != 0) {
+            add(e, BULLET, teamFlag(world, e), position(world.x[e]), position(world.y[e]),
+                velocity(world.vx[e]), velocity(world.vy[e]), 0);
+        } else if (isPack(world, e)) {
+            // Collected packs keep their entity, so inactive ones are sent too
+            int f = (mask & PACK_ACTIVE) == PACK_ACTIVE ? ACTIVE : 0;
+            add(e, PACK, f, position(world.x[e]), position(world.y[e]), 0, 0, 0);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /** Whether an entity is something snapshots carry. */
+    public static boolean isReplicated(EntityWorld world, int e) {
+        return world.has(e, Component.STICKMAN) || world.has(e, Component.PROJECTILE) || isPack(world, e);
+    }
+
+    private static boolean isPack(EntityWorld world, int e) {
+        return world.has(e, Component.POSITION) && world.objectType[e] == ObjectType.HEALTH_PACK.id();
+    }
+
+    /**
+     * Writes this state into a client's copy of the match, which was built from the same
+     * seed so player and pack ids agree. Bullets are replaced wholesale; their ids on the
+     * client don't have to match the server's.
+     */
+    public void applyTo(Match match) {
+        EntityWorld world = match.getWorld();
+        match.applyServerState(tick, redScore, blueScore, winner == 1 ? "RED" : winner == 2 ? "BLUE" : "");
+
+        Family bullets = match.getBullets();
+        for (int i = bullets.size() - 1; i >= 0; i--) {
+            world.destroy(bullets.get(i));
+        }
+        for (int i = 0; i < count; i++) {
+            int e = id[i];
+            switch (kind[i]) {
+                case PLAYER:
+                    applyPlayer(world, e, x(i), y(i), vx[i], vy[i], flags[i]);
+                    world.health[e] = health[i];
+                    break;
+                case BULLET:
+                    int b = match.spawnBullet(x(i), y(i), 0, 0, team(i));
+                    world.vx[b] = vx[i];
+                    world.vy[b] = vy[i];
+                    break;
+                case PACK:
+                    world.x[e] = x(i);
+                    world.y[e] = y(i);
+                    if ((flags[i] & ACTIVE) != 0) {
+                        world.add(e, PACK_ACTIVE);
+                    } else {
+                        world.remove(e, PACK_ACTIVE);
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Whether every player and pack here is one in {@code world}, so {@link #applyTo} can
+     * write them. Ids come off the wire; a corrupt snapshot can name anything.
+     */
+    public boolean fits(EntityWorld world) {
+        for (int i = 0; i < count; i++) {
+            int e = id[i];
+            if (kind[i] == BULLET) continue;
+            if (!world.isAlive(e)) return false;
+            if (kind[i] == PLAYER ? !world.has(e, Component.STICKMAN) : !isPack(world, e)) return false;
+        }
+        return true;
+    }
+
+    /** Writes a player's replicated state, other than health, into a client's world. */
+    static void applyPlayer(EntityWorld world, int e, float x, float y, float vx, float vy, int flags) {
+        world.x[e] = x;
+        world.y[e] = y;
+        world.vx[e] = vx;
+        world.vy[e] = vy;
+        world.team[e] = (flags & RED) != 0 ? Team.RED : Team.BLUE;
+        world.facingRight[e] = (flags & FACING_RIGHT) != 0;
+        world.shooting[e] = (flags & SHOOTING) != 0;
+        if ((flags & RESPAWNING) != 0) {
+            world.add(e, Component.RESPAWN);
+        } else {
+            world.remove(e, Component.RESPAWN);
+        }
+    }
+
+    /** Whether both hold the same scores and entities with the same quantized values. */
+    public boolean sameAs(WorldState other) {
+        if (count != other.count || redScore != other.redScore || blueScore != other.blueScore
+            || winner != other.winner) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            if (id[i] != other.id[i] || kind[i] != other.kind[i] || flags[i] != other.flags[i]
+                || x[i] != other.x[i] || y[i] != other.y[i] || vx[i] != other.vx[i] || vy[i] != other.vy[i]
+                || health[i] != other.health[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Index of an entity, or -1 if this state doesn't hold it. */
+    public int indexOf(int entity) {
+        int i = Arrays.binarySearch(id, 0, count, entity);
+        return i >= 0 ? i : -1;
+    }
+
+    public float x(int i) {
+        return position(x[i]);
+    }
+
+    public float y(int i) {
+        return position(y[i]);
+    }
+
+    public byte team(int i) {
+        return (flags[i] & RED) != 0 ? Team.RED : Team.BLUE;
+    }
+
+    static int position(float value) {
+        int q = Math.round((value + POSITION_OFFSET) * POSITION_SCALE);
+        return Math.max(0, Math.min(q, (1 << POSITION_BITS) - 1));
+    }
+
+    static float position(int quantized) {
+        return quantized / POSITION_SCALE - POSITION_OFFSET;
+    }
+
+    static int velocity(float value) {
+        int limit = (1 << (VELOCITY_BITS - 1)) - 1;
+        return Math.max(-limit, Math.min(Math.round(value), limit));
+    }
+
+    static int playerFlags(EntityWorld world, int e) {
+        return teamFlag(world, e) | (world.facingRight[e] ? FACING_RIGHT : 0)
+            | (world.shooting[e] ? SHOOTING : 0) | (world.has(e, Component.RESPAWN) ? RESPAWNING : 0);
+    }
+
+    static int teamFlag(EntityWorld world, int e) {
+        return world.team[e] == Team.RED ? RED : 0;
+    }
+}
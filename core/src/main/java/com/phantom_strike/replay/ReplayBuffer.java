@@ -0,0 +1,60 @@
+package com.phantom_strike.replay;
+
+import java.util.Arrays;
+
+/** A growable byte array written with the {@link ReplayFormat} encodings. */
+final class ReplayBuffer {
+    private byte[] data;
+    private int size;
+
+    ReplayBuffer(int capacity) {
+        data = new byte[capacity];
+    }
+
+    void put(int b) {
+        if (size == data.length) data = Arrays.copyOf(data, size * 2);
+        data[size++] = (byte)b;
+    }
+
+    void putVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            put((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        put(value);
+    }
+
+    void putInt(int value) {
+        put(value >>> 24);
+        put(value >>> 16);
+        put(value >>> 8);
+        put(value);
+    }
+
+    void putLong(long value) {
+        putInt((int)(value >>> 32));
+        putInt((int)value);
+    }
+
+    void put(byte[] bytes, int offset, int length) {
+        if (size + length > data.length) data = Arrays.copyOf(data, Math.max(data.length * 2, size + length));
+        System.arraycopy(bytes, offset, data, size, length);
+        size += length;
+    }
+
+    void put(ReplayBuffer other) {
+        put(other.data, 0, other.size);
+    }
+
+    byte[] data() {
+        return data;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
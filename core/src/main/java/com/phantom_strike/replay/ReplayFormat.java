@@ -0,0 +1,151 @@
+package com.phantom_strike.replay;
+
+import com.phantom_strike.sim.GameMap;
+import com.phantom_strike.sim.Match;
+import com.phantom_strike.sim.ObjectType;
+import com.phantom_strike.sim.MatchConfig;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of a replay file, shared by {@link ReplayRecorder} and {@link ReplayPlayer}.
+ * Integers are unsigned LEB128 varints unless noted; fixed-width values are big-endian.
+ * <pre>
+ * header  magic "PSRP" (4 bytes), version, seed (8 bytes), then the {@link MatchConfig}:
+ *         players per team, human player (byte), health packs, health-pack respawn delay
+ *         (float bits, 4 bytes), AI think budget, shoot chance count and each chance
+ *         (float bits), base and pressure defender shares (float bits), then the map: 0
+ *         for one generated from the seed, otherwise its object count + 1 and each object's
+ *         x, y, width, height (float bits), type (byte) and linked object + 1
+ * ticks   entries until one ends the file:
+ *           run      ticks, each one repeating the previous tick's inputs exactly
+ *           code     0 ends the file; otherwise code - 1 is (count &lt;&lt; 1) | form, then
+ *                    form 0: count records, the tick's calls in order
+ *                    form 1: the previous tick's players in the same order, count of them
+ *                            changed: index gap from the last changed one, flags [, lag]
+ * record  tag = (player &lt;&lt; 3) | kind, then by kind
+ *           INPUT    flags: buttons in bits 0-4, fire bit 5, team switch bit 6; lag if firing
+ *           BOT      now AI controlled      HUMAN    no longer AI controlled
+ *           RESET    the match was reset    FOCUS    column, row
+ *           CHECK    {@code Match.stateHash()} before this tick's step (8 bytes)
+ *           KEYFRAME {@code Match.saveState()} before this tick's step, deflated: its size,
+ *                    the deflated size, then the deflated bytes
+ * index   after the end: keyframe count, then each keyframe's tick and the file offset
+ *         of its entry's code
+ * footer  ticks in the file (8 bytes), offset of the index (4 bytes), magic "PSRI"
+ * </pre>
+ * Every entry is one tick: its calls, then a step. Repeated ticks are nearly free, so a
+ * player holding a key costs nothing until they let go, and a bot-only match is little
+ * more than its checks and keyframes. Every {@link #CHECK_INTERVAL} ticks has both, so
+ * its entry is a full list that can be played without the ticks before it. A file cut
+ * short, say by a crash, has no index or footer and plays up to where it stops.
+ */
+public final class ReplayFormat {
+    public static final int MAGIC = 0x50535250;
+    public static final int VERSION = 4;
+    public static final int INDEX_MAGIC = 0x50535249;
+    static final int FOOTER_SIZE = 16;
+
+    static final int INPUT = 0;
+    static final int BOT = 1;
+    static final int HUMAN = 2;
+    static final int RESET = 3;
+    static final int FOCUS = 4;
+    static final int CHECK = 5;
+    static final int KEYFRAME = 6;
+    static final int KIND_BITS = 3;
+
+    static final int BUTTONS = 0x1F;
+    static final int FIRE = 1 << 5;
+    static final int SWITCH_TEAM = 1 << 6;
+
+    /** Ticks between state checksums and keyframes; ten seconds. */
+    public static final int CHECK_INTERVAL = 600;
+
+    private ReplayFormat() {
+    }
+
+    static void writeConfig(ReplayBuffer out, MatchConfig config) {
+        out.putVarint(config.playersPerTeam);
+        out.put(config.humanPlayer ? 1 : 0);
+        out.putVarint(config.healthPacks);
+        out.putInt(Float.floatToIntBits(config.healthPackRespawnDelay));
+        out.putVarint(config.aiThinkBudget);
+        out.putVarint(config.shootChance.length);
+        for (float chance : config.shootChance) out.putInt(Float.floatToIntBits(chance));
+        out.putInt(Float.floatToIntBits(config.baseDefenderShare));
+        out.putInt(Float.floatToIntBits(config.pressureDefenderShare));
+        writeMap(out, config.map);
+    }
+
+    // Only the objects; the player's match builds its own index from them
+    private static void writeMap(ReplayBuffer out, GameMap map) {
+        if (map == null) {
+            out.putVarint(0);
+            return;
+        }
+        out.putVarint(map.size() + 1);
+        for (int i = 0; i < map.size(); i++) {
+            out.putInt(Float.floatToIntBits(map.x(i)));
+            out.putInt(Float.floatToIntBits(map.y(i)));
+            out.putInt(Float.floatToIntBits(map.width(i)));
+            out.putInt(Float.floatToIntBits(map.height(i)));
+            out.put(map.type(i).id());
+            out.putVarint(map.link(i) + 1);
+        }
+    }
+
+    private static GameMap readMap(ByteBuffer in) {
+        int size = getVarint(in) - 1;
+        if (size < 0) return null;
+        GameMap map = new GameMap();
+        for (int i = 0; i < size; i++) {
+            map.add(Float.intBitsToFloat(in.getInt()), Float.intBitsToFloat(in.getInt()),
+                    Float.intBitsToFloat(in.getInt()), Float.intBitsToFloat(in.getInt()), ObjectType.of(in.get()));
+            // Teleporters are linked once both ends are there
+            int link = getVarint(in) - 1;
+            if (link >= 0 && link < i) map.link(link, i);
+        }
+        return map;
+    }
+
+    static MatchConfig readConfig(ByteBuffer in) {
+        MatchConfig config = new MatchConfig();
+        config.playersPerTeam = getVarint(in);
+        config.humanPlayer = in.get() != 0;
+        config.healthPacks = getVarint(in);
+        config.healthPackRespawnDelay = Float.intBitsToFloat(in.getInt());
+        config.aiThinkBudget = getVarint(in);
+        config.shootChance = new float[getVarint(in)];
+        for (int i = 0; i < config.shootChance.length; i++) config.shootChance[i] = Float.intBitsToFloat(in.getInt());
+        config.baseDefenderShare = Float.intBitsToFloat(in.getInt());
+        config.pressureDefenderShare = Float.intBitsToFloat(in.getInt());
+        config.map = readMap(in);
+        return config;
+    }
+
+    /** Saves the match's state into {@code buffer}, or a bigger one if it doesn't fit, and returns it flipped. */
+    static ByteBuffer saveState(Match match, ByteBuffer buffer) {
+        while (true) {
+            try {
+                buffer.clear();
+                match.saveState(buffer);
+                buffer.flip();
+                return buffer;
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+        }
+    }
+
+    /** Reads an unsigned varint; reading past the end throws {@link java.nio.BufferUnderflowException}. */
+    static int getVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package com.phantom_strike.replay;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.LongArray;
+import com.phantom_strike.sim.GameRules;
+import com.phantom_strike.sim.Match;
+import com.phantom_strike.sim.MatchConfig;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static com.phantom_strike.replay.ReplayFormat.*;
+
+/**
+ * Plays a recording back by simulating the match again from its seed and config, feeding
+ * it the recorded calls tick by tick. The match is deterministic, so it goes exactly as it
+ * did; the state checksums in the file confirm it, and {@link #getDesyncTick()} says where
+ * it first didn't, which would mean the simulation changed since the recording was made.
+ * <p>
+ * {@link #seek} jumps to any tick by restoring the closest keyframe before it and
+ * simulating the rest of the way, at most {@link ReplayFormat#CHECK_INTERVAL} ticks.
+ * Everything is read in place from the buffer, normally the mapped file; only the
+ * keyframe being restored is inflated.
+ */
+public final class ReplayPlayer {
+    // As Match: a long stall doesn't turn into a burst of catch-up ticks
+    private static final int MAX_TICKS_PER_FRAME = 5;
+
+    private final ByteBuffer in;
+    private final Match match;
+    private final long length;
+    // Offsets in the file are from here
+    private final int base;
+    private final int firstEntry;
+    private final ByteBuffer initial;
+    private final LongArray keyframeTicks = new LongArray();
+    private final IntArray keyframeOffsets = new IntArray();
+    private final Inflater inflater = new Inflater();
+    private ByteBuffer state = ByteBuffer.allocate(64 * 1024);
+
+    // The previous tick's calls, for repeats and changes
+    private final IntArray players = new IntArray();
+    private final IntArray buttons = new IntArray();
+    private final IntArray nextPlayers = new IntArray();
+    private final IntArray nextButtons = new IntArray();
+    private int run;
+    private float accumulator;
+    private float speed = 1;
+    private int checks;
+    private long desyncTick = -1;
+
+    /** Maps the file and plays it from there; see {@link #ReplayPlayer(ByteBuffer)}. */
+    public static ReplayPlayer open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping outlives the channel
+            return new ReplayPlayer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /** Plays the recording in {@code data} from its position on. */
+    public ReplayPlayer(ByteBuffer data) throws IOException {
+        in = data;
+        base = in.position();
+        if (in.remaining() < 4 || in.getInt() != MAGIC) throw new IOException("Not a replay");
+        int version = getVarint(in);
+        if (version != VERSION) throw new IOException("Replay version " + version + ", expected " + VERSION);
+        long seed = in.getLong();
+        MatchConfig config = readConfig(in);
+        config.seed = seed;
+        firstEntry = in.position();
+        length = hasIndex() ? readIndex() : scan();
+        in.position(firstEntry);
+        match = new Match(config);
+        initial = saveState(match, ByteBuffer.allocate(64 * 1024));
+        if (length > 0) nextEntry();
+    }
+
+    private boolean hasIndex() {
+        int end = in.limit();
+        return end - firstEntry >= FOOTER_SIZE && in.getInt(end - 4) == INDEX_MAGIC;
+    }
+
+    // Reads the index the recorder left at the end; returns the length
+    private long readIndex() {
+        int end = in.limit();
+        long ticks = in.getLong(end - FOOTER_SIZE);
+        in.position(base + in.getInt(end - FOOTER_SIZE + 8));
+        for (int i = getVarint(in); i > 0; i--) {
+            keyframeTicks.add(getVarint(in));
+            keyframeOffsets.add(getVarint(in));
+        }
+        return ticks;
+    }
+
+    // Walks the entries without simulating to find how long a recording without an index
+    // is, and where its keyframes are
+    private long scan() {
+        long ticks = 0;
+        int previousCount = 0;
+        try {
+            while (true) {
+                ticks += getVarint(in);
+                int entry = in.position() - base;
+                int code = getVarint(in);
+                if (code == 0) break;
+                int count = (code - 1) >>> 1;
+                if (((code - 1) & 1) != 0) {
+                    for (int i = 0; i < count; i++) {
+                        getVarint(in);
+                        if ((in.get() & FIRE) != 0) getVarint(in);
+                    }
+                    count = previousCount;
+                } else {
+                    int inputs = 0;
+                    boolean keyframe = false;
+                    for (int i = 0; i < count; i++) {
+                        int kind = skipRecord();
+                        if (kind == INPUT) inputs++;
+                        if (kind == KEYFRAME) keyframe = true;
+                    }
+                    count = inputs;
+                    if (keyframe) {
+                        keyframeTicks.add(ticks);
+                        keyframeOffsets.add(entry);
+                    }
+                }
+                previousCount = count;
+                ticks++;
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            // Cut short, maybe partway through a keyframe; it plays as far as it goes
+        }
+        return ticks;
+    }
+
+    // Skips a record and returns its kind
+    private int skipRecord() {
+        int kind = getVarint(in) & ((1 << KIND_BITS) - 1);
+        switch (kind) {
+            case INPUT:
+                if ((in.get() & FIRE) != 0) getVarint(in);
+                break;
+            case FOCUS:
+                getVarint(in);
+                getVarint(in);
+                break;
+            case CHECK:
+                in.getLong();
+                break;
+            case KEYFRAME:
+                getVarint(in);
+                int size = getVarint(in);
+                in.position(in.position() + size);
+                break;
+        }
+        return kind;
+    }
+
+    /** The match being played back. Don't step it directly. */
+    public Match getMatch() {
+        return match;
+    }
+
+    /** Plays {@code speed} ticks per tick of elapsed time; 1 is real time. */
+    public void setSpeed(float speed) {
+        this.speed = speed;
+    }
+
+    public float getSpeed() {
+        return speed;
+    }
+
+    /** Plays as many ticks as fit into the elapsed time at the current speed, like {@link Match#update}. */
+    public void update(float deltaTime) {
+        float limit = MAX_TICKS_PER_FRAME * Math.max(1, speed) * GameRules.TICK_DURATION;
+        accumulator = Math.min(accumulator + deltaTime * speed, limit);
+        while (accumulator >= GameRules.TICK_DURATION) {
+            accumulator -= GameRules.TICK_DURATION;
+            if (!step()) accumulator = 0;
+        }
+    }
+
+    /** Plays one tick. Returns false, doing nothing, once the recording has ended. */
+    public boolean step() {
+        if (match.getTick() >= length) return false;
+        if (run > 0) {
+            run--;
+            for (int i = 0; i < players.size; i++) {
+                match.applyInput(players.get(i), buttons.get(i), false, false);
+            }
+            match.step();
+        } else {
+            playEntry();
+            match.step();
+            if (match.getTick() < length) nextEntry();
+        }
+        return true;
+    }
+
+    /**
+     * Moves playback to {@code tick}, clamped to the recording. Going forward less than a
+     * keyframe interval just plays on; anything else restores the last keyframe before
+     * {@code tick}, or the start, and plays from there.
+     */
+    public void seek(long tick) {
+        long target = Math.max(0, Math.min(tick, length));
+        accumulator = 0;
+        // A keyframe is saved partway through its tick, so restoring one gets to the tick after
+        int k = keyframeTicks.size - 1;
+        while (k >= 0 && keyframeTicks.get(k) + 1 > target) k--;
+        long from = k >= 0 ? keyframeTicks.get(k) + 1 : 0;
+        if (target < match.getTick() || from > match.getTick()) {
+            if (k >= 0) {
+                restore(k);
+            } else {
+                rewind();
+            }
+        }
+        while (match.getTick() < target && step()) {
+            // Simulate the rest of the way
+        }
+    }
+
+    // Back to tick 0
+    private void rewind() {
+        match.loadState(initial.duplicate());
+        players.clear();
+        buttons.clear();
+        in.position(firstEntry);
+        run = 0;
+        if (length > 0) nextEntry();
+    }
+
+    // Plays keyframe k's tick from the state it saved
+    private void restore(int k) {
+        in.position(base + keyframeOffsets.get(k));
+        int code = getVarint(in);
+        if (((code - 1) & 1) != 0) throw new IllegalStateException("Keyframe entry isn't a full list");
+        nextPlayers.clear();
+        nextButtons.clear();
+        for (int i = (code - 1) >>> 1; i > 0; i--) {
+            int tag = getVarint(in);
+            switch (tag & ((1 << KIND_BITS) - 1)) {
+                case INPUT:
+                    // Already applied in the saved state, but the next tick may repeat it
+                    int flags = in.get();
+                    if ((flags & FIRE) != 0) getVarint(in);
+                    nextPlayers.add(tag >>> KIND_BITS);
+                    nextButtons.add(flags & BUTTONS);
+                    break;
+                case FOCUS:
+                    getVarint(in);
+                    getVarint(in);
+                    break;
+                case CHECK:
+                    in.getLong();
+                    break;
+                case KEYFRAME:
+                    loadKeyframe();
+                    break;
+            }
+        }
+        players.clear();
+        players.addAll(nextPlayers);
+        buttons.clear();
+        buttons.addAll(nextButtons);
+        match.step();
+        run = 0;
+        if (match.getTick() < length) nextEntry();
+    }
+
+    // Inflates a keyframe straight out of the buffer and loads it into the match
+    private void loadKeyframe() {
+        int size = getVarint(in);
+        int deflated = getVarint(in);
+        if (state.capacity() < size) state = ByteBuffer.allocate(size);
+        state.clear().limit(size);
+        ByteBuffer input = in.slice();
+        input.limit(deflated);
+        inflater.reset();
+        inflater.setInput(input);
+        try {
+            while (state.hasRemaining() && !inflater.finished()) {
+                if (inflater.inflate(state) == 0 && inflater.needsInput()) break;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt keyframe", e);
+        }
+        if (state.hasRemaining()) throw new IllegalStateException("Short keyframe");
+        in.position(in.position() + deflated);
+        state.flip();
+        match.loadState(state);
+    }
+
+    // Reads how many repeats come before the next entry
+    private void nextEntry() {
+        run = getVarint(in);
+    }
+
+    private void playEntry() {
+        int code = getVarint(in);
+        int count = (code - 1) >>> 1;
+        nextPlayers.clear();
+        nextButtons.clear();
+        if (((code - 1) & 1) != 0) {
+            // Changes to the previous tick's calls
+            int next = count > 0 ? getVarint(in) : 0;
+            int changed = 0;
+            for (int i = 0; i < players.size; i++) {
+                int p = players.get(i);
+                int flags = buttons.get(i);
+                int lag = 0;
+                if (changed < count && next == 0) {
+                    flags = in.get();
+                    if ((flags & FIRE) != 0) lag = getVarint(in);
+                    if (++changed < count) next = getVarint(in);
+                } else {
+                    next--;
+                }
+                input(p, flags, lag);
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                playRecord();
+            }
+        }
+        players.clear();
+        players.addAll(nextPlayers);
+        buttons.clear();
+        buttons.addAll(nextButtons);
+    }
+
+    private void playRecord() {
+        int tag = getVarint(in);
+        int player = tag >>> KIND_BITS;
+        switch (tag & ((1 << KIND_BITS) - 1)) {
+            case INPUT:
+                int flags = in.get();
+                input(player, flags, (flags & FIRE) != 0 ? getVarint(in) : 0);
+                break;
+            case BOT:
+                match.setBot(player, true);
+                break;
+            case HUMAN:
+                match.setBot(player, false);
+                break;
+            case RESET:
+                match.reset();
+                break;
+            case FOCUS:
+                int column = getVarint(in);
+                int row = getVarint(in);
+                match.setFocus((column + 0.5f) * Match.FOCUS_CELL_SIZE, (row + 0.5f) * Match.FOCUS_CELL_SIZE);
+                break;
+            case CHECK:
+                long hash = in.getLong();
+                checks++;
+                if (hash != match.stateHash() && desyncTick < 0) desyncTick = match.getTick();
+                break;
+            case KEYFRAME:
+                // Only needed when seeking
+                getVarint(in);
+                int size = getVarint(in);
+                in.position(in.position() + size);
+                break;
+        }
+    }
+
+    private void input(int player, int flags, int lag) {
+        match.applyInput(player, flags & BUTTONS, (flags & FIRE) != 0, (flags & SWITCH_TEAM) != 0,
+                         match.getTick() - lag);
+        nextPlayers.add(player);
+        nextButtons.add(flags & BUTTONS);
+    }
+
+    /** Ticks played so far. */
+    public long getTick() {
+        return match.getTick();
+    }
+
+    /** Ticks in the recording. */
+    public long getLength() {
+        return length;
+    }
+
+    public boolean isFinished() {
+        return match.getTick() >= length;
+    }
+
+    /** Keyframes in the recording, so places {@link #seek} can start from. */
+    public int getKeyframes() {
+        return keyframeTicks.size;
+    }
+
+    /** State checksums compared so far. */
+    public int getChecks() {
+        return checks;
+    }
+
+    /** Tick of the first checksum that didn't match, or -1 if all have. */
+    public long getDesyncTick() {
+        return desyncTick;
+    }
+}
@@ -0,0 +1,278 @@
+package com.phantom_strike.replay;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.LongArray;
+import com.phantom_strike.sim.Match;
+import com.phantom_strike.sim.MatchRecorder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.Deflater;
+
+import static com.phantom_strike.replay.ReplayFormat.*;
+
+/**
+ * Records a match as it is played, in the {@link ReplayFormat}: the seed and config, then
+ * per tick only what came from outside the simulation. The match thread just appends a
+ * few bytes to a buffer; a background thread writes full buffers to disk, and whatever
+ * has built up is handed over every second, so a crash loses at most about that much.
+ * <p>
+ * Every {@link ReplayFormat#CHECK_INTERVAL} ticks it also saves the whole match state as a
+ * keyframe, deflated, which costs the match thread a fraction of a millisecond and lets a
+ * {@link ReplayPlayer} start from there instead of tick 0. The index of them goes at the
+ * end of the file when it is closed.
+ * <p>
+ * Create it before the match's first tick and {@link #close()} it when done. If the disk
+ * fails, recording stops quietly and {@code close()} reports why.
+ */
+public final class ReplayRecorder implements MatchRecorder, Closeable {
+    // Buffers go to the writer past this size, or at the latest every FLUSH_TICKS ticks
+    private static final int CHUNK = 16 * 1024;
+    private static final int FLUSH_TICKS = 60;
+
+    private final FileChannel channel;
+    private final Thread writer;
+    private final BlockingQueue<ReplayBuffer> full = new LinkedBlockingQueue<>();
+    private final BlockingQueue<ReplayBuffer> empty = new LinkedBlockingQueue<>();
+    // Tells the writer to finish
+    private final ReplayBuffer done = new ReplayBuffer(1);
+    private volatile IOException failure;
+
+    private ReplayBuffer out = new ReplayBuffer(CHUNK * 2);
+    // This tick's records as a full list, in case it can't be written more compactly
+    private final ReplayBuffer scratch = new ReplayBuffer(256);
+    private int records;
+    private boolean onlyInputs = true;
+    // This tick's calls, and the previous tick's with presses left out
+    private final IntArray players = new IntArray();
+    private final IntArray flags = new IntArray();
+    private final IntArray lags = new IntArray();
+    private final IntArray lastPlayers = new IntArray();
+    private final IntArray lastButtons = new IntArray();
+    private int run;
+    // Keyframe state, raw and deflated, and where each keyframe's entry went
+    private ByteBuffer state = ByteBuffer.allocate(64 * 1024);
+    private byte[] deflated = new byte[16 * 1024];
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private boolean keyframe;
+    private final LongArray keyframeTicks = new LongArray();
+    private final IntArray keyframeOffsets = new IntArray();
+    private long ticks;
+    private long bytes;
+    private boolean closed;
+
+    /** Starts recording {@code match}, which must not have been stepped yet, to {@code file}. */
+    public ReplayRecorder(Path file, Match match) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                   StandardOpenOption.WRITE);
+        out.putInt(MAGIC);
+        out.putVarint(VERSION);
+        out.putLong(match.getSeed());
+        writeConfig(out, match.getConfig());
+        writer = new Thread(this::write, "replay-writer");
+        writer.setDaemon(true);
+        writer.start();
+        match.record(this);
+    }
+
+    @Override
+    public void input(int player, int buttons, boolean fire, boolean switchTeam, int viewLag) {
+        if (closed) return;
+        int f = (buttons & BUTTONS) | (fire ? FIRE : 0) | (switchTeam ? SWITCH_TEAM : 0);
+        players.add(player);
+        flags.add(f);
+        lags.add(viewLag);
+        scratch.putVarint(player << KIND_BITS | INPUT);
+        scratch.put(f);
+        if (fire) scratch.putVarint(viewLag);
+        records++;
+    }
+
+    @Override
+    public void bot(int player, boolean bot) {
+        if (closed) return;
+        scratch.putVarint(player << KIND_BITS | (bot ? BOT : HUMAN));
+        other();
+    }
+
+    @Override
+    public void reset() {
+        if (closed) return;
+        scratch.putVarint(RESET);
+        other();
+    }
+
+    @Override
+    public void focus(int column, int row) {
+        if (closed) return;
+        scratch.putVarint(FOCUS);
+        scratch.putVarint(column);
+        scratch.putVarint(row);
+        other();
+    }
+
+    @Override
+    public void step(Match match) {
+        if (closed) return;
+        if (match.getTick() % CHECK_INTERVAL == 0) {
+            scratch.putVarint(CHECK);
+            scratch.putLong(match.stateHash());
+            other();
+            keyframe(match);
+        }
+        endTick();
+        ticks++;
+        if (out.size() >= CHUNK || ticks % FLUSH_TICKS == 0) handOff();
+    }
+
+    private void keyframe(Match match) {
+        state = saveState(match, state);
+        int size = state.remaining();
+        deflater.reset();
+        deflater.setInput(state);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == deflated.length) deflated = Arrays.copyOf(deflated, length * 2);
+            length += deflater.deflate(deflated, length, deflated.length - length);
+        }
+        scratch.putVarint(KEYFRAME);
+        scratch.putVarint(size);
+        scratch.putVarint(length);
+        scratch.put(deflated, 0, length);
+        keyframe = true;
+        other();
+    }
+
+    private void other() {
+        onlyInputs = false;
+        records++;
+    }
+
+    // Writes the tick as a repeat, as changes to the last tick's calls or as a full list
+    private void endTick() {
+        boolean samePlayers = onlyInputs && players.size == lastPlayers.size;
+        int changed = 0;
+        for (int i = 0; i < players.size && samePlayers; i++) {
+            samePlayers = players.get(i) == lastPlayers.get(i);
+            if (flags.get(i) != lastButtons.get(i)) changed++;
+        }
+
+        if (samePlayers && changed == 0) {
+            run++;
+        } else {
+            out.putVarint(run);
+            run = 0;
+            if (samePlayers) {
+                out.putVarint((changed << 1 | 1) + 1);
+                int last = -1;
+                for (int i = 0; i < players.size; i++) {
+                    int f = flags.get(i);
+                    if (f == lastButtons.get(i)) continue;
+                    out.putVarint(i - last - 1);
+                    out.put(f);
+                    if ((f & FIRE) != 0) out.putVarint(lags.get(i));
+                    last = i;
+                }
+            } else {
+                if (keyframe) {
+                    keyframeTicks.add(ticks);
+                    keyframeOffsets.add((int)(bytes + out.size()));
+                }
+                out.putVarint((records << 1) + 1);
+                out.put(scratch);
+            }
+        }
+        keyframe = false;
+
+        // This tick's calls are what the next one is compared with
+        lastPlayers.clear();
+        lastPlayers.addAll(players);
+        lastButtons.clear();
+        for (int i = 0; i < flags.size; i++) lastButtons.add(flags.get(i) & BUTTONS);
+        players.clear();
+        flags.clear();
+        lags.clear();
+        scratch.clear();
+        records = 0;
+        onlyInputs = true;
+    }
+
+    // Gives what has built up to the writer
+    private void handOff() {
+        if (out.size() == 0) return;
+        if (failure != null) {
+            out.clear();
+            return;
+        }
+        bytes += out.size();
+        full.add(out);
+        ReplayBuffer next = empty.poll();
+        out = next != null ? next : new ReplayBuffer(CHUNK * 2);
+    }
+
+    private void write() {
+        try {
+            while (true) {
+                ReplayBuffer buffer = full.take();
+                if (buffer == done) return;
+                ByteBuffer data = ByteBuffer.wrap(buffer.data(), 0, buffer.size());
+                while (data.hasRemaining()) channel.write(data);
+                buffer.clear();
+                empty.add(buffer);
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Ticks recorded so far. */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /** Bytes recorded so far, written or still waiting to be. */
+    public long getBytes() {
+        return bytes + out.size();
+    }
+
+    /**
+     * Ends the recording, waits for everything to reach the file and closes it. Calls since
+     * the last tick are left out; they belong to a tick that never came.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        out.putVarint(run);
+        out.putVarint(0);
+        int index = (int)(bytes + out.size());
+        out.putVarint(keyframeTicks.size);
+        for (int i = 0; i < keyframeTicks.size; i++) {
+            out.putVarint((int)keyframeTicks.get(i));
+            out.putVarint(keyframeOffsets.get(i));
+        }
+        out.putLong(ticks);
+        out.putInt(index);
+        out.putInt(INDEX_MAGIC);
+        handOff();
+        deflater.end();
+        full.add(done);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null) throw failure;
+    }
+}
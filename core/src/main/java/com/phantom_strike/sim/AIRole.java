@@ -0,0 +1,18 @@
+package com.phantom_strike.sim;
+
+/** AI role for team tactics; stored by ordinal in {@link com.phantom_strike.ecs.EntityWorld#aiRole}. */
+public enum AIRole {
+    NONE,
+    ATTACKER,
+    DEFENDER;
+
+    static final AIRole[] VALUES = values();
+
+    public static AIRole of(byte ordinal) {
+        return VALUES[ordinal];
+    }
+
+    public byte id() {
+        return (byte)ordinal();
+    }
+}
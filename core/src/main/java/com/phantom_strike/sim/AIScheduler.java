@@ -0,0 +1,177 @@
+package com.phantom_strike.sim;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.phantom_strike.ecs.EntityWorld;
+import com.phantom_strike.ecs.Family;
+
+import java.nio.ByteBuffer;
+
+import static com.phantom_strike.sim.GameRules.*;
+
+/**
+ * Decides which AI agents think on a tick. Agents close to an enemy or to the camera
+ * think every tick; the rest think at 10 Hz, or 5 Hz when no enemy is anywhere near, and
+ * steer by the intent they stored on their last think in between. Think times are
+ * staggered by entity id so the load spreads evenly, and an optional per-tick agent
+ * budget ({@link MatchConfig#aiThinkBudget}) defers whoever doesn't fit to the next tick,
+ * urgent agents first.
+ * <p>
+ * A think comes in two halves. Every agent thinking on a tick first perceives and picks
+ * an action, which only reads the world and may run for all of them at once; then each
+ * in turn acts on its pick.
+ */
+public class AIScheduler {
+    interface Brain {
+        /** Perceives and picks an action for each agent; only reads the world, so may split the work up. */
+        void perceive(IntArray agents);
+
+        /** Carries out the agent's pick and returns the distance to its closest enemy. */
+        float act(int agent);
+    }
+
+    static final int NEAR_INTERVAL = 1;
+    static final int FAR_INTERVAL = (int)ticks(0.1f);   // 10 Hz
+    static final int IDLE_INTERVAL = (int)ticks(0.2f);  // 5 Hz
+    private static final float NEAR_RANGE = MAX_AI_SIGHT_RANGE;
+    private static final float FAR_RANGE = MAX_AI_SIGHT_RANGE * 2;
+    // Half the 1280x720 view plus a margin
+    private static final float FOCUS_HALF_WIDTH = 640 + 200;
+    private static final float FOCUS_HALF_HEIGHT = 360 + 200;
+
+    private final EntityWorld world;
+    private final IntArray thinking = new IntArray(false, 64);
+    private int cursor;
+    private boolean hasFocus;
+    private float focusX, focusY;
+
+    private int thinksLastTick;
+    private int deferredLastTick;
+    private int maxThinksPerTick;
+    private long totalThinks;
+    private long totalDeferred;
+    private long ticks;
+
+    AIScheduler(EntityWorld world) {
+        this.world = world;
+    }
+
+    /** Agents inside the view around this point think every tick. */
+    public void setFocus(float x, float y) {
+        hasFocus = true;
+        focusX = x;
+        focusY = y;
+    }
+
+    public void clearFocus() {
+        hasFocus = false;
+    }
+
+    void run(Family agents, long tick, int budget, Brain brain) {
+        int n = agents.size();
+        int limit = budget > 0 ? budget : Integer.MAX_VALUE;
+        int thinks = 0;
+        int deferred = 0;
+        thinking.clear();
+
+        // Urgent agents get the budget first, then everyone else that is due
+        for (int pass = 0; pass < 2; pass++) {
+            for (int k = 0; k < n; k++) {
+                int p = agents.get((cursor + k) % n);
+                if (world.thinkInterval[p] == 0) stagger(p, tick);
+
+                if (world.nextThink[p] > tick) {
+                    // Between thinks, keep steering by the last intent
+                    if (pass == 0) applyIntent(p);
+                    continue;
+                }
+                boolean urgent = world.thinkInterval[p] == NEAR_INTERVAL;
+                if (urgent != (pass == 0)) continue;
+
+                if (thinks < limit) {
+                    thinking.add(p);
+                    thinks++;
+                } else {
+                    deferred++;
+                    applyIntent(p);
+                }
+            }
+        }
+
+        brain.perceive(thinking);
+        for (int i = 0; i < thinking.size; i++) {
+            int p = thinking.get(i);
+            int interval = intervalFor(p, brain.act(p));
+            world.thinkInterval[p] = interval;
+            world.nextThink[p] = tick + interval;
+            world.intentX[p] = world.vx[p];
+            world.intentY[p] = world.vy[p];
+        }
+        if (n > 0) cursor = (cursor + thinks) % n;
+
+        thinksLastTick = thinks;
+        deferredLastTick = deferred;
+        maxThinksPerTick = Math.max(maxThinksPerTick, thinks);
+        totalThinks += thinks;
+        totalDeferred += deferred;
+        ticks++;
+    }
+
+    // Where the next tick's round starts and the focus; the metrics aren't simulation state
+    void save(ByteBuffer out) {
+        out.putInt(cursor);
+        out.put(hasFocus ? (byte)1 : 0);
+        out.putFloat(focusX);
+        out.putFloat(focusY);
+    }
+
+    void load(ByteBuffer in) {
+        cursor = in.getInt();
+        hasFocus = in.get() != 0;
+        focusX = in.getFloat();
+        focusY = in.getFloat();
+    }
+
+    private void applyIntent(int p) {
+        world.vx[p] = world.intentX[p];
+        world.vy[p] = world.intentY[p];
+    }
+
+    // Spreads first think times over the far interval so agents don't all think on the same tick
+    private void stagger(int p, long tick) {
+        world.thinkInterval[p] = FAR_INTERVAL;
+        world.nextThink[p] = tick + (p * 7L) % FAR_INTERVAL;
+    }
+
+    private int intervalFor(int p, float enemyDistance) {
+        if (enemyDistance <= NEAR_RANGE) return NEAR_INTERVAL;
+        if (hasFocus && Math.abs(world.x[p] - focusX) < FOCUS_HALF_WIDTH
+            && Math.abs(world.y[p] - focusY) < FOCUS_HALF_HEIGHT) return NEAR_INTERVAL;
+        return enemyDistance <= FAR_RANGE ? FAR_INTERVAL : IDLE_INTERVAL;
+    }
+
+    /** Agents that thought on the last tick. */
+    public int getThinksLastTick() {
+        return thinksLastTick;
+    }
+
+    /** Agents that were due on the last tick but didn't fit in the budget. */
+    public int getDeferredLastTick() {
+        return deferredLastTick;
+    }
+
+    public int getMaxThinksPerTick() {
+        return maxThinksPerTick;
+    }
+
+    public float getAverageThinksPerTick() {
+        return ticks == 0 ? 0 : (float)totalThinks / ticks;
+    }
+
+    public long getTotalThinks() {
+        return totalThinks;
+    }
+
+    public long getTotalDeferred() {
+        return totalDeferred;
+    }
+}
@@ -0,0 +1,517 @@
+package com.phantom_strike.sim;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.phantom_strike.ecs.CommandBuffer;
+import com.phantom_strike.ecs.Component;
+import com.phantom_strike.ecs.EntitySystem;
+import com.phantom_strike.ecs.EntityWorld;
+import com.phantom_strike.ecs.Family;
+import com.phantom_strike.spatial.DynamicGrid;
+import com.phantom_strike.spatial.FlowField;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static com.phantom_strike.sim.GameRules.*;
+
+/**
+ * Utility AI for non-player characters. {@link AIScheduler} decides who thinks each tick;
+ * a think fills the agent's {@link Blackboard} and runs the best scoring action.
+ * <p>
+ * Perceiving and scoring only read the world, so with a pool (see {@link #setParallel})
+ * they are spread over it in batches. Acting draws on the agent's random stream, moves it
+ * and may shoot, so agents act one at a time, in the scheduler's order either way.
+ */
+class AISystem implements EntitySystem {
+    // Bonus for sticking with the current action
+    private static final float HYSTERESIS = 0.1f;
+    // Aim error, as a fraction of the shot direction
+    private static final float AIM_SPREAD = 0.05f;
+    // Cells of the per-team player grids closest-enemy lookups search
+    private static final float PLAYER_CELL_SIZE = 200;
+    // Agents perceived per task when perception is spread over a pool
+    private static final int PERCEIVE_BATCH = 32;
+    // Whether an agent looked for its enemy on this think, and how
+    private static final byte UNSEEN = 0;
+    private static final byte CACHED = 1;
+    private static final byte RAYCAST = 2;
+
+    private final Match match;
+    private final AIScheduler.Brain brain = new AIScheduler.Brain() {
+        @Override
+        public void perceive(IntArray agents) {
+            perceiveAll(agents);
+        }
+
+        @Override
+        public float act(int agent) {
+            return AISystem.this.act(agent);
+        }
+    };
+    private final Blackboard blackboard = new Blackboard();
+    private final Array<UtilityAction> actions = new Array<>();
+    private final AimKernel aim = new AimKernel();
+    private final CommandBuffer commands;
+    // Live players by team, brought up to date once a tick before anyone thinks
+    private final DynamicGrid[] players = new DynamicGrid[Team.COUNT];
+    private final IntArray indexed = new IntArray(false, 64);
+    // Per agent, for the tick's thinks only: the action picked, and how the enemy was looked at
+    private byte[] chosen = new byte[0];
+    private byte[] sight = new byte[0];
+    private ForkJoinPool pool;
+
+    AISystem(Match match) {
+        this.match = match;
+        commands = new CommandBuffer(match.world);
+        for (int team = 0; team < Team.COUNT; team++) {
+            players[team] = new DynamicGrid(WORLD_WIDTH, WORLD_HEIGHT, PLAYER_CELL_SIZE);
+        }
+        actions.add(new Attack());
+        actions.add(new Defend());
+        actions.add(new RetreatToHeal());
+        actions.add(new Flank());
+    }
+
+    @Override
+    public int reads() {
+        return Component.POSITION | Component.TEAM | Component.HEALTH | Component.AI | Component.PICKUP
+            | Component.TELEPORT | Component.INFLUENCE;
+    }
+
+    @Override
+    public int writes() {
+        return Component.VELOCITY | Component.AI | Component.STICKMAN | Component.MATCH;
+    }
+
+    @Override
+    public int kinds() {
+        return Component.STICKMAN | Component.COLLIDER;
+    }
+
+    @Override
+    public int writeKinds() {
+        return Component.STICKMAN;
+    }
+
+    // Bullets fired this tick appear once the phase is done
+    @Override
+    public CommandBuffer commands() {
+        return commands;
+    }
+
+    /** Spreads perception over {@code pool}, or keeps it on the calling thread when null (the default). */
+    void setParallel(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public void update(float deltaTime) {
+        match.navigation.update();
+        blackboard.ensureCapacity(match.world.highWater());
+        if (chosen.length < match.world.highWater()) {
+            chosen = Arrays.copyOf(chosen, Math.max(match.world.highWater(), chosen.length * 2));
+            sight = Arrays.copyOf(sight, chosen.length);
+        }
+        match.random.ensureEntities(match.world.highWater());
+        indexPlayers();
+        match.aiScheduler.run(match.aiPlayers, match.tick, match.config.aiThinkBudget, brain);
+        fireQueuedShots();
+    }
+
+    // What agents remember between thinks; queued shots never outlive a tick
+    void save(ByteBuffer out) {
+        blackboard.save(out);
+    }
+
+    void load(ByteBuffer in) {
+        blackboard.load(in);
+    }
+
+    private void perceiveAll(IntArray agents) {
+        if (pool == null || agents.size <= PERCEIVE_BATCH) {
+            for (int i = 0; i < agents.size; i++) {
+                perceive(agents.get(i));
+            }
+            return;
+        }
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[(agents.size + PERCEIVE_BATCH - 1) / PERCEIVE_BATCH];
+        for (int t = 0; t < tasks.length; t++) {
+            int from = t * PERCEIVE_BATCH;
+            int to = Math.min(agents.size, from + PERCEIVE_BATCH);
+            tasks[t] = pool.submit(() -> {
+                for (int i = from; i < to; i++) {
+                    perceive(agents.items[i]);
+                }
+            });
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    // Carries out the action perceive picked; returns the distance to the closest enemy for the scheduler
+    private float act(int p) {
+        EntityWorld world = match.world;
+        if (sight[p] != UNSEEN) {
+            match.lineOfSight.record(p, blackboard.enemy[p], match.tick, blackboard.enemyVisible[p],
+                                     sight[p] == RAYCAST);
+        }
+
+        int best = chosen[p];
+        if (best != blackboard.action[p] && match.gameTime % 2 < TICK_DURATION) {
+            SimLog.debug("AI", Team.name(world.team[p]) + " AI switching to " + actions.get(best).name);
+        }
+        blackboard.action[p] = (byte)best;
+        actions.get(best).act(p, blackboard);
+
+        // Reset isShooting state for AI after a short time
+        Rng rng = match.random.ai(p);
+        if (world.shooting[p] && rng.randomBoolean(0.2f)) {
+            world.shooting[p] = false;
+        }
+
+        // Apply some randomness to movement to make it less predictable
+        if (rng.randomBoolean(0.02f)) {
+            world.vx[p] += rng.random(-MOVEMENT_SPEED * 0.3f, MOVEMENT_SPEED * 0.3f);
+        }
+        if (rng.randomBoolean(0.02f)) {
+            world.vy[p] += rng.random(-MOVEMENT_SPEED * 0.3f, MOVEMENT_SPEED * 0.3f);
+        }
+
+        // Limit velocity to prevent excessive speed
+        float speed = (float)Math.sqrt(world.vx[p] * world.vx[p] + world.vy[p] * world.vy[p]);
+        if (speed > MOVEMENT_SPEED) {
+            world.vx[p] *= MOVEMENT_SPEED / speed;
+            world.vy[p] *= MOVEMENT_SPEED / speed;
+        }
+        return blackboard.enemyDistance[p];
+    }
+
+    // Fills the agent's blackboard and picks the action that scores best. Writes nothing
+    // but this agent's entries, so any number of agents can perceive at once
+    private void perceive(int p) {
+        EntityWorld world = match.world;
+        Blackboard bb = blackboard;
+        float x = world.x[p];
+        float y = world.y[p];
+        byte team = world.team[p];
+
+        int enemy = findClosestEnemy(p);
+        bb.enemy[p] = enemy;
+        sight[p] = UNSEEN;
+        if (enemy >= 0) {
+            bb.enemyDistance[p] = distance(x, y, world.x[enemy], world.y[enemy]);
+            bb.enemyVisible[p] = bb.enemyDistance[p] <= MAX_AI_SIGHT_RANGE && canSee(p, enemy);
+        } else {
+            bb.enemyDistance[p] = Float.MAX_VALUE;
+            bb.enemyVisible[p] = false;
+        }
+
+        int pickup = match.pickups.nearest(x, y);
+        bb.pickup[p] = pickup;
+        bb.pickupDistance[p] = pickup >= 0 ? distance(x, y, world.x[pickup], world.y[pickup]) : Float.MAX_VALUE;
+
+        // Teleporters on our side come out on the enemy's
+        int flank = -1;
+        float flankDistance = Float.MAX_VALUE;
+        Family teleporters = match.teleporters;
+        for (int i = 0; i < teleporters.size(); i++) {
+            int t = teleporters.get(i);
+            if (onHomeSide(team, world.x[t]) && !onHomeSide(team, world.x[world.teleportTarget[t]])) {
+                float d = distance(x, y, world.x[t], world.y[t]);
+                if (d < flankDistance) {
+                    flank = t;
+                    flankDistance = d;
+                }
+            }
+        }
+        bb.flankTeleporter[p] = flank;
+        bb.flankDistance[p] = flankDistance;
+
+        bb.threat[p] = match.influence[Team.other(team)].at(x, y);
+        bb.support[p] = match.influence[team].at(x, y);
+
+        // Pick the action that scores best right now
+        int current = bb.action[p];
+        int best = 0;
+        float bestScore = -Float.MAX_VALUE;
+        for (int i = 0; i < actions.size; i++) {
+            float score = actions.get(i).score(p, bb);
+            if (i == current) score += HYSTERESIS;
+            if (score > bestScore) {
+                best = i;
+                bestScore = score;
+            }
+        }
+        chosen[p] = (byte)best;
+    }
+
+    // Line of sight to the enemy, from the cache if it's fresh; act records the look
+    private boolean canSee(int p, int enemy) {
+        int cached = match.lineOfSight.cached(p, enemy, match.tick);
+        sight[p] = cached >= 0 ? CACHED : RAYCAST;
+        return cached >= 0 ? cached == 1 : match.lineOfSight.raycast(p, enemy);
+    }
+
+    /** Push toward the enemy side and fight whoever shows up. */
+    private class Attack extends UtilityAction {
+        Attack() {
+            super("attack");
+        }
+
+        @Override
+        float score(int p, Blackboard bb) {
+            if (bb.enemy[p] < 0) return 0;
+            float score = bb.enemyVisible[p] ? 0.7f : 0.4f;
+            if (match.world.aiRole[p] != AIRole.DEFENDER.id()) score += 0.1f;
+            return score;
+        }
+
+        @Override
+        void act(int p, Blackboard bb) {
+            if (engage(p, bb)) return;
+            EntityWorld world = match.world;
+            if (!steer(p, match.navigation.attack[world.team[p]]) && bb.enemy[p] >= 0) {
+                // On the enemy side already: hunt whoever is closest
+                int target = bb.enemy[p];
+                moveTowards(p, world.x[target], world.y[target]);
+            }
+        }
+    }
+
+    /** Hold the team's patrol area, which follows the threat on our side. */
+    private class Defend extends UtilityAction {
+        Defend() {
+            super("defend");
+        }
+
+        @Override
+        float score(int p, Blackboard bb) {
+            if (match.world.aiRole[p] != AIRole.DEFENDER.id()) return 0.1f;
+            // Outnumbered defenders matter more
+            float pressure = bb.threat[p] / (bb.threat[p] + bb.support[p] + 1);
+            return 0.6f + 0.3f * pressure;
+        }
+
+        @Override
+        void act(int p, Blackboard bb) {
+            if (engage(p, bb)) return;
+            if (!steer(p, match.navigation.defend[match.world.team[p]])) {
+                patrolDefensivePosition(p);
+            }
+        }
+    }
+
+    /** Go for the nearest health pack when hurt, more urgently the closer it is. */
+    private class RetreatToHeal extends UtilityAction {
+        RetreatToHeal() {
+            super("heal");
+        }
+
+        @Override
+        float score(int p, Blackboard bb) {
+            if (bb.pickup[p] < 0) return 0;
+            // Critically hurt bots always go; otherwise it has to be worth the trip
+            if (match.world.health[p] < 25) return 1;
+            float missing = 1 - (float)match.world.health[p] / MAX_HEALTH;
+            float nearness = 1 - Math.min(1, bb.pickupDistance[p] / WORLD_WIDTH);
+            return missing * missing * (0.5f + 0.5f * nearness);
+        }
+
+        @Override
+        void act(int p, Blackboard bb) {
+            EntityWorld world = match.world;
+            int pack = bb.pickup[p];
+            if (!steer(p, match.navigation.pickups)) {
+                moveTowards(p, world.x[pack], world.y[pack]);
+            }
+            if (match.gameTime % 2 < TICK_DURATION) {
+                SimLog.debug("AI", Team.name(world.team[p]) + " AI seeking health pack at " +
+                             world.x[pack] + "," + world.y[pack]);
+            }
+        }
+    }
+
+    /** Attackers close to a teleporter on our side take it to come out behind the enemy. */
+    private class Flank extends UtilityAction {
+        private static final float FLANK_RANGE = 500;
+
+        Flank() {
+            super("flank");
+        }
+
+        @Override
+        float score(int p, Blackboard bb) {
+            EntityWorld world = match.world;
+            if (bb.flankTeleporter[p] < 0 || bb.enemyVisible[p] || bb.flankDistance[p] > FLANK_RANGE) return 0;
+            if (world.aiRole[p] == AIRole.DEFENDER.id() || !onHomeSide(world.team[p], world.x[p])) return 0;
+            // No teleporter takes us until we've been off them for a moment
+            if (match.tick < world.nextTeleport[p]) return 0;
+            // Worth it when the way through the middle is contested
+            float pressure = bb.threat[p] / (bb.threat[p] + bb.support[p] + 1);
+            return 0.45f + 0.4f * (1 - bb.flankDistance[p] / FLANK_RANGE) + 0.2f * pressure;
+        }
+
+        @Override
+        void act(int p, Blackboard bb) {
+            EntityWorld world = match.world;
+            int t = bb.flankTeleporter[p];
+            moveTowards(p, world.x[t] + world.width[t]/2 - STICKMAN_WIDTH/2,
+                        world.y[t] + world.height[t]/2 - STICKMAN_HEIGHT/2);
+        }
+    }
+
+    // Shoots at or closes in on a visible enemy; false if there is none to deal with
+    private boolean engage(int p, Blackboard bb) {
+        if (!bb.enemyVisible[p]) return false;
+        EntityWorld world = match.world;
+        int target = bb.enemy[p];
+        float dx = world.x[target] - world.x[p];
+        float dy = world.y[target] - world.y[p];
+        float distance = bb.enemyDistance[p];
+
+        // Update facing direction based on target position
+        world.facingRight[p] = world.x[target] > world.x[p];
+
+        // If within shooting range, shoot with increased probability
+        if (distance <= MAX_AI_SIGHT_RANGE / 2) {
+            // More aggressive shooting - higher chance for blue team by default
+            float shootChance = match.config.shootChance[world.team[p]];
+            if (match.random.ai(p).randomBoolean(shootChance)) {
+                SimLog.debug("AI Shooting", Team.name(world.team[p]) + " team AI shooting at " +
+                             Team.name(world.team[target]) + " team");
+                if (match.globalCanShoot) {
+                    fire(p, target);
+                }
+            }
+        } else if (distance > 0) {
+            // Otherwise, chase the target
+            world.vx[p] = dx / distance * MOVEMENT_SPEED;
+            world.vy[p] = dy / distance * MOVEMENT_SPEED;
+        }
+        return true;
+    }
+
+    // Queues a shot at the target, aimed when the tick's thinking is done, and starts the global cooldown
+    private void fire(int p, int target) {
+        EntityWorld world = match.world;
+        float bulletX = world.x[p] + STICKMAN_WIDTH / 2 + (world.facingRight[p] ? 10 : -10);
+        float bulletY = world.y[p] + STICKMAN_HEIGHT - 20;
+        aim.add(p, target, bulletX, bulletY, world.x[target] + STICKMAN_WIDTH / 2,
+                world.y[target] + STICKMAN_HEIGHT / 2, world.vx[target], world.vy[target]);
+
+        match.startGlobalCooldown();
+        world.shooting[p] = true;
+    }
+
+    // Leads every queued shot in one batch and spawns the bullets with a little aim error
+    private void fireQueuedShots() {
+        if (aim.size() == 0) return;
+        aim.solve(BULLET_SPEED);
+        EntityWorld world = match.world;
+        for (int i = 0; i < aim.size(); i++) {
+            Rng rng = match.random.ai(aim.shooter(i));
+            float dirX = aim.dirX(i) - aim.dirY(i) * rng.random(-AIM_SPREAD, AIM_SPREAD);
+            float dirY = aim.dirY(i) + aim.dirX(i) * rng.random(-AIM_SPREAD, AIM_SPREAD);
+            float len = (float)Math.sqrt(dirX * dirX + dirY * dirY);
+            float x = aim.x(i), y = aim.y(i);
+            byte team = world.team[aim.shooter(i)];
+            commands.defer(() -> match.spawnBullet(x, y, dirX / len, dirY / len, team));
+            match.stat(MatchStats.SHOT, aim.shooter(i), aim.x(i), aim.y(i));
+        }
+        aim.clear();
+    }
+
+    // Puts live players in their team's grid, and takes out any that died, left or switched sides
+    private void indexPlayers() {
+        EntityWorld world = match.world;
+        Family live = match.livePlayers;
+        for (int i = indexed.size - 1; i >= 0; i--) {
+            int p = indexed.get(i);
+            if (!live.contains(p)) {
+                for (DynamicGrid grid : players) grid.remove(p);
+                indexed.removeIndex(i);
+            }
+        }
+        for (int i = 0; i < live.size(); i++) {
+            int p = live.get(i);
+            byte team = world.team[p];
+            DynamicGrid other = players[Team.other(team)];
+            if (other.cellOf(p) >= 0) {
+                other.remove(p);
+            } else if (players[team].cellOf(p) < 0) {
+                indexed.add(p);
+            }
+            players[team].move(p, world.x[p], world.y[p]);
+        }
+    }
+
+    // Closest live player on the other team, searched for around us in its grid
+    private int findClosestEnemy(int p) {
+        EntityWorld world = match.world;
+        return players[Team.other(world.team[p])].nearest(world.x[p], world.y[p], world.x, world.y);
+    }
+
+    // Moves along a flow field; false at its goal or where the field can't help
+    private boolean steer(int p, FlowField field) {
+        EntityWorld world = match.world;
+        int cell = field.next(world.x[p] + STICKMAN_WIDTH / 2, world.y[p] + STICKMAN_HEIGHT / 2,
+                              match.tick >= world.nextTeleport[p]);
+        if (cell < 0) return false;
+        moveTowards(p, field.targetX(cell) - STICKMAN_WIDTH / 2, field.targetY(cell) - STICKMAN_HEIGHT / 2);
+        return true;
+    }
+
+    // AI helper to move toward a target
+    private void moveTowards(int p, float targetX, float targetY) {
+        EntityWorld world = match.world;
+        float dx = targetX - world.x[p];
+        float dy = targetY - world.y[p];
+        float len = (float)Math.sqrt(dx * dx + dy * dy);
+        if (len == 0) return;
+        dx /= len;
+        dy /= len;
+
+        world.vx[p] = dx * MOVEMENT_SPEED;
+        world.vy[p] = dy * MOVEMENT_SPEED;
+
+        // Update facing direction based on movement
+        if (Math.abs(dx) > 0.1f) {
+            world.facingRight[p] = dx > 0;
+        }
+    }
+
+    // AI helper to patrol defensive position
+    private void patrolDefensivePosition(int p) {
+        EntityWorld world = match.world;
+        // Defenders stay in the team's patrol area, which follows the threat on our side
+        float[] area = match.navigation.patrolArea(world.team[p]);
+        float minX = area[0];
+        float maxX = area[0] + area[2];
+
+        // If player is outside patrol zone, move back to it
+        if (world.x[p] < minX || world.x[p] > maxX) {
+            moveTowards(p, (minX + maxX) / 2, world.y[p]);
+        } else if (match.random.ai(p).randomBoolean(0.01f)) {
+            // Otherwise, do some random movement within zone
+            Rng rng = match.random.ai(p);
+            float randomX = rng.random(minX, maxX);
+            float randomY = MathUtils.clamp(rng.random(area[1], area[1] + area[3]), 100, WORLD_HEIGHT - 100);
+            moveTowards(p, randomX, randomY);
+        }
+    }
+
+    private static boolean onHomeSide(byte team, float x) {
+        return team == Team.RED ? x < WORLD_WIDTH / 2 : x >= WORLD_WIDTH / 2;
+    }
+
+    private static float distance(float x0, float y0, float x1, float y1) {
+        float dx = x1 - x0;
+        float dy = y1 - y0;
+        return (float)Math.sqrt(dx * dx + dy * dy);
+    }
+}
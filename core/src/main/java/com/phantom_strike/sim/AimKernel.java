@@ -0,0 +1,117 @@
+package com.phantom_strike.sim;
+
+import java.util.Arrays;
+
+/**
+ * Batched aiming for AI shots. Shots are queued during a tick with the muzzle position
+ * and the target's position and velocity, and {@link #solve} then works out every lead
+ * direction in one pass over flat float arrays. The loop is straight-line arithmetic
+ * with no calls or object loads, so the JIT can unroll and vectorise it.
+ */
+class AimKernel {
+    private int count;
+    private int[] shooter = new int[16];
+    private int[] target = new int[16];
+    private float[] px = new float[16], py = new float[16];
+    private float[] tx = new float[16], ty = new float[16];
+    private float[] tvx = new float[16], tvy = new float[16];
+    private float[] dirX = new float[16], dirY = new float[16];
+
+    int size() {
+        return count;
+    }
+
+    void clear() {
+        count = 0;
+    }
+
+    /** Queues a shot from (x, y) at a target at (targetX, targetY) moving at (targetVx, targetVy). */
+    void add(int shooter, int target, float x, float y, float targetX, float targetY, float targetVx, float targetVy) {
+        if (count == px.length) grow(count * 2);
+        this.shooter[count] = shooter;
+        this.target[count] = target;
+        px[count] = x;
+        py[count] = y;
+        tx[count] = targetX;
+        ty[count] = targetY;
+        tvx[count] = targetVx;
+        tvy[count] = targetVy;
+        count++;
+    }
+
+    /** Fills in a unit direction for every queued shot. */
+    void solve(float projectileSpeed) {
+        intercept(count, px, py, tx, ty, tvx, tvy, projectileSpeed, dirX, dirY);
+    }
+
+    int shooter(int i) {
+        return shooter[i];
+    }
+
+    int target(int i) {
+        return target[i];
+    }
+
+    float x(int i) {
+        return px[i];
+    }
+
+    float y(int i) {
+        return py[i];
+    }
+
+    float dirX(int i) {
+        return dirX[i];
+    }
+
+    float dirY(int i) {
+        return dirY[i];
+    }
+
+    /**
+     * For each shot, the unit direction that meets a target moving in a straight line.
+     * Solves |d + v t| = s t for the time t at which a projectile of speed s reaches the
+     * target, with d the offset to the target and v its velocity. When it can't (a target
+     * at least as fast as the projectile and moving away) the shot aims straight at it.
+     */
+    static void intercept(int n, float[] px, float[] py, float[] tx, float[] ty, float[] tvx, float[] tvy,
+                          float speed, float[] outX, float[] outY) {
+        float speed2 = speed * speed;
+        for (int i = 0; i < n; i++) {
+            float dx = tx[i] - px[i];
+            float dy = ty[i] - py[i];
+            float vx = tvx[i];
+            float vy = tvy[i];
+
+            // a t^2 + b t + c = 0
+            float a = vx * vx + vy * vy - speed2;
+            float b = 2 * (dx * vx + dy * vy);
+            float c = dx * dx + dy * dy;
+            float disc = b * b - 4 * a * c;
+            // With a < 0 this root is the only positive one
+            float t = (-b - (float)Math.sqrt(Math.max(disc, 0))) / (2 * a);
+            boolean solvable = a < 0 && disc >= 0 && t > 0;
+            t = solvable ? t : 0;
+
+            float aimX = dx + vx * t;
+            float aimY = dy + vy * t;
+            float len = (float)Math.sqrt(aimX * aimX + aimY * aimY);
+            float inv = len > 0 ? 1 / len : 0;
+            outX[i] = len > 0 ? aimX * inv : 1;
+            outY[i] = aimY * inv;
+        }
+    }
+
+    private void grow(int size) {
+        shooter = Arrays.copyOf(shooter, size);
+        target = Arrays.copyOf(target, size);
+        px = Arrays.copyOf(px, size);
+        py = Arrays.copyOf(py, size);
+        tx = Arrays.copyOf(tx, size);
+        ty = Arrays.copyOf(ty, size);
+        tvx = Arrays.copyOf(tvx, size);
+        tvy = Arrays.copyOf(tvy, size);
+        dirX = Arrays.copyOf(dirX, size);
+        dirY = Arrays.copyOf(dirY, size);
+    }
+}
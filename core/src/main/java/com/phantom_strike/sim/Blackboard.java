@@ -0,0 +1,91 @@
+package com.phantom_strike.sim;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * What each AI agent perceived on its last think, indexed by entity like the world's
+ * component arrays. Perception fills it once per think and every {@link UtilityAction}
+ * scores and acts from it, so nothing is looked up twice.
+ */
+class Blackboard {
+    // Closest live enemy, or -1
+    int[] enemy = new int[0];
+    float[] enemyDistance = new float[0];
+    // Enemy within sight range with nothing blocking the line between us
+    boolean[] enemyVisible = new boolean[0];
+    // Nearest active health pack, or -1
+    int[] pickup = new int[0];
+    float[] pickupDistance = new float[0];
+    // Nearest teleporter on our side, which comes out on the enemy's, or -1
+    int[] flankTeleporter = new int[0];
+    float[] flankDistance = new float[0];
+    // Enemy and friendly influence at the agent's position
+    float[] threat = new float[0];
+    float[] support = new float[0];
+    // Index of the action chosen on the last think, or -1
+    byte[] action = new byte[0];
+
+    void save(ByteBuffer out) {
+        int n = enemy.length;
+        out.putInt(n);
+        for (int i = 0; i < n; i++) {
+            out.putInt(enemy[i]);
+            out.putFloat(enemyDistance[i]);
+            out.put(enemyVisible[i] ? (byte)1 : 0);
+            out.putInt(pickup[i]);
+            out.putFloat(pickupDistance[i]);
+            out.putInt(flankTeleporter[i]);
+            out.putFloat(flankDistance[i]);
+            out.putFloat(threat[i]);
+            out.putFloat(support[i]);
+            out.put(action[i]);
+        }
+    }
+
+    void load(ByteBuffer in) {
+        int n = in.getInt();
+        ensureCapacity(n);
+        for (int i = 0; i < n; i++) {
+            enemy[i] = in.getInt();
+            enemyDistance[i] = in.getFloat();
+            enemyVisible[i] = in.get() != 0;
+            pickup[i] = in.getInt();
+            pickupDistance[i] = in.getFloat();
+            flankTeleporter[i] = in.getInt();
+            flankDistance[i] = in.getFloat();
+            threat[i] = in.getFloat();
+            support[i] = in.getFloat();
+            action[i] = in.get();
+        }
+        // Entries past the saved ones are as ensureCapacity would have made them
+        int size = enemy.length;
+        Arrays.fill(enemy, n, size, 0);
+        Arrays.fill(enemyDistance, n, size, 0);
+        Arrays.fill(enemyVisible, n, size, false);
+        Arrays.fill(pickup, n, size, 0);
+        Arrays.fill(pickupDistance, n, size, 0);
+        Arrays.fill(flankTeleporter, n, size, 0);
+        Arrays.fill(flankDistance, n, size, 0);
+        Arrays.fill(threat, n, size, 0);
+        Arrays.fill(support, n, size, 0);
+        Arrays.fill(action, n, size, (byte)-1);
+    }
+
+    void ensureCapacity(int capacity) {
+        if (enemy.length >= capacity) return;
+        int old = enemy.length;
+        int size = Math.max(capacity, old * 2);
+        enemy = Arrays.copyOf(enemy, size);
+        enemyDistance = Arrays.copyOf(enemyDistance, size);
+        enemyVisible = Arrays.copyOf(enemyVisible, size);
+        pickup = Arrays.copyOf(pickup, size);
+        pickupDistance = Arrays.copyOf(pickupDistance, size);
+        flankTeleporter = Arrays.copyOf(flankTeleporter, size);
+        flankDistance = Arrays.copyOf(flankDistance, size);
+        threat = Arrays.copyOf(threat, size);
+        support = Arrays.copyOf(support, size);
+        action = Arrays.copyOf(action, size);
+        Arrays.fill(action, old, size, (byte)-1);
+    }
+}
@@ -0,0 +1,62 @@
+package com.phantom_strike.sim;
+
+import com.phantom_strike.ecs.CommandBuffer;
+import com.phantom_strike.ecs.Component;
+import com.phantom_strike.ecs.EntitySystem;
+import com.phantom_strike.ecs.EntityWorld;
+import com.phantom_strike.ecs.Family;
+
+import static com.phantom_strike.sim.GameRules.*;
+
+/** Moves bullets and removes those that leave the world. */
+class BulletMovementSystem implements EntitySystem {
+    private final Match match;
+    private final CommandBuffer commands;
+
+    BulletMovementSystem(Match match) {
+        this.match = match;
+        commands = new CommandBuffer(match.world);
+    }
+
+    @Override
+    public int reads() {
+        return Component.PROJECTILE | Component.VELOCITY;
+    }
+
+    @Override
+    public int writes() {
+        return Component.POSITION;
+    }
+
+    @Override
+    public int kinds() {
+        return Component.PROJECTILE;
+    }
+
+    @Override
+    public CommandBuffer commands() {
+        return commands;
+    }
+
+    @Override
+    public void update(float deltaTime) {
+        EntityWorld world = match.world;
+        Family bullets = match.bullets;
+        for (int i = bullets.size() - 1; i >= 0; i--) {
+            int b = bullets.get(i);
+            float x = world.x[b] += world.vx[b] * deltaTime;
+            float y = world.y[b] += world.vy[b] * deltaTime;
+
+            // Remove bullets that go off-screen
+            if (x < 0 || x > WORLD_WIDTH || y < 0 || y > WORLD_HEIGHT) {
+                commands.destroy(b);
+                continue;
+            }
+
+            // Debug info - print bullet position when it reaches the middle
+            if (x > WORLD_WIDTH/2 - 10 && x < WORLD_WIDTH/2 + 10) {
+                SimLog.debug("Bullet", Team.name(world.team[b]) + " team bullet at middle: (" + x + "," + y + ")");
+            }
+        }
+    }
+}
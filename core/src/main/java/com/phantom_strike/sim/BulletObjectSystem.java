@@ -0,0 +1,100 @@
+package com.phantom_strike.sim;
+
+import com.badlogic.gdx.math.Circle;
+import com.badlogic.gdx.math.Intersector;
+import com.badlogic.gdx.math.Rectangle;
+import com.phantom_strike.ecs.CommandBuffer;
+import com.phantom_strike.ecs.Component;
+import com.phantom_strike.ecs.EntitySystem;
+import com.phantom_strike.ecs.EntityWorld;
+import com.phantom_strike.ecs.Family;
+
+import static com.phantom_strike.sim.GameRules.*;
+
+/** Bullets against world objects: cover and barriers absorb, obstacles bounce, teleporters relay. */
+class BulletObjectSystem implements EntitySystem {
+    private final Match match;
+    private final Circle bulletCircle = new Circle();
+    private final Rectangle objectRect = new Rectangle();
+    private final CommandBuffer commands;
+
+    BulletObjectSystem(Match match) {
+        this.match = match;
+        commands = new CommandBuffer(match.world);
+    }
+
+    @Override
+    public int reads() {
+        return Component.PROJECTILE | Component.COLLIDER | Component.TELEPORT;
+    }
+
+    @Override
+    public int writes() {
+        return Component.POSITION | Component.VELOCITY;
+    }
+
+    @Override
+    public int kinds() {
+        return Component.PROJECTILE | Component.COLLIDER;
+    }
+
+    @Override
+    public int writeKinds() {
+        return Component.PROJECTILE;
+    }
+
+    @Override
+    public CommandBuffer commands() {
+        return commands;
+    }
+
+    @Override
+    public void update(float deltaTime) {
+        EntityWorld world = match.world;
+        Family bullets = match.bullets;
+        Family colliders = match.colliders;
+
+        for (int i = bullets.size() - 1; i >= 0; i--) {
+            int b = bullets.get(i);
+            bulletCircle.set(world.x[b], world.y[b], BULLET_RADIUS);
+
+            for (int j = 0; j < colliders.size(); j++) {
+                int obj = colliders.get(j);
+                objectRect.set(world.x[obj], world.y[obj], world.width[obj], world.height[obj]);
+                if (!Intersector.overlaps(bulletCircle, objectRect)) continue;
+
+                ObjectType type = ObjectType.of(world.objectType[obj]);
+                if (type == ObjectType.COVER || type == ObjectType.BARRIER) {
+                    commands.destroy(b);
+                    break;
+                } else if (type == ObjectType.OBSTACLE) {
+                    float nx = world.x[b] - (world.x[obj] + world.width[obj] / 2);
+                    float ny = world.y[b] - (world.y[obj] + world.height[obj] / 2);
+                    float len = (float)Math.sqrt(nx * nx + ny * ny);
+                    world.vx[b] = -world.vx[b]; // Simple bounce effect
+                    world.vy[b] = -world.vy[b];
+                    if (len > 0) {
+                        world.x[b] += nx / len * 5;
+                        world.y[b] += ny / len * 5;
+                    }
+                    break;
+                } else if (type == ObjectType.TELEPORTER && world.teleportTarget[obj] >= 0) {
+                    int destination = world.teleportTarget[obj];
+                    // Come out clear of the destination along the direction of travel, or the
+                    // bullet would be sent straight back and bounce between the two forever
+                    float w = world.width[destination];
+                    float h = world.height[destination];
+                    float clearance = (float)Math.sqrt(w * w + h * h) / 2 + BULLET_RADIUS + 1;
+                    float speed = (float)Math.sqrt(world.vx[b] * world.vx[b] + world.vy[b] * world.vy[b]);
+                    world.x[b] = world.x[destination] + w / 2;
+                    world.y[b] = world.y[destination] + h / 2;
+                    if (speed > 0) {
+                        world.x[b] += world.vx[b] / speed * clearance;
+                        world.y[b] += world.vy[b] / speed * clearance;
+                    }
+                    break;
+                }
+            }
+        }
+    }
+}
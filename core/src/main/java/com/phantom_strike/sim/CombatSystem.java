@@ -0,0 +1,156 @@
+package com.phantom_strike.sim;
+
+import com.badlogic.gdx.math.Circle;
+import com.badlogic.gdx.math.Intersector;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.IntArray;
+import com.phantom_strike.ecs.Component;
+import com.phantom_strike.ecs.EntitySystem;
+import com.phantom_strike.ecs.EntityWorld;
+import com.phantom_strike.ecs.Family;
+import com.phantom_strike.spatial.HitboxHistory;
+
+import static com.phantom_strike.sim.GameRules.*;
+
+/**
+ * Bullet hits on players: damage, kills, score and victory. Players' hitboxes are
+ * recorded every tick in {@link Match#hitboxes}, and each bullet is tested against them as
+ * they were {@code viewLag} ticks ago, so a lagging shooter hits what it aimed at.
+ */
+class CombatSystem implements EntitySystem {
+    private final Match match;
+    private final Circle bulletCircle = new Circle();
+    private final Rectangle playerRect = new Rectangle();
+    private final IntArray candidates = new IntArray();
+
+    CombatSystem(Match match) {
+        this.match = match;
+    }
+
+    @Override
+    public int reads() {
+        return Component.POSITION | Component.TEAM | Component.PROJECTILE | Component.STICKMAN;
+    }
+
+    @Override
+    public int writes() {
+        return Component.HEALTH | Component.RESPAWN | Component.STRUCTURE | Component.MATCH;
+    }
+
+    @Override
+    public int kinds() {
+        return Component.STICKMAN | Component.PROJECTILE;
+    }
+
+    @Override
+    public int writeKinds() {
+        return Component.STICKMAN;
+    }
+
+    @Override
+    public void update(float deltaTime) {
+        EntityWorld world = match.world;
+        Family bullets = match.bullets;
+        Family players = match.livePlayers;
+        HitboxHistory history = match.hitboxes;
+
+        // Where everyone is now, for this tick's hits and for lagging shooters' bullets later
+        history.begin(match.tick);
+        for (int j = 0; j < players.size(); j++) {
+            int p = players.get(j);
+            history.add(p, world.x[p], world.y[p]);
+        }
+        history.end();
+
+        outerLoop:
+        for (int i = bullets.size() - 1; i >= 0; i--) {
+            // Nothing counts once the game is over
+            if (match.gameOver) return;
+            int b = bullets.get(i);
+            float bx = world.x[b], by = world.y[b];
+            bulletCircle.set(bx, by, BULLET_RADIUS);
+
+            // A lagging shooter's bullet hits players where that shooter saw them
+            long when = match.tick - world.viewLag[b];
+            if (!history.has(when)) when = match.tick;
+            candidates.clear();
+            history.query(when, bx - BULLET_RADIUS, by - BULLET_RADIUS, bx + BULLET_RADIUS, by + BULLET_RADIUS,
+                          candidates);
+
+            for (int j = 0; j < candidates.size; j++) {
+                int record = candidates.get(j);
+                int p = history.id(record);
+                // Skip players on the bullet's team and anyone killed since
+                if (world.team[p] == world.team[b] || !players.contains(p)) {
+                    continue;
+                }
+
+                // Simple rectangular collision
+                playerRect.set(history.x(record), history.y(record), STICKMAN_WIDTH, STICKMAN_HEIGHT);
+                if (!Intersector.overlaps(bulletCircle, playerRect)) continue;
+
+                // Hit detected!
+                world.health[p] -= BULLET_DAMAGE;
+                SimLog.debug("Combat", "Hit detected! " + Team.name(world.team[b]) + " team bullet hit " +
+                             Team.name(world.team[p]) + " team player. Health: " + world.health[p]);
+                match.stat(MatchStats.HIT, p, bx, by);
+
+                // Check if player is defeated
+                if (world.health[p] <= 0) {
+                    kill(p);
+                }
+
+                // Remove the bullet and skip remaining players for this bullet
+                world.destroy(b);
+                continue outerLoop;
+            }
+        }
+    }
+
+    private void kill(int p) {
+        EntityWorld world = match.world;
+        match.stat(MatchStats.KILL, p, world.x[p], world.y[p]);
+
+        // Update score
+        if (world.team[p] == Team.RED) {
+            match.blueTeamScore++;
+            SimLog.debug("Combat", "BLUE team scored a kill! Score: " + match.blueTeamScore);
+        } else {
+            match.redTeamScore++;
+            SimLog.debug("Combat", "RED team scored a kill! Score: " + match.redTeamScore);
+        }
+
+        // Check victory condition immediately
+        if (match.redTeamScore >= SCORE_TO_WIN) {
+            match.gameOver = true;
+            match.winningTeam = "RED";
+            SimLog.debug("Game", "RED team wins with " + match.redTeamScore + " kills!");
+        } else if (match.blueTeamScore >= SCORE_TO_WIN) {
+            match.gameOver = true;
+            match.winningTeam = "BLUE";
+            SimLog.debug("Game", "BLUE team wins with " + match.blueTeamScore + " kills!");
+        }
+
+        // Schedule the respawn
+        world.add(p, Component.RESPAWN);
+        world.respawnTimer[p] = match.timers.schedule(ticks(RESPAWN_TIME), Match.TIMER_RESPAWN, p);
+        world.shooting[p] = false;
+
+        // Randomize respawn position more in larger world
+        Rng rng = match.random.stream(RandomStreams.SPAWN);
+        long spot;
+        if (world.team[p] == Team.RED) {
+            // Red team respawns on the left side, away from the boundary
+            spot = match.findSpot(rng, 100, WORLD_WIDTH/2 - 400, 100, WORLD_HEIGHT - 100, STICKMAN_WIDTH,
+                                  STICKMAN_HEIGHT);
+        } else {
+            // Blue team respawns on the right side, away from the boundary
+            spot = match.findSpot(rng, WORLD_WIDTH/2 + 400, WORLD_WIDTH - 200, 100, WORLD_HEIGHT - 100, STICKMAN_WIDTH,
+                                  STICKMAN_HEIGHT);
+        }
+        world.respawnX[p] = Match.spotX(spot);
+        world.respawnY[p] = Match.spotY(spot);
+        SimLog.debug("Respawn", Team.name(world.team[p]) + " player respawning at " +
+                     world.respawnX[p] + "," + world.respawnY[p]);
+    }
+}
@@ -0,0 +1,296 @@
+package com.phantom_strike.sim;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static com.phantom_strike.sim.GameRules.*;
+
+/**
+ * The static part of a match's world: platforms, cover, barriers, obstacles and linked
+ * teleporter pairs, in the order the match creates them. Without a map a match generates
+ * one from its seed; with one, every match on it has the same layout whatever the seed.
+ * <p>
+ * A map can also carry its index: the cells its objects block for navigation and line of
+ * sight, and the navigation fields built over them. A match on an indexed map copies those
+ * in instead of rasterising every object and searching every field, so starting one costs
+ * about the same however many objects there are. {@link #write} saves a map with its index
+ * and {@link #open} maps one back, reading the index in place. Maps aren't changed by the
+ * matches on them, so one can be shared by any number.
+ * <p>
+ * File layout, big-endian:
+ * <pre>
+ * header   magic "PSMP", version, world width, world height, object count (4 bytes each),
+ *          then {@link #id()} (8 bytes)
+ * objects  x, y, width, height (floats), type (byte), linked object or -1 (4 bytes)
+ * index    size (4 bytes), then navigation's grid and fields and line of sight's grid
+ * </pre>
+ */
+public final class GameMap {
+    public static final int MAGIC = 0x50534D50;
+    public static final int VERSION = 2;
+    private static final int HEADER_SIZE = 28;
+    private static final int OBJECT_SIZE = 21;
+
+    private int size;
+    private float[] x = new float[64];
+    private float[] y = new float[64];
+    private float[] width = new float[64];
+    private float[] height = new float[64];
+    private byte[] type = new byte[64];
+    private int[] link = new int[64];
+    private ByteBuffer index;
+
+    /** Adds an object and returns its number. */
+    public int add(float x, float y, float width, float height, ObjectType type) {
+        if (size == this.x.length) grow(size * 2);
+        this.x[size] = x;
+        this.y[size] = y;
+        this.width[size] = width;
+        this.height[size] = height;
+        this.type[size] = type.id();
+        link[size] = -1;
+        index = null;
+        return size++;
+    }
+
+    /** Links two teleporters both ways. */
+    public void link(int a, int b) {
+        if (type[a] != ObjectType.TELEPORTER.id() || type[b] != ObjectType.TELEPORTER.id()) {
+            throw new IllegalArgumentException("Only teleporters link");
+        }
+        link[a] = b;
+        link[b] = a;
+        index = null;
+    }
+
+    private void grow(int capacity) {
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        width = Arrays.copyOf(width, capacity);
+        height = Arrays.copyOf(height, capacity);
+        type = Arrays.copyOf(type, capacity);
+        link = Arrays.copyOf(link, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public float x(int i) {
+        return x[i];
+    }
+
+    public float y(int i) {
+        return y[i];
+    }
+
+    public float width(int i) {
+        return width[i];
+    }
+
+    public float height(int i) {
+        return height[i];
+    }
+
+    public ObjectType type(int i) {
+        return ObjectType.of(type[i]);
+    }
+
+    /** The teleporter an object is linked to, or -1. */
+    public int link(int i) {
+        return link[i];
+    }
+
+    /** Whether the index is built, so matches on this map start without building their own. */
+    public boolean hasIndex() {
+        return index != null;
+    }
+
+    /** The index, positioned at its start, for the match to read; see {@link Navigation#loadIndex}. */
+    ByteBuffer index() {
+        return index.duplicate();
+    }
+
+    /**
+     * A hash of the objects, for telling maps apart: a client has to be on the server's map,
+     * and a replay on the one it was recorded on. The index doesn't count, as it follows
+     * from the objects.
+     */
+    public long id() {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < size; i++) {
+            h = (h ^ Float.floatToIntBits(x[i])) * 0x100000001B3L;
+            h = (h ^ Float.floatToIntBits(y[i])) * 0x100000001B3L;
+            h = (h ^ Float.floatToIntBits(width[i])) * 0x100000001B3L;
+            h = (h ^ Float.floatToIntBits(height[i])) * 0x100000001B3L;
+            h = (h ^ type[i]) * 0x100000001B3L;
+            h = (h ^ link[i]) * 0x100000001B3L;
+        }
+        // 0 stands for "generated from the seed" where maps are compared
+        return h != 0 ? h : 1;
+    }
+
+    /**
+     * Builds the index by setting up a match on the map, which blocks and searches the
+     * same way any match would, and keeping what it built.
+     */
+    public void buildIndex() {
+        if (index == null) keepIndex(indexMatch());
+    }
+
+    /** A match on the map with nothing in it but the map, to build the index from. */
+    Match indexMatch() {
+        MatchConfig config = new MatchConfig();
+        config.map = this;
+        config.seed = 1;
+        config.playersPerTeam = 1;
+        config.humanPlayer = false;
+        // Pack goals depend on where packs land, which is up to each match
+        config.healthPacks = 0;
+        return new Match(config);
+    }
+
+    /** Keeps what {@code match}, from {@link #indexMatch()}, built as the index. */
+    void keepIndex(Match match) {
+        ByteBuffer out = ByteBuffer.allocate(256 * 1024);
+        while (true) {
+            try {
+                out.clear();
+                match.navigation.saveIndex(out);
+                match.lineOfSight.saveIndex(out);
+                break;
+            } catch (BufferOverflowException e) {
+                out = ByteBuffer.allocate(out.capacity() * 2);
+            }
+        }
+        out.flip();
+        index = out;
+    }
+
+    /** Saves the map and its index, building the index first if needed. */
+    public void write(Path file) throws IOException {
+        buildIndex();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + size * OBJECT_SIZE + 4);
+        header.putInt(MAGIC).putInt(VERSION).putInt(WORLD_WIDTH).putInt(WORLD_HEIGHT).putInt(size).putLong(id());
+        for (int i = 0; i < size; i++) {
+            header.putFloat(x[i]).putFloat(y[i]).putFloat(width[i]).putFloat(height[i]).put(type[i]).putInt(link[i]);
+        }
+        header.putInt(index.remaining());
+        header.flip();
+        ByteBuffer[] parts = {header, index.duplicate()};
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (parts[1].hasRemaining()) channel.write(parts);
+        }
+    }
+
+    /** Maps a file saved by {@link #write}. The index stays in the mapping and is read from there. */
+    public static GameMap open(Path file) throws IOException {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC) throw new IOException("Not a map");
+        int version = in.getInt();
+        if (version != VERSION) throw new IOException("Map version " + version + ", expected " + VERSION);
+        int mapWidth = in.getInt();
+        int mapHeight = in.getInt();
+        if (mapWidth != WORLD_WIDTH || mapHeight != WORLD_HEIGHT) {
+            throw new IOException("Map is " + mapWidth + "x" + mapHeight + ", the world " + WORLD_WIDTH + "x"
+                                  + WORLD_HEIGHT);
+        }
+        int count = in.getInt();
+        long id = in.getLong();
+        GameMap map = new GameMap();
+        map.grow(Math.max(count, 1));
+        for (int i = 0; i < count; i++) {
+            map.add(in.getFloat(), in.getFloat(), in.getFloat(), in.getFloat(), ObjectType.of(in.get()));
+            map.link[i] = in.getInt();
+        }
+        if (map.id() != id) throw new IOException("Map objects don't match its id");
+        int indexSize = in.getInt();
+        ByteBuffer index = in.slice();
+        index.limit(indexSize);
+        map.index = index;
+        return map;
+    }
+
+    /** The layout a match makes from its seed when it has no map. */
+    public static GameMap generate(long seed) {
+        return generate(new RandomStreams(seed).stream(RandomStreams.WORLD), 1);
+    }
+
+    /** As {@link #generate(long)}, with {@code scale} times as many of everything. */
+    public static GameMap generate(long seed, int scale) {
+        return generate(new RandomStreams(seed).stream(RandomStreams.WORLD), scale);
+    }
+
+    static GameMap generate(Rng rng, int scale) {
+        GameMap map = new GameMap();
+        // Central area platforms
+        map.add(WORLD_WIDTH/2 - 200, 200, 400, 20, ObjectType.PLATFORM);
+
+        // Team zone platforms - for red team (left side)
+        for (int i = 0; i < 5 * scale; i++) {
+            float x = rng.random(100, WORLD_WIDTH/2 - 300);
+            float y = rng.random(150, WORLD_HEIGHT - 200);
+            float width = rng.random(80, 180);
+            map.add(x, y, width, 20, ObjectType.PLATFORM);
+        }
+
+        // Team zone platforms - for blue team (right side)
+        for (int i = 0; i < 5 * scale; i++) {
+            float x = rng.random(WORLD_WIDTH/2 + 300, WORLD_WIDTH - 200);
+            float y = rng.random(150, WORLD_HEIGHT - 200);
+            float width = rng.random(80, 180);
+            map.add(x, y, width, 20, ObjectType.PLATFORM);
+        }
+
+        // Add cover objects - scattered across the world
+        for (int i = 0; i < 20 * scale; i++) {
+            boolean onLeftSide = rng.randomBoolean();
+            float x;
+            if (onLeftSide) {
+                x = rng.random(100, WORLD_WIDTH/2 - 100);
+            } else {
+                x = rng.random(WORLD_WIDTH/2 + 100, WORLD_WIDTH - 100);
+            }
+            float y = rng.random(100, WORLD_HEIGHT - 200);
+            float width = rng.random(30, 60);
+            float height = rng.random(50, 90);
+            map.add(x, y, width, height, ObjectType.COVER);
+        }
+
+        // Add barriers in the central area (no-man's land)
+        for (int i = 0; i < 10 * scale; i++) {
+            float x = rng.random(WORLD_WIDTH/2 - 300, WORLD_WIDTH/2 + 300);
+            float y = rng.random(100, WORLD_HEIGHT - 200);
+            float width = rng.random(40, 80);
+            float height = rng.random(60, 120);
+            map.add(x, y, width, height, ObjectType.BARRIER);
+        }
+
+        // Add circular obstacles throughout the map
+        for (int i = 0; i < 30 * scale; i++) {
+            float x = rng.random(100, WORLD_WIDTH - 100);
+            float y = rng.random(100, WORLD_HEIGHT - 100);
+            float size = rng.random(20, 50);
+            map.add(x, y, size, size, ObjectType.OBSTACLE);
+        }
+
+        // Add teleporters (linked pairs)
+        for (int i = 0; i < 3 * scale; i++) {
+            float x1 = rng.random(100, WORLD_WIDTH/2 - 200);
+            float y1 = rng.random(100, WORLD_HEIGHT - 100);
+            float x2 = rng.random(WORLD_WIDTH/2 + 200, WORLD_WIDTH - 100);
+            float y2 = rng.random(100, WORLD_HEIGHT - 100);
+            map.link(map.add(x1, y1, 40, 40, ObjectType.TELEPORTER), map.add(x2, y2, 40, 40, ObjectType.TELEPORTER));
+        }
+        return map;
+    }
+}
@@ -0,0 +1,35 @@
+package com.phantom_strike.sim;
+
+/** Gameplay constants shared by the simulation and the renderer. */
+public final class GameRules {
+    public static final int WORLD_WIDTH = 4000;  // Much wider world
+    public static final int WORLD_HEIGHT = 1200;  // Taller world
+    public static final float STICKMAN_WIDTH = 20;
+    public static final float STICKMAN_HEIGHT = 50;
+    public static final float MOVEMENT_SPEED = 250;  // Slightly faster movement
+    public static final float BULLET_SPEED = 400;  // Faster bullets
+    public static final float BULLET_RADIUS = 5;
+    public static final float RESPAWN_TIME = 2.0f;
+    public static final float BULLET_DAMAGE = 25;  // Made explicit
+    public static final float MAX_AI_SIGHT_RANGE = 800;  // How far AI can see enemies
+    public static final float HEALTH_PACK_RESTORE = 50;  // Amount of health restored by health pack
+    public static final float SHOOT_COOLDOWN = 1.5f; // Increased from the previous value
+    public static final float GLOBAL_SHOOT_COOLDOWN = 0.5f; // 0.5 seconds cooldown for all players and AI
+    public static final float TELEPORT_COOLDOWN = 3.0f;  // Seconds off teleporters before one takes a player who came out again
+    public static final int SCORE_TO_WIN = 20;
+    public static final int MAX_HEALTH = 100;
+    public static final float ROLE_ASSIGNMENT_INTERVAL = 5;  // Seconds between AI role reassignments
+    public static final float MAX_LAG_COMPENSATION = 0.3f;  // Furthest back a lagging shooter's hits are judged, in seconds
+
+    /** Simulation rate. The match always advances in whole ticks of {@link #TICK_DURATION}. */
+    public static final int TICK_RATE = 60;
+    public static final float TICK_DURATION = 1f / TICK_RATE;
+
+    /** Converts a duration in seconds to whole simulation ticks (at least one). */
+    public static long ticks(float seconds) {
+        return Math.max(1, Math.round(seconds * TICK_RATE));
+    }
+
+    private GameRules() {
+    }
+}
@@ -0,0 +1,68 @@
+package com.phantom_strike.sim;
+
+import com.phantom_strike.ecs.Component;
+import com.phantom_strike.ecs.EntitySystem;
+import com.phantom_strike.ecs.EntityWorld;
+import com.phantom_strike.ecs.Family;
+import com.phantom_strike.spatial.InfluenceMap;
+
+import static com.phantom_strike.sim.GameRules.*;
+
+/**
+ * Keeps one influence map per team of where its live players have been over the last
+ * few seconds. A team's threat is the other team's influence on its side of the map.
+ */
+class InfluenceSystem implements EntitySystem {
+    static final float CELL_SIZE = 200;
+    /** Influence halves every two seconds. */
+    static final float DECAY = (float)Math.pow(0.5, 1.0 / (2 * TICK_RATE));
+
+    private final Match match;
+
+    InfluenceSystem(Match match) {
+        this.match = match;
+    }
+
+    static InfluenceMap[] createMaps() {
+        InfluenceMap[] maps = new InfluenceMap[Team.COUNT];
+        for (int team = 0; team < Team.COUNT; team++) {
+            maps[team] = new InfluenceMap(WORLD_WIDTH, WORLD_HEIGHT, CELL_SIZE, WORLD_WIDTH/2, DECAY);
+        }
+        return maps;
+    }
+
+    @Override
+    public int reads() {
+        return Component.POSITION | Component.TEAM | Component.STICKMAN;
+    }
+
+    @Override
+    public int writes() {
+        return Component.INFLUENCE;
+    }
+
+    @Override
+    public int kinds() {
+        return Component.STICKMAN;
+    }
+
+    @Override
+    public int writeKinds() {
+        return 0;
+    }
+
+    @Override
+    public void update(float deltaTime) {
+        InfluenceMap[] influence = match.influence;
+        for (int team = 0; team < Team.COUNT; team++) {
+            influence[team].decay();
+        }
+
+        EntityWorld world = match.world;
+        Family players = match.livePlayers;
+        for (int i = 0; i < players.size(); i++) {
+            int p = players.get(i);
+            influence[world.team[p]].deposit(world.x[p] + STICKMAN_WIDTH/2, world.y[p] + STICKMAN_HEIGHT/2, 1);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.phantom_strike.sim;
+
+import com.phantom_strike.ecs.EntityWorld;
+import com.phantom_strike.spatial.StaticGeometryGrid;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static com.phantom_strike.sim.GameRules.*;
+
+/**
+ * Line of sight between players through cover and barriers. Rays are walked over a
+ * {@link StaticGeometryGrid} of the blocking objects, and results are kept per pair for
+ * a few ticks in a small direct-mapped cache, since players only move a few pixels a tick.
+ */
+class LineOfSight {
+    static final float CELL_SIZE = 20;
+    static final int CACHE_TICKS = 4;
+    private static final int CACHE_SIZE = 1 << 12;
+
+    private final EntityWorld world;
+    private final StaticGeometryGrid grid = new StaticGeometryGrid(WORLD_WIDTH, WORLD_HEIGHT, CELL_SIZE);
+
+    // Direct-mapped cache; a slot is valid while its tick is within CACHE_TICKS
+    private final long[] cacheKey = new long[CACHE_SIZE];
+    private final long[] cacheTick = new long[CACHE_SIZE];
+    private final boolean[] cacheClear = new boolean[CACHE_SIZE];
+
+    private long raycasts;
+    private long hits;
+
+    LineOfSight(EntityWorld world) {
+        this.world = world;
+        invalidate();
+    }
+
+    StaticGeometryGrid grid() {
+        return grid;
+    }
+
+    /** Adds a static blocker. Cached results are dropped. */
+    void block(int obj) {
+        grid.block(world.x[obj], world.y[obj], world.width[obj], world.height[obj]);
+        invalidate();
+    }
+
+    /** Writes the blocked cells for a {@link GameMap}; see {@link Navigation#saveIndex}. */
+    void saveIndex(ByteBuffer out) {
+        grid.save(out);
+    }
+
+    void loadIndex(ByteBuffer in) {
+        grid.load(in);
+        invalidate();
+    }
+
+    void clear() {
+        grid.clear();
+        invalidate();
+    }
+
+    /**
+     * The cached answer to whether players {@code a} and {@code b} can see each other at
+     * {@code tick}: 1 if they can, 0 if not, -1 if it has to be raycast. Only reads.
+     */
+    int cached(int a, int b, long tick) {
+        long key = key(a, b);
+        int slot = slot(key);
+        if (cacheKey[slot] != key || tick - cacheTick[slot] >= CACHE_TICKS) return -1;
+        return cacheClear[slot] ? 1 : 0;
+    }
+
+    /** Whether players {@code a} and {@code b} can see each other, chest to chest. Only reads. */
+    boolean raycast(int a, int b) {
+        int lo = Math.min(a, b);
+        int hi = Math.max(a, b);
+        return grid.clearLine(world.x[lo] + STICKMAN_WIDTH / 2, world.y[lo] + STICKMAN_HEIGHT - 20,
+                              world.x[hi] + STICKMAN_WIDTH / 2, world.y[hi] + STICKMAN_HEIGHT - 20);
+    }
+
+    /**
+     * Counts a look from {@code a} to {@code b}, and caches its answer if it was raycast.
+     * Looks are made side by side and recorded one at a time afterwards, in a fixed order,
+     * so the cache comes out the same however they were spread over threads.
+     */
+    void record(int a, int b, long tick, boolean clear, boolean raycast) {
+        long key = key(a, b);
+        int slot = slot(key);
+        // Both ends of a pair may have raycast it on the same tick
+        if (!raycast || (cacheKey[slot] == key && cacheTick[slot] == tick)) {
+            hits++;
+            return;
+        }
+        raycasts++;
+        cacheKey[slot] = key;
+        cacheTick[slot] = tick;
+        cacheClear[slot] = clear;
+    }
+
+    /**
+     * Writes the cached results that can still be used at {@code tick} or later. A cached
+     * result can differ from a fresh raycast, so it's part of the simulation state.
+     */
+    void save(ByteBuffer out, long tick) {
+        int live = 0;
+        for (int slot = 0; slot < CACHE_SIZE; slot++) {
+            if (cacheKey[slot] != -1 && tick - cacheTick[slot] < CACHE_TICKS) live++;
+        }
+        out.putInt(live);
+        for (int slot = 0; slot < CACHE_SIZE; slot++) {
+            if (cacheKey[slot] == -1 || tick - cacheTick[slot] >= CACHE_TICKS) continue;
+            out.putShort((short)slot);
+            out.putLong(cacheKey[slot]);
+            out.putLong(cacheTick[slot]);
+            out.put(cacheClear[slot] ? (byte)1 : 0);
+        }
+    }
+
+    void load(ByteBuffer in) {
+        invalidate();
+        for (int i = in.getInt(); i > 0; i--) {
+            int slot = in.getShort();
+            cacheKey[slot] = in.getLong();
+            cacheTick[slot] = in.getLong();
+            cacheClear[slot] = in.get() != 0;
+        }
+    }
+
+    long getRaycasts() {
+        return raycasts;
+    }
+
+    long getCacheHits() {
+        return hits;
+    }
+
+    private static long key(int a, int b) {
+        return ((long)Math.min(a, b) << 32) | Math.max(a, b);
+    }
+
+    private static int slot(long key) {
+        return (int)((key * 0x9E3779B97F4A7C15L) >>> 52);
+    }
+
+    private void invalidate() {
+        Arrays.fill(cacheKey, -1);
+    }
+}
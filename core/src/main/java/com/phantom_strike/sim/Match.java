@@ -0,0 +1,760 @@
+package com.phantom_strike.sim;
+
+import com.phantom_strike.ecs.Component;
+import com.phantom_strike.ecs.EntityWorld;
+import com.phantom_strike.ecs.Family;
+import com.phantom_strike.ecs.SystemScheduler;
+import com.phantom_strike.spatial.HitboxHistory;
+import com.phantom_strike.spatial.InfluenceMap;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.phantom_strike.sim.GameRules.*;
+
+/**
+ * One round of Phantom Strike: the entity world, the systems that advance it and the
+ * match-wide state (scores, shoot cooldowns, victory). Contains no rendering or input
+ * code so it can run without a window.
+ * <p>
+ * The match advances in fixed ticks of {@link GameRules#TICK_DURATION}. Anything that
+ * happens after a delay (respawns, cooldown expiry, health-pack respawns, role
+ * reassignment) is an event on a {@link TimerWheel} rather than a per-frame countdown.
+ */
+public class Match {
+    static final int PLAYER = Component.POSITION | Component.VELOCITY | Component.TEAM
+        | Component.HEALTH | Component.STICKMAN;
+    static final int BULLET = Component.POSITION | Component.VELOCITY | Component.TEAM
+        | Component.PROJECTILE;
+    static final int WORLD_OBJECT = Component.POSITION | Component.COLLIDER;
+
+    // Timer kinds
+    static final int TIMER_RESPAWN = 0;
+    static final int TIMER_GLOBAL_COOLDOWN = 1;
+    static final int TIMER_HEALTH_PACK = 2;
+    static final int TIMER_ASSIGN_ROLES = 3;
+
+    // Share of the enemy's presence that has to be on our side before defenders move up to meet it
+    private static final float MIN_PATROL_PRESSURE = 0.1f;
+
+    private static final int MAX_TICKS_PER_FRAME = 5;
+    private static final float HITBOX_CELL_SIZE = 100;
+    // AI focus snaps to cells this big, so following a moving camera is a handful of changes a second
+    public static final float FOCUS_CELL_SIZE = 32;
+    // Tries at a clear spot before findSpot settles for an unclear one
+    private static final int SPOT_ATTEMPTS = 32;
+
+    final EntityWorld world = new EntityWorld(256);
+    final Family players = world.family(Component.STICKMAN);
+    final Family livePlayers = world.family(Component.STICKMAN, Component.RESPAWN);
+    final Family respawning = world.family(Component.STICKMAN | Component.RESPAWN);
+    final Family aiPlayers = world.family(Component.STICKMAN | Component.AI, Component.RESPAWN);
+    final Family bullets = world.family(Component.PROJECTILE);
+    final Family colliders = world.family(Component.COLLIDER);
+    final Family teleporters = world.family(Component.TELEPORT);
+    private final SystemScheduler systems = new SystemScheduler();
+    private final PlayerMovementSystem movement = new PlayerMovementSystem(this);
+    private final AISystem ai = new AISystem(this);
+    final TimerWheel timers = new TimerWheel(this::onTimer);
+    final PickupPool pickups = new PickupPool(this);
+    final AIScheduler aiScheduler = new AIScheduler(world);
+    final LineOfSight lineOfSight = new LineOfSight(world);
+    final Navigation navigation = new Navigation(world);
+    final InfluenceMap[] influence = InfluenceSystem.createMaps();
+    final HitboxHistory hitboxes = new HitboxHistory((int)ticks(MAX_LAG_COMPENSATION) + 1, STICKMAN_WIDTH,
+                                                     STICKMAN_HEIGHT, WORLD_WIDTH, WORLD_HEIGHT, HITBOX_CELL_SIZE);
+    private long[] roleOrder = new long[0];
+    final MatchConfig config;
+    final RandomStreams random;
+
+    int redTeamScore = 0;
+    int blueTeamScore = 0;
+    long tick = 0;
+    float gameTime = 0;
+    private float accumulator = 0;
+    boolean gameOver = false;
+    String winningTeam = "";
+    boolean globalCanShoot = true;
+    private long globalCooldownTimer = -1;
+    private int localPlayer = -1;
+    // Controls for the local player, applied before each tick of update()
+    private boolean localInput;
+    private int localButtons;
+    private boolean localFire;
+    private boolean localSwitch;
+    private int focusColumn = -1;
+    private int focusRow = -1;
+    private MatchRecorder recorder;
+    private MatchStats stats;
+
+    public Match() {
+        this(new MatchConfig());
+    }
+
+    public Match(MatchConfig config) {
+        this.config = config;
+        // No seed means a different match every time
+        random = new RandomStreams(config.seed != 0 ? config.seed : System.nanoTime());
+        // Bullets move while the influence maps update, and bounce off walls while bots think
+        systems.add(movement);
+        systems.add(new BulletMovementSystem(this));
+        systems.add(new InfluenceSystem(this));
+        systems.add(ai);
+        systems.add(new BulletObjectSystem(this));
+        systems.add(new CombatSystem(this));
+
+        createGameObjects(config.map != null ? config.map : GameMap.generate(random.stream(RandomStreams.WORLD), 1));
+        navigation.update();
+        createTestPlayers();
+
+        // Set local player (for testing)
+        localPlayer = players.get(0);
+
+        // Assign AI roles every few seconds to adapt to changing situations
+        timers.schedule(ticks(ROLE_ASSIGNMENT_INTERVAL), TIMER_ASSIGN_ROLES, -1);
+    }
+
+    /**
+     * Advances the match by as many whole ticks as fit into the elapsed frame time. The
+     * local player's controls from {@link #setLocalInput} are applied before every tick.
+     */
+    public void update(float deltaTime) {
+        // Drop time beyond a few ticks so a long stall doesn't trigger a burst of catch-up ticks
+        accumulator = Math.min(accumulator + deltaTime, MAX_TICKS_PER_FRAME * TICK_DURATION);
+        while (accumulator >= TICK_DURATION) {
+            accumulator -= TICK_DURATION;
+            if (localInput && localPlayer >= 0) {
+                applyInput(localPlayer, localButtons, localFire, localSwitch);
+                localFire = localSwitch = false;
+            }
+            step();
+        }
+    }
+
+    /**
+     * Sets the local player's controls for the ticks of the next {@link #update}: the held
+     * {@code buttons} go in every tick and a {@code fire} or {@code switchTeam} press in the
+     * first. A press in a frame too short for a tick waits for the next one. Input goes in
+     * per tick rather than per frame, so play doesn't depend on the frame rate and a
+     * recording of it replays exactly.
+     */
+    public void setLocalInput(int buttons, boolean fire, boolean switchTeam) {
+        localInput = true;
+        localButtons = buttons;
+        localFire |= fire;
+        localSwitch |= switchTeam;
+    }
+
+    /**
+     * Centres AI thinking on ({@code x}, {@code y}), usually the camera: agents near it
+     * think more often. It snaps to {@link #FOCUS_CELL_SIZE} cells, so a recording only
+     * needs the occasional change.
+     */
+    public void setFocus(float x, float y) {
+        int column = Math.max(0, (int)(x / FOCUS_CELL_SIZE));
+        int row = Math.max(0, (int)(y / FOCUS_CELL_SIZE));
+        if (column == focusColumn && row == focusRow) return;
+        focusColumn = column;
+        focusRow = row;
+        if (recorder != null) recorder.focus(column, row);
+        aiScheduler.setFocus((column + 0.5f) * FOCUS_CELL_SIZE, (row + 0.5f) * FOCUS_CELL_SIZE);
+    }
+
+    /** Hands a player to the AI, or takes it away for a human to control. */
+    public void setBot(int p, boolean bot) {
+        if (recorder != null) recorder.bot(p, bot);
+        if (bot) {
+            world.add(p, Component.AI);
+        } else {
+            world.remove(p, Component.AI);
+        }
+    }
+
+    /**
+     * Reports everything from outside the simulation that changes this match to
+     * {@code recorder} from now on. Recording has to start before the first tick.
+     */
+    public void record(MatchRecorder recorder) {
+        if (tick != 0) throw new IllegalStateException("Recording has to start at tick 0, not " + tick);
+        this.recorder = recorder;
+    }
+
+    /** Reports shots, hits, kills, pickups and teleports to {@code stats} from now on, or stops if it's null. */
+    public void setStats(MatchStats stats) {
+        this.stats = stats;
+    }
+
+    // Reports an event of the entity's to the stats listener, if there is one
+    void stat(int kind, int entity, float x, float y) {
+        if (stats != null) stats.event(kind, tick, entity, world.team[entity], x, y);
+    }
+
+    /**
+     * Writes everything the simulation carries from one tick to the next, so that
+     * {@link #loadState} on a match made from the same config goes on exactly as this
+     * one would. Anything derived from the map, which the config fixes, is left out.
+     * Call between ticks.
+     */
+    public void saveState(ByteBuffer out) {
+        out.putLong(tick);
+        out.putInt(redTeamScore);
+        out.putInt(blueTeamScore);
+        out.put((byte)(gameOver ? 1 : 0));
+        out.put((byte)(winningTeam.equals("RED") ? 1 : winningTeam.equals("BLUE") ? 2 : 0));
+        out.put((byte)(globalCanShoot ? 1 : 0));
+        out.putLong(globalCooldownTimer);
+        out.putInt(focusColumn);
+        out.putInt(focusRow);
+        world.save(out);
+        timers.save(out);
+        random.save(out);
+        aiScheduler.save(out);
+        ai.save(out);
+        navigation.save(out);
+        lineOfSight.save(out, tick);
+        for (InfluenceMap map : influence) map.save(out);
+        hitboxes.save(out);
+    }
+
+    /** Puts the match in the state {@link #saveState} wrote. Any local input not yet applied is dropped. */
+    public void loadState(ByteBuffer in) {
+        tick = in.getLong();
+        gameTime = tick * TICK_DURATION;
+        redTeamScore = in.getInt();
+        blueTeamScore = in.getInt();
+        gameOver = in.get() != 0;
+        byte winner = in.get();
+        winningTeam = winner == 1 ? "RED" : winner == 2 ? "BLUE" : "";
+        globalCanShoot = in.get() != 0;
+        globalCooldownTimer = in.getLong();
+        focusColumn = in.getInt();
+        focusRow = in.getInt();
+        pickups.detach();
+        world.load(in);
+        pickups.attach();
+        timers.load(in);
+        random.load(in);
+        aiScheduler.load(in);
+        ai.load(in);
+        navigation.load(in);
+        lineOfSight.load(in);
+        for (InfluenceMap map : influence) map.load(in);
+        hitboxes.load(in);
+        accumulator = 0;
+        localButtons = 0;
+        localFire = localSwitch = false;
+    }
+
+    /** Advances the match by exactly one tick. */
+    public void step() {
+        if (recorder != null) recorder.step(this);
+        tick++;
+        gameTime = tick * TICK_DURATION;
+        if (gameOver) return;
+
+        timers.advance();
+
+        // Check for victory condition
+        checkVictoryConditions();
+
+        systems.update(TICK_DURATION);
+    }
+
+    private void onTimer(int kind, int entity) {
+        switch (kind) {
+            case TIMER_RESPAWN:
+                respawn(entity);
+                break;
+            case TIMER_GLOBAL_COOLDOWN:
+                globalCanShoot = true;
+                SimLog.debug("Cooldown", "Global shoot cooldown reset");
+                break;
+            case TIMER_HEALTH_PACK:
+                pickups.respawn(entity);
+                break;
+            case TIMER_ASSIGN_ROLES:
+                assignTeamRoles();
+                timers.schedule(ticks(ROLE_ASSIGNMENT_INTERVAL), TIMER_ASSIGN_ROLES, -1);
+                break;
+        }
+    }
+
+    // Reset the game state
+    public void reset() {
+        if (recorder != null) recorder.reset();
+        Rng rng = random.stream(RandomStreams.SPAWN);
+        redTeamScore = 0;
+        blueTeamScore = 0;
+        gameOver = false;
+        winningTeam = "";
+
+        // Clear existing bullets
+        for (int i = bullets.size() - 1; i >= 0; i--) {
+            world.destroy(bullets.get(i));
+        }
+        // Players are about to be moved; nothing should be judged against where they were
+        hitboxes.clear();
+
+        // Cooldowns are ready again
+        timers.cancel(globalCooldownTimer);
+        globalCanShoot = true;
+
+        // Reset players
+        for (int i = players.size() - 1; i >= 0; i--) {
+            int p = players.get(i);
+            world.health[p] = MAX_HEALTH;
+            world.nextShot[p] = world.nextTeleport[p] = 0;
+            if (world.has(p, Component.RESPAWN)) {
+                timers.cancel(world.respawnTimer[p]);
+                world.remove(p, Component.RESPAWN);
+            }
+
+            // Reset positions to team sides
+            long spot;
+            if (world.team[p] == Team.RED) {
+                spot = findSpot(rng, 50, WORLD_WIDTH/2 - 400, 100, WORLD_HEIGHT - 100, STICKMAN_WIDTH, STICKMAN_HEIGHT);
+            } else {
+                spot = findSpot(rng, WORLD_WIDTH/2 + 400, WORLD_WIDTH - 100, 100, WORLD_HEIGHT - 100, STICKMAN_WIDTH,
+                                STICKMAN_HEIGHT);
+            }
+            world.x[p] = spotX(spot);
+            world.y[p] = spotY(spot);
+        }
+    }
+
+    // Check if either team has achieved victory
+    private void checkVictoryConditions() {
+        // Victory by score
+        if (redTeamScore >= SCORE_TO_WIN) {
+            gameOver = true;
+            winningTeam = "RED";
+        } else if (blueTeamScore >= SCORE_TO_WIN) {
+            gameOver = true;
+            winningTeam = "BLUE";
+        }
+
+        // Victory by elimination (all players on one team dead)
+        boolean anyRedAlive = false;
+        boolean anyBlueAlive = false;
+        for (int i = 0; i < livePlayers.size(); i++) {
+            if (world.team[livePlayers.get(i)] == Team.RED) {
+                anyRedAlive = true;
+            } else {
+                anyBlueAlive = true;
+            }
+        }
+
+        if (!anyRedAlive && redTeamScore < SCORE_TO_WIN && blueTeamScore < SCORE_TO_WIN) {
+            gameOver = true;
+            winningTeam = "BLUE";
+            blueTeamScore = SCORE_TO_WIN; // Set score to victory threshold
+        } else if (!anyBlueAlive && redTeamScore < SCORE_TO_WIN && blueTeamScore < SCORE_TO_WIN) {
+            gameOver = true;
+            winningTeam = "RED";
+            redTeamScore = SCORE_TO_WIN; // Set score to victory threshold
+        }
+    }
+
+    // Assign AI roles for better team tactics: the more of the enemy is on our side,
+    // the more defenders, and they patrol where the enemy has been most
+    void assignTeamRoles() {
+        for (byte team = 0; team < Team.COUNT; team++) {
+            assignRoles(team);
+        }
+    }
+
+    private void assignRoles(byte team) {
+        int side = homeSide(team);
+        InfluenceMap enemy = influence[Team.other(team)];
+        float enemyTotal = enemy.total(0) + enemy.total(1);
+        float pressure = enemyTotal > 0 ? enemy.total(side) / enemyTotal : 0;
+
+        // Patrol the enemy's favourite spot on our side, or the usual zone by the boundary
+        int hotspot = enemy.hottest(side);
+        if (pressure >= MIN_PATROL_PRESSURE && hotspot >= 0) {
+            float half = enemy.cellSize() / 2;
+            navigation.setPatrol(team, enemy.cellCenterX(hotspot) - half, enemy.cellCenterY(hotspot) - half,
+                                 half * 2, half * 2);
+        } else {
+            navigation.resetPatrol(team);
+        }
+
+        int active = 0;
+        int candidates = 0;
+        float patrolX = navigation.patrolCenterX(team);
+        float patrolY = navigation.patrolCenterY(team);
+        for (int i = 0; i < livePlayers.size(); i++) {
+            if (world.team[livePlayers.get(i)] == team) active++;
+        }
+        // Sort this team's bots by distance to the patrol area; the closest ones defend
+        if (roleOrder.length < aiPlayers.size()) roleOrder = new long[aiPlayers.size()];
+        for (int i = 0; i < aiPlayers.size(); i++) {
+            int p = aiPlayers.get(i);
+            if (world.team[p] != team) continue;
+            float dx = world.x[p] - patrolX;
+            float dy = world.y[p] - patrolY;
+            roleOrder[candidates++] = ((long)Float.floatToIntBits(dx * dx + dy * dy) << 32) | p;
+        }
+        Arrays.sort(roleOrder, 0, candidates);
+
+        float share = config.baseDefenderShare + config.pressureDefenderShare * pressure;
+        int defenders = Math.min(candidates, 1 + (int)(active * share));
+        for (int i = 0; i < candidates; i++) {
+            int p = (int)roleOrder[i];
+            world.aiRole[p] = (i < defenders ? AIRole.DEFENDER : AIRole.ATTACKER).id();
+        }
+
+        SimLog.debug("AI Roles", Team.name(team) + ": " + (candidates - defenders) + " attackers, " +
+                     defenders + " defenders, enemy pressure " + pressure);
+    }
+
+    /** Side of the map a team defends: 0 for the left, 1 for the right. */
+    static int homeSide(byte team) {
+        return team == Team.RED ? 0 : 1;
+    }
+
+    private void createTestPlayers() {
+        Rng rng = random.stream(RandomStreams.SPAWN);
+        // Create Red Team
+        for (int i = 0; i < config.playersPerTeam; i++) {
+            // Place players at different heights and distances on left side of map
+            long spot = findSpot(rng, 100, WORLD_WIDTH/2 - 400, 100, WORLD_HEIGHT - 100, STICKMAN_WIDTH,
+                                 STICKMAN_HEIGHT);
+
+            // First player is human-controlled, unless the match is bot-only
+            spawnPlayer(spotX(spot), spotY(spot), Team.RED, i > 0 || !config.humanPlayer);
+        }
+
+        // Create Blue Team
+        for (int i = 0; i < config.playersPerTeam; i++) {
+            // Place players at different heights and distances on right side of map
+            long spot = findSpot(rng, WORLD_WIDTH/2 + 400, WORLD_WIDTH - 100, 100, WORLD_HEIGHT - 100, STICKMAN_WIDTH,
+                                 STICKMAN_HEIGHT);
+            spawnPlayer(spotX(spot), spotY(spot), Team.BLUE, true);
+        }
+    }
+
+    /**
+     * Picks a random spot in the range for a box of the given size that's clear of anything
+     * impassable and connected to the rest of the map, and returns it for {@link #spotX} and
+     * {@link #spotY}. Spots are whole pixels, which snapshots carry exactly, so a client sees
+     * a health pack right where the server put it. After {@link #SPOT_ATTEMPTS} misses it
+     * settles for the last one tried, which only happens on maps with hardly any room.
+     */
+    long findSpot(Rng rng, int minX, int maxX, int minY, int maxY, float width, float height) {
+        int x = minX;
+        int y = minY;
+        for (int attempt = 0; attempt < SPOT_ATTEMPTS; attempt++) {
+            x = rng.random(minX, maxX);
+            y = rng.random(minY, maxY);
+            if (navigation.canStand(x, y, width, height)) break;
+        }
+        return ((long)x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    static float spotX(long spot) {
+        return (int)(spot >>> 32);
+    }
+
+    static float spotY(long spot) {
+        return (int)spot;
+    }
+
+    // Puts the map's objects in the world, then the health packs
+    private void createGameObjects(GameMap map) {
+        boolean indexed = map.hasIndex();
+        int[] objects = new int[map.size()];
+        for (int i = 0; i < map.size(); i++) {
+            objects[i] = spawnObject(map.x(i), map.y(i), map.width(i), map.height(i), map.type(i), !indexed);
+        }
+        // An indexed map has its cells blocked and fields built, teleporters included
+        if (indexed) {
+            ByteBuffer index = map.index();
+            navigation.loadIndex(index);
+            lineOfSight.loadIndex(index);
+        }
+        for (int i = 0; i < map.size(); i++) {
+            if (map.link(i) < 0) continue;
+            int teleporter = objects[i];
+            world.add(teleporter, Component.TELEPORT);
+            world.teleportTarget[teleporter] = objects[map.link(i)];
+            if (!indexed) navigation.addTeleporter(teleporter, objects[map.link(i)]);
+        }
+        // Packs are placed where the fields say they can be reached
+        navigation.update();
+
+        // Add health packs - fewer of these, they're power-ups
+        pickups.create(config.healthPacks);
+    }
+
+    // Brings a dead player back at the stored respawn position, or a random one on their side
+    private void respawn(int p) {
+        Rng rng = random.stream(RandomStreams.SPAWN);
+        world.health[p] = MAX_HEALTH;
+        if (world.respawnX[p] != 0 && world.respawnY[p] != 0) {
+            world.x[p] = world.respawnX[p];
+            world.y[p] = world.respawnY[p];
+        } else {
+            long spot;
+            if (world.team[p] == Team.RED) {
+                spot = findSpot(rng, 50, WORLD_WIDTH/2 - 400, 100, WORLD_HEIGHT - 100, STICKMAN_WIDTH, STICKMAN_HEIGHT);
+            } else {
+                spot = findSpot(rng, WORLD_WIDTH/2 + 400, WORLD_WIDTH - 100, 100, WORLD_HEIGHT - 100, STICKMAN_WIDTH,
+                                STICKMAN_HEIGHT);
+            }
+            world.x[p] = spotX(spot);
+            world.y[p] = spotY(spot);
+        }
+
+        // Reset respawn position for next time
+        world.respawnX[p] = 0;
+        world.respawnY[p] = 0;
+        world.remove(p, Component.RESPAWN);
+    }
+
+    int spawnPlayer(float x, float y, byte team, boolean ai) {
+        int p = world.create(ai ? PLAYER | Component.AI : PLAYER);
+        world.x[p] = x;
+        world.y[p] = y;
+        world.team[p] = team;
+        world.health[p] = MAX_HEALTH;
+        world.facingRight[p] = team == Team.RED;
+        // Initialize default respawn position
+        world.respawnX[p] = x;
+        world.respawnY[p] = y;
+        return p;
+    }
+
+    int spawnObject(float x, float y, float width, float height, ObjectType type) {
+        return spawnObject(x, y, width, height, type, true);
+    }
+
+    // Without index, the object is left out of line of sight and navigation, as when they're loaded ready-made
+    private int spawnObject(float x, float y, float width, float height, ObjectType type, boolean index) {
+        int e = world.create(WORLD_OBJECT);
+        world.x[e] = x;
+        world.y[e] = y;
+        world.width[e] = width;
+        world.height[e] = height;
+        world.objectType[e] = type.id();
+        world.spawnTick[e] = tick;
+        // Cover and barriers stop bullets, so they also block line of sight
+        if (index && (type == ObjectType.COVER || type == ObjectType.BARRIER)) {
+            lineOfSight.block(e);
+        }
+        // Obstacles and barriers push players back, so paths go around them
+        if (index && (type == ObjectType.OBSTACLE || type == ObjectType.BARRIER)) {
+            navigation.block(e);
+        }
+        return e;
+    }
+
+    /** Spawns a bullet travelling along the unit vector ({@code dirX}, {@code dirY}). */
+    public int spawnBullet(float x, float y, float dirX, float dirY, byte team) {
+        int b = world.create(BULLET);
+        world.x[b] = x;
+        world.y[b] = y;
+        world.vx[b] = dirX * BULLET_SPEED;
+        world.vy[b] = dirY * BULLET_SPEED;
+        world.team[b] = team;
+        return b;
+    }
+
+    /**
+     * Applies one frame of a human player's controls: held {@link PlayerInput} buttons set
+     * velocity and facing, {@code fire} shoots if the player's cooldown allows and
+     * {@code switchTeam} swaps sides. The local keyboard and remote clients both come
+     * through here so they play by the same rules.
+     */
+    public void applyInput(int p, int buttons, boolean fire, boolean switchTeam) {
+        applyInput(p, buttons, fire, switchTeam, tick);
+    }
+
+    /**
+     * As {@link #applyInput(int, int, boolean, boolean)}, for a player who sees the match
+     * as it was at {@code viewTick}, like a client looking at its latest snapshot. Its
+     * bullets hit other players where it saw them, up to {@link GameRules#MAX_LAG_COMPENSATION}
+     * back. A negative {@code viewTick} means the present.
+     */
+    public void applyInput(int p, int buttons, boolean fire, boolean switchTeam, long viewTick) {
+        long behind = viewTick >= 0 ? tick - viewTick : 0;
+        int viewLag = (int)Math.max(0, Math.min(behind, ticks(MAX_LAG_COMPENSATION)));
+        if (recorder != null) recorder.input(p, buttons, fire, switchTeam, viewLag);
+        if (gameOver || isRespawning(p)) return;
+
+        // Movement
+        if ((buttons & PlayerInput.LEFT) != 0) {
+            world.vx[p] = -MOVEMENT_SPEED;
+            world.facingRight[p] = false;
+        }
+        if ((buttons & PlayerInput.RIGHT) != 0) {
+            world.vx[p] = MOVEMENT_SPEED;
+            world.facingRight[p] = true;
+        }
+        if ((buttons & PlayerInput.UP) != 0) {
+            world.vy[p] = MOVEMENT_SPEED;
+        }
+        if ((buttons & PlayerInput.DOWN) != 0) {
+            world.vy[p] = -MOVEMENT_SPEED;
+        }
+
+        // Shooting, with a cooldown per player
+        if (fire && canShoot(p)) {
+            boolean facingRight = world.facingRight[p];
+            int b = spawnBullet(world.x[p] + STICKMAN_WIDTH / 2 + (facingRight ? 10 : -10),
+                                world.y[p] + STICKMAN_HEIGHT - 20,
+                                facingRight ? 1 : -1, 0, world.team[p]);
+            world.viewLag[b] = viewLag;
+            stat(MatchStats.SHOT, p, world.x[b], world.y[b]);
+            world.nextShot[p] = tick + ticks(SHOOT_COOLDOWN);
+            startGlobalCooldown();
+        }
+
+        // Switch teams for testing
+        if (switchTeam) {
+            world.team[p] = Team.other(world.team[p]);
+        }
+
+        // Shooting animation follows the held button
+        world.shooting[p] = (buttons & PlayerInput.FIRE) != 0;
+    }
+
+    /**
+     * One tick of a player's own movement as a client predicts it: held buttons, then the
+     * same integration and collisions the server runs in {@link #step()}. Nothing else in
+     * the match moves, nothing is fired and no pack is collected.
+     */
+    public void predictMovement(int p, int buttons) {
+        if (gameOver || isRespawning(p)) return;
+        applyInput(p, buttons, false, false);
+        movement.move(p, TICK_DURATION, false);
+    }
+
+    /** Whether a player's manual shot cooldown has run out. */
+    public boolean canShoot(int p) {
+        return tick >= world.nextShot[p];
+    }
+
+    void startGlobalCooldown() {
+        timers.cancel(globalCooldownTimer);
+        globalCanShoot = false;
+        globalCooldownTimer = timers.schedule(ticks(GLOBAL_SHOOT_COOLDOWN), TIMER_GLOBAL_COOLDOWN, -1);
+    }
+
+    public EntityWorld getWorld() {
+        return world;
+    }
+
+    public Family getPlayers() {
+        return players;
+    }
+
+    public Family getBullets() {
+        return bullets;
+    }
+
+    public Family getColliders() {
+        return colliders;
+    }
+
+    public int getLocalPlayer() {
+        return localPlayer;
+    }
+
+    /** Picks the player the camera follows and the HUD describes. */
+    public void setLocalPlayer(int player) {
+        localPlayer = player;
+    }
+
+    public boolean isRespawning(int player) {
+        return world.has(player, Component.RESPAWN);
+    }
+
+    public int getRedTeamScore() {
+        return redTeamScore;
+    }
+
+    public int getBlueTeamScore() {
+        return blueTeamScore;
+    }
+
+    public float getGameTime() {
+        return gameTime;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public long getSeed() {
+        return random.seed();
+    }
+
+    /**
+     * Hash of the simulation state: tick, scores and every entity's components that
+     * change during play. Matches with the same seed and inputs hash the same on every tick.
+     */
+    public long stateHash() {
+        long h = tick * 31 + redTeamScore * 7 + blueTeamScore;
+        for (int e = 0; e < world.highWater(); e++) {
+            h = h * 31 + world.mask(e);
+            if (world.mask(e) == 0) continue;
+            h = h * 31 + Float.floatToIntBits(world.x[e]);
+            h = h * 31 + Float.floatToIntBits(world.y[e]);
+            h = h * 31 + Float.floatToIntBits(world.vx[e]);
+            h = h * 31 + Float.floatToIntBits(world.vy[e]);
+            h = h * 31 + world.health[e];
+            h = h * 31 + world.team[e];
+        }
+        return h;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public String getWinningTeam() {
+        return winningTeam;
+    }
+
+    public boolean canPlayerShoot() {
+        return localPlayer >= 0 && canShoot(localPlayer);
+    }
+
+    /**
+     * Overwrites the match-wide state with what an authoritative server reported. Used by
+     * network clients, whose copy of the match is never stepped locally.
+     */
+    public void applyServerState(long tick, int redScore, int blueScore, String winner) {
+        this.tick = tick;
+        gameTime = tick * TICK_DURATION;
+        redTeamScore = redScore;
+        blueTeamScore = blueScore;
+        gameOver = !winner.isEmpty();
+        winningTeam = winner;
+    }
+
+    public MatchConfig getConfig() {
+        return config;
+    }
+
+    /** Think-rate scheduling and per-tick metrics for AI agents. */
+    public AIScheduler getAIScheduler() {
+        return aiScheduler;
+    }
+
+    /** Exposes the system scheduler so callers can opt into parallel phases. */
+    public SystemScheduler getSystems() {
+        return systems;
+    }
+
+    /**
+     * Runs independent system phases, and AI perception, on {@code pool}; null (the
+     * default) runs everything on the calling thread. The match plays out the same either way.
+     */
+    public void setParallel(ForkJoinPool pool) {
+        systems.setParallel(pool);
+        ai.setParallel(pool);
+    }
+}
@@ -0,0 +1,42 @@
+package com.phantom_strike.sim;
+
+/** Settings for a {@link Match}. Fields can be changed freely before the match is created. */
+public class MatchConfig {
+    /** Players per team. The first red player is the local, human-controlled one unless {@link #humanPlayer} is off. */
+    public int playersPerTeam = 8;
+    /** Whether the first red player is left to the keyboard. Turn off for bot-only matches. */
+    public boolean humanPlayer = true;
+    /** Number of health-pack slots on the map. */
+    public int healthPacks = 8;
+    /** Seconds before a collected health pack reappears somewhere else. */
+    public float healthPackRespawnDelay = 10;
+    /** Most AI agents allowed to think in one tick; 0 means no limit. Agents over budget are deferred. */
+    public int aiThinkBudget = 0;
+    /** Map to play on, or null for one generated from the seed. Matches only read it, so it can be shared. */
+    public GameMap map;
+    /** Seed for every random stream in the match; 0 picks one from the clock. Same seed and inputs, same match. */
+    public long seed = 0;
+
+    /** Per-think chance that an AI with a clear shot fires, indexed by team. */
+    public float[] shootChance = {0.03f, 0.05f};
+    /** Share of a team's players that defend when the enemy keeps off our side. */
+    public float baseDefenderShare = 0.2f;
+    /** Extra defender share when all of the enemy is on our side; scales with how much of it is. */
+    public float pressureDefenderShare = 0.6f;
+
+    /** A deep copy, so each match can own its settings. The seed is copied too, and the map shared. */
+    public MatchConfig copy() {
+        MatchConfig config = new MatchConfig();
+        config.playersPerTeam = playersPerTeam;
+        config.humanPlayer = humanPlayer;
+        config.healthPacks = healthPacks;
+        config.healthPackRespawnDelay = healthPackRespawnDelay;
+        config.aiThinkBudget = aiThinkBudget;
+        config.seed = seed;
+        config.map = map;
+        config.shootChance = shootChance.clone();
+        config.baseDefenderShare = baseDefenderShare;
+        config.pressureDefenderShare = pressureDefenderShare;
+        return config;
+    }
+}
@@ -0,0 +1,49 @@
+package com.phantom_strike.sim;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Gets the next match ready on a background thread while the current one plays: a
+ * {@link ProceduralMap} generated and indexed, and the match set up on it. The finished
+ * match is published in one step, so {@link #poll()} sees either nothing or a match that's
+ * ready to run, and taking it costs nothing on the caller's thread.
+ * <p>
+ * Matches are prepared one at a time, in the order asked for; only the latest finished one
+ * is kept. {@link #close()} stops the thread.
+ */
+public final class MatchPreparer implements AutoCloseable {
+    private final MatchConfig template;
+    private final AtomicReference<Match> ready = new AtomicReference<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "map-generator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Prepares matches with {@code template}'s settings; its seed and map are replaced for each. */
+    public MatchPreparer(MatchConfig template) {
+        this.template = template.copy();
+    }
+
+    /** Starts preparing a match on a new map from {@code seed}. */
+    public void prepare(long seed) {
+        executor.execute(() -> {
+            MatchConfig config = template.copy();
+            config.seed = seed;
+            config.map = ProceduralMap.generate(seed);
+            ready.set(new Match(config));
+        });
+    }
+
+    /** Takes the prepared match, or returns null if it isn't ready yet. Never waits. */
+    public Match poll() {
+        return ready.getAndSet(null);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
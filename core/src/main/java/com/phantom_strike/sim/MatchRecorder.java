@@ -0,0 +1,27 @@
+package com.phantom_strike.sim;
+
+/**
+ * Told about everything from outside the simulation that changes a {@link Match}, in the
+ * order it happens. Given the seed and config, that is enough to play the match again
+ * exactly; see {@link com.phantom_strike.replay.ReplayRecorder}. Calls come from the
+ * thread stepping the match.
+ */
+public interface MatchRecorder {
+    /**
+     * A call to {@link Match#applyInput}. {@code viewLag} is how many ticks behind the
+     * shooter was, already capped; it only matters when {@code fire} is set.
+     */
+    void input(int player, int buttons, boolean fire, boolean switchTeam, int viewLag);
+
+    /** A player was handed to the AI, or taken from it. */
+    void bot(int player, boolean bot);
+
+    /** The match was {@link Match#reset() reset}. */
+    void reset();
+
+    /** AI thinking now centres on grid cell ({@code column}, {@code row}); see {@link Match#setFocus}. */
+    void focus(int column, int row);
+
+    /** The match is about to step from {@code match.getTick()}; what came before belongs to that tick. */
+    void step(Match match);
+}
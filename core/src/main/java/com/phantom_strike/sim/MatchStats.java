@@ -0,0 +1,23 @@
+package com.phantom_strike.sim;
+
+/**
+ * Told about what happens in a {@link Match} as it plays, for statistics; see
+ * {@link com.phantom_strike.stats.StatsLog}. Calls come from the thread stepping the match
+ * and must not change it.
+ */
+public interface MatchStats {
+    /** A player fired; the position is where the bullet started. */
+    int SHOT = 0;
+    /** A bullet hit a player, who is the entity; the position is the bullet's. */
+    int HIT = 1;
+    /** A player was killed, where they stood. */
+    int KILL = 2;
+    /** A player collected a health pack, where the pack was. */
+    int PICKUP = 3;
+    /** A player went into a teleporter, where they went in. */
+    int TELEPORT = 4;
+    int KINDS = 5;
+
+    /** Something of {@code kind} happened to {@code entity}, on {@code team}, at ({@code x}, {@code y}). */
+    void event(int kind, long tick, int entity, byte team, float x, float y);
+}
@@ -0,0 +1,198 @@
+package com.phantom_strike.sim;
+
+import com.phantom_strike.ecs.EntityWorld;
+import com.phantom_strike.spatial.FlowField;
+import com.phantom_strike.spatial.StaticGeometryGrid;
+
+import java.nio.ByteBuffer;
+
+import static com.phantom_strike.sim.GameRules.*;
+
+/**
+ * Shared flow fields for AI movement over a coarse grid of the world that obstacles and
+ * barriers block. Each team has one field toward the enemy side and one toward its
+ * defensive patrol zone, and both teams share one toward the health packs on the map.
+ * Teleporter pairs are portals in every field. Bots steer by looking up their cell
+ * instead of each finding their own way around obstacles.
+ */
+class Navigation {
+    static final float CELL_SIZE = 40;
+
+    private final EntityWorld world;
+    private final StaticGeometryGrid grid = new StaticGeometryGrid(WORLD_WIDTH, WORLD_HEIGHT, CELL_SIZE);
+    final FlowField[] attack = new FlowField[Team.COUNT];
+    final FlowField[] defend = new FlowField[Team.COUNT];
+    final FlowField pickups = new FlowField(grid);
+    // Current patrol goal of each team as x, y, width, height
+    private final float[][] patrol = new float[Team.COUNT][4];
+
+    Navigation(EntityWorld world) {
+        this.world = world;
+        for (int team = 0; team < Team.COUNT; team++) {
+            attack[team] = new FlowField(grid);
+            defend[team] = new FlowField(grid);
+        }
+
+        // The enemy side starts where their spawn area does
+        attack[Team.RED].addGoal(WORLD_WIDTH/2 + 400, 0, WORLD_WIDTH/2 - 400, WORLD_HEIGHT);
+        attack[Team.BLUE].addGoal(0, 0, WORLD_WIDTH/2 - 400, WORLD_HEIGHT);
+
+        for (byte team = 0; team < Team.COUNT; team++) {
+            resetPatrol(team);
+        }
+    }
+
+    /** Sends a team's defenders to patrol the given area. */
+    void setPatrol(byte team, float x, float y, float width, float height) {
+        float[] area = patrol[team];
+        if (area[0] == x && area[1] == y && area[2] == width && area[3] == height) return;
+        if (area[2] > 0) defend[team].removeGoal(area[0], area[1], area[2], area[3]);
+        area[0] = x;
+        area[1] = y;
+        area[2] = width;
+        area[3] = height;
+        defend[team].addGoal(x, y, width, height);
+    }
+
+    /** Defenders patrol just inside their side of the boundary. */
+    void resetPatrol(byte team) {
+        if (team == Team.RED) {
+            setPatrol(team, WORLD_WIDTH/2 - 300, 0, 250, WORLD_HEIGHT);
+        } else {
+            setPatrol(team, WORLD_WIDTH/2 + 50, 0, 250, WORLD_HEIGHT);
+        }
+    }
+
+    /** The team's patrol area as x, y, width, height. Don't modify it. */
+    float[] patrolArea(byte team) {
+        return patrol[team];
+    }
+
+    float patrolCenterX(byte team) {
+        return patrol[team][0] + patrol[team][2] / 2;
+    }
+
+    float patrolCenterY(byte team) {
+        return patrol[team][1] + patrol[team][3] / 2;
+    }
+
+    /**
+     * Whether (x, y) is open and connected to both sides of the map, so somewhere a player
+     * can get out of. Pockets walled in by obstacles are open but not reachable. Only
+     * meaningful once the attack fields are built; they never change after that.
+     */
+    boolean reachable(float x, float y) {
+        int cell = attack[Team.RED].cellAt(x, y);
+        return cell >= 0 && attack[Team.RED].distance(cell) != FlowField.UNREACHABLE
+            && attack[Team.BLUE].distance(cell) != FlowField.UNREACHABLE;
+    }
+
+    /** Whether a box at (x, y) touches nothing impassable and its center is {@link #reachable}. */
+    boolean canStand(float x, float y, float width, float height) {
+        return !grid.anyBlocked(x, y, width, height) && reachable(x + width / 2, y + height / 2);
+    }
+
+    /** Share of the open cells that are {@link #reachable}. */
+    float reachableShare() {
+        int open = 0, reachable = 0;
+        float size = grid.cellSize();
+        for (int cy = 0; cy < grid.rows(); cy++) {
+            for (int cx = 0; cx < grid.columns(); cx++) {
+                if (grid.isBlocked(cx, cy)) continue;
+                open++;
+                if (reachable((cx + 0.5f) * size, (cy + 0.5f) * size)) reachable++;
+            }
+        }
+        return open > 0 ? (float)reachable / open : 0;
+    }
+
+    /** Marks an object's cells as impassable. */
+    void block(int obj) {
+        grid.block(world.x[obj], world.y[obj], world.width[obj], world.height[obj]);
+        for (int team = 0; team < Team.COUNT; team++) {
+            attack[team].invalidate();
+            defend[team].invalidate();
+        }
+        pickups.invalidate();
+    }
+
+    /** Adds a teleporter as a portal to where players come out of its destination. */
+    void addTeleporter(int from, int to) {
+        float exitX = exitX(to) + STICKMAN_WIDTH/2;
+        float exitY = exitY(to) + STICKMAN_HEIGHT/2;
+        for (int team = 0; team < Team.COUNT; team++) {
+            attack[team].addPortal(world.x[from], world.y[from], world.width[from], world.height[from], exitX, exitY);
+            defend[team].addPortal(world.x[from], world.y[from], world.width[from], world.height[from], exitX, exitY);
+        }
+        pickups.addPortal(world.x[from], world.y[from], world.width[from], world.height[from], exitX, exitY);
+    }
+
+    /** Left edge of a player coming out of a teleporter: centered on it. */
+    float exitX(int to) {
+        return world.x[to] + world.width[to]/2 - STICKMAN_WIDTH/2;
+    }
+
+    /**
+     * Bottom edge of a player coming out of a teleporter: just above it, and far enough
+     * that the player's center is clear of its top row of cells. A path through there
+     * would otherwise count as one back through the teleporter.
+     */
+    float exitY(int to) {
+        float top = world.y[to] + world.height[to];
+        float clear = ((float)Math.floor(top / CELL_SIZE) + 1) * CELL_SIZE - STICKMAN_HEIGHT/2;
+        return Math.max(top + 10, clear);
+    }
+
+    void addPickup(int pack) {
+        pickups.addGoal(world.x[pack], world.y[pack], world.width[pack], world.height[pack]);
+    }
+
+    void removePickup(int pack) {
+        pickups.removeGoal(world.x[pack], world.y[pack], world.width[pack], world.height[pack]);
+    }
+
+    /**
+     * Writes the blocked cells and every field as built, for a {@link GameMap} to carry;
+     * {@link #loadIndex} then stands in for blocking the map's objects one by one, adding its
+     * teleporters and building the fields.
+     */
+    void saveIndex(ByteBuffer out) {
+        grid.save(out);
+        for (int team = 0; team < Team.COUNT; team++) {
+            attack[team].save(out);
+            defend[team].save(out);
+        }
+        pickups.save(out);
+    }
+
+    void loadIndex(ByteBuffer in) {
+        grid.load(in);
+        for (int team = 0; team < Team.COUNT; team++) {
+            attack[team].load(in);
+            defend[team].load(in);
+        }
+        pickups.load(in);
+    }
+
+    void save(ByteBuffer out) {
+        for (float[] area : patrol) {
+            for (float value : area) out.putFloat(value);
+        }
+    }
+
+    /** Puts the patrol goals back; the health pack goals go with the packs, see {@link PickupPool}. */
+    void load(ByteBuffer in) {
+        for (byte team = 0; team < Team.COUNT; team++) {
+            setPatrol(team, in.getFloat(), in.getFloat(), in.getFloat(), in.getFloat());
+        }
+    }
+
+    /** Rebuilds whichever fields changed since the last call. */
+    void update() {
+        for (int team = 0; team < Team.COUNT; team++) {
+            attack[team].update();
+            defend[team].update();
+        }
+        pickups.update();
+    }
+}
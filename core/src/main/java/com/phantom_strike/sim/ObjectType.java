@@ -0,0 +1,21 @@
+package com.phantom_strike.sim;
+
+/** Kinds of static world objects; stored by ordinal in {@link com.phantom_strike.ecs.EntityWorld#objectType}. */
+public enum ObjectType {
+    PLATFORM,
+    OBSTACLE,
+    COVER,
+    BARRIER,
+    HEALTH_PACK,
+    TELEPORTER;
+
+    static final ObjectType[] VALUES = values();
+
+    public static ObjectType of(byte ordinal) {
+        return VALUES[ordinal];
+    }
+
+    public byte id() {
+        return (byte)ordinal();
+    }
+}
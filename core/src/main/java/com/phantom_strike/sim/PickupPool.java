@@ -0,0 +1,96 @@
+package com.phantom_strike.sim;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.phantom_strike.ecs.Component;
+import com.phantom_strike.ecs.EntityWorld;
+import com.phantom_strike.spatial.KdTree;
+
+import static com.phantom_strike.sim.GameRules.*;
+
+/**
+ * Health packs as a fixed pool of entities. Collecting one strips its collider and pickup
+ * components instead of destroying it, and a timer brings the same entity back elsewhere
+ * after {@link MatchConfig#healthPackRespawnDelay}. The nearest-pickup index is rebuilt
+ * only when a pack appears or disappears, as is the navigation field toward packs.
+ */
+class PickupPool {
+    private static final int ACTIVE = Component.COLLIDER | Component.PICKUP;
+
+    private final Match match;
+    private final IntArray slots = new IntArray();
+    private final KdTree index = new KdTree(16);
+
+    PickupPool(Match match) {
+        this.match = match;
+    }
+
+    void create(int count) {
+        for (int i = 0; i < count; i++) {
+            int e = match.world.create(Component.POSITION);
+            match.world.width[e] = 30;
+            match.world.height[e] = 30;
+            match.world.objectType[e] = ObjectType.HEALTH_PACK.id();
+            match.world.pickupAmount[e] = (int)HEALTH_PACK_RESTORE;
+            slots.add(e);
+            place(e);
+        }
+        rebuildIndex();
+    }
+
+    /** Takes a pack off the map and schedules its return. */
+    void collect(int pack) {
+        match.navigation.removePickup(pack);
+        match.world.remove(pack, ACTIVE);
+        rebuildIndex();
+        match.timers.schedule(ticks(match.config.healthPackRespawnDelay), Match.TIMER_HEALTH_PACK, pack);
+    }
+
+    void respawn(int pack) {
+        place(pack);
+        rebuildIndex();
+    }
+
+    /** Nearest active pack to the point, or -1 if none are on the map. */
+    int nearest(float x, float y) {
+        return index.nearest(x, y);
+    }
+
+    /** Takes every pack on the map out of navigation, before the world they're in is replaced. */
+    void detach() {
+        for (int i = 0; i < slots.size; i++) {
+            int pack = slots.get(i);
+            if (match.world.has(pack, ACTIVE)) match.navigation.removePickup(pack);
+        }
+    }
+
+    /** Puts the packs of a replaced world into navigation and the index. */
+    void attach() {
+        for (int i = 0; i < slots.size; i++) {
+            int pack = slots.get(i);
+            if (match.world.has(pack, ACTIVE)) match.navigation.addPickup(pack);
+        }
+        rebuildIndex();
+    }
+
+    private void place(int pack) {
+        EntityWorld world = match.world;
+        Rng rng = match.random.stream(RandomStreams.PICKUPS);
+        long spot = match.findSpot(rng, 100, WORLD_WIDTH - 100, 100, WORLD_HEIGHT - 100,
+                                   world.width[pack], world.height[pack]);
+        world.x[pack] = Match.spotX(spot);
+        world.y[pack] = Match.spotY(spot);
+        world.spawnTick[pack] = match.tick;
+        world.add(pack, ACTIVE);
+        match.navigation.addPickup(pack);
+    }
+
+    private void rebuildIndex() {
+        EntityWorld world = match.world;
+        index.clear();
+        for (int i = 0; i < slots.size; i++) {
+            int pack = slots.get(i);
+            if (world.has(pack, ACTIVE)) index.add(pack, world.x[pack], world.y[pack]);
+        }
+        index.build();
+    }
+}
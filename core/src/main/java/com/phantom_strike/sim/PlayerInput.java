@@ -0,0 +1,17 @@
+package com.phantom_strike.sim;
+
+/**
+ * Button bits for {@link Match#applyInput}. Held buttons are sent as a mask so the same
+ * value can come from the keyboard or from a network packet.
+ */
+public final class PlayerInput {
+    public static final int LEFT = 1;
+    public static final int RIGHT = 1 << 1;
+    public static final int UP = 1 << 2;
+    public static final int DOWN = 1 << 3;
+    /** Fire button held; only drives the shooting pose, shots are separate edge events. */
+    public static final int FIRE = 1 << 4;
+
+    private PlayerInput() {
+    }
+}
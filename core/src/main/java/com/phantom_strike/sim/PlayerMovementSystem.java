@@ -0,0 +1,156 @@
+package com.phantom_strike.sim;
+
+import com.badlogic.gdx.math.Intersector;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Rectangle;
+import com.phantom_strike.ecs.Component;
+import com.phantom_strike.ecs.EntitySystem;
+import com.phantom_strike.ecs.EntityWorld;
+import com.phantom_strike.ecs.Family;
+
+import static com.phantom_strike.sim.GameRules.*;
+
+/** Integrates live players, resolves their contacts with world objects and keeps them in bounds. */
+class PlayerMovementSystem implements EntitySystem {
+    private final Match match;
+    private final Rectangle playerRect = new Rectangle();
+    private final Rectangle objectRect = new Rectangle();
+
+    PlayerMovementSystem(Match match) {
+        this.match = match;
+    }
+
+    @Override
+    public int reads() {
+        return Component.STICKMAN | Component.COLLIDER | Component.PICKUP | Component.TELEPORT;
+    }
+
+    @Override
+    public int writes() {
+        return Component.POSITION | Component.VELOCITY | Component.HEALTH | Component.STRUCTURE | Component.MATCH;
+    }
+
+    @Override
+    public int kinds() {
+        return Component.STICKMAN | Component.COLLIDER;
+    }
+
+    @Override
+    public int writeKinds() {
+        return Component.STICKMAN;
+    }
+
+    @Override
+    public void update(float deltaTime) {
+        Family players = match.livePlayers;
+        for (int i = players.size() - 1; i >= 0; i--) {
+            move(players.get(i), deltaTime, true);
+        }
+    }
+
+    /**
+     * Moves one player. A client predicting its own player passes {@code collect} false:
+     * whether a health pack was picked up is for the server to say.
+     */
+    void move(int p, float deltaTime, boolean collect) {
+        EntityWorld world = match.world;
+
+        // Apply physics
+        world.x[p] += world.vx[p] * deltaTime;
+        world.y[p] += world.vy[p] * deltaTime;
+
+        // Handle collisions with game objects
+        handleObjectCollisions(p, deltaTime, collect);
+
+        // Apply friction
+        world.vx[p] *= 0.9f;
+        world.vy[p] *= 0.9f;
+
+        // Keep players in bounds
+        world.x[p] = MathUtils.clamp(world.x[p], 0, WORLD_WIDTH - STICKMAN_WIDTH);
+        world.y[p] = MathUtils.clamp(world.y[p], 60, WORLD_HEIGHT - STICKMAN_HEIGHT);
+    }
+
+    // Additional collision detection for game objects
+    private void handleObjectCollisions(int p, float deltaTime, boolean collect) {
+        EntityWorld world = match.world;
+        Family colliders = match.colliders;
+        for (int i = colliders.size() - 1; i >= 0; i--) {
+            int obj = colliders.get(i);
+            playerRect.set(world.x[p], world.y[p], STICKMAN_WIDTH, STICKMAN_HEIGHT);
+            objectRect.set(world.x[obj], world.y[obj], world.width[obj], world.height[obj]);
+            if (!Intersector.overlaps(playerRect, objectRect)) continue;
+
+            // Handle collision based on object type
+            switch (ObjectType.of(world.objectType[obj])) {
+                case OBSTACLE:
+                    // Push player away from obstacle
+                    push(p, obj, MOVEMENT_SPEED * deltaTime);
+                    world.vx[p] *= 0.5f; // Slow down player
+                    world.vy[p] *= 0.5f;
+                    break;
+
+                case BARRIER:
+                    // Barriers completely block movement: stronger push than regular obstacles
+                    push(p, obj, MOVEMENT_SPEED * 2 * deltaTime);
+                    world.vx[p] *= 0.1f; // Almost stop the player
+                    world.vy[p] *= 0.1f;
+                    break;
+
+                case COVER:
+                    // Stops bullets (handled in BulletObjectSystem) but the player can pass behind it
+                    break;
+
+                case PLATFORM:
+                    // Handle standing on platforms
+                    float platformTop = world.y[obj] + world.height[obj];
+                    if (Math.abs(world.y[p] - platformTop) < 5 && world.vy[p] < 0) {
+                        world.y[p] = platformTop;
+                        world.vy[p] = 0;
+                    }
+                    break;
+
+                case HEALTH_PACK:
+                    // Player collects health pack
+                    if (collect && world.health[p] < MAX_HEALTH) {
+                        world.health[p] = Math.min(MAX_HEALTH, world.health[p] + world.pickupAmount[obj]);
+                        match.stat(MatchStats.PICKUP, p, world.x[obj], world.y[obj]);
+                        // The pack comes back somewhere else after the configured delay
+                        match.pickups.collect(obj);
+                    }
+                    break;
+
+                case TELEPORTER:
+                    // Teleport player to the linked teleporter
+                    int destination = world.teleportTarget[obj];
+                    if (destination < 0) break;
+                    if (match.tick < world.nextTeleport[p]) {
+                        // Someone who just came out isn't sent straight back: standing on a teleporter
+                        // keeps the cooldown going until they've stepped off for a tick
+                        world.nextTeleport[p] = Math.max(world.nextTeleport[p], match.tick + 2);
+                        break;
+                    }
+                    // Only reported for real moves, not a client's predicted ones
+                    if (collect) match.stat(MatchStats.TELEPORT, p, world.x[p], world.y[p]);
+                    // Place player above the destination teleporter, clear of it
+                    world.x[p] = match.navigation.exitX(destination);
+                    world.y[p] = match.navigation.exitY(destination);
+                    // Reset player velocity to prevent carrying momentum through teleport
+                    world.vx[p] *= 0.1f;
+                    world.vy[p] *= 0.1f;
+                    world.nextTeleport[p] = match.tick + ticks(TELEPORT_COOLDOWN);
+                    break;
+            }
+        }
+    }
+
+    private void push(int p, int obj, float distance) {
+        EntityWorld world = match.world;
+        float dx = world.x[p] + STICKMAN_WIDTH/2 - (world.x[obj] + world.width[obj]/2);
+        float dy = world.y[p] + STICKMAN_HEIGHT/2 - (world.y[obj] + world.height[obj]/2);
+        float len = (float)Math.sqrt(dx * dx + dy * dy);
+        if (len == 0) return;
+        world.x[p] += dx / len * distance;
+        world.y[p] += dy / len * distance;
+    }
+}
@@ -0,0 +1,168 @@
+package com.phantom_strike.sim;
+
+import com.phantom_strike.spatial.StaticGeometryGrid;
+
+import static com.phantom_strike.sim.GameRules.*;
+
+/**
+ * Generates maps where nothing overlaps and everything can be got to, unlike the layout a
+ * match makes from its seed, which drops objects anywhere. Each object is placed by trying
+ * random spots against a grid of what's already taken, with a gap around each so there's
+ * room to walk between them; teleporters go first and keep the spot players come out at
+ * clear. The finished layout is then checked on its navigation grid: nearly all open
+ * ground, both spawn zones, every teleporter and every teleporter exit have to be connected
+ * to both sides of the map. A layout that fails is thrown away for the next one.
+ * <p>
+ * The map comes back indexed, so it's as quick to start matches on as a saved one.
+ * Generating takes a few milliseconds per layout tried; {@link MatchPreparer} does it off
+ * the render thread.
+ */
+public final class ProceduralMap {
+    // Layouts tried before giving up on a seed
+    private static final int LAYOUTS = 20;
+    // Spots tried per object before leaving it out
+    private static final int PLACEMENT_TRIES = 40;
+    // Space kept clear around every object
+    private static final float MARGIN = 30;
+    private static final float OCCUPANCY_CELL_SIZE = 10;
+    // Share of open ground, and of each spawn zone, that has to be reachable
+    private static final float MIN_REACHABLE = 0.95f;
+    private static final float MIN_SPAWN_ROOM = 0.75f;
+    private static final float TELEPORTER_SIZE = 40;
+    // Height of a teleporter with the clear space above it where players come out
+    private static final float TELEPORTER_CLEARANCE = TELEPORTER_SIZE + 10 + STICKMAN_HEIGHT;
+
+    private final Rng rng;
+    private final int scale;
+    private GameMap map;
+    private StaticGeometryGrid taken;
+    // Where place() found room
+    private float spotX;
+    private float spotY;
+
+    private ProceduralMap(long seed, int scale) {
+        rng = new RandomStreams(seed).stream(RandomStreams.WORLD);
+        this.scale = scale;
+    }
+
+    public static GameMap generate(long seed) {
+        return generate(seed, 1);
+    }
+
+    /**
+     * As {@link #generate(long)}, with {@code scale} times as many of everything. Throws
+     * IllegalStateException if no layout tried passes, which takes a scale too crowded to fit.
+     */
+    public static GameMap generate(long seed, int scale) {
+        ProceduralMap generator = new ProceduralMap(seed, scale);
+        for (int layout = 0; layout < LAYOUTS; layout++) {
+            GameMap map = generator.layout();
+            Match match = map.indexMatch();
+            if (playable(map, match)) {
+                map.keepIndex(match);
+                return map;
+            }
+        }
+        throw new IllegalStateException("No playable layout in " + LAYOUTS + " tries from seed " + seed);
+    }
+
+    private GameMap layout() {
+        map = new GameMap();
+        taken = new StaticGeometryGrid(WORLD_WIDTH, WORLD_HEIGHT, OCCUPANCY_CELL_SIZE);
+
+        // Teleporters (linked pairs) first, while there's most room for their exits
+        for (int i = 0; i < 3 * scale; i++) {
+            // If the second end doesn't fit, the first's spot just stays empty
+            if (!place(100, WORLD_WIDTH/2 - 200, 100, WORLD_HEIGHT - 100 - TELEPORTER_CLEARANCE, TELEPORTER_SIZE,
+                       TELEPORTER_CLEARANCE)) continue;
+            float x1 = spotX, y1 = spotY;
+            if (!place(WORLD_WIDTH/2 + 200, WORLD_WIDTH - 100, 100, WORLD_HEIGHT - 100 - TELEPORTER_CLEARANCE,
+                       TELEPORTER_SIZE, TELEPORTER_CLEARANCE)) continue;
+            map.link(map.add(x1, y1, TELEPORTER_SIZE, TELEPORTER_SIZE, ObjectType.TELEPORTER),
+                     map.add(spotX, spotY, TELEPORTER_SIZE, TELEPORTER_SIZE, ObjectType.TELEPORTER));
+        }
+
+        // Central area platform
+        add(WORLD_WIDTH/2 - 200, WORLD_WIDTH/2 - 200, 200, 200, 400, 20, ObjectType.PLATFORM);
+
+        // Team zone platforms, on each side
+        for (int i = 0; i < 5 * scale; i++) {
+            add(100, WORLD_WIDTH/2 - 300, 150, WORLD_HEIGHT - 200, rng.random(80, 180), 20, ObjectType.PLATFORM);
+        }
+        for (int i = 0; i < 5 * scale; i++) {
+            add(WORLD_WIDTH/2 + 300, WORLD_WIDTH - 200, 150, WORLD_HEIGHT - 200, rng.random(80, 180), 20,
+                ObjectType.PLATFORM);
+        }
+
+        // Cover scattered over both sides
+        for (int i = 0; i < 20 * scale; i++) {
+            float width = rng.random(30, 60);
+            float height = rng.random(50, 90);
+            if (rng.randomBoolean()) {
+                add(100, WORLD_WIDTH/2 - 100, 100, WORLD_HEIGHT - 200, width, height, ObjectType.COVER);
+            } else {
+                add(WORLD_WIDTH/2 + 100, WORLD_WIDTH - 100, 100, WORLD_HEIGHT - 200, width, height, ObjectType.COVER);
+            }
+        }
+
+        // Barriers in no-man's land
+        for (int i = 0; i < 10 * scale; i++) {
+            add(WORLD_WIDTH/2 - 300, WORLD_WIDTH/2 + 300, 100, WORLD_HEIGHT - 200, rng.random(40, 80),
+                rng.random(60, 120), ObjectType.BARRIER);
+        }
+
+        // Circular obstacles throughout
+        for (int i = 0; i < 30 * scale; i++) {
+            float size = rng.random(20, 50);
+            add(100, WORLD_WIDTH - 100, 100, WORLD_HEIGHT - 100, size, size, ObjectType.OBSTACLE);
+        }
+        return map;
+    }
+
+    private void add(float minX, float maxX, float minY, float maxY, float width, float height, ObjectType type) {
+        if (place(minX, maxX, minY, maxY, width, height)) map.add(spotX, spotY, width, height, type);
+    }
+
+    // Finds a spot for a box clear of everything placed so far, leaves it in spotX and spotY and marks it taken
+    private boolean place(float minX, float maxX, float minY, float maxY, float width, float height) {
+        for (int attempt = 0; attempt < PLACEMENT_TRIES; attempt++) {
+            float x = rng.random(minX, maxX);
+            float y = rng.random(minY, maxY);
+            if (taken.anyBlocked(x - MARGIN, y - MARGIN, width + 2 * MARGIN, height + 2 * MARGIN)) continue;
+            taken.block(x, y, width, height);
+            spotX = x;
+            spotY = y;
+            return true;
+        }
+        return false;
+    }
+
+    // Whether the layout's navigation, as a match built it, gets everyone everywhere they need to be
+    private static boolean playable(GameMap map, Match match) {
+        Navigation navigation = match.navigation;
+        if (navigation.reachableShare() < MIN_REACHABLE) return false;
+        if (spawnRoom(navigation, 100, WORLD_WIDTH/2 - 400) < MIN_SPAWN_ROOM) return false;
+        if (spawnRoom(navigation, WORLD_WIDTH/2 + 400, WORLD_WIDTH - 100) < MIN_SPAWN_ROOM) return false;
+        for (int i = 0; i < map.size(); i++) {
+            if (map.type(i) != ObjectType.TELEPORTER) continue;
+            if (!navigation.reachable(map.x(i) + map.width(i)/2, map.y(i) + map.height(i)/2)) return false;
+            // Where players come out of it, as Navigation#addTeleporter has it
+            if (!navigation.reachable(map.x(i) + map.width(i)/2, map.y(i) + map.height(i) + 10 + STICKMAN_HEIGHT/2)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Share of a spawn zone's cells a player can stand in and get out of
+    private static float spawnRoom(Navigation navigation, float minX, float maxX) {
+        int cells = 0, room = 0;
+        for (float y = 100; y < WORLD_HEIGHT - 100; y += Navigation.CELL_SIZE) {
+            for (float x = minX; x < maxX; x += Navigation.CELL_SIZE) {
+                cells++;
+                if (navigation.canStand(x, y, STICKMAN_WIDTH, STICKMAN_HEIGHT)) room++;
+            }
+        }
+        return cells > 0 ? (float)room / cells : 0;
+    }
+}
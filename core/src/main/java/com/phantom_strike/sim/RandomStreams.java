@@ -0,0 +1,77 @@
+package com.phantom_strike.sim;
+
+import com.badlogic.gdx.utils.Array;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Every random number a match uses comes from here. Each subsystem gets its own stream
+ * derived from the match seed, and entities get their own streams per subsystem, so
+ * what one entity draws never depends on how many numbers anything else drew first or
+ * in what order. Two matches with the same seed and inputs therefore play out bit for
+ * bit the same, however their systems are scheduled.
+ */
+public class RandomStreams {
+    /** Map layout. */
+    public static final int WORLD = 0;
+    /** Initial player placement, respawn positions. */
+    public static final int SPAWN = 1;
+    /** Health pack placement. */
+    public static final int PICKUPS = 2;
+    /** Per-entity AI decisions. */
+    public static final int AI = 3;
+    static final int SUBSYSTEMS = 4;
+
+    private final long seed;
+    private final Rng[] subsystems = new Rng[SUBSYSTEMS];
+    private final Array<Rng> aiStreams = new Array<>();
+
+    public RandomStreams(long seed) {
+        this.seed = seed;
+        for (int i = 0; i < SUBSYSTEMS; i++) {
+            subsystems[i] = new Rng(Rng.derive(seed, i));
+        }
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    /** The shared stream of a subsystem. Use only from the thread that runs that subsystem. */
+    public Rng stream(int subsystem) {
+        return subsystems[subsystem];
+    }
+
+    /** Makes sure {@link #ai(int)} can be called for every id below {@code highWater} without allocating. */
+    void ensureEntities(int highWater) {
+        while (aiStreams.size < highWater) {
+            aiStreams.add(new Rng(entitySeed(AI, aiStreams.size)));
+        }
+    }
+
+    /** The AI stream of one entity. Safe to use from whichever thread thinks for it. */
+    Rng ai(int entity) {
+        return aiStreams.get(entity);
+    }
+
+    /** Writes where every stream is. */
+    void save(ByteBuffer out) {
+        for (Rng rng : subsystems) out.putLong(rng.state());
+        out.putInt(aiStreams.size);
+        for (int i = 0; i < aiStreams.size; i++) out.putLong(aiStreams.get(i).state());
+    }
+
+    /** Puts every stream back where {@link #save} found it. */
+    void load(ByteBuffer in) {
+        for (Rng rng : subsystems) rng.setSeed(in.getLong());
+        int entities = in.getInt();
+        ensureEntities(entities);
+        for (int i = 0; i < entities; i++) aiStreams.get(i).setSeed(in.getLong());
+        // Streams made since then start over, as they would have when first needed
+        for (int i = entities; i < aiStreams.size; i++) aiStreams.get(i).setSeed(entitySeed(AI, i));
+    }
+
+    private long entitySeed(int subsystem, int entity) {
+        return Rng.derive(Rng.derive(seed, subsystem), entity);
+    }
+}
@@ -0,0 +1,67 @@
+package com.phantom_strike.sim;
+
+/**
+ * Small seeded random stream with the same helpers as {@code MathUtils.random}. It is the
+ * SplitMix64 generator behind {@link java.util.SplittableRandom}, kept in a plain class
+ * so streams can be reseeded in place and derived from a seed plus any number of salts.
+ * Not thread-safe; give each thread, subsystem or entity its own stream.
+ */
+public final class Rng {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long state;
+
+    public Rng(long seed) {
+        this.state = seed;
+    }
+
+    /** Restarts the stream from a seed. */
+    public void setSeed(long seed) {
+        this.state = seed;
+    }
+
+    /** Where the stream is; {@link #setSeed} with it carries on from here. */
+    long state() {
+        return state;
+    }
+
+    /** A seed for an independent stream, derived from a parent seed and a salt. */
+    public static long derive(long seed, long salt) {
+        return mix64(seed + mix64(salt + GOLDEN_GAMMA) * GOLDEN_GAMMA);
+    }
+
+    public long nextLong() {
+        return mix64(state += GOLDEN_GAMMA);
+    }
+
+    /** Uniform in [0, 1). */
+    public float nextFloat() {
+        return (nextLong() >>> 40) * 0x1.0p-24f;
+    }
+
+    /** Uniform in [min, max). */
+    public float random(float min, float max) {
+        return min + nextFloat() * (max - min);
+    }
+
+    /** Uniform in [min, max], both inclusive. */
+    public int random(int min, int max) {
+        long range = (long)max - min + 1;
+        return min + (int)(((nextLong() >>> 32) * range) >>> 32);
+    }
+
+    public boolean randomBoolean() {
+        return nextLong() < 0;
+    }
+
+    /** True with the given probability. */
+    public boolean randomBoolean(float chance) {
+        return nextFloat() < chance;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
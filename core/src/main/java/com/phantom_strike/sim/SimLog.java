@@ -0,0 +1,13 @@
+package com.phantom_strike.sim;
+
+import com.badlogic.gdx.Gdx;
+
+/** Logging for simulation code, which may run without a libGDX application. */
+final class SimLog {
+    static void debug(String tag, String message) {
+        if (Gdx.app != null) Gdx.app.debug(tag, message);
+    }
+
+    private SimLog() {
+    }
+}
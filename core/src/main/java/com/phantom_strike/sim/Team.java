@@ -0,0 +1,19 @@
+package com.phantom_strike.sim;
+
+/** Team ids as stored in {@link com.phantom_strike.ecs.EntityWorld#team}. */
+public final class Team {
+    public static final byte RED = 0;
+    public static final byte BLUE = 1;
+    public static final int COUNT = 2;
+
+    public static byte other(byte team) {
+        return team == RED ? BLUE : RED;
+    }
+
+    public static String name(byte team) {
+        return team == RED ? "Red" : "Blue";
+    }
+
+    private Team() {
+    }
+}
@@ -0,0 +1,208 @@
+package com.phantom_strike.sim;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Hierarchical timer wheel keyed on simulation ticks. Level 0 has one slot per tick for
+ * the next 256 ticks; each higher level has 64 slots covering 64 times the span of the
+ * level below and is cascaded down when level 0 wraps. Scheduling and cancelling are
+ * O(1), and a tick costs only the timers that are due, so idle entities cost nothing.
+ * <p>
+ * Timers are pooled in primitive arrays and carry an int kind and an int entity, which
+ * are handed to the {@link Listener} when the timer fires.
+ */
+public class TimerWheel {
+    /** Receives due timers. May schedule new timers, including for the next tick. */
+    public interface Listener {
+        void onTimer(int kind, int entity);
+    }
+
+    private static final int LEVEL0_BITS = 8;
+    private static final int LEVEL_BITS = 6;
+    private static final int LEVELS = 4;
+    private static final int LEVEL0_SLOTS = 1 << LEVEL0_BITS;
+    private static final int LEVEL_SLOTS = 1 << LEVEL_BITS;
+    /** Longest delay the wheel can hold; longer delays are clamped. */
+    public static final long MAX_DELAY = (1L << (LEVEL0_BITS + LEVEL_BITS * (LEVELS - 1))) - 1;
+
+    private static final int CANCELLED = Integer.MIN_VALUE;
+
+    private final Listener listener;
+    private final int[] heads = new int[LEVEL0_SLOTS + LEVEL_SLOTS * (LEVELS - 1)];
+    private long now;
+    private int pending;
+
+    // Timer pool; free timers are chained through next
+    private long[] due = new long[64];
+    private int[] kind = new int[64];
+    private int[] entity = new int[64];
+    private int[] generation = new int[64];
+    private int[] next = new int[64];
+    private int free = -1;
+    private int allocated;
+
+    public TimerWheel(Listener listener) {
+        this.listener = listener;
+        Arrays.fill(heads, -1);
+    }
+
+    /** The tick the wheel has advanced to. */
+    public long now() {
+        return now;
+    }
+
+    /** Number of scheduled timers, including cancelled ones that have not been reclaimed yet. */
+    public int pending() {
+        return pending;
+    }
+
+    /**
+     * Schedules a timer {@code delayTicks} from now (at least one tick) and returns a
+     * handle for {@link #cancel(long)}.
+     */
+    public long schedule(long delayTicks, int kind, int entity) {
+        long delay = Math.max(1, Math.min(delayTicks, MAX_DELAY));
+        int t = allocate();
+        due[t] = now + delay;
+        this.kind[t] = kind;
+        this.entity[t] = entity;
+        insert(t);
+        pending++;
+        return ((long)generation[t] << 32) | t;
+    }
+
+    /** Cancels a timer if it has not fired yet. Stale handles are ignored. */
+    public void cancel(long handle) {
+        int t = (int)handle;
+        if (t < 0 || t >= allocated || generation[t] != (int)(handle >>> 32)) return;
+        kind[t] = CANCELLED;
+    }
+
+    /** Drops every timer without firing it. The tick counter keeps running. */
+    public void clear() {
+        for (int i = 0; i < heads.length; i++) {
+            int t = heads[i];
+            while (t >= 0) {
+                int n = next[t];
+                release(t);
+                t = n;
+            }
+            heads[i] = -1;
+        }
+        pending = 0;
+    }
+
+    /** Advances one tick and fires every timer due on it. */
+    public void advance() {
+        now++;
+        int slot0 = (int)(now & (LEVEL0_SLOTS - 1));
+        if (slot0 == 0) cascade(1);
+
+        int t = heads[slot0];
+        heads[slot0] = -1;
+        while (t >= 0) {
+            int n = next[t];
+            int k = kind[t];
+            int e = entity[t];
+            release(t);
+            pending--;
+            if (k != CANCELLED) listener.onTimer(k, e);
+            t = n;
+        }
+    }
+
+    /** Writes every timer, so {@link #load} brings back a wheel that fires and hands out handles the same. */
+    public void save(ByteBuffer out) {
+        out.putLong(now);
+        out.putInt(pending);
+        out.putInt(free);
+        out.putInt(allocated);
+        for (int head : heads) out.putInt(head);
+        for (int t = 0; t < allocated; t++) {
+            out.putLong(due[t]);
+            out.putInt(kind[t]);
+            out.putInt(entity[t]);
+            out.putInt(generation[t]);
+            out.putInt(next[t]);
+        }
+    }
+
+    /** Replaces every timer with what {@link #save} wrote. */
+    public void load(ByteBuffer in) {
+        now = in.getLong();
+        pending = in.getInt();
+        free = in.getInt();
+        int count = in.getInt();
+        for (int i = 0; i < heads.length; i++) heads[i] = in.getInt();
+        if (due.length < count) grow(count);
+        allocated = count;
+        for (int t = 0; t < count; t++) {
+            due[t] = in.getLong();
+            kind[t] = in.getInt();
+            entity[t] = in.getInt();
+            generation[t] = in.getInt();
+            next[t] = in.getInt();
+        }
+    }
+
+    // Moves the current slot of a higher level down, cascading further levels first when they wrap
+    private void cascade(int level) {
+        int shift = LEVEL0_BITS + LEVEL_BITS * (level - 1);
+        int index = (int)((now >>> shift) & (LEVEL_SLOTS - 1));
+        if (index == 0 && level + 1 < LEVELS) cascade(level + 1);
+
+        int head = LEVEL0_SLOTS + LEVEL_SLOTS * (level - 1) + index;
+        int t = heads[head];
+        heads[head] = -1;
+        while (t >= 0) {
+            int n = next[t];
+            if (kind[t] == CANCELLED) {
+                release(t);
+                pending--;
+            } else {
+                insert(t);
+            }
+            t = n;
+        }
+    }
+
+    private void insert(int t) {
+        long delta = due[t] - now;
+        int head;
+        if (delta < LEVEL0_SLOTS) {
+            head = (int)(due[t] & (LEVEL0_SLOTS - 1));
+        } else {
+            int level = 1;
+            while (level < LEVELS - 1 && delta >= 1L << (LEVEL0_BITS + LEVEL_BITS * level)) level++;
+            int shift = LEVEL0_BITS + LEVEL_BITS * (level - 1);
+            head = LEVEL0_SLOTS + LEVEL_SLOTS * (level - 1) + (int)((due[t] >>> shift) & (LEVEL_SLOTS - 1));
+        }
+        next[t] = heads[head];
+        heads[head] = t;
+    }
+
+    private int allocate() {
+        if (free >= 0) {
+            int t = free;
+            free = next[t];
+            return t;
+        }
+        if (allocated == due.length) grow(allocated * 2);
+        return allocated++;
+    }
+
+    private void grow(int size) {
+        due = Arrays.copyOf(due, size);
+        kind = Arrays.copyOf(kind, size);
+        entity = Arrays.copyOf(entity, size);
+        generation = Arrays.copyOf(generation, size);
+        next = Arrays.copyOf(next, size);
+    }
+
+    private void release(int t) {
+        generation[t]++;
+        next[t] = free;
+        free = t;
+    }
+}
@@ -0,0 +1,19 @@
+package com.phantom_strike.sim;
+
+/**
+ * Something an AI agent can do, scored from its {@link Blackboard}. On every think the
+ * agent runs whichever action scores highest, with a small bonus for the one it is
+ * already doing so it doesn't flip between two close options.
+ */
+abstract class UtilityAction {
+    final String name;
+
+    UtilityAction(String name) {
+        this.name = name;
+    }
+
+    /** How much the agent wants to do this right now, usually 0 to 1. */
+    abstract float score(int agent, Blackboard blackboard);
+
+    abstract void act(int agent, Blackboard blackboard);
+}
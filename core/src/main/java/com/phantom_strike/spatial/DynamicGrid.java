@@ -0,0 +1,171 @@
+package com.phantom_strike.spatial;
+
+import com.badlogic.gdx.utils.IntArray;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid of moving entities. Each entity is in exactly one cell, and a
+ * {@link Listener} hears about it only when that cell changes, so anything built on top
+ * pays for crossings rather than for every entity on every update. Positions outside
+ * the grid count as being in the nearest edge cell.
+ * <p>
+ * {@link #nearest} finds the entity closest to a point a ring of cells at a time, so it
+ * looks at the entities around the point rather than at all of them.
+ */
+public class DynamicGrid {
+    /** Told when an entity enters, leaves or changes cell. */
+    public interface Listener {
+        /** {@code from} is -1 for a newly added entity, {@code to} is -1 for a removed one. */
+        void moved(int entity, int from, int to);
+    }
+
+    private final float cellSize;
+    private final int columns;
+    private final int rows;
+    private final IntArray[] cells;
+    private int[] cellOf = new int[0];  // entity -> cell, or -1
+    private int[] slotOf = new int[0];  // entity -> index in its cell
+    private int size;
+    private Listener listener;
+
+    public DynamicGrid(float worldWidth, float worldHeight, float cellSize) {
+        this.cellSize = cellSize;
+        this.columns = Math.max(1, (int)Math.ceil(worldWidth / cellSize));
+        this.rows = Math.max(1, (int)Math.ceil(worldHeight / cellSize));
+        this.cells = new IntArray[columns * rows];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new IntArray(false, 8);
+        }
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public float cellSize() {
+        return cellSize;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    /** Adds the entity or moves it to the cell containing (x, y). */
+    public void move(int entity, float x, float y) {
+        int to = cellAt(x, y);
+        int from = cellOf(entity);
+        if (from == to) return;
+        if (entity >= cellOf.length) grow(Math.max(entity + 1, cellOf.length * 2));
+        if (from >= 0) unlink(entity, from);
+        else size++;
+        IntArray cell = cells[to];
+        cellOf[entity] = to;
+        slotOf[entity] = cell.size;
+        cell.add(entity);
+        if (listener != null) listener.moved(entity, from, to);
+    }
+
+    public void remove(int entity) {
+        int from = cellOf(entity);
+        if (from < 0) return;
+        unlink(entity, from);
+        size--;
+        cellOf[entity] = -1;
+        if (listener != null) listener.moved(entity, from, -1);
+    }
+
+    /** Entities in the grid. */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The entity closest to (x, y), with entity positions read from {@code xs} and
+     * {@code ys}, or -1 if the grid is empty. Positions must be the ones the entities were
+     * last moved to. Ties go to the lowest entity, so the answer doesn't depend on the
+     * order entities came and went in.
+     */
+    public int nearest(float x, float y, float[] xs, float[] ys) {
+        if (size == 0) return -1;
+        int column = column(x);
+        int row = row(y);
+        int closest = -1;
+        float closestDistance = Float.MAX_VALUE;
+        for (int ring = 0; ring < Math.max(columns, rows); ring++) {
+            // Anything in this ring or beyond has ring - 1 whole cells between it and (x, y).
+            // Only strictly closer stops the search: one at exactly the gap could tie and win on id
+            float gap = (ring - 1) * cellSize;
+            if (closest >= 0 && ring > 0 && closestDistance < gap * gap) break;
+            for (int r = Math.max(0, row - ring); r <= Math.min(rows - 1, row + ring); r++) {
+                // Whole rows along the top and bottom of the ring, the two end cells in between
+                boolean edge = r == row - ring || r == row + ring;
+                for (int c = column - ring; c <= column + ring; c += edge ? 1 : 2 * ring) {
+                    if (c < 0 || c >= columns) continue;
+                    IntArray members = cells[cell(c, r)];
+                    for (int i = 0; i < members.size; i++) {
+                        int entity = members.items[i];
+                        float dx = xs[entity] - x;
+                        float dy = ys[entity] - y;
+                        float distance = dx * dx + dy * dy;
+                        if (distance < closestDistance || distance == closestDistance && entity < closest) {
+                            closest = entity;
+                            closestDistance = distance;
+                        }
+                    }
+                }
+            }
+        }
+        return closest;
+    }
+
+    /** The entity's cell, or -1 if it isn't in the grid. */
+    public int cellOf(int entity) {
+        return entity < cellOf.length ? cellOf[entity] : -1;
+    }
+
+    /** Entities in a cell. Don't modify. */
+    public IntArray entities(int cell) {
+        return cells[cell];
+    }
+
+    public int cellAt(float x, float y) {
+        return cell(column(x), row(y));
+    }
+
+    public int cell(int column, int row) {
+        return row * columns + column;
+    }
+
+    /** Column containing {@code x}, clamped to the grid. */
+    public int column(float x) {
+        return Math.max(0, Math.min(columns - 1, (int)Math.floor(x / cellSize)));
+    }
+
+    /** Row containing {@code y}, clamped to the grid. */
+    public int row(float y) {
+        return Math.max(0, Math.min(rows - 1, (int)Math.floor(y / cellSize)));
+    }
+
+    private void unlink(int entity, int cell) {
+        // Swap the last member into the gap
+        IntArray members = cells[cell];
+        int slot = slotOf[entity];
+        int last = members.pop();
+        if (last != entity) {
+            members.set(slot, last);
+            slotOf[last] = slot;
+        }
+    }
+
+    private void grow(int capacity) {
+        int old = cellOf.length;
+        cellOf = Arrays.copyOf(cellOf, capacity);
+        slotOf = Arrays.copyOf(slotOf, capacity);
+        Arrays.fill(cellOf, old, capacity, -1);
+    }
+}
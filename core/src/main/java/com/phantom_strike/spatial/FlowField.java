@@ -0,0 +1,317 @@
+package com.phantom_strike.spatial;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Distance-to-goal field over the cells of a {@link StaticGeometryGrid}, for steering any
+ * number of agents toward the same goals with one lookup each. Distances are breadth-first
+ * step counts through open cells; portals let a path continue from an exit cell back to
+ * its entrance cells at the cost of one step.
+ * <p>
+ * Stepping into an entrance cell means going through its portal, so walking paths never
+ * pass through one: an entrance cell is only as close to a goal as its exit, and agents
+ * head into one only when its exit is strictly closer than anywhere they could walk to.
+ * Portals are indexed by cell, so lookups cost the same however many there are.
+ * <p>
+ * Goals are reference counted per cell. Adding goals to a built field only relaxes the
+ * cells that get closer; removing one marks the field dirty, and {@link #update()}
+ * rebuilds it. Lookups are read-only and may run on several threads at once.
+ */
+public class FlowField {
+    /** Distance of cells no goal can be reached from. */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private static final int[] NEIGHBOR_X = {1, -1, 0, 0, 1, 1, -1, -1};
+    private static final int[] NEIGHBOR_Y = {0, 0, 1, -1, 1, -1, 1, -1};
+
+    private final StaticGeometryGrid grid;
+    private final int columns;
+    private final int[] distance;
+    private final int[] goalRefs;
+    private final int[] queue;
+    private boolean built;
+    private boolean dirty;
+
+    // Portals: every cell of an entrance rectangle leads to one exit cell
+    private final int[] portalAt;    // cell -> portal whose entrance it is, or -1
+    private final int[] exitFirst;   // cell -> first portal coming out there, or -1
+    private int[] exitNext = new int[4];    // portal -> next portal with the same exit, or -1
+    private int[] portalExit = new int[4];
+    private float[] portalX = new float[4], portalY = new float[4];
+    private int[] entranceStart = new int[5];    // portal -> its first cell in entrances; one past the last portal's
+    private int[] entrances = new int[16];
+    private int portals;
+
+    public FlowField(StaticGeometryGrid grid) {
+        this.grid = grid;
+        this.columns = grid.columns();
+        int cells = columns * grid.rows();
+        distance = new int[cells];
+        goalRefs = new int[cells];
+        queue = new int[cells];
+        portalAt = new int[cells];
+        exitFirst = new int[cells];
+        Arrays.fill(distance, UNREACHABLE);
+        Arrays.fill(portalAt, -1);
+        Arrays.fill(exitFirst, -1);
+    }
+
+    /**
+     * Adds a one-way portal: an agent touching the entrance rectangle comes out at
+     * (exitX, exitY). Lookups that lead into it steer toward the rectangle's center. A
+     * cell that two entrances touch belongs to the one added first.
+     */
+    public void addPortal(float x, float y, float width, float height, float exitX, float exitY) {
+        int exit = cellAt(exitX, exitY);
+        if (exit < 0) return;
+        float size = grid.cellSize();
+        int minX = Math.max(0, (int)Math.floor(x / size));
+        int minY = Math.max(0, (int)Math.floor(y / size));
+        int maxX = Math.min(columns - 1, (int)Math.floor((x + width) / size));
+        int maxY = Math.min(grid.rows() - 1, (int)Math.floor((y + height) / size));
+        if (portals + 1 == portalExit.length) growPortals(portals * 2 + 2);
+        int portal = portals++;
+        int count = entranceStart[portal];
+        for (int cy = minY; cy <= maxY; cy++) {
+            for (int cx = minX; cx <= maxX; cx++) {
+                int cell = cy * columns + cx;
+                if (portalAt[cell] >= 0) continue;
+                if (count == entrances.length) entrances = Arrays.copyOf(entrances, count * 2);
+                entrances[count++] = cell;
+                portalAt[cell] = portal;
+            }
+        }
+        entranceStart[portal + 1] = count;
+        portalExit[portal] = exit;
+        portalX[portal] = x + width / 2;
+        portalY[portal] = y + height / 2;
+        exitNext[portal] = exitFirst[exit];
+        exitFirst[exit] = portal;
+        dirty = true;
+    }
+
+    private void growPortals(int capacity) {
+        exitNext = Arrays.copyOf(exitNext, capacity);
+        portalExit = Arrays.copyOf(portalExit, capacity);
+        portalX = Arrays.copyOf(portalX, capacity);
+        portalY = Arrays.copyOf(portalY, capacity);
+        entranceStart = Arrays.copyOf(entranceStart, capacity + 1);
+    }
+
+    /** Makes every open cell the rectangle touches a goal. */
+    public void addGoal(float x, float y, float width, float height) {
+        changeGoal(x, y, width, height, 1);
+    }
+
+    /** Undoes a matching {@link #addGoal}. */
+    public void removeGoal(float x, float y, float width, float height) {
+        changeGoal(x, y, width, height, -1);
+    }
+
+    private void changeGoal(float x, float y, float width, float height, int delta) {
+        float size = grid.cellSize();
+        int minX = Math.max(0, (int)Math.floor(x / size));
+        int minY = Math.max(0, (int)Math.floor(y / size));
+        int maxX = Math.min(columns - 1, (int)Math.floor((x + width) / size));
+        int maxY = Math.min(grid.rows() - 1, (int)Math.floor((y + height) / size));
+        int head = 0, tail = 0;
+        for (int cy = minY; cy <= maxY; cy++) {
+            for (int cx = minX; cx <= maxX; cx++) {
+                int cell = cy * columns + cx;
+                goalRefs[cell] += delta;
+                if (delta < 0) {
+                    if (goalRefs[cell] == 0) dirty = true;
+                } else if (built && !dirty && distance[cell] > 0 && !grid.isBlocked(cx, cy)) {
+                    distance[cell] = 0;
+                    queue[tail++] = cell;
+                }
+            }
+        }
+        // A new goal only ever shortens paths, so spreading out from it is enough
+        if (tail > head) propagate(head, tail);
+    }
+
+    /** Forces a rebuild on the next {@link #update()}, for when the grid's blocked cells change. */
+    public void invalidate() {
+        dirty = true;
+    }
+
+    /** Rebuilds the field if it was invalidated, lost a goal or gained a portal since it was last built. */
+    public void update() {
+        if (built && !dirty) return;
+        Arrays.fill(distance, UNREACHABLE);
+        int tail = 0;
+        for (int cell = 0; cell < distance.length; cell++) {
+            if (goalRefs[cell] > 0 && !grid.isBlocked(cell % columns, cell / columns)) {
+                distance[cell] = 0;
+                queue[tail++] = cell;
+            }
+        }
+        propagate(0, tail);
+        built = true;
+        dirty = false;
+    }
+
+    // Breadth-first from the queued cells, lowering distances as it goes
+    private void propagate(int head, int tail) {
+        int n = queue.length;
+        while (head != tail) {
+            int cell = queue[head];
+            head = head + 1 == n ? 0 : head + 1;
+            int next = distance[cell] + 1;
+            int cx = cell % columns;
+            int cy = cell / columns;
+            for (int i = 0; i < 4; i++) {
+                int nx = cx + NEIGHBOR_X[i];
+                int ny = cy + NEIGHBOR_Y[i];
+                if (nx < 0 || ny < 0 || nx >= columns || ny >= grid.rows() || grid.isBlocked(nx, ny)) continue;
+                int neighbor = ny * columns + nx;
+                // Nobody walks on from an entrance cell; they go through its portal
+                if (portalAt[neighbor] >= 0) continue;
+                if (distance[neighbor] > next) {
+                    distance[neighbor] = next;
+                    queue[tail] = neighbor;
+                    tail = tail + 1 == n ? 0 : tail + 1;
+                }
+            }
+            // Walking into an entrance that comes out here is one step as well
+            for (int portal = exitFirst[cell]; portal >= 0; portal = exitNext[portal]) {
+                for (int i = entranceStart[portal]; i < entranceStart[portal + 1]; i++) {
+                    int entrance = entrances[i];
+                    if (distance[entrance] <= next || grid.isBlocked(entrance % columns, entrance / columns)) continue;
+                    distance[entrance] = next;
+                    queue[tail] = entrance;
+                    tail = tail + 1 == n ? 0 : tail + 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes goals, portals and distances, so {@link #load} on a field over an identical
+     * grid gets the same field without building it.
+     */
+    public void save(ByteBuffer out) {
+        out.put((byte)((built ? 1 : 0) | (dirty ? 2 : 0)));
+        putInts(out, distance, distance.length);
+        putInts(out, goalRefs, goalRefs.length);
+        out.putInt(portals);
+        putInts(out, portalExit, portals);
+        putInts(out, entranceStart, portals + 1);
+        putInts(out, entrances, entranceStart[portals]);
+        for (int i = 0; i < portals; i++) {
+            out.putFloat(portalX[i]);
+            out.putFloat(portalY[i]);
+        }
+    }
+
+    public void load(ByteBuffer in) {
+        int flags = in.get();
+        built = (flags & 1) != 0;
+        dirty = (flags & 2) != 0;
+        getInts(in, distance, distance.length);
+        getInts(in, goalRefs, goalRefs.length);
+        portals = in.getInt();
+        if (portals + 1 > portalExit.length) growPortals(portals + 1);
+        getInts(in, portalExit, portals);
+        getInts(in, entranceStart, portals + 1);
+        int count = entranceStart[portals];
+        if (count > entrances.length) entrances = new int[count];
+        getInts(in, entrances, count);
+        for (int i = 0; i < portals; i++) {
+            portalX[i] = in.getFloat();
+            portalY[i] = in.getFloat();
+        }
+        // The by-cell indexes follow from the portals
+        Arrays.fill(portalAt, -1);
+        Arrays.fill(exitFirst, -1);
+        for (int portal = 0; portal < portals; portal++) {
+            for (int i = entranceStart[portal]; i < entranceStart[portal + 1]; i++) portalAt[entrances[i]] = portal;
+            exitNext[portal] = exitFirst[portalExit[portal]];
+            exitFirst[portalExit[portal]] = portal;
+        }
+    }
+
+    // Bulk copies through an int view, which is much faster than an int at a time
+    private static void putInts(ByteBuffer out, int[] values, int count) {
+        out.asIntBuffer().put(values, 0, count);
+        out.position(out.position() + count * 4);
+    }
+
+    private static void getInts(ByteBuffer in, int[] values, int count) {
+        in.asIntBuffer().get(values, 0, count);
+        in.position(in.position() + count * 4);
+    }
+
+    public int cellAt(float x, float y) {
+        float size = grid.cellSize();
+        int cx = (int)Math.floor(x / size);
+        int cy = (int)Math.floor(y / size);
+        if (cx < 0 || cy < 0 || cx >= columns || cy >= grid.rows()) return -1;
+        return cy * columns + cx;
+    }
+
+    public int distance(int cell) {
+        return distance[cell];
+    }
+
+    /**
+     * The cell to head for from (x, y): an open neighbor closer to a goal, or an entrance
+     * cell (the current one or a neighbor) when going through its portal gets strictly
+     * closer than any walk would. Without {@code portals}, for an agent no portal would
+     * take just now, only walking counts. Returns -1 at a goal, on blocked or unreachable
+     * cells, outside the grid and where no walk gets closer.
+     */
+    public int next(float x, float y, boolean portals) {
+        int cell = cellAt(x, y);
+        if (cell < 0) return -1;
+        int d = distance[cell];
+        if (d == 0 || d == UNREACHABLE) return -1;
+
+        int cx = cell % columns;
+        int cy = cell / columns;
+        int best = -1;
+        int bestDistance = d;
+        // Through the portal we're standing in, the exit is what's left
+        int portalCell = portalAt[cell] >= 0 ? cell : -1;
+        int portalDistance = portalCell >= 0 ? distance[portalExit[portalAt[cell]]] : UNREACHABLE;
+        for (int i = 0; i < 8; i++) {
+            int nx = cx + NEIGHBOR_X[i];
+            int ny = cy + NEIGHBOR_Y[i];
+            if (nx < 0 || ny < 0 || nx >= columns || ny >= grid.rows() || grid.isBlocked(nx, ny)) continue;
+            int neighbor = ny * columns + nx;
+            int nd = distance[neighbor];
+            if (portalAt[neighbor] >= 0) {
+                // Only straight into an entrance, and only as a way through its portal
+                if (i < 4 && nd < portalDistance) {
+                    portalCell = neighbor;
+                    portalDistance = nd;
+                }
+                continue;
+            }
+            // Don't cut corners past blocked cells or entrances
+            if (i >= 4 && (grid.isBlocked(nx, cy) || grid.isBlocked(cx, ny)
+                           || portalAt[cy * columns + nx] >= 0 || portalAt[ny * columns + cx] >= 0)) continue;
+            // Diagonals win ties with straight steps since they cover more ground
+            if (nd < bestDistance || (i >= 4 && nd == bestDistance && nd < d)) {
+                best = neighbor;
+                bestDistance = nd;
+            }
+        }
+        int walk = best >= 0 ? bestDistance : UNREACHABLE;
+        return portals && portalCell >= 0 && portalDistance < walk ? portalCell : best;
+    }
+
+    /** X coordinate to steer toward for a cell from {@link #next}: an entrance's portal, or the cell's center. */
+    public float targetX(int cell) {
+        int portal = portalAt[cell];
+        return portal >= 0 ? portalX[portal] : (cell % columns + 0.5f) * grid.cellSize();
+    }
+
+    /** Y coordinate to steer toward for a cell from {@link #next}: an entrance's portal, or the cell's center. */
+    public float targetY(int cell) {
+        int portal = portalAt[cell];
+        return portal >= 0 ? portalY[portal] : (cell / columns + 0.5f) * grid.cellSize();
+    }
+}
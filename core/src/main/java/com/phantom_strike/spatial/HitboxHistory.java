@@ -0,0 +1,231 @@
+package com.phantom_strike.spatial;
+
+import com.badlogic.gdx.utils.IntArray;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Where every hitbox was over the last few ticks, so a hit can be judged against the
+ * world as someone saw it a moment ago. All hitboxes share one size. Each tick is a slot
+ * in a ring of parallel primitive arrays, with its boxes bucketed by the grid cell of
+ * their lower-left corner; a query only reads the cells around it, so rewinding costs
+ * about the same with a thousand players as with ten.
+ * <p>
+ * Record a tick with {@link #begin}, {@link #add} for each box and {@link #end}, then
+ * {@link #query} any tick still held. Nothing allocates once the arrays fit the box count.
+ */
+public class HitboxHistory {
+    private final int ticks;
+    private final int mask;
+    private final float boxWidth;
+    private final float boxHeight;
+    private final float cellSize;
+    private final int columns;
+    private final int rows;
+    private final int cells;
+
+    private final long[] slotTick;
+    private final int[] slotCount;
+    // Per slot, cells + 1 offsets into that slot's boxes, which are sorted by cell
+    private final int[] cellStart;
+    private int capacity;
+    private int[] ids;
+    private float[] xs, ys;
+
+    // The tick being recorded, before it is sorted into its slot
+    private long recording = -1;
+    private int staged;
+    private int[] stagedIds = new int[0];
+    private float[] stagedXs = new float[0], stagedYs = new float[0];
+    private int[] stagedCells = new int[0];
+    private final int[] cursor;
+
+    /** @param ticks how many ticks are kept; rounded up to a power of two */
+    public HitboxHistory(int ticks, float boxWidth, float boxHeight, float worldWidth, float worldHeight,
+                         float cellSize) {
+        this.ticks = Integer.highestOneBit(Math.max(1, ticks - 1)) << 1;
+        this.mask = this.ticks - 1;
+        this.boxWidth = boxWidth;
+        this.boxHeight = boxHeight;
+        this.cellSize = cellSize;
+        this.columns = Math.max(1, (int)Math.ceil(worldWidth / cellSize));
+        this.rows = Math.max(1, (int)Math.ceil(worldHeight / cellSize));
+        this.cells = columns * rows;
+        slotTick = new long[this.ticks];
+        slotCount = new int[this.ticks];
+        cellStart = new int[this.ticks * (cells + 1)];
+        cursor = new int[cells];
+        clear();
+    }
+
+    /** Forgets every recorded tick. */
+    public void clear() {
+        Arrays.fill(slotTick, -1);
+        recording = -1;
+    }
+
+    /** Starts recording a tick; it replaces whatever the ring held {@link #ticks()} ticks ago. */
+    public void begin(long tick) {
+        recording = tick;
+        staged = 0;
+    }
+
+    /** Adds the box whose lower-left corner is at ({@code x}, {@code y}) to the tick being recorded. */
+    public void add(int id, float x, float y) {
+        if (staged == stagedIds.length) {
+            int size = Math.max(64, staged * 2);
+            stagedIds = Arrays.copyOf(stagedIds, size);
+            stagedXs = Arrays.copyOf(stagedXs, size);
+            stagedYs = Arrays.copyOf(stagedYs, size);
+            stagedCells = Arrays.copyOf(stagedCells, size);
+        }
+        stagedIds[staged] = id;
+        stagedXs[staged] = x;
+        stagedYs[staged] = y;
+        stagedCells[staged] = cell(column(x), row(y));
+        staged++;
+    }
+
+    /** Sorts the recorded boxes into their slot by cell. */
+    public void end() {
+        if (staged > capacity) grow(Math.max(staged, capacity * 2));
+        int slot = (int)(recording & mask);
+        int starts = slot * (cells + 1);
+        int base = slot * capacity;
+
+        // Counting sort: count per cell, turn counts into offsets, then scatter
+        Arrays.fill(cellStart, starts, starts + cells + 1, 0);
+        for (int i = 0; i < staged; i++) {
+            cellStart[starts + stagedCells[i] + 1]++;
+        }
+        for (int c = 0; c < cells; c++) {
+            cellStart[starts + c + 1] += cellStart[starts + c];
+        }
+        System.arraycopy(cellStart, starts, cursor, 0, cells);
+        for (int i = 0; i < staged; i++) {
+            int at = base + cursor[stagedCells[i]]++;
+            ids[at] = stagedIds[i];
+            xs[at] = stagedXs[i];
+            ys[at] = stagedYs[i];
+        }
+        slotTick[slot] = recording;
+        slotCount[slot] = staged;
+        recording = -1;
+    }
+
+    /** Writes every tick held, boxes in the order queries return them. Not while a tick is being recorded. */
+    public void save(ByteBuffer out) {
+        for (int slot = 0; slot < ticks; slot++) {
+            out.putLong(slotTick[slot]);
+            if (slotTick[slot] < 0) continue;
+            out.putInt(slotCount[slot]);
+            for (int i = slot * capacity, end = i + slotCount[slot]; i < end; i++) {
+                out.putInt(ids[i]);
+                out.putFloat(xs[i]);
+                out.putFloat(ys[i]);
+            }
+        }
+    }
+
+    /** Replaces the history with what {@link #save} wrote from one of the same size. */
+    public void load(ByteBuffer in) {
+        recording = -1;
+        for (int slot = 0; slot < ticks; slot++) {
+            slotTick[slot] = in.getLong();
+            if (slotTick[slot] < 0) continue;
+            int count = in.getInt();
+            if (count > capacity) grow(Math.max(count, capacity * 2));
+            slotCount[slot] = count;
+            // Boxes come sorted by cell, so the offsets are their running counts
+            int starts = slot * (cells + 1);
+            Arrays.fill(cellStart, starts, starts + cells + 1, 0);
+            for (int i = slot * capacity, end = i + count; i < end; i++) {
+                ids[i] = in.getInt();
+                xs[i] = in.getFloat();
+                ys[i] = in.getFloat();
+                cellStart[starts + cell(column(xs[i]), row(ys[i])) + 1]++;
+            }
+            for (int c = 0; c < cells; c++) {
+                cellStart[starts + c + 1] += cellStart[starts + c];
+            }
+        }
+    }
+
+    /** Whether {@code tick} is still held. */
+    public boolean has(long tick) {
+        return tick >= 0 && slotTick[(int)(tick & mask)] == tick;
+    }
+
+    /** Number of ticks the ring holds. */
+    public int ticks() {
+        return ticks;
+    }
+
+    /**
+     * Adds to {@code out} every box recorded at {@code tick} that may overlap the rectangle
+     * from ({@code minX}, {@code minY}) to ({@code maxX}, {@code maxY}). Results are record
+     * indices for {@link #id}, {@link #x} and {@link #y}; the exact test is the caller's.
+     */
+    public void query(long tick, float minX, float minY, float maxX, float maxY, IntArray out) {
+        if (!has(tick)) return;
+        int slot = (int)(tick & mask);
+        int starts = slot * (cells + 1);
+        int base = slot * capacity;
+        // Boxes are filed by their lower-left corner, so look that much further down and left
+        int column0 = column(minX - boxWidth), column1 = column(maxX);
+        int row0 = row(minY - boxHeight), row1 = row(maxY);
+        for (int row = row0; row <= row1; row++) {
+            for (int column = column0; column <= column1; column++) {
+                int cell = cell(column, row);
+                for (int i = cellStart[starts + cell]; i < cellStart[starts + cell + 1]; i++) {
+                    int at = base + i;
+                    if (xs[at] <= maxX && xs[at] + boxWidth >= minX
+                        && ys[at] <= maxY && ys[at] + boxHeight >= minY) {
+                        out.add(at);
+                    }
+                }
+            }
+        }
+    }
+
+    public int id(int record) {
+        return ids[record];
+    }
+
+    public float x(int record) {
+        return xs[record];
+    }
+
+    public float y(int record) {
+        return ys[record];
+    }
+
+    private int cell(int column, int row) {
+        return row * columns + column;
+    }
+
+    private int column(float x) {
+        return Math.max(0, Math.min(columns - 1, (int)Math.floor(x / cellSize)));
+    }
+
+    private int row(float y) {
+        return Math.max(0, Math.min(rows - 1, (int)Math.floor(y / cellSize)));
+    }
+
+    // Every slot gets the new capacity; the ones already recorded keep their boxes
+    private void grow(int newCapacity) {
+        int[] newIds = new int[ticks * newCapacity];
+        float[] newXs = new float[ticks * newCapacity];
+        float[] newYs = new float[ticks * newCapacity];
+        for (int slot = 0; slot < ticks && capacity > 0; slot++) {
+            System.arraycopy(ids, slot * capacity, newIds, slot * newCapacity, slotCount[slot]);
+            System.arraycopy(xs, slot * capacity, newXs, slot * newCapacity, slotCount[slot]);
+            System.arraycopy(ys, slot * capacity, newYs, slot * newCapacity, slotCount[slot]);
+        }
+        ids = newIds;
+        xs = newXs;
+        ys = newYs;
+        capacity = newCapacity;
+    }
+}
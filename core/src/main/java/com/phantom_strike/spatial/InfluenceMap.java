@@ -0,0 +1,121 @@
+package com.phantom_strike.spatial;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Low-resolution grid of decaying influence, such as where one team's units have been
+ * lately. Decay is applied through a shared scale factor rather than to every cell, so
+ * a tick costs one multiply plus one add per deposit. Because decay never changes which
+ * cell is highest, the hottest cell and the total on each side of a vertical split line
+ * are kept up to date as deposits come in, and every query is O(1).
+ */
+public class InfluenceMap {
+    // Stored values are real values divided by scale; renormalise before they get too big
+    private static final float MIN_SCALE = 1e-6f;
+
+    private final float cellSize;
+    private final int columns;
+    private final int rows;
+    private final int splitColumn;
+    private final float decay;
+    private final float[] values;
+    private float scale = 1;
+    private final float[] sideTotal = new float[2];
+    private final int[] hottest = {-1, -1};
+
+    /**
+     * @param splitX x coordinate dividing the left side (0) from the right side (1)
+     * @param decay factor applied to every cell on each {@link #decay()}
+     */
+    public InfluenceMap(float worldWidth, float worldHeight, float cellSize, float splitX, float decay) {
+        this.cellSize = cellSize;
+        this.columns = Math.max(1, (int)Math.ceil(worldWidth / cellSize));
+        this.rows = Math.max(1, (int)Math.ceil(worldHeight / cellSize));
+        this.splitColumn = (int)Math.floor(splitX / cellSize);
+        this.decay = decay;
+        this.values = new float[columns * rows];
+    }
+
+    public void clear() {
+        Arrays.fill(values, 0);
+        scale = 1;
+        sideTotal[0] = sideTotal[1] = 0;
+        hottest[0] = hottest[1] = -1;
+    }
+
+    /** Fades every cell by the decay factor. */
+    public void decay() {
+        scale *= decay;
+        if (scale < MIN_SCALE) {
+            for (int i = 0; i < values.length; i++) values[i] *= scale;
+            sideTotal[0] *= scale;
+            sideTotal[1] *= scale;
+            scale = 1;
+        }
+    }
+
+    /** Adds influence to the cell containing the point. Points outside the map are clamped to its edge. */
+    public void deposit(float x, float y, float amount) {
+        int cx = Math.min(columns - 1, Math.max(0, (int)(x / cellSize)));
+        int cy = Math.min(rows - 1, Math.max(0, (int)(y / cellSize)));
+        int cell = cy * columns + cx;
+        float stored = amount / scale;
+        values[cell] += stored;
+
+        int side = cx < splitColumn ? 0 : 1;
+        sideTotal[side] += stored;
+        if (hottest[side] < 0 || values[cell] > values[hottest[side]]) hottest[side] = cell;
+    }
+
+    public void save(ByteBuffer out) {
+        for (float value : values) out.putFloat(value);
+        out.putFloat(scale);
+        out.putFloat(sideTotal[0]);
+        out.putFloat(sideTotal[1]);
+        out.putInt(hottest[0]);
+        out.putInt(hottest[1]);
+    }
+
+    /** Replaces the map with what {@link #save} wrote from one of the same size. */
+    public void load(ByteBuffer in) {
+        for (int i = 0; i < values.length; i++) values[i] = in.getFloat();
+        scale = in.getFloat();
+        sideTotal[0] = in.getFloat();
+        sideTotal[1] = in.getFloat();
+        hottest[0] = in.getInt();
+        hottest[1] = in.getInt();
+    }
+
+    public float at(float x, float y) {
+        int cx = Math.min(columns - 1, Math.max(0, (int)(x / cellSize)));
+        int cy = Math.min(rows - 1, Math.max(0, (int)(y / cellSize)));
+        return values[cy * columns + cx] * scale;
+    }
+
+    /** Total influence on one side of the split, 0 for left and 1 for right. */
+    public float total(int side) {
+        return sideTotal[side] * scale;
+    }
+
+    /** The cell with the most influence on a side, or -1 if nothing was deposited there. */
+    public int hottest(int side) {
+        return hottest[side];
+    }
+
+    public float value(int cell) {
+        return values[cell] * scale;
+    }
+
+    public float cellCenterX(int cell) {
+        return (cell % columns + 0.5f) * cellSize;
+    }
+
+    public float cellCenterY(int cell) {
+        return (cell / columns + 0.5f) * cellSize;
+    }
+
+    public float cellSize() {
+        return cellSize;
+    }
+}
@@ -0,0 +1,107 @@
+package com.phantom_strike.spatial;
+
+import java.util.Arrays;
+
+/**
+ * Static 2-D kd-tree over int ids, stored implicitly in parallel primitive arrays: the
+ * node for a range is its median element, split on x at even depths and y at odd ones.
+ * Rebuild with {@link #clear()}, {@link #add} and {@link #build()} when the point set
+ * changes; {@link #nearest} is then O(log n) on average, allocation-free and safe to
+ * call from several threads at once.
+ */
+public class KdTree {
+    private int[] ids;
+    private float[] xs, ys;
+    private int size;
+
+    public KdTree(int initialCapacity) {
+        int capacity = Math.max(4, initialCapacity);
+        ids = new int[capacity];
+        xs = new float[capacity];
+        ys = new float[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /** Adds a point. Call {@link #build()} once all points are added. */
+    public void add(int id, float x, float y) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            xs = Arrays.copyOf(xs, size * 2);
+            ys = Arrays.copyOf(ys, size * 2);
+        }
+        ids[size] = id;
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+
+    public void build() {
+        build(0, size, 0);
+    }
+
+    /** Returns the id of the point closest to ({@code x}, {@code y}), or -1 when empty. */
+    public int nearest(float x, float y) {
+        int best = search(0, size, 0, x, y, -1);
+        return best < 0 ? -1 : ids[best];
+    }
+
+    private void build(int lo, int hi, int depth) {
+        if (hi - lo <= 1) return;
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, (depth & 1) == 0 ? xs : ys);
+        build(lo, mid, depth + 1);
+        build(mid + 1, hi, depth + 1);
+    }
+
+    private int search(int lo, int hi, int depth, float x, float y, int best) {
+        if (lo >= hi) return best;
+        int mid = (lo + hi) >>> 1;
+        if (best < 0 || distance2(mid, x, y) < distance2(best, x, y)) best = mid;
+
+        float diff = (depth & 1) == 0 ? x - xs[mid] : y - ys[mid];
+        if (diff < 0) {
+            best = search(lo, mid, depth + 1, x, y, best);
+            if (diff * diff < distance2(best, x, y)) best = search(mid + 1, hi, depth + 1, x, y, best);
+        } else {
+            best = search(mid + 1, hi, depth + 1, x, y, best);
+            if (diff * diff < distance2(best, x, y)) best = search(lo, mid, depth + 1, x, y, best);
+        }
+        return best;
+    }
+
+    private float distance2(int i, float x, float y) {
+        float dx = xs[i] - x;
+        float dy = ys[i] - y;
+        return dx * dx + dy * dy;
+    }
+
+    // Quickselect: leaves the k-th smallest key (inclusive range) at k, smaller keys before it
+    private void select(int left, int right, int k, float[] keys) {
+        while (right > left) {
+            int mid = (left + right) >>> 1;
+            float pivot = keys[mid];
+            swap(mid, right);
+            int store = left;
+            for (int i = left; i < right; i++) {
+                if (keys[i] < pivot) swap(i, store++);
+            }
+            swap(store, right);
+            if (store == k) return;
+            if (k < store) right = store - 1;
+            else left = store + 1;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int id = ids[a]; ids[a] = ids[b]; ids[b] = id;
+        float x = xs[a]; xs[a] = xs[b]; xs[b] = x;
+        float y = ys[a]; ys[a] = ys[b]; ys[b] = y;
+    }
+}
@@ -0,0 +1,131 @@
+package com.phantom_strike.spatial;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Uniform grid of cells blocked by static geometry. Rectangles are rasterised
+ * conservatively, so any cell they touch is blocked, and {@link #clearLine} walks the
+ * cells a segment crosses with a DDA (Amanatides and Woo), stopping at the first blocked
+ * one. Read-only after it is built, so it can be shared between threads.
+ */
+public class StaticGeometryGrid {
+    private final float cellSize;
+    private final int columns;
+    private final int rows;
+    private final boolean[] blocked;
+
+    public StaticGeometryGrid(float worldWidth, float worldHeight, float cellSize) {
+        this.cellSize = cellSize;
+        this.columns = Math.max(1, (int)Math.ceil(worldWidth / cellSize));
+        this.rows = Math.max(1, (int)Math.ceil(worldHeight / cellSize));
+        this.blocked = new boolean[columns * rows];
+    }
+
+    public float cellSize() {
+        return cellSize;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public void clear() {
+        Arrays.fill(blocked, false);
+    }
+
+    /** Blocks every cell the rectangle touches. Parts outside the grid are ignored. */
+    public void block(float x, float y, float width, float height) {
+        int minX = Math.max(0, column(x));
+        int minY = Math.max(0, row(y));
+        int maxX = Math.min(columns - 1, column(x + width));
+        int maxY = Math.min(rows - 1, row(y + height));
+        for (int cy = minY; cy <= maxY; cy++) {
+            for (int cx = minX; cx <= maxX; cx++) {
+                blocked[cy * columns + cx] = true;
+            }
+        }
+    }
+
+    /** Writes the blocked cells, one byte each, for {@link #load} into a grid of the same size. */
+    public void save(ByteBuffer out) {
+        out.putInt(columns);
+        out.putInt(rows);
+        for (boolean cell : blocked) out.put(cell ? (byte)1 : 0);
+    }
+
+    public void load(ByteBuffer in) {
+        if (in.getInt() != columns || in.getInt() != rows) throw new IllegalArgumentException("Grid size differs");
+        for (int i = 0; i < blocked.length; i++) blocked[i] = in.get() != 0;
+    }
+
+    /** Whether a cell is blocked. Cells outside the grid never are. */
+    public boolean isBlocked(int cx, int cy) {
+        return cx >= 0 && cy >= 0 && cx < columns && cy < rows && blocked[cy * columns + cx];
+    }
+
+    public boolean isBlockedAt(float x, float y) {
+        return isBlocked(column(x), row(y));
+    }
+
+    /** Whether any cell the rectangle touches is blocked, the same cells {@link #block} would block. */
+    public boolean anyBlocked(float x, float y, float width, float height) {
+        int minX = Math.max(0, column(x));
+        int minY = Math.max(0, row(y));
+        int maxX = Math.min(columns - 1, column(x + width));
+        int maxY = Math.min(rows - 1, row(y + height));
+        for (int cy = minY; cy <= maxY; cy++) {
+            for (int cx = minX; cx <= maxX; cx++) {
+                if (blocked[cy * columns + cx]) return true;
+            }
+        }
+        return false;
+    }
+
+    /** Whether the segment from (x0, y0) to (x1, y1) crosses no blocked cell. */
+    public boolean clearLine(float x0, float y0, float x1, float y1) {
+        int cx = column(x0);
+        int cy = row(y0);
+        int endX = column(x1);
+        int endY = row(y1);
+        if (isBlocked(cx, cy)) return false;
+
+        float dx = x1 - x0;
+        float dy = y1 - y0;
+        int stepX = dx > 0 ? 1 : -1;
+        int stepY = dy > 0 ? 1 : -1;
+
+        // Distance along the segment (0..1) to the next vertical and horizontal cell edge,
+        // and how far one whole cell is in each direction
+        float deltaX = dx != 0 ? Math.abs(cellSize / dx) : Float.POSITIVE_INFINITY;
+        float deltaY = dy != 0 ? Math.abs(cellSize / dy) : Float.POSITIVE_INFINITY;
+        float nextX = dx != 0 ? ((dx > 0 ? cx + 1 : cx) * cellSize - x0) / dx : Float.POSITIVE_INFINITY;
+        float nextY = dy != 0 ? ((dy > 0 ? cy + 1 : cy) * cellSize - y0) / dy : Float.POSITIVE_INFINITY;
+
+        // Every step moves one cell closer to the end cell, so this always terminates
+        int steps = Math.abs(endX - cx) + Math.abs(endY - cy);
+        for (int i = 0; i < steps; i++) {
+            if (nextX < nextY) {
+                cx += stepX;
+                nextX += deltaX;
+            } else {
+                cy += stepY;
+                nextY += deltaY;
+            }
+            if (isBlocked(cx, cy)) return false;
+        }
+        return true;
+    }
+
+    private int column(float x) {
+        return (int)Math.floor(x / cellSize);
+    }
+
+    private int row(float y) {
+        return (int)Math.floor(y / cellSize);
+    }
+}
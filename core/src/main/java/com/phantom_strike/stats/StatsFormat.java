@@ -0,0 +1,53 @@
+package com.phantom_strike.stats;
+
+import com.phantom_strike.sim.MatchStats;
+
+/**
+ * Layout of a stats log, shared by {@link StatsLog} and {@link StatsReader}. A log is a
+ * sequence of blocks, each holding up to {@link #BLOCK} events column by column, so a
+ * reader interested in positions never touches the rest. Values are big-endian.
+ * <pre>
+ * block   magic "PSST" (4 bytes), event count (4 bytes), match seed (8 bytes), then the
+ *         columns, count values each:
+ *           tick    4 bytes
+ *           entity  4 bytes
+ *           x       float, 4 bytes
+ *           y       float, 4 bytes
+ *           kind    1 byte, a {@link MatchStats} kind
+ *           team    1 byte
+ * </pre>
+ * Blocks only ever go on the end, so a log can be appended to by later matches, and one
+ * cut short by a crash is readable up to its last whole block.
+ */
+public final class StatsFormat {
+    public static final int MAGIC = 0x50535354;
+    public static final int HEADER_SIZE = 16;
+    /** Most events in a block. */
+    public static final int BLOCK = 4096;
+
+    static final int TICK = 0;
+    static final int ENTITY = 1;
+    static final int X = 2;
+    static final int Y = 3;
+    static final int KIND = 4;
+    static final int TEAM = 5;
+    static final int[] WIDTHS = {4, 4, 4, 4, 1, 1};
+    static final int RECORD_SIZE = 18;
+
+    private static final String[] NAMES = {"shots", "hits", "kills", "pickups", "teleports"};
+
+    private StatsFormat() {
+    }
+
+    /** Name of a {@link MatchStats} kind, plural, as in reports. */
+    public static String name(int kind) {
+        return NAMES[kind];
+    }
+
+    // Where column c of a block of count events starts, after the header
+    static int columnOffset(int c, int count) {
+        int offset = 0;
+        for (int i = 0; i < c; i++) offset += WIDTHS[i] * count;
+        return offset;
+    }
+}
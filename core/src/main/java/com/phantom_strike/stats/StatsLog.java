@@ -0,0 +1,96 @@
+package com.phantom_strike.stats;
+
+import com.phantom_strike.sim.Match;
+import com.phantom_strike.sim.MatchStats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static com.phantom_strike.stats.StatsFormat.*;
+
+/**
+ * Logs a match's events to the end of a file in the {@link StatsFormat}. Each event is a
+ * few absolute puts into a direct buffer laid out as a full block's columns; when the block
+ * fills, one gathering write sends the used part of every column to the file, so the
+ * match thread touches the disk once per {@link StatsFormat#BLOCK} events.
+ * <p>
+ * {@link #close()} it when done. If the disk fails, logging stops quietly and
+ * {@code close()} reports why; a crash loses the events of the block not yet written.
+ */
+public final class StatsLog implements MatchStats, Closeable {
+    private final FileChannel channel;
+    private final long seed;
+    private final ByteBuffer header = ByteBuffer.allocateDirect(HEADER_SIZE);
+    private final ByteBuffer columns = ByteBuffer.allocateDirect(BLOCK * RECORD_SIZE);
+    private final int[] offsets = new int[WIDTHS.length];
+    private final ByteBuffer[] parts = new ByteBuffer[1 + WIDTHS.length];
+    private int count;
+    private long events;
+    private IOException failure;
+    private boolean closed;
+
+    /** Starts logging {@code match}'s events, added to the end of {@code file}. */
+    public StatsLog(Path file, Match match) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                   StandardOpenOption.APPEND);
+        seed = match.getSeed();
+        for (int c = 0; c < offsets.length; c++) offsets[c] = columnOffset(c, BLOCK);
+        parts[0] = header;
+        match.setStats(this);
+    }
+
+    @Override
+    public void event(int kind, long tick, int entity, byte team, float x, float y) {
+        if (closed) return;
+        columns.putInt(offsets[TICK] + count * 4, (int)tick);
+        columns.putInt(offsets[ENTITY] + count * 4, entity);
+        columns.putFloat(offsets[X] + count * 4, x);
+        columns.putFloat(offsets[Y] + count * 4, y);
+        columns.put(offsets[KIND] + count, (byte)kind);
+        columns.put(offsets[TEAM] + count, team);
+        events++;
+        if (++count == BLOCK) flush();
+    }
+
+    /** Writes the events so far as a block, if there are any. */
+    public void flush() {
+        if (count == 0) return;
+        if (failure == null) {
+            header.clear();
+            header.putInt(MAGIC).putInt(count).putLong(seed).flip();
+            long size = HEADER_SIZE;
+            for (int c = 0; c < WIDTHS.length; c++) {
+                ByteBuffer column = columns.duplicate();
+                int start = offsets[c];
+                column.limit(start + WIDTHS[c] * count).position(start);
+                parts[1 + c] = column;
+                size += column.remaining();
+            }
+            try {
+                while (size > 0) size -= channel.write(parts);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        count = 0;
+    }
+
+    /** Events logged so far. */
+    public long getEvents() {
+        return events;
+    }
+
+    /** Writes what's left and closes the file. */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        flush();
+        closed = true;
+        channel.close();
+        if (failure != null) throw failure;
+    }
+}
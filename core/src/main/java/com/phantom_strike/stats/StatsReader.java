@@ -0,0 +1,93 @@
+package com.phantom_strike.stats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static com.phantom_strike.stats.StatsFormat.*;
+
+/**
+ * Reads a stats log a block at a time into one reused buffer, so a log of any size costs
+ * the same memory. {@link #next()} moves to the next block; the event accessors then read
+ * its columns in place.
+ */
+public final class StatsReader implements Closeable {
+    private final FileChannel channel;
+    private final ByteBuffer header = ByteBuffer.allocateDirect(HEADER_SIZE);
+    private final ByteBuffer columns = ByteBuffer.allocateDirect(BLOCK * RECORD_SIZE);
+    private final int[] offsets = new int[WIDTHS.length];
+    private int count;
+    private long seed;
+
+    public StatsReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    /** Reads the next block. Returns false at the end of the log, or where it was cut short. */
+    public boolean next() throws IOException {
+        count = 0;
+        header.clear();
+        if (!fill(header)) return false;
+        header.flip();
+        if (header.getInt() != MAGIC) throw new IOException("Not a stats log");
+        int size = header.getInt();
+        if (size <= 0 || size > BLOCK) throw new IOException("Bad block size " + size);
+        seed = header.getLong();
+        columns.clear().limit(size * RECORD_SIZE);
+        if (!fill(columns)) return false;
+        for (int c = 0; c < offsets.length; c++) offsets[c] = columnOffset(c, size);
+        count = size;
+        return true;
+    }
+
+    // Reads until the buffer is full; false if the file ends first
+    private boolean fill(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) return false;
+        }
+        return true;
+    }
+
+    /** Events in the current block. */
+    public int size() {
+        return count;
+    }
+
+    /** Seed of the match the current block's events are from. */
+    public long getSeed() {
+        return seed;
+    }
+
+    public int tick(int i) {
+        return columns.getInt(offsets[TICK] + i * 4);
+    }
+
+    public int entity(int i) {
+        return columns.getInt(offsets[ENTITY] + i * 4);
+    }
+
+    public float x(int i) {
+        return columns.getFloat(offsets[X] + i * 4);
+    }
+
+    public float y(int i) {
+        return columns.getFloat(offsets[Y] + i * 4);
+    }
+
+    /** A {@link com.phantom_strike.sim.MatchStats} kind. */
+    public int kind(int i) {
+        return columns.get(offsets[KIND] + i);
+    }
+
+    public byte team(int i) {
+        return columns.get(offsets[TEAM] + i);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,26 @@
+package com.phantom_strike.check;
+
+/**
+ * Pass/fail bookkeeping shared by the verification harnesses that Gradle runs as JavaExec
+ * tasks: a line per check, then PASS or how many failed, and an exit status the build
+ * fails on. Lives in core's test fixtures, so none of it ends up in a shipped jar.
+ */
+public final class Checks {
+    private int failures;
+
+    /** Prints {@code what}, marked ok or FAIL, and counts it if it failed. */
+    public void check(boolean ok, String what) {
+        System.out.println((ok ? "ok    " : "FAIL  ") + what);
+        if (!ok) failures++;
+    }
+
+    public int failures() {
+        return failures;
+    }
+
+    /** Prints the verdict and exits, non-zero if any check failed. */
+    public void finish() {
+        System.out.println(failures == 0 ? "PASS" : "FAIL (" + failures + " checks)");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,89 @@
+package com.phantom_strike.headless;
+
+import com.phantom_strike.sim.GameMap;
+import com.phantom_strike.sim.Match;
+import com.phantom_strike.sim.MatchConfig;
+import com.phantom_strike.sim.ProceduralMap;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Generates a map and saves it with its prebuilt index, for {@code --map} on the game,
+ * server and tournament runner. The layout is the one a match would make from the same
+ * seed, with {@code --scale N} times as many objects, or with {@code --procedural} a
+ * {@link ProceduralMap}. Also reports how long starting a match takes on the saved map
+ * against building everything from the objects.
+ * <p>
+ * Options: {@code --seed N}, {@code --scale N}, {@code --procedural} and {@code --out FILE}
+ * (default map.psm).
+ */
+public class MapGenerator {
+    public static void main(String[] args) throws IOException {
+        long seed = 1;
+        int scale = 1;
+        String out = "map.psm";
+        boolean procedural = false;
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("--procedural")) {
+                procedural = true;
+                continue;
+            }
+            if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + option);
+            String value = args[++i];
+            switch (option) {
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--scale": scale = Integer.parseInt(value); break;
+                case "--out": out = value; break;
+                default: throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+
+        Path file = Paths.get(out);
+        long start = System.nanoTime();
+        GameMap map = procedural ? ProceduralMap.generate(seed, scale) : GameMap.generate(seed, scale);
+        map.write(file);
+        double writeMillis = (System.nanoTime() - start) / 1e6;
+        System.out.printf(Locale.ROOT, "Map %s: seed %d, %d objects, %d bytes, id %016x,"
+                          + " generated and indexed in %.1f ms%n", file, seed, map.size(), Files.size(file), map.id(),
+                          writeMillis);
+
+        // Warm up, then time a match start both ways
+        MatchConfig config = new MatchConfig();
+        config.seed = seed;
+        config.humanPlayer = false;
+        for (int i = 0; i < 20; i++) {
+            config.map = unindexed(map);
+            new Match(config);
+            config.map = GameMap.open(file);
+            new Match(config);
+        }
+        config.map = unindexed(map);
+        start = System.nanoTime();
+        new Match(config);
+        double buildMillis = (System.nanoTime() - start) / 1e6;
+        start = System.nanoTime();
+        config.map = GameMap.open(file);
+        double openMillis = (System.nanoTime() - start) / 1e6;
+        new Match(config);
+        double loadMillis = (System.nanoTime() - start) / 1e6;
+        System.out.printf(Locale.ROOT, "Match start: %.2f ms building from the objects, %.2f ms from the file"
+                          + " (%.2f ms of it opening)%n", buildMillis, loadMillis, openMillis);
+    }
+
+    // The same objects with no index, for a match to build its own
+    private static GameMap unindexed(GameMap map) {
+        GameMap copy = new GameMap();
+        for (int i = 0; i < map.size(); i++) {
+            copy.add(map.x(i), map.y(i), map.width(i), map.height(i), map.type(i));
+        }
+        for (int i = 0; i < map.size(); i++) {
+            if (map.link(i) > i) copy.link(i, map.link(i));
+        }
+        return copy;
+    }
+}
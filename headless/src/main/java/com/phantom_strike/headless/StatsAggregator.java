@@ -0,0 +1,178 @@
+package com.phantom_strike.headless;
+
+import com.phantom_strike.sim.GameRules;
+import com.phantom_strike.sim.MatchStats;
+import com.phantom_strike.sim.Team;
+import com.phantom_strike.stats.StatsFormat;
+import com.phantom_strike.stats.StatsReader;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Sums up any number of stats logs ({@link com.phantom_strike.stats.StatsLog}) into per-team
+ * totals, K/D and accuracy, and a heatmap per kind of event over the world. Logs are read a
+ * block at a time, so memory doesn't grow with how much there is.
+ * <p>
+ * Arguments are log files, or directories whose {@code .pss} files are all read. Options:
+ * {@code --cell N} (heatmap cell size in world units, default 100), {@code --out FILE}
+ * for the report and {@code --csv FILE} for every heatmap cell.
+ */
+public class StatsAggregator {
+    // Shading for heatmap cells, from empty to the busiest cell
+    private static final String SHADES = " .:-=+*#%@";
+
+    private final List<Path> logs = new ArrayList<>();
+    private int cell = 100;
+    private String out;
+    private String csv;
+
+    private final long[][] totals = new long[MatchStats.KINDS][Team.COUNT];
+    private int columns;
+    private int rows;
+    private long[][] heat;
+    private final Set<Long> seeds = new HashSet<>();
+    private long events;
+    private long blocks;
+
+    public static void main(String[] args) throws IOException {
+        StatsAggregator aggregator = new StatsAggregator();
+        aggregator.parse(args);
+        aggregator.run();
+    }
+
+    private void parse(String[] args) throws IOException {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (!option.startsWith("--")) {
+                add(Paths.get(option));
+                continue;
+            }
+            if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + option);
+            String value = args[++i];
+            switch (option) {
+                case "--cell": cell = Integer.parseInt(value); break;
+                case "--out": out = value; break;
+                case "--csv": csv = value; break;
+                default: throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+        if (logs.isEmpty()) throw new IllegalArgumentException("No stats logs given");
+    }
+
+    private void add(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            logs.add(path);
+            return;
+        }
+        try (Stream<Path> files = Files.list(path)) {
+            logs.addAll(files.filter(f -> f.toString().endsWith(".pss")).sorted().collect(Collectors.toList()));
+        }
+    }
+
+    private void run() throws IOException {
+        columns = (GameRules.WORLD_WIDTH + cell - 1) / cell;
+        rows = (GameRules.WORLD_HEIGHT + cell - 1) / cell;
+        heat = new long[MatchStats.KINDS][columns * rows];
+        long start = System.nanoTime();
+        for (Path log : logs) {
+            read(log);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        String report = report(seconds);
+        System.out.print(report);
+        if (out != null) Files.write(Paths.get(out), report.getBytes(StandardCharsets.UTF_8));
+        if (csv != null) writeCsv();
+    }
+
+    private void read(Path log) throws IOException {
+        try (StatsReader reader = new StatsReader(log)) {
+            while (reader.next()) {
+                blocks++;
+                seeds.add(reader.getSeed());
+                for (int i = 0; i < reader.size(); i++) {
+                    int kind = reader.kind(i);
+                    int team = reader.team(i);
+                    if (kind < 0 || kind >= MatchStats.KINDS || team < 0 || team >= Team.COUNT) continue;
+                    totals[kind][team]++;
+                    int column = Math.min(columns - 1, Math.max(0, (int)(reader.x(i) / cell)));
+                    int row = Math.min(rows - 1, Math.max(0, (int)(reader.y(i) / cell)));
+                    heat[kind][row * columns + column]++;
+                }
+                events += reader.size();
+            }
+        }
+    }
+
+    private String report(double seconds) {
+        StringBuilder sb = new StringBuilder();
+        line(sb, "Stats: %d logs, %d matches, %d events in %d blocks, read in %.2f s", logs.size(), seeds.size(),
+             events, blocks, seconds);
+        line(sb, "");
+        line(sb, "Team      shots     hits  accuracy    kills   deaths    K/D   pickups  teleports");
+        for (byte team = 0; team < Team.COUNT; team++) {
+            long shots = totals[MatchStats.SHOT][team];
+            // Hits and kills are logged against whoever was hit, so a team's are the other team's
+            long hits = totals[MatchStats.HIT][Team.other(team)];
+            long kills = totals[MatchStats.KILL][Team.other(team)];
+            long deaths = totals[MatchStats.KILL][team];
+            line(sb, "%-6s %8d %8d  %7.1f%% %8d %8d %6.2f  %8d  %9d", Team.name(team), shots, hits,
+                 shots > 0 ? 100.0 * hits / shots : 0, kills, deaths, deaths > 0 ? (double)kills / deaths : kills,
+                 totals[MatchStats.PICKUP][team], totals[MatchStats.TELEPORT][team]);
+        }
+        for (int kind = 0; kind < MatchStats.KINDS; kind++) {
+            heatmap(sb, kind);
+        }
+        return sb.toString();
+    }
+
+    // One character per cell, top row first, shaded by its share of the busiest cell
+    private void heatmap(StringBuilder sb, int kind) {
+        long max = 0;
+        for (long count : heat[kind]) max = Math.max(max, count);
+        line(sb, "");
+        line(sb, "%s heatmap, %d x %d cells of %d, busiest cell %d", StatsFormat.name(kind), columns, rows, cell, max);
+        if (max == 0) return;
+        for (int row = rows - 1; row >= 0; row--) {
+            sb.append('|');
+            for (int column = 0; column < columns; column++) {
+                long count = heat[kind][row * columns + column];
+                int shade = count == 0 ? 0 : 1 + (int)((SHADES.length() - 2) * count / max);
+                sb.append(SHADES.charAt(shade));
+            }
+            sb.append("|\n");
+        }
+    }
+
+    private void writeCsv() throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(csv), StandardCharsets.UTF_8))) {
+            writer.println("kind,column,row,x,y,count");
+            for (int kind = 0; kind < MatchStats.KINDS; kind++) {
+                for (int row = 0; row < rows; row++) {
+                    for (int column = 0; column < columns; column++) {
+                        long count = heat[kind][row * columns + column];
+                        if (count == 0) continue;
+                        writer.printf(Locale.ROOT, "%s,%d,%d,%d,%d,%d%n", StatsFormat.name(kind), column, row,
+                                      column * cell, row * cell, count);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void line(StringBuilder sb, String format, Object... args) {
+        sb.append(String.format(Locale.ROOT, format, args)).append('\n');
+    }
+}
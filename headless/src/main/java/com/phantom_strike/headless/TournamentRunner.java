@@ -0,0 +1,301 @@
+package com.phantom_strike.headless;
+
+import com.phantom_strike.replay.ReplayPlayer;
+import com.phantom_strike.replay.ReplayRecorder;
+import com.phantom_strike.sim.GameMap;
+import com.phantom_strike.sim.GameRules;
+import com.phantom_strike.sim.Match;
+import com.phantom_strike.sim.MatchConfig;
+import com.phantom_strike.sim.ProceduralMap;
+import com.phantom_strike.sim.Rng;
+import com.phantom_strike.stats.StatsLog;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Runs many seeded bot-only matches at once and reports win rates, match lengths and
+ * simulation speed. Every match has its own {@link Match}, and so its own world, timers
+ * and random streams, so matches share nothing and one pool thread per core keeps every
+ * core busy. Match {@code i} is seeded from the base seed and {@code i}, so a tournament
+ * with the same options plays out the same whatever the thread count.
+ * <p>
+ * Options: {@code --matches N}, {@code --threads N}, {@code --seed N}, {@code --players N}
+ * (per team), {@code --max-minutes N} (game time before a match counts as unfinished),
+ * {@code --red-shoot P}, {@code --blue-shoot P}, {@code --defenders SHARE},
+ * {@code --pressure-defenders SHARE}, {@code --map FILE}, {@code --out FILE} and {@code --csv FILE}.
+ * {@code --procedural} plays each match on a {@link ProceduralMap} from its seed.
+ * {@code --record DIR} saves each match as a replay, {@code match-<i>.psr}, and
+ * {@code --replay FILE} plays one back instead of running a tournament, checking that it
+ * goes as recorded. {@code --stats DIR} logs each match's shots, hits, kills, pickups and
+ * teleports to {@code match-<i>.pss}, for {@link StatsAggregator}. {@code --help} lists the options.
+ */
+public class TournamentRunner {
+    private static final String USAGE = String.join("\n",
+        "Usage: TournamentRunner [options]",
+        "       TournamentRunner --replay FILE",
+        "",
+        "  --matches N               matches to play (default 200)",
+        "  --threads N               pool threads (default: one per core)",
+        "  --seed N                  base seed; match i is seeded from it and i (default 1)",
+        "  --players N               players per team",
+        "  --max-minutes N           game time before a match counts as unfinished (default 10)",
+        "  --red-shoot P             red bots' chance to shoot when they can",
+        "  --blue-shoot P            blue bots' chance to shoot when they can",
+        "  --defenders SHARE         base share of each team that defends",
+        "  --pressure-defenders SHARE  extra defender share at full enemy pressure",
+        "  --map FILE                play every match on a saved map",
+        "  --procedural              play each match on a procedural map from its seed",
+        "  --out FILE                also write the report here",
+        "  --csv FILE                write one row per match here",
+        "  --record DIR              save each match as a replay, match-<i>.psr",
+        "  --stats DIR               log each match's events to match-<i>.pss",
+        "  --replay FILE             play a replay back and check it goes as recorded",
+        "  -h, --help                show this and exit",
+        "");
+
+    private int matches = 200;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long seed = 1;
+    private float maxMinutes = 10;
+    private String out;
+    private String csv;
+    private String record;
+    private String replay;
+    private String stats;
+    private boolean procedural;
+    private final MatchConfig template = new MatchConfig();
+
+    /** Outcome of one match. */
+    static final class Result {
+        final int index;
+        final long seed;
+        final String winner;
+        final long ticks;
+        final int redScore;
+        final int blueScore;
+        final long nanos;
+
+        Result(int index, long seed, String winner, long ticks, int redScore, int blueScore, long nanos) {
+            this.index = index;
+            this.seed = seed;
+            this.winner = winner;
+            this.ticks = ticks;
+            this.redScore = redScore;
+            this.blueScore = blueScore;
+            this.nanos = nanos;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        TournamentRunner runner = new TournamentRunner();
+        try {
+            runner.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+        }
+        if (runner.replay != null) {
+            if (!runner.playBack()) System.exit(1);
+        } else {
+            runner.run();
+        }
+    }
+
+    // Throws IllegalArgumentException, with a message for the user, for anything it can't make sense of
+    private void parse(String[] args) {
+        template.humanPlayer = false;
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("--help") || option.equals("-h")) {
+                System.out.print(USAGE);
+                System.exit(0);
+            }
+            if (option.equals("--procedural")) {
+                procedural = true;
+                continue;
+            }
+            if (!option.startsWith("--")) throw new IllegalArgumentException("Unexpected argument " + option);
+            if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + option);
+            String value = args[++i];
+            try {
+                parse(option, value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number for " + option + ": " + value);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Can't read " + value + " for " + option + ": " + e);
+            }
+        }
+        if (matches < 1 || threads < 1) {
+            throw new IllegalArgumentException("--matches and --threads have to be at least 1");
+        }
+    }
+
+    private void parse(String option, String value) throws IOException {
+        switch (option) {
+            case "--matches": matches = Integer.parseInt(value); break;
+            case "--threads": threads = Integer.parseInt(value); break;
+            case "--seed": seed = Long.parseLong(value); break;
+            case "--players": template.playersPerTeam = Integer.parseInt(value); break;
+            case "--max-minutes": maxMinutes = Float.parseFloat(value); break;
+            case "--red-shoot": template.shootChance[0] = Float.parseFloat(value); break;
+            case "--blue-shoot": template.shootChance[1] = Float.parseFloat(value); break;
+            case "--defenders": template.baseDefenderShare = Float.parseFloat(value); break;
+            case "--pressure-defenders": template.pressureDefenderShare = Float.parseFloat(value); break;
+            case "--map": template.map = GameMap.open(Paths.get(value)); break;
+            case "--out": out = value; break;
+            case "--csv": csv = value; break;
+            case "--record": record = value; break;
+            case "--replay": replay = value; break;
+            case "--stats": stats = value; break;
+            default: throw new IllegalArgumentException("Unknown option " + option);
+        }
+    }
+
+    private void run() throws InterruptedException, ExecutionException, IOException {
+        long maxTicks = GameRules.ticks(maxMinutes * 60);
+        if (record != null) Files.createDirectories(Paths.get(record));
+        if (stats != null) Files.createDirectories(Paths.get(stats));
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<ForkJoinTask<Result>> tasks = new ArrayList<>(matches);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < matches; i++) {
+            final int index = i;
+            tasks.add(pool.submit(() -> play(index, maxTicks)));
+        }
+        Result[] results = new Result[matches];
+        for (int i = 0; i < matches; i++) {
+            results[i] = tasks.get(i).get();
+        }
+        long wall = System.nanoTime() - start;
+        pool.shutdown();
+
+        String report = report(results, wall);
+        System.out.print(report);
+        if (out != null) Files.write(Paths.get(out), report.getBytes(StandardCharsets.UTF_8));
+        if (csv != null) writeCsv(results);
+    }
+
+    private Result play(int index, long maxTicks) throws IOException {
+        MatchConfig config = template.copy();
+        config.seed = Rng.derive(seed, index);
+        if (procedural) config.map = ProceduralMap.generate(config.seed);
+        long start = System.nanoTime();
+        Match match = new Match(config);
+        ReplayRecorder recorder = record != null
+            ? new ReplayRecorder(Paths.get(record, "match-" + index + ".psr"), match) : null;
+        StatsLog log = stats != null ? new StatsLog(Paths.get(stats, "match-" + index + ".pss"), match) : null;
+        while (!match.isGameOver() && match.getTick() < maxTicks) {
+            match.step();
+        }
+        if (recorder != null) recorder.close();
+        if (log != null) log.close();
+        long nanos = System.nanoTime() - start;
+        String winner = match.isGameOver() ? match.getWinningTeam() : "NONE";
+        return new Result(index, config.seed, winner, match.getTick(), match.getRedTeamScore(),
+                          match.getBlueTeamScore(), nanos);
+    }
+
+    // Plays the replay to its end; false if it didn't go as recorded
+    private boolean playBack() throws IOException {
+        Path file = Paths.get(replay);
+        long start = System.nanoTime();
+        ReplayPlayer player = ReplayPlayer.open(file);
+        while (player.step()) {
+            // Plays as fast as it simulates
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Match match = player.getMatch();
+        System.out.printf(Locale.ROOT, "Replay %s: %d bytes, %d ticks (%.1f game seconds), seed %d%n", file,
+                          Files.size(file), player.getLength(), seconds(player.getLength()), match.getSeed());
+        System.out.printf(Locale.ROOT, "Result: %s, red %d - blue %d%n",
+                          match.isGameOver() ? match.getWinningTeam() + " wins" : "unfinished",
+                          match.getRedTeamScore(), match.getBlueTeamScore());
+        System.out.printf(Locale.ROOT, "Played in %.2f s, %d checksums, %d keyframes%n", seconds, player.getChecks(),
+                          player.getKeyframes());
+        if (player.getDesyncTick() < 0) return true;
+        System.out.println("DESYNC at tick " + player.getDesyncTick());
+        return false;
+    }
+
+    private String report(Result[] results, long wallNanos) {
+        int red = 0, blue = 0, unfinished = 0;
+        long totalTicks = 0;
+        double matchTicksPerSecond = 0;
+        long[] lengths = new long[results.length];
+        double redScore = 0, blueScore = 0;
+        for (int i = 0; i < results.length; i++) {
+            Result r = results[i];
+            if (r.winner.equals("RED")) red++;
+            else if (r.winner.equals("BLUE")) blue++;
+            else unfinished++;
+            totalTicks += r.ticks;
+            matchTicksPerSecond += r.ticks / (r.nanos / 1e9);
+            lengths[i] = r.ticks;
+            redScore += r.redScore;
+            blueScore += r.blueScore;
+        }
+        Arrays.sort(lengths);
+        int n = Math.max(1, results.length);
+        double wallSeconds = wallNanos / 1e9;
+
+        StringBuilder sb = new StringBuilder();
+        line(sb, "Tournament: %d matches, %d players per team, base seed %d", results.length,
+             template.playersPerTeam, seed);
+        line(sb, "Settings: shoot chance red %.3f blue %.3f, defenders %.2f + %.2f x pressure",
+             template.shootChance[0], template.shootChance[1], template.baseDefenderShare,
+             template.pressureDefenderShare);
+        line(sb, "");
+        line(sb, "Red wins     %5d  %5.1f%%", red, 100.0 * red / n);
+        line(sb, "Blue wins    %5d  %5.1f%%", blue, 100.0 * blue / n);
+        line(sb, "Unfinished   %5d  %5.1f%%  (no winner after %.1f minutes)", unfinished, 100.0 * unfinished / n,
+             maxMinutes);
+        line(sb, "Mean score   red %.2f  blue %.2f", redScore / n, blueScore / n);
+        line(sb, "");
+        line(sb, "Match length (game seconds): mean %.1f  p50 %.1f  p95 %.1f  max %.1f",
+             seconds(totalTicks) / n, seconds(percentile(lengths, 0.5)), seconds(percentile(lengths, 0.95)),
+             seconds(lengths.length > 0 ? lengths[lengths.length - 1] : 0));
+        line(sb, "");
+        line(sb, "Threads %d on %d cores, wall %.2f s", threads, Runtime.getRuntime().availableProcessors(),
+             wallSeconds);
+        line(sb, "Throughput %.0f ticks/s overall, %.0f ticks/s per match, %.1fx real time per match",
+             totalTicks / wallSeconds, matchTicksPerSecond / n, matchTicksPerSecond / n / GameRules.TICK_RATE);
+        return sb.toString();
+    }
+
+    private void writeCsv(Result[] results) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(csv), StandardCharsets.UTF_8))) {
+            writer.println("match,seed,winner,ticks,red_score,blue_score,millis");
+            for (Result r : results) {
+                writer.printf(Locale.ROOT, "%d,%d,%s,%d,%d,%d,%.3f%n", r.index, r.seed, r.winner, r.ticks,
+                              r.redScore, r.blueScore, r.nanos / 1e6);
+            }
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int)(p * sorted.length))];
+    }
+
+    private static double seconds(long ticks) {
+        return ticks * (double)GameRules.TICK_DURATION;
+    }
+
+    private static void line(StringBuilder sb, String format, Object... args) {
+        sb.append(String.format(Locale.ROOT, format, args)).append('\n');
+    }
+}
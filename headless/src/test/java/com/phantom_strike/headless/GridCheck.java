@@ -0,0 +1,120 @@
+package com.phantom_strike.headless;
+
+import com.phantom_strike.check.Checks;
+import com.phantom_strike.spatial.DynamicGrid;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Checks that {@link DynamicGrid#nearest}, which bots use to find the closest enemy, picks
+ * the same entity as scanning all of them would, ties included: at equal distance the
+ * lowest id wins, wherever in the grid it is. Positions are snapped to 5 px, so cell edges
+ * and exact ties come up all the time, and entities are moved and removed between queries.
+ * Prints a line per check and exits non-zero if any fail, so CI can run it.
+ * <p>
+ * Options: {@code --seed N}, {@code --layouts N} (default 200).
+ */
+public class GridCheck {
+    private static final float WIDTH = 400;
+    private static final float HEIGHT = 200;
+    private static final float CELL = 40;
+    private static final int ENTITIES = 64;
+    private static final int QUERIES = 500;
+
+    private long seed = 1;
+    private int layouts = 200;
+    private final Checks checks = new Checks();
+
+    public static void main(String[] args) {
+        GridCheck check = new GridCheck();
+        check.parse(args);
+        check.ties();
+        check.random();
+        check.checks.finish();
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + option);
+            String value = args[++i];
+            switch (option) {
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--layouts": layouts = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+    }
+
+    private void ties() {
+        float[] xs = new float[8];
+        float[] ys = new float[8];
+        DynamicGrid grid = new DynamicGrid(100, 100, 10);
+        // From (15, 15): 7 is one ring out and 2 is two, both 15 px away
+        place(grid, xs, ys, 7, 24, 27);
+        place(grid, xs, ys, 2, 15, 30);
+        checks.check(grid.nearest(15, 15, xs, ys) == 2, "a tie a ring further out goes to the lower id");
+        // 5 and 1 are both one ring out, 10 px away, as close as anything two rings out could be
+        place(grid, xs, ys, 5, 15, 25);
+        place(grid, xs, ys, 1, 5, 15);
+        checks.check(grid.nearest(15, 15, xs, ys) == 1, "a tie a cell's width away goes to the lower id");
+    }
+
+    private void random() {
+        SplittableRandom random = new SplittableRandom(seed);
+        float[] xs = new float[ENTITIES];
+        float[] ys = new float[ENTITIES];
+        boolean[] in = new boolean[ENTITIES];
+        int wrong = 0;
+        int ties = 0;
+        for (int layout = 0; layout < layouts; layout++) {
+            DynamicGrid grid = new DynamicGrid(WIDTH, HEIGHT, CELL);
+            Arrays.fill(in, false);
+            for (int q = 0; q < QUERIES; q++) {
+                // Move, add or remove one, sometimes off the edge of the grid
+                int e = random.nextInt(ENTITIES);
+                if (in[e] && random.nextInt(4) == 0) {
+                    grid.remove(e);
+                    in[e] = false;
+                } else {
+                    place(grid, xs, ys, e, snap(random, WIDTH), snap(random, HEIGHT));
+                    in[e] = true;
+                }
+                float x = snap(random, WIDTH);
+                float y = snap(random, HEIGHT);
+                int expected = -1;
+                float best = Float.MAX_VALUE;
+                int atBest = 0;
+                for (int i = 0; i < ENTITIES; i++) {
+                    if (!in[i]) continue;
+                    float dx = xs[i] - x;
+                    float dy = ys[i] - y;
+                    float distance = dx * dx + dy * dy;
+                    if (distance < best) {
+                        expected = i;
+                        best = distance;
+                        atBest = 1;
+                    } else if (distance == best) {
+                        atBest++;
+                    }
+                }
+                if (atBest > 1) ties++;
+                if (grid.nearest(x, y, xs, ys) != expected) wrong++;
+            }
+        }
+        int queries = layouts * QUERIES;
+        checks.check(wrong == 0, wrong + " of " + queries + " queries differ from a full scan (" + ties + " ties)");
+    }
+
+    private static void place(DynamicGrid grid, float[] xs, float[] ys, int e, float x, float y) {
+        xs[e] = x;
+        ys[e] = y;
+        grid.move(e, x, y);
+    }
+
+    // A multiple of 5 from a cell outside the grid to a cell past it
+    private static float snap(SplittableRandom random, float size) {
+        return 5 * (random.nextInt((int)((size + 2 * CELL) / 5)) - (int)(CELL / 5));
+    }
+}
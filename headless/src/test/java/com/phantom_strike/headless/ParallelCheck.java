@@ -0,0 +1,86 @@
+package com.phantom_strike.headless;
+
+import com.phantom_strike.check.Checks;
+import com.phantom_strike.ecs.SystemScheduler;
+import com.phantom_strike.sim.GameRules;
+import com.phantom_strike.sim.Match;
+import com.phantom_strike.sim.MatchConfig;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks that the match's systems really do share phases, and that running those phases
+ * and the bots' perception in parallel changes nothing: the same seeded bot-only matches
+ * are played serially and on a pool side by side, and their state hashes have to agree
+ * after every tick. Prints a line per check and exits non-zero if any fail, so CI can run it.
+ * <p>
+ * Options: {@code --matches N} (default 3), {@code --seed N} for the first match,
+ * {@code --minutes N} per match (default 1), {@code --players N} per team (default 32,
+ * enough bots thinking at once that their perception is split up) and
+ * {@code --threads N} for the pool (default 4).
+ */
+public class ParallelCheck {
+    private int matches = 3;
+    private long seed = 1;
+    private float minutes = 1;
+    private int players = 32;
+    private int threads = 4;
+    private final Checks checks = new Checks();
+
+    public static void main(String[] args) {
+        ParallelCheck check = new ParallelCheck();
+        check.parse(args);
+        check.run();
+        check.checks.finish();
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + option);
+            String value = args[++i];
+            switch (option) {
+                case "--matches": matches = Integer.parseInt(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--minutes": minutes = Float.parseFloat(value); break;
+                case "--players": players = Integer.parseInt(value); break;
+                case "--threads": threads = Integer.parseInt(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+    }
+
+    private void run() {
+        SystemScheduler systems = match(seed, players).getSystems();
+        checks.check(systems.phaseCount() < systems.systemCount(),
+                     systems.systemCount() + " systems run in " + systems.phaseCount() + " phases");
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (int i = 0; i < matches; i++) {
+                Match serial = match(seed + i, players);
+                Match parallel = match(seed + i, players);
+                parallel.setParallel(pool);
+                long ticks = GameRules.ticks(minutes * 60);
+                long desync = -1;
+                while (serial.getTick() < ticks && !serial.isGameOver() && desync < 0) {
+                    serial.step();
+                    parallel.step();
+                    if (serial.stateHash() != parallel.stateHash()) desync = serial.getTick();
+                }
+                checks.check(desync < 0, "seed " + (seed + i) + " plays out the same in parallel"
+                             + (desync < 0 ? " for " + serial.getTick() + " ticks" : "; differs at tick " + desync));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static Match match(long seed, int players) {
+        MatchConfig config = new MatchConfig();
+        config.seed = seed;
+        config.playersPerTeam = players;
+        config.humanPlayer = false;
+        return new Match(config);
+    }
+}
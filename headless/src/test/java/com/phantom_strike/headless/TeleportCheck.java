@@ -0,0 +1,98 @@
+package com.phantom_strike.headless;
+
+import com.phantom_strike.check.Checks;
+import com.phantom_strike.sim.GameRules;
+import com.phantom_strike.sim.Match;
+import com.phantom_strike.sim.MatchConfig;
+import com.phantom_strike.sim.MatchStats;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Checks that bots take teleporters to get somewhere rather than bouncing between a pair of
+ * them. Plays a few bot-only matches and counts, for every bot, its teleports and the
+ * bounces among them: ones within a second of the cooldown running out on the one before.
+ * Prints a line per check and exits non-zero if any fail, so CI can run it.
+ * <p>
+ * Options: {@code --matches N} (default 3), {@code --seed N} for the first match and
+ * {@code --minutes N} per match (default 2).
+ */
+public class TeleportCheck {
+    // A bot on its way somewhere goes through a few a minute; one stuck on a pair did hundreds
+    private static final int MAX_PER_MINUTE = 10;
+    // Straight back a few times can be a change of plan; more is a bot caught between two
+    private static final int MAX_BOUNCES_IN_A_ROW = 3;
+
+    private int matches = 3;
+    private long seed = 1000;
+    private float minutes = 2;
+    private final Checks checks = new Checks();
+
+    public static void main(String[] args) {
+        TeleportCheck check = new TeleportCheck();
+        check.parse(args);
+        check.run();
+        check.checks.finish();
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + option);
+            String value = args[++i];
+            switch (option) {
+                case "--matches": matches = Integer.parseInt(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--minutes": minutes = Float.parseFloat(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+    }
+
+    private void run() {
+        long bounceTicks = GameRules.ticks(GameRules.TELEPORT_COOLDOWN + 1);
+        for (int i = 0; i < matches; i++) {
+            MatchConfig config = new MatchConfig();
+            config.seed = seed + i;
+            config.humanPlayer = false;
+            Match match = new Match(config);
+            Map<Integer, Integer> teleports = new HashMap<>();
+            Map<Integer, Long> last = new HashMap<>();
+            Map<Integer, Integer> run = new HashMap<>();
+            // Bounces in all, and the most by one bot in a row
+            int[] bounces = new int[2];
+            match.setStats((kind, tick, entity, team, x, y) -> {
+                if (kind != MatchStats.TELEPORT) return;
+                teleports.merge(entity, 1, Integer::sum);
+                Long previous = last.put(entity, tick);
+                if (previous != null && tick - previous < bounceTicks) {
+                    bounces[0]++;
+                    bounces[1] = Math.max(bounces[1], run.merge(entity, 1, Integer::sum));
+                } else {
+                    run.put(entity, 0);
+                }
+            });
+            long end = GameRules.ticks(minutes * 60);
+            while (match.getTick() < end && !match.isGameOver()) {
+                match.step();
+            }
+
+            int total = 0;
+            int most = 0;
+            for (int count : teleports.values()) {
+                total += count;
+                most = Math.max(most, count);
+            }
+            float played = match.getTick() / (float)GameRules.ticks(60);
+            System.out.printf(Locale.ROOT, "seed %d: %d teleports in %.1f min, at most %d by one bot, %d bounces,"
+                              + " at most %d in a row%n", config.seed, total, played, most, bounces[0], bounces[1]);
+            checks.check(most <= Math.max(1, MAX_PER_MINUTE * played),
+                         "seed " + config.seed + ": no bot teleports more than " + MAX_PER_MINUTE + " times a minute");
+            checks.check(bounces[1] <= MAX_BOUNCES_IN_A_ROW,
+                         "seed " + config.seed + ": no bot bounces more than " + MAX_BOUNCES_IN_A_ROW
+                         + " times in a row");
+        }
+    }
+}
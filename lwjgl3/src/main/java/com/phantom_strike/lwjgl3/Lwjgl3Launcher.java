@@ -3,16 +3,63 @@ package com.phantom_strike.lwjgl3;
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
 import com.phantom_strike.StickmanGame;
+import com.phantom_strike.net.Protocol;
 
-/** Launches the desktop (LWJGL3) application. */
+import java.net.InetSocketAddress;
+
+/**
+ * Launches the desktop (LWJGL3) application. {@code --connect HOST[:PORT]} joins a
+ * dedicated server instead of starting a local match, {@code --record FILE} records the
+ * local match and {@code --replay FILE} plays a recording back. {@code --map FILE} plays on a
+ * saved map, locally or on a server that uses the same one; {@code --procedural} plays each
+ * local round on a newly generated map instead.
+ * <p>
+ * {@code --exit-after-frames N} quits after N frames, printing how long the first one took
+ * to appear after the process started; the {@code cdsArchive} task trains with it and
+ * {@link StartupBenchmark} times startup with it.
+ */
 public class Lwjgl3Launcher {
     public static void main(String[] args) {
-        if (StartupHelper.startNewJvmIfRequired()) return; // This handles macOS support and helps on Windows.
-        createApplication();
+        if (StartupHelper.startNewJvmIfRequired(args)) return; // This handles macOS support and helps on Windows.
+        String frames = option(args, "--exit-after-frames");
+        StickmanGame game = frames != null ? new StartupProbe(parseServer(args), Integer.parseInt(frames))
+            : new StickmanGame(parseServer(args));
+        game.setRecordFile(option(args, "--record"));
+        game.setReplayFile(option(args, "--replay"));
+        game.setMapFile(option(args, "--map"));
+        game.setProcedural(flag(args, "--procedural"));
+        createApplication(game);
+    }
+
+    private static Lwjgl3Application createApplication(StickmanGame game) {
+        return new Lwjgl3Application(game, getDefaultConfiguration());
+    }
+
+    // The value following option, or null if it isn't given
+    private static String option(String[] args, String option) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals(option)) return args[i + 1];
+        }
+        return null;
+    }
+
+    private static boolean flag(String[] args, String flag) {
+        for (String arg : args) {
+            if (arg.equals(flag)) return true;
+        }
+        return false;
     }
 
-    private static Lwjgl3Application createApplication() {
-        return new Lwjgl3Application(new StickmanGame(), getDefaultConfiguration());
+    // The server to join, or null to play locally
+    private static InetSocketAddress parseServer(String[] args) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (!args[i].equals("--connect")) continue;
+            String target = args[i + 1];
+            int colon = target.lastIndexOf(':');
+            if (colon < 0) return new InetSocketAddress(target, Protocol.DEFAULT_PORT);
+            return new InetSocketAddress(target.substring(0, colon), Integer.parseInt(target.substring(colon + 1)));
+        }
+        return null;
     }
 
     private static Lwjgl3ApplicationConfiguration getDefaultConfiguration() {
@@ -24,4 +71,4 @@ public class Lwjgl3Launcher {
         // If a specific version of LibGDX doesn't support setBackgroundFPS, it can be omitted
         return configuration;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,117 @@
+package com.phantom_strike.lwjgl3;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the desktop game from process start to its first {@code render()}, without class
+ * data sharing, with the JDK's default archive and with the game's own AppCDS archive from
+ * the {@code cdsArchive} task. Each run starts the jar in a new JVM with
+ * {@code --exit-after-frames}, clocks it until the {@link StartupProbe} line appears and
+ * lets it quit; the variants take turns so drift on the machine hits them all alike.
+ * <p>
+ * Options: {@code --jar FILE} (required), {@code --archive FILE}, {@code --runs N}
+ * (default 10) and {@code --out FILE} for the report.
+ */
+public class StartupBenchmark {
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private String jar;
+    private String archive;
+    private int runs = 10;
+    private String out;
+
+    public static void main(String[] args) throws Exception {
+        StartupBenchmark benchmark = new StartupBenchmark();
+        benchmark.parse(args);
+        benchmark.run();
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + option);
+            String value = args[++i];
+            switch (option) {
+                case "--jar": jar = value; break;
+                case "--archive": archive = value; break;
+                case "--runs": runs = Integer.parseInt(value); break;
+                case "--out": out = value; break;
+                default: throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+        if (jar == null) throw new IllegalArgumentException("No --jar given");
+        if (archive != null && !new File(archive).isFile()) {
+            throw new IllegalArgumentException("No archive at " + archive + "; run the cdsArchive task first");
+        }
+    }
+
+    private void run() throws IOException, InterruptedException {
+        List<String> names = new ArrayList<>(Arrays.asList("no sharing", "JDK archive"));
+        List<String> flags = new ArrayList<>(Arrays.asList("-Xshare:off", "-Xshare:auto"));
+        if (archive != null) {
+            names.add("AppCDS archive");
+            flags.add("-XX:SharedArchiveFile=" + archive);
+        }
+        long[][] wall = new long[names.size()][runs];
+        long[][] reported = new long[names.size()][runs];
+        // One untimed start first, so the jar and the JDK are in the page cache for every variant
+        start(flags.get(1), new long[1], new long[1], 0);
+        for (int run = 0; run < runs; run++) {
+            for (int v = 0; v < names.size(); v++) {
+                start(flags.get(v), wall[v], reported[v], run);
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "Startup to first render, %d runs each (ms)%n", runs));
+        sb.append(String.format(Locale.ROOT, "%-16s %8s %8s %8s %14s%n", "", "min", "median", "max",
+                                "self-reported"));
+        for (int v = 0; v < names.size(); v++) {
+            Arrays.sort(wall[v]);
+            Arrays.sort(reported[v]);
+            sb.append(String.format(Locale.ROOT, "%-16s %8d %8d %8d %14d%n", names.get(v), wall[v][0],
+                                    wall[v][runs / 2], wall[v][runs - 1], reported[v][runs / 2]));
+        }
+        System.out.print(sb);
+        if (out != null) Files.write(Paths.get(out), sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Starts the game once and records the milliseconds to its first frame, clocked here and as it reports them
+    private void start(String flag, long[] wall, long[] reported, int run) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        if (System.getProperty("os.name").toLowerCase().contains("mac")) command.add("-XstartOnFirstThread");
+        command.add(flag);
+        command.addAll(Arrays.asList("-cp", jar, Lwjgl3Launcher.class.getName(), "--exit-after-frames", "1"));
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(),
+                                                                              StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                int at = line.indexOf(StartupProbe.FIRST_RENDER);
+                if (at < 0) continue;
+                wall[run] = (System.nanoTime() - start) / 1_000_000;
+                reported[run] = Long.parseLong(line.substring(at + StartupProbe.FIRST_RENDER.length()).trim());
+                break;
+            }
+            if (line == null) throw new IOException("The game quit before rendering: " + command);
+            // Let it finish quitting before the next start
+            while (output.readLine() != null) {
+            }
+        }
+        if (!process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)) process.destroyForcibly();
+    }
+}
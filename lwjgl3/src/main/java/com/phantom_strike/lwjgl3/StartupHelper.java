@@ -18,7 +18,6 @@ package com.phantom_strike.lwjgl3;
 
 import com.badlogic.gdx.Version;
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3NativesLoader;
-import org.lwjgl.system.macosx.LibC;
 import org.lwjgl.system.macosx.ObjCRuntime;
 
 import java.io.BufferedReader;
@@ -26,6 +25,8 @@ import java.io.File;
 import java.io.InputStreamReader;
 import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.lwjgl.system.JNI.invokePPP;
 import static org.lwjgl.system.JNI.invokePPZ;
@@ -70,13 +71,18 @@ public class StartupHelper {
      *            whether the output of the new JVM should be rerouted to the
      *            old JVM, so it can be accessed in the same place; keeps the
      *            old JVM running if enabled
+     * @param args
+     *            program arguments to pass on to the new JVM
      * @return whether a new JVM was started and thus no code should be executed
      *         in this one
      */
-    public static boolean startNewJvmIfRequired(boolean redirectOutput) {
+    public static boolean startNewJvmIfRequired(boolean redirectOutput, String... args) {
         String osName = System.getProperty("os.name").toLowerCase();
         if (!osName.contains("mac")) {
-            if (osName.contains("windows")) {
+            // Only a temp dir or user name LWJGL might not handle needs the workaround; loading natives here
+            // otherwise just moves that work earlier
+            if (osName.contains("windows") && (!isSafePath(System.getProperty("java.io.tmpdir", ""))
+                    || !isSafePath(System.getProperty("user.name", "")))) {
 // Here, we are trying to work around an issue with how LWJGL3 loads its extracted .dll files.
 // By default, LWJGL3 extracts to the directory specified by "java.io.tmpdir", which is usually the user's home.
 // If the user's name has non-ASCII (or some non-alphanumeric) characters in it, that would fail.
@@ -101,14 +107,8 @@ public class StartupHelper {
             return false;
         }
 
-        // Checks if we are already on the main thread, such as from running via Construo.
-        long objc_msgSend = ObjCRuntime.getLibrary().getFunctionAddress("objc_msgSend");
-        long NSThread      = objc_getClass("NSThread");
-        long currentThread = invokePPP(NSThread, sel_getUid("currentThread"), objc_msgSend);
-        boolean isMainThread = invokePPZ(currentThread, sel_getUid("isMainThread"), objc_msgSend);
-        if(isMainThread) return false;
-
-        long pid = LibC.getpid();
+        // The cheap checks go first: they need neither LWJGL's natives nor the Objective-C runtime.
+        long pid = ProcessHandle.current().pid();
 
         // check whether -XstartOnFirstThread is enabled
         if ("1".equals(System.getenv("JAVA_STARTED_ON_FIRST_THREAD_" + pid))) {
@@ -123,6 +123,13 @@ public class StartupHelper {
             return false;
         }
 
+        // Checks if we are already on the main thread, such as from running via Construo.
+        long objc_msgSend = ObjCRuntime.getLibrary().getFunctionAddress("objc_msgSend");
+        long NSThread      = objc_getClass("NSThread");
+        long currentThread = invokePPP(NSThread, sel_getUid("currentThread"), objc_msgSend);
+        boolean isMainThread = invokePPZ(currentThread, sel_getUid("isMainThread"), objc_msgSend);
+        if(isMainThread) return false;
+
         // Restart the JVM with -XstartOnFirstThread
         ArrayList<String> jvmArgs = new ArrayList<>();
         String separator = System.getProperty("file.separator", "/");
@@ -140,7 +147,13 @@ public class StartupHelper {
         jvmArgs.add(javaExecPath);
         jvmArgs.add("-XstartOnFirstThread");
         jvmArgs.add("-D" + JVM_RESTARTED_ARG + "=true");
-        jvmArgs.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        List<String> inputArgs = ManagementFactory.getRuntimeMXBean().getInputArguments();
+        jvmArgs.addAll(inputArgs);
+        // The restarted JVM is the one that plays, so it gets the class data archive if there is one
+        String archive = classDataArchive();
+        if (archive != null && inputArgs.stream().noneMatch(arg -> arg.startsWith("-XX:SharedArchiveFile="))) {
+            jvmArgs.add("-XX:SharedArchiveFile=" + archive);
+        }
         jvmArgs.add("-cp");
         jvmArgs.add(System.getProperty("java.class.path"));
         String mainClass = System.getenv("JAVA_MAIN_CLASS_" + pid);
@@ -154,6 +167,7 @@ public class StartupHelper {
             }
         }
         jvmArgs.add(mainClass);
+        jvmArgs.addAll(Arrays.asList(args));
 
         try {
             if (!redirectOutput) {
@@ -180,6 +194,28 @@ public class StartupHelper {
         return true;
     }
 
+    /**
+     * The AppCDS archive made for the jar on the class path by the {@code cdsArchive}
+     * task, which sits next to it with a {@code .jsa} extension, or null if there's none.
+     */
+    public static String classDataArchive() {
+        String classPath = System.getProperty("java.class.path", "");
+        if (!classPath.endsWith(".jar") || classPath.contains(File.pathSeparator)) return null;
+        File archive = new File(classPath.substring(0, classPath.length() - ".jar".length()) + ".jsa");
+        return archive.isFile() ? archive.getAbsolutePath() : null;
+    }
+
+    // Letters, digits, '.', '_', '-' and path separators; LWJGL's extraction may trip over anything else
+    private static boolean isSafePath(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            boolean safe = c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+                || c == '.' || c == '_' || c == '-' || c == '\\' || c == '/' || c == ':';
+            if (!safe) return false;
+        }
+        return true;
+    }
+
     /**
      * Starts a new JVM if the application was started on macOS without the
      * {@code -XstartOnFirstThread} argument. Returns whether a new JVM was
@@ -195,10 +231,12 @@ public class StartupHelper {
      * }
      * </pre>
      *
+     * @param args
+     *            program arguments to pass on to the new JVM
      * @return whether a new JVM was started and thus no code should be executed
      *         in this one
      */
-    public static boolean startNewJvmIfRequired() {
-        return startNewJvmIfRequired(true);
+    public static boolean startNewJvmIfRequired(String... args) {
+        return startNewJvmIfRequired(true, args);
     }
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package com.phantom_strike.lwjgl3;
+
+import com.badlogic.gdx.Gdx;
+import com.phantom_strike.StickmanGame;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.time.Instant;
+
+/**
+ * The game, reporting how long after the process started its first frame was rendered
+ * and quitting after a set number of frames. Training runs for the class data archive use
+ * it to go through startup and a little play, and {@link StartupBenchmark} to time startup.
+ */
+class StartupProbe extends StickmanGame {
+    /** Printed at the first frame, followed by the milliseconds since the process started. */
+    static final String FIRST_RENDER = "First render after ms: ";
+
+    private final int frames;
+    private int rendered;
+
+    StartupProbe(InetSocketAddress server, int frames) {
+        super(server);
+        this.frames = frames;
+    }
+
+    @Override
+    public void render() {
+        super.render();
+        if (rendered++ == 0) {
+            long started = ProcessHandle.current().info().startInstant().map(Instant::toEpochMilli)
+                .orElseGet(() -> ManagementFactory.getRuntimeMXBean().getStartTime());
+            System.out.println(FIRST_RENDER + (System.currentTimeMillis() - started));
+            System.out.flush();
+        }
+        if (rendered == frames) Gdx.app.exit();
+    }
+}
@@ -0,0 +1,407 @@
+package com.phantom_strike.server;
+
+import com.phantom_strike.ecs.Component;
+import com.phantom_strike.ecs.EntityWorld;
+import com.phantom_strike.ecs.Family;
+import com.phantom_strike.net.BaselineRing;
+import com.phantom_strike.net.BitWriter;
+import com.phantom_strike.net.BufferPool;
+import com.phantom_strike.net.Interest;
+import com.phantom_strike.net.InterestManager;
+import com.phantom_strike.net.Protocol;
+import com.phantom_strike.net.Snapshot;
+import com.phantom_strike.net.WorldState;
+import com.phantom_strike.replay.ReplayRecorder;
+import com.phantom_strike.stats.StatsLog;
+import com.phantom_strike.sim.GameRules;
+import com.phantom_strike.sim.Match;
+import com.phantom_strike.sim.MatchConfig;
+import com.phantom_strike.sim.Team;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Authoritative host for one match. A single thread runs a selector over one non-blocking
+ * {@link DatagramChannel}: it drains whatever datagrams have arrived, steps the match at
+ * {@link GameRules#TICK_RATE} and sends every client a snapshot each
+ * {@link Protocol#SNAPSHOT_INTERVAL} ticks. Between ticks it sleeps in {@code select}, so
+ * an idle server costs nothing and a packet is read as soon as it lands. Alternatively a
+ * {@link MatchScheduler} drives many servers in one process, calling {@link #serve} once
+ * per tick instead of {@link #run}.
+ * <p>
+ * Each client is sent only its {@link Interest}: what's around its view, at full rate
+ * and precision, diffed against the last snapshot it acknowledged, kept in its
+ * {@link BaselineRing}. The rest of the map follows at a trickle as coarse far records.
+ * Datagrams are encoded into pooled direct buffers, so a steady-state tick allocates nothing.
+ * <p>
+ * Held buttons arrive as numbered commands, queued per client and applied one per tick;
+ * when the queue runs dry the last buttons are held. Each snapshot tells its client the
+ * last command applied, which is what its prediction reconciles against. A client's
+ * shots are lag compensated back to the last snapshot it acknowledged, which is what it
+ * was looking at when it fired.
+ * <p>
+ * The match is all bots. A joining client takes over a bot on the team with fewer humans,
+ * which loses its {@link Component#AI}, and the bot gets it back when the client leaves or
+ * goes quiet for {@link Protocol#TIMEOUT} seconds.
+ */
+public class GameServer implements Runnable, Closeable {
+    private static final long TICK_NANOS = (long)(GameRules.TICK_DURATION * 1e9);
+    private static final long TIMEOUT_NANOS = (long)(Protocol.TIMEOUT * 1e9);
+    private static final long RESTART_TICKS = GameRules.ticks(5);
+    // Commands held for a client beyond the one applied each tick. More means fewer ticks
+    // without fresh input when packets bunch up, but every queued one is a tick of delay.
+    private static final int MAX_QUEUED_COMMANDS = 4;
+
+    /** One connected client and the controls it last sent. */
+    static final class Client {
+        final SocketAddress address;
+        final int player;
+        final Interest interest;
+        long lastHeard;
+        int sequence;
+        int buttons;
+        // Received but not yet applied, oldest first
+        final int[] queuedCommands = new int[MAX_QUEUED_COMMANDS];
+        final byte[] queuedButtons = new byte[MAX_QUEUED_COMMANDS];
+        int queuedCount;
+        int receivedCommand;
+        int appliedCommand;
+        byte shots;
+        byte teamSwitches;
+        byte appliedShots;
+        byte appliedTeamSwitches;
+        long ackTick = -1;
+        final BaselineRing sent = new BaselineRing();
+
+        Client(SocketAddress address, int player, Interest interest) {
+            this.address = address;
+            this.player = player;
+            this.interest = interest;
+        }
+    }
+
+    private final Match match;
+    private final InterestManager interests;
+    private final DatagramChannel channel;
+    // Only opened by run(); scheduled servers don't need one
+    private volatile Selector selector;
+    private final ByteBuffer in = ByteBuffer.allocate(Protocol.MAX_PACKET);
+    private final BufferPool buffers = new BufferPool(Protocol.MAX_PACKET);
+    private final BitWriter bits = new BitWriter();
+    private final WorldState view = new WorldState();
+    private final Map<SocketAddress, Client> clients = new HashMap<>();
+    private final List<Client> dropped = new ArrayList<>();
+    private volatile boolean running;
+    private volatile int clientCount;
+    private volatile long snapshotsSent;
+    private volatile long bytesSent;
+    private long gameOverTick = -1;
+    private ReplayRecorder recorder;
+    private StatsLog stats;
+
+    /**
+     * Creates the match from a copy of {@code config} and binds to {@code address}; port 0
+     * picks a free one.
+     */
+    public GameServer(MatchConfig config, InetSocketAddress address) throws IOException {
+        config = config.copy();
+        config.humanPlayer = false;
+        match = new Match(config);
+        interests = new InterestManager(match);
+        channel = DatagramChannel.open();
+        channel.configureBlocking(false);
+        channel.bind(address);
+    }
+
+    /**
+     * Records the match, clients' inputs included, to {@code file} until the server is
+     * closed. Call before it starts serving.
+     */
+    public void record(Path file) throws IOException {
+        recorder = new ReplayRecorder(file, match);
+    }
+
+    /** Logs the match's stats to the end of {@code file} until the server is closed. Call before it starts serving. */
+    public void logStats(Path file) throws IOException {
+        stats = new StatsLog(file, match);
+    }
+
+    /** Serves until {@link #stop()} is called. */
+    @Override
+    public void run() {
+        running = true;
+        long nextTick = System.nanoTime();
+        try {
+            Selector selector = Selector.open();
+            this.selector = selector;
+            channel.register(selector, SelectionKey.OP_READ);
+            if (!running) return;
+            while (running) {
+                long wait = nextTick - System.nanoTime();
+                if (wait > 0) {
+                    // select(0) would block forever, so wait at least a millisecond
+                    selector.select(Math.max(1, wait / 1_000_000));
+                } else {
+                    selector.selectNow();
+                }
+                selector.selectedKeys().clear();
+                receive();
+
+                long now = System.nanoTime();
+                if (now - nextTick < 0) continue;
+                nextTick += TICK_NANOS;
+                // Don't try to catch up on ticks lost to a long stall
+                if (now - nextTick > TICK_NANOS * 5) nextTick = now;
+                tick(now);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Server loop failed", e);
+        }
+    }
+
+    /** Asks the server loop to finish after its current iteration. */
+    public void stop() {
+        running = false;
+        Selector selector = this.selector;
+        if (selector != null) selector.wakeup();
+    }
+
+    /**
+     * Reads whatever has arrived and runs one tick; for a {@link MatchScheduler}, which
+     * calls it every {@link GameRules#TICK_DURATION} instead of running the server loop.
+     * Calls must not overlap.
+     */
+    void serve(long now) throws IOException {
+        receive();
+        tick(now);
+    }
+
+    private void receive() throws IOException {
+        while (true) {
+            in.clear();
+            SocketAddress from = channel.receive(in);
+            if (from == null) return;
+            in.flip();
+            if (!in.hasRemaining()) continue;
+            switch (in.get()) {
+                case Protocol.CONNECT:
+                    connect(from);
+                    break;
+                case Protocol.INPUT:
+                    input(clients.get(from));
+                    break;
+                case Protocol.DISCONNECT:
+                    Client client = clients.remove(from);
+                    if (client != null) release(client);
+                    break;
+            }
+        }
+    }
+
+    private void connect(SocketAddress from) throws IOException {
+        Client client = clients.get(from);
+        if (client == null) {
+            int player = pickBot();
+            if (player < 0) {
+                ByteBuffer out = buffers.acquire();
+                out.put(Protocol.DISCONNECT);
+                send(out, from);
+                return;
+            }
+            match.setBot(player, false);
+            client = new Client(from, player, interests.add(player));
+            clients.put(from, client);
+        }
+        // Answer repeats too; the first ACCEPT may have been lost
+        client.lastHeard = System.nanoTime();
+        MatchConfig config = match.getConfig();
+        ByteBuffer out = buffers.acquire();
+        out.put(Protocol.ACCEPT);
+        out.putShort((short)client.player);
+        out.putLong(match.getSeed());
+        out.putShort((short)config.playersPerTeam);
+        out.putShort((short)config.healthPacks);
+        out.putLong(config.map != null ? config.map.id() : 0);
+        send(out, from);
+    }
+
+    // A bot from the team with fewer humans on it, or -1 when every player is taken
+    private int pickBot() {
+        int[] humans = new int[Team.COUNT];
+        for (Client client : clients.values()) {
+            humans[match.getWorld().team[client.player]]++;
+        }
+        byte team = humans[Team.RED] <= humans[Team.BLUE] ? Team.RED : Team.BLUE;
+        int bot = findBot(team);
+        return bot >= 0 ? bot : findBot(Team.other(team));
+    }
+
+    private int findBot(byte team) {
+        EntityWorld world = match.getWorld();
+        Family players = match.getPlayers();
+        for (int i = 0; i < players.size(); i++) {
+            int p = players.get(i);
+            if (world.team[p] == team && world.has(p, Component.AI)) return p;
+        }
+        return -1;
+    }
+
+    private void input(Client client) {
+        if (client == null || in.remaining() < 15) return;
+        client.lastHeard = System.nanoTime();
+        int sequence = in.getInt();
+        // Older than what we have; a reordered packet
+        if (sequence - client.sequence <= 0) return;
+        client.sequence = sequence;
+        client.shots = in.get();
+        client.teamSwitches = in.get();
+        long ack = in.getInt() & 0xFFFFFFFFL;
+        if (ack != 0xFFFFFFFFL && ack > client.ackTick) client.ackTick = ack;
+
+        int newest = in.getInt();
+        int count = Math.min(in.get(), in.remaining());
+        for (int command = newest - count + 1; command <= newest; command++) {
+            byte buttons = in.get();
+            // Repeats of commands we already have
+            if (command <= client.receivedCommand) continue;
+            if (client.queuedCount == MAX_QUEUED_COMMANDS) {
+                // Running too far behind the client; skip its oldest
+                dequeue(client);
+            }
+            client.queuedCommands[client.queuedCount] = command;
+            client.queuedButtons[client.queuedCount++] = buttons;
+            client.receivedCommand = command;
+        }
+    }
+
+    // Takes the client's next command, or keeps the buttons held if none has arrived
+    private static void nextCommand(Client client) {
+        if (client.queuedCount == 0) return;
+        client.buttons = client.queuedButtons[0];
+        client.appliedCommand = client.queuedCommands[0];
+        dequeue(client);
+    }
+
+    private static void dequeue(Client client) {
+        int n = --client.queuedCount;
+        System.arraycopy(client.queuedCommands, 1, client.queuedCommands, 0, n);
+        System.arraycopy(client.queuedButtons, 1, client.queuedButtons, 0, n);
+    }
+
+    private void tick(long now) throws IOException {
+        for (Client client : clients.values()) {
+            if (now - client.lastHeard > TIMEOUT_NANOS) {
+                dropped.add(client);
+                continue;
+            }
+            boolean fire = client.shots != client.appliedShots;
+            boolean switchTeam = client.teamSwitches != client.appliedTeamSwitches;
+            client.appliedShots = client.shots;
+            client.appliedTeamSwitches = client.teamSwitches;
+            nextCommand(client);
+            // The client aimed at the snapshot it had, so its shots are judged against that
+            match.applyInput(client.player, client.buttons, fire, switchTeam, client.ackTick);
+        }
+        for (int i = 0; i < dropped.size(); i++) {
+            Client client = dropped.get(i);
+            clients.remove(client.address);
+            release(client);
+        }
+        dropped.clear();
+
+        match.step();
+
+        // Start the next round once everyone has had time to see the result
+        if (!match.isGameOver()) {
+            gameOverTick = -1;
+        } else if (gameOverTick < 0) {
+            gameOverTick = match.getTick();
+        } else if (match.getTick() - gameOverTick >= RESTART_TICKS) {
+            match.reset();
+        }
+
+        if (match.getTick() % Protocol.SNAPSHOT_INTERVAL == 0 && !clients.isEmpty()) {
+            interests.update();
+            for (Client client : clients.values()) {
+                sendSnapshot(client);
+            }
+            snapshotsSent++;
+        }
+        clientCount = clients.size();
+    }
+
+    private void sendSnapshot(Client client) throws IOException {
+        client.interest.buildView(match, view);
+        long tick = view.tick();
+        // Too old and the ring slot we're about to fill may be the baseline itself
+        WorldState baseline = tick - client.ackTick < BaselineRing.SIZE ? client.sent.get(client.ackTick) : null;
+        WorldState sent = client.sent.claim(tick);
+        ByteBuffer out = buffers.acquire();
+        out.put(Protocol.SNAPSHOT);
+        out.putInt(client.appliedCommand);
+        bits.wrap(out);
+        bits.reserve(Snapshot.FAR_BITS);
+        Snapshot.encode(view, baseline, sent, bits);
+        bits.unreserve(Snapshot.FAR_BITS);
+        client.interest.writeFar(match, bits);
+        bits.flush();
+        bytesSent += out.position();
+        send(out, client.address);
+    }
+
+    // Hands the player back to the AI
+    private void release(Client client) {
+        match.setBot(client.player, true);
+        interests.remove(client.interest);
+    }
+
+    private void send(ByteBuffer out, SocketAddress to) throws IOException {
+        out.flip();
+        channel.send(out, to);
+        buffers.release(out);
+    }
+
+    /** The address the server is bound to, with the real port if it was bound to port 0. */
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress)channel.getLocalAddress();
+    }
+
+    public Match getMatch() {
+        return match;
+    }
+
+    /** Clients connected as of the last tick; safe to read from any thread. */
+    public int getClientCount() {
+        return clientCount;
+    }
+
+    /** Snapshots broadcast so far, counted once per tick rather than per client. */
+    public long getSnapshotsSent() {
+        return snapshotsSent;
+    }
+
+    /** Snapshot bytes sent to all clients so far. */
+    public long getSnapshotBytesSent() {
+        return bytesSent;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (selector != null) selector.close();
+        channel.close();
+        if (recorder != null) recorder.close();
+        if (stats != null) stats.close();
+    }
+}
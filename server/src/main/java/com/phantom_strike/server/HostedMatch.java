@@ -0,0 +1,96 @@
+package com.phantom_strike.server;
+
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link GameServer} run by a {@link MatchScheduler}, with when its next tick is due and
+ * how its ticks have gone. A tick overruns when it finishes after the following one was
+ * due, so a match that keeps overrunning is falling behind real time. Only one thread
+ * ticks a match at a time; the metrics can be read from any thread.
+ */
+public final class HostedMatch implements Delayed {
+    final int id;
+    final GameServer server;
+    // Due time of the next tick, System.nanoTime() based
+    long deadline;
+    volatile boolean closed;
+
+    private volatile long ticks;
+    private volatile long overruns;
+    private volatile long skipped;
+    private volatile long tickNanos;
+    private volatile long maxTickNanos;
+    private volatile long maxLateNanos;
+
+    HostedMatch(int id, GameServer server, long deadline) {
+        this.id = id;
+        this.server = server;
+        this.deadline = deadline;
+    }
+
+    // Called by whichever thread ran the tick
+    void record(long lateNanos, long workNanos, boolean overrun) {
+        ticks++;
+        tickNanos += workNanos;
+        if (workNanos > maxTickNanos) maxTickNanos = workNanos;
+        if (lateNanos > maxLateNanos) maxLateNanos = lateNanos;
+        if (overrun) overruns++;
+    }
+
+    void skip(long count) {
+        skipped += count;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public GameServer getServer() {
+        return server;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    /** Ticks that finished after the next one was due. */
+    public long getOverruns() {
+        return overruns;
+    }
+
+    /** Ticks given up on after a stall, rather than run late to catch up. */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /** Time spent in ticks so far. */
+    public long getTickNanos() {
+        return tickNanos;
+    }
+
+    /** Average time spent in a tick. */
+    public long getMeanTickNanos() {
+        long n = ticks;
+        return n == 0 ? 0 : tickNanos / n;
+    }
+
+    public long getMaxTickNanos() {
+        return maxTickNanos;
+    }
+
+    /** Longest a tick waited past its due time before it started. */
+    public long getMaxLateNanos() {
+        return maxLateNanos;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+        return Long.compare(deadline, ((HostedMatch)other).deadline);
+    }
+}
@@ -0,0 +1,200 @@
+package com.phantom_strike.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+/**
+ * A UDP relay that makes loopback behave like a real network: every datagram, each way,
+ * is held for a one-way latency plus random jitter, and some are dropped. Clients send to
+ * {@link #getAddress()}; each gets its own upstream socket, so the server still sees one
+ * address per client. Jitter can reorder datagrams, as it would on the internet.
+ * <p>
+ * For tests only. It allocates per datagram and serves until {@link #stop()}.
+ */
+public class LatencyProxy implements Runnable, Closeable {
+    private static final int MAX_DATAGRAM = 2048;
+
+    private static final class Delayed implements Comparable<Delayed> {
+        final long due;
+        final long order;
+        final byte[] data;
+        final DatagramChannel via;
+        final SocketAddress to;
+
+        Delayed(long due, long order, byte[] data, DatagramChannel via, SocketAddress to) {
+            this.due = due;
+            this.order = order;
+            this.data = data;
+            this.via = via;
+            this.to = to;
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            int c = Long.compare(due, other.due);
+            return c != 0 ? c : Long.compare(order, other.order);
+        }
+    }
+
+    private final InetSocketAddress server;
+    private final DatagramChannel front;
+    private final Selector selector;
+    private final Map<SocketAddress, DatagramChannel> upstream = new HashMap<>();
+    private final PriorityQueue<Delayed> pending = new PriorityQueue<>();
+    private final ByteBuffer buffer = ByteBuffer.allocate(MAX_DATAGRAM);
+    private final SplittableRandom random;
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final double loss;
+    private long order;
+    private volatile boolean running;
+    private volatile long dropped;
+    private volatile long relayed;
+
+    /**
+     * @param latencyMillis added to each datagram in each direction
+     * @param jitterMillis  up to this much more, drawn uniformly per datagram
+     * @param loss          chance of dropping a datagram, 0 to 1
+     */
+    public LatencyProxy(InetSocketAddress server, int latencyMillis, int jitterMillis, double loss, long seed)
+            throws IOException {
+        this.server = server;
+        this.latencyNanos = latencyMillis * 1_000_000L;
+        this.jitterNanos = jitterMillis * 1_000_000L;
+        this.loss = loss;
+        random = new SplittableRandom(seed);
+        selector = Selector.open();
+        front = DatagramChannel.open();
+        front.configureBlocking(false);
+        front.bind(new InetSocketAddress("127.0.0.1", 0));
+        front.register(selector, SelectionKey.OP_READ);
+    }
+
+    @Override
+    public void run() {
+        running = true;
+        try {
+            while (running) {
+                Delayed next = pending.peek();
+                long wait = next == null ? 10 : (next.due - System.nanoTime()) / 1_000_000;
+                if (wait > 0) {
+                    selector.select(wait);
+                } else {
+                    selector.selectNow();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.channel() == front) {
+                        fromClients();
+                    } else {
+                        fromServer((DatagramChannel)key.channel(), (SocketAddress)key.attachment());
+                    }
+                }
+                deliver();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Proxy loop failed", e);
+        }
+    }
+
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void fromClients() throws IOException {
+        while (true) {
+            buffer.clear();
+            SocketAddress client = front.receive(buffer);
+            if (client == null) return;
+            DatagramChannel channel = upstream.get(client);
+            if (channel == null) {
+                channel = DatagramChannel.open();
+                channel.configureBlocking(false);
+                channel.connect(server);
+                channel.register(selector, SelectionKey.OP_READ, client);
+                upstream.put(client, channel);
+            }
+            hold(channel, server);
+        }
+    }
+
+    private void fromServer(DatagramChannel channel, SocketAddress client) throws IOException {
+        while (true) {
+            buffer.clear();
+            SocketAddress from;
+            try {
+                from = channel.receive(buffer);
+            } catch (PortUnreachableException e) {
+                return;
+            }
+            if (from == null) return;
+            hold(front, client);
+        }
+    }
+
+    // Queues what's in the buffer for later, unless it's lost
+    private void hold(DatagramChannel via, SocketAddress to) {
+        if (random.nextDouble() < loss) {
+            dropped++;
+            return;
+        }
+        buffer.flip();
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        long jitter = jitterNanos > 0 ? random.nextLong(jitterNanos + 1) : 0;
+        pending.add(new Delayed(System.nanoTime() + latencyNanos + jitter, order++, data, via, to));
+    }
+
+    private void deliver() throws IOException {
+        long now = System.nanoTime();
+        while (!pending.isEmpty() && pending.peek().due - now <= 0) {
+            Delayed d = pending.poll();
+            ByteBuffer out = ByteBuffer.wrap(d.data);
+            try {
+                if (d.via == front) {
+                    front.send(out, d.to);
+                } else {
+                    d.via.write(out);
+                }
+                relayed++;
+            } catch (PortUnreachableException e) {
+                // Server not up yet; the client retries
+            }
+        }
+    }
+
+    /** Where clients should send instead of the server. */
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress)front.getLocalAddress();
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    public long getRelayed() {
+        return relayed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (DatagramChannel channel : upstream.values()) channel.close();
+        selector.close();
+        front.close();
+    }
+}
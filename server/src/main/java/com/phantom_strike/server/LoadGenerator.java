@@ -0,0 +1,393 @@
+package com.phantom_strike.server;
+
+import com.phantom_strike.net.Protocol;
+import com.phantom_strike.net.Snapshot;
+import com.phantom_strike.sim.GameRules;
+import com.phantom_strike.sim.MatchConfig;
+import com.phantom_strike.sim.PlayerInput;
+import com.phantom_strike.sim.Rng;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Finds how many players a server can take. Hosts matches on a {@link MatchScheduler} in
+ * this JVM and connects synthetic clients to them over loopback, a step of clients at a
+ * time, reporting for each step the command round trip, snapshot sizes and the server's
+ * tick time and load.
+ * <p>
+ * The clients are lightweight: no match of their own, just the protocol. Each one plays a
+ * seeded script, walking a new way every half second or so, firing and now and then
+ * switching team as the {@code T} key does, sends its commands every tick and
+ * acknowledges every snapshot so the server diffs as it would for a real client. The
+ * round trip is from sending a command to the first snapshot saying it was applied, so it
+ * includes the wait in the server's command queue and for the next snapshot. All clients
+ * run on one thread over a selector. Its own lateness is reported too: once it can't keep
+ * up, the numbers say more about the generator than the server.
+ * <p>
+ * Options: {@code --clients N} (most, default 1000), {@code --step N} (added per step,
+ * default 100), {@code --seconds N} per step (default 3), {@code --players N} per team
+ * (default 16), {@code --matches N} (default enough for every client), {@code --workers N}
+ * (server threads, default one per core), {@code --fire-rate SHOTS} per second per client
+ * (default 2), {@code --switch-interval SECONDS} between team switches per client (default
+ * 30; 0 never), {@code --seed N} and {@code --csv FILE}. Same options, same scripts and
+ * matches, so curves taken on one machine compare.
+ */
+public class LoadGenerator implements Closeable {
+    private static final long TICK_NANOS = (long)(GameRules.TICK_DURATION * 1e9);
+    private static final int[] DIRECTIONS = {0, PlayerInput.LEFT, PlayerInput.RIGHT, PlayerInput.UP,
+        PlayerInput.DOWN, PlayerInput.LEFT | PlayerInput.UP, PlayerInput.RIGHT | PlayerInput.DOWN,
+        PlayerInput.LEFT | PlayerInput.DOWN, PlayerInput.RIGHT | PlayerInput.UP};
+    // Round trips are binned by 100us up to a second, the last bin taking anything slower
+    private static final int RTT_BINS = 10_000;
+    private static final long RTT_BIN_NANOS = 100_000;
+
+    private int maxClients = 1000;
+    private int step = 100;
+    private float seconds = 3;
+    private int playersPerTeam = 16;
+    private int matchCount;
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private float fireRate = 2;
+    private float switchInterval = 30;
+    private long seed = 1;
+    private String csv;
+
+    /** A scripted client: the protocol without a match behind it. */
+    static final class Client {
+        // Commands remembered for resending and for timing their round trip; a power of two
+        private static final int RING = 128;
+
+        final DatagramChannel channel;
+        final Rng rng;
+        boolean accepted;
+        boolean refused;
+        long lastConnect = Long.MIN_VALUE / 2;
+        int sequence;
+        int command;
+        int applied;
+        long ackTick = -1;
+        byte shots;
+        byte teamSwitches;
+        int held;
+        long nextTurn;
+        final byte[] buttons = new byte[RING];
+        final long[] sentAt = new long[RING];
+
+        Client(InetSocketAddress server, long seed) throws IOException {
+            rng = new Rng(seed);
+            channel = DatagramChannel.open();
+            channel.configureBlocking(false);
+            channel.connect(server);
+        }
+    }
+
+    /** What the clients saw during one step. */
+    static final class Stats {
+        final long[] rtt = new long[RTT_BINS];
+        long rttCount;
+        long maxRtt;
+        long snapshots;
+        long snapshotBytes;
+        int maxSnapshot;
+        long frames;
+        long lateFrames;
+
+        void clear() {
+            Arrays.fill(rtt, 0);
+            rttCount = maxRtt = snapshots = snapshotBytes = frames = lateFrames = 0;
+            maxSnapshot = 0;
+        }
+
+        void roundTrip(long nanos) {
+            rtt[(int)Math.min(RTT_BINS - 1, nanos / RTT_BIN_NANOS)]++;
+            rttCount++;
+            maxRtt = Math.max(maxRtt, nanos);
+        }
+
+        // Upper edge of the bin holding the given share of round trips
+        float percentileMillis(double share) {
+            long target = (long)Math.ceil(rttCount * share);
+            long seen = 0;
+            for (int i = 0; i < RTT_BINS; i++) {
+                seen += rtt[i];
+                if (seen >= target && seen > 0) return (i + 1) * RTT_BIN_NANOS / 1e6f;
+            }
+            return 0;
+        }
+    }
+
+    private MatchScheduler scheduler;
+    private final List<HostedMatch> matches = new ArrayList<>();
+    private final List<Client> clients = new ArrayList<>();
+    private Selector selector;
+    private final ByteBuffer in = ByteBuffer.allocate(Protocol.MAX_PACKET);
+    private final ByteBuffer out = ByteBuffer.allocate(Protocol.MAX_PACKET);
+    private final Stats stats = new Stats();
+    private long frame;
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator generator = new LoadGenerator();
+        generator.parse(args);
+        try {
+            generator.run();
+        } finally {
+            generator.close();
+        }
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + option);
+            String value = args[++i];
+            switch (option) {
+                case "--clients": maxClients = Integer.parseInt(value); break;
+                case "--step": step = Integer.parseInt(value); break;
+                case "--seconds": seconds = Float.parseFloat(value); break;
+                case "--players": playersPerTeam = Integer.parseInt(value); break;
+                case "--matches": matchCount = Integer.parseInt(value); break;
+                case "--workers": workers = Integer.parseInt(value); break;
+                case "--fire-rate": fireRate = Float.parseFloat(value); break;
+                case "--switch-interval": switchInterval = Float.parseFloat(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--csv": csv = value; break;
+                default: throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+        int perMatch = playersPerTeam * 2;
+        if (matchCount == 0) matchCount = (maxClients + perMatch - 1) / perMatch;
+        if (matchCount * perMatch < maxClients) {
+            throw new IllegalArgumentException(matchCount + " matches of " + perMatch + " can't take "
+                                               + maxClients + " clients");
+        }
+    }
+
+    private void run() throws IOException {
+        // Room for every match whatever the load; this measures, it doesn't protect
+        scheduler = new MatchScheduler(workers, false, matchCount, Float.MAX_VALUE);
+        for (int i = 0; i < matchCount; i++) {
+            MatchConfig config = new MatchConfig();
+            config.playersPerTeam = playersPerTeam;
+            config.seed = Rng.derive(seed, i);
+            matches.add(scheduler.host(config, new InetSocketAddress("127.0.0.1", 0)));
+        }
+        selector = Selector.open();
+
+        System.out.printf(Locale.ROOT, "%d matches of %dv%d on %d workers%n", matchCount, playersPerTeam,
+                          playersPerTeam, workers);
+        String header = String.format(Locale.ROOT, "%7s %9s %9s %7s %7s %7s %8s %8s %9s %9s %6s %9s %8s",
+                                      "clients", "connected", "snap/s", "bytes", "max", "B/s", "rtt p50",
+                                      "rtt p99", "rtt max", "tick", "load", "overruns", "gen late");
+        System.out.println(header);
+        List<String> rows = new ArrayList<>();
+        for (int target = Math.min(step, maxClients); ; target = Math.min(target + step, maxClients)) {
+            while (clients.size() < target) addClient();
+            rows.add(measure());
+            if (target == maxClients) break;
+        }
+        if (csv != null) {
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(csv),
+                                                                              StandardCharsets.UTF_8))) {
+                writer.println("clients,connected,snapshots_per_client_s,mean_bytes,max_bytes,bytes_per_client_s,"
+                               + "rtt_p50_ms,rtt_p99_ms,rtt_max_ms,tick_us,load,overrun_pct,generator_late_pct");
+                for (String row : rows) writer.println(row);
+            }
+        }
+    }
+
+    // Client i joins match i % matchCount, so the matches fill evenly
+    private void addClient() throws IOException {
+        int index = clients.size();
+        InetSocketAddress address = matches.get(index % matchCount).getServer().getAddress();
+        Client client = new Client(address, Rng.derive(seed ^ 0x10AD, index));
+        client.channel.register(selector, SelectionKey.OP_READ, client);
+        clients.add(client);
+    }
+
+    // Plays for a step with the current clients and returns the step's CSV row
+    private String measure() throws IOException {
+        long[] ticks = new long[matchCount];
+        long[] tickNanos = new long[matchCount];
+        long[] overruns = new long[matchCount];
+        for (int i = 0; i < matchCount; i++) {
+            HostedMatch match = matches.get(i);
+            ticks[i] = match.getTicks();
+            tickNanos[i] = match.getTickNanos();
+            overruns[i] = match.getOverruns();
+        }
+        stats.clear();
+        long start = System.nanoTime();
+        long end = start + (long)(seconds * 1e9);
+        long next = start;
+        while (next < end) {
+            long now = System.nanoTime();
+            if (now - next > TICK_NANOS) stats.lateFrames++;
+            stats.frames++;
+            frame++;
+            for (int i = 0; i < clients.size(); i++) play(clients.get(i), now);
+            receive();
+            next += TICK_NANOS;
+            // Fell a long way behind; don't send a burst to catch up
+            if (now - next > TICK_NANOS * 5) next = now;
+            while ((now = System.nanoTime()) < next) {
+                LockSupport.parkNanos(Math.min(next - now, 1_000_000));
+                receive();
+            }
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        long ran = 0, spent = 0, overran = 0;
+        for (int i = 0; i < matchCount; i++) {
+            HostedMatch match = matches.get(i);
+            ran += match.getTicks() - ticks[i];
+            spent += match.getTickNanos() - tickNanos[i];
+            overran += match.getOverruns() - overruns[i];
+        }
+        int connected = 0;
+        for (Client client : clients) {
+            if (client.accepted && !client.refused) connected++;
+        }
+        double snapshotRate = stats.snapshots / elapsed / Math.max(1, connected);
+        double meanBytes = stats.snapshotBytes / (double)Math.max(1, stats.snapshots);
+        double tickMicros = spent / 1e3 / Math.max(1, ran);
+        double overrunPercent = 100.0 * overran / Math.max(1, ran);
+        double latePercent = 100.0 * stats.lateFrames / Math.max(1, stats.frames);
+        float p50 = stats.percentileMillis(0.5), p99 = stats.percentileMillis(0.99);
+        System.out.printf(Locale.ROOT, "%7d %9d %9.1f %7.0f %7d %7.0f %6.1fms %6.1fms %7.1fms %7.0fus %6.2f"
+                          + " %8.2f%% %7.1f%%%n", clients.size(), connected, snapshotRate, meanBytes, stats.maxSnapshot,
+                          snapshotRate * meanBytes, p50, p99, stats.maxRtt / 1e6, tickMicros,
+                          scheduler.getLoad(), overrunPercent, latePercent);
+        return String.format(Locale.ROOT, "%d,%d,%.2f,%.1f,%d,%.1f,%.2f,%.2f,%.2f,%.1f,%.3f,%.3f,%.3f",
+                             clients.size(), connected, snapshotRate, meanBytes, stats.maxSnapshot,
+                             snapshotRate * meanBytes, p50, p99, stats.maxRtt / 1e6, tickMicros,
+                             scheduler.getLoad(), overrunPercent, latePercent);
+    }
+
+    // One tick of a client's script: asks to join until accepted, then sends its next command
+    private void play(Client client, long now) throws IOException {
+        if (client.refused) return;
+        if (!client.accepted) {
+            if (now - client.lastConnect >= (long)(Protocol.CONNECT_RETRY * 1e9)) {
+                client.lastConnect = now;
+                out.clear();
+                out.put(Protocol.CONNECT);
+                send(client);
+            }
+            return;
+        }
+
+        Rng rng = client.rng;
+        if (frame >= client.nextTurn) {
+            client.held = DIRECTIONS[rng.random(0, DIRECTIONS.length - 1)];
+            client.nextTurn = frame + rng.random(20, 60);
+        }
+        if (rng.randomBoolean(fireRate * GameRules.TICK_DURATION)) client.shots++;
+        if (switchInterval > 0 && rng.randomBoolean(GameRules.TICK_DURATION / switchInterval)) {
+            client.teamSwitches++;
+        }
+        int command = ++client.command;
+        client.buttons[command & (Client.RING - 1)] = (byte)client.held;
+        client.sentAt[command & (Client.RING - 1)] = now;
+
+        // As GameClient.update lays it out
+        out.clear();
+        out.put(Protocol.INPUT);
+        out.putInt(++client.sequence);
+        out.put(client.shots);
+        out.put(client.teamSwitches);
+        out.putInt((int)client.ackTick);
+        int count = Math.min(command, Protocol.INPUT_COMMANDS);
+        out.putInt(command);
+        out.put((byte)count);
+        for (int c = command - count + 1; c <= command; c++) {
+            out.put(client.buttons[c & (Client.RING - 1)]);
+        }
+        send(client);
+    }
+
+    private void receive() throws IOException {
+        if (selector.selectNow() == 0) return;
+        long now = System.nanoTime();
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            Client client = (Client)key.attachment();
+            while (true) {
+                in.clear();
+                try {
+                    if (client.channel.receive(in) == null) break;
+                } catch (PortUnreachableException e) {
+                    break;
+                }
+                in.flip();
+                if (in.hasRemaining()) read(client, in.get(), now);
+            }
+        }
+    }
+
+    private void read(Client client, byte type, long now) {
+        switch (type) {
+            case Protocol.ACCEPT:
+                client.accepted = true;
+                break;
+            case Protocol.SNAPSHOT:
+                if (in.remaining() < 8) return;
+                int applied = in.getInt();
+                long tick = Snapshot.peekTick(in);
+                stats.snapshots++;
+                stats.snapshotBytes += in.limit();
+                stats.maxSnapshot = Math.max(stats.maxSnapshot, in.limit());
+                // Acknowledged without decoding: the server's work is the same either way
+                if (tick > client.ackTick) client.ackTick = tick;
+                if (applied - client.applied > 0 && client.command - applied < Client.RING) {
+                    stats.roundTrip(now - client.sentAt[applied & (Client.RING - 1)]);
+                    client.applied = applied;
+                }
+                break;
+            case Protocol.DISCONNECT:
+                client.refused = true;
+                break;
+        }
+    }
+
+    private void send(Client client) throws IOException {
+        out.flip();
+        try {
+            client.channel.write(out);
+        } catch (PortUnreachableException e) {
+            // Reported for an earlier datagram; the server will answer a later one
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Client client : clients) {
+            if (client.accepted && !client.refused) {
+                out.clear();
+                out.put(Protocol.DISCONNECT);
+                send(client);
+            }
+            client.channel.close();
+        }
+        if (selector != null) selector.close();
+        if (scheduler != null) scheduler.close();
+    }
+}
@@ -0,0 +1,280 @@
+package com.phantom_strike.server;
+
+import com.phantom_strike.sim.GameRules;
+import com.phantom_strike.sim.MatchConfig;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hosts many independent matches in one process. Each is a {@link GameServer} with its
+ * own match, random streams and socket; the scheduler only decides when each one ticks.
+ * <p>
+ * By default a fixed pool of worker threads takes whichever match is due next from a
+ * shared {@link DelayQueue}, ticks it and puts it back due one tick later, so a few
+ * threads keep hundreds of matches at {@link GameRules#TICK_RATE}. New matches start at
+ * staggered phases so their ticks don't all come due at once. On JDK 21 and later each
+ * match can instead get a virtual thread of its own that sleeps until its next tick.
+ * <p>
+ * Every second the scheduler works out its load, the share of worker time spent ticking,
+ * and the share of ticks that overran. {@link #host} turns a match away once the load it
+ * projects for one more match would pass the configured limit, or while ticks are
+ * overrunning, so a box fills up to what it can actually keep on time.
+ */
+public class MatchScheduler implements Closeable {
+    private static final long TICK_NANOS = (long)(GameRules.TICK_DURATION * 1e9);
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+    /** Share of ticks that may overrun before no more matches are admitted. */
+    public static final float MAX_OVERRUN_RATE = 0.01f;
+    // Stagger between the first ticks of consecutive matches, as a share of a tick
+    private static final double PHASE_STEP = 0.6180339887;
+    private static final long POLL_MILLIS = 50;
+
+    private final int workers;
+    private final int maxMatches;
+    private final float maxLoad;
+    private final ThreadFactory virtualThreads;
+    private final DelayQueue<HostedMatch> due = new DelayQueue<>();
+    private final List<HostedMatch> matches = new CopyOnWriteArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running = true;
+    private int hosted;
+
+    // The current measuring window
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final AtomicLong windowTicks = new AtomicLong();
+    private final AtomicLong windowOverruns = new AtomicLong();
+    private volatile long windowStart = System.nanoTime();
+    // Results of the last complete window
+    private volatile float load;
+    private volatile float overrunRate;
+    private volatile int measuredMatches;
+
+    /**
+     * @param workers        pool threads; ignored with virtual threads
+     * @param virtualThreads one virtual thread per match instead of the pool, if the JDK has them
+     * @param maxMatches     most matches hosted at once
+     * @param maxLoad        busy share of the workers, 0 to 1, beyond which no match is admitted
+     */
+    public MatchScheduler(int workers, boolean virtualThreads, int maxMatches, float maxLoad) {
+        this.virtualThreads = virtualThreads ? virtualThreadFactory() : null;
+        this.workers = this.virtualThreads != null ? Runtime.getRuntime().availableProcessors() : workers;
+        this.maxMatches = maxMatches;
+        this.maxLoad = maxLoad;
+        if (this.virtualThreads == null) {
+            for (int i = 0; i < workers; i++) {
+                Thread thread = new Thread(this::work, "match-worker-" + i);
+                thread.setDaemon(true);
+                threads.add(thread);
+                thread.start();
+            }
+        }
+    }
+
+    // Thread.ofVirtual().factory() where the JDK has it, null before JDK 21
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory)Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /** Whether matches run on virtual threads, which needs JDK 21 or later. */
+    public boolean usesVirtualThreads() {
+        return virtualThreads != null;
+    }
+
+    /**
+     * Whether one more match would be admitted now: there is room under the match limit,
+     * the projected load stays under the limit and recent ticks have kept time.
+     */
+    public boolean canAdmit() {
+        return matches.size() < maxMatches && getProjectedLoad() <= maxLoad && overrunRate <= MAX_OVERRUN_RATE;
+    }
+
+    /**
+     * Load with one more match, scaling the last window's load by match count. Nothing
+     * measured yet projects no load.
+     */
+    public float getProjectedLoad() {
+        int measured = measuredMatches;
+        return measured == 0 ? 0 : load / measured * (matches.size() + 1);
+    }
+
+    /**
+     * Starts a match on {@code address}, or returns null if {@link #canAdmit} says there's
+     * no room for it.
+     */
+    public HostedMatch host(MatchConfig config, InetSocketAddress address) throws IOException {
+        return host(config, address, null);
+    }
+
+    /** As {@link #host(MatchConfig, InetSocketAddress)}, recording the match to {@code record} if it isn't null. */
+    public HostedMatch host(MatchConfig config, InetSocketAddress address, Path record) throws IOException {
+        return host(config, address, record, null);
+    }
+
+    /** As {@link #host(MatchConfig, InetSocketAddress, Path)}, logging its stats to {@code stats} if not null. */
+    public synchronized HostedMatch host(MatchConfig config, InetSocketAddress address, Path record, Path stats)
+            throws IOException {
+        if (!running || !canAdmit()) return null;
+        GameServer server = new GameServer(config, address);
+        if (record != null) server.record(record);
+        if (stats != null) server.logStats(stats);
+        long phase = (long)(hosted * PHASE_STEP % 1 * TICK_NANOS);
+        HostedMatch match = new HostedMatch(hosted++, server, System.nanoTime() + phase);
+        matches.add(match);
+        if (virtualThreads != null) {
+            Thread thread = virtualThreads.newThread(() -> follow(match));
+            thread.setName("match-" + match.id);
+            synchronized (threads) {
+                threads.add(thread);
+            }
+            thread.start();
+        } else {
+            due.add(match);
+        }
+        return match;
+    }
+
+    /** Stops ticking a match and closes its server. */
+    public void remove(HostedMatch match) {
+        // Whoever holds it next closes it, so it's never closed mid-tick
+        match.closed = true;
+        if (due.remove(match)) finish(match);
+    }
+
+    // A pool worker: tick whatever is due, then queue it again for its next tick
+    private void work() {
+        while (running) {
+            HostedMatch match;
+            try {
+                // Not take(), so close() needn't interrupt a worker in the middle of a send
+                match = due.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (match == null) continue;
+            if (match.closed || !tick(match)) {
+                finish(match);
+            } else {
+                due.add(match);
+            }
+        }
+    }
+
+    // A virtual thread that belongs to one match
+    private void follow(HostedMatch match) {
+        while (running && !match.closed) {
+            long wait = match.deadline - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            } else if (!tick(match)) {
+                break;
+            }
+        }
+        finish(match);
+        synchronized (threads) {
+            threads.remove(Thread.currentThread());
+        }
+    }
+
+    // Runs one tick and schedules the next; false if the server failed and should go
+    private boolean tick(HostedMatch match) {
+        long start = System.nanoTime();
+        try {
+            match.server.serve(start);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Match " + match.id + " stopped: " + e);
+            return false;
+        }
+        long end = System.nanoTime();
+        long next = match.deadline + TICK_NANOS;
+        boolean overrun = end - next > 0;
+        match.record(start - match.deadline, end - start, overrun);
+        match.deadline = next;
+        // Don't try to catch up on ticks lost to a long stall, as GameServer.run doesn't
+        if (end - next > TICK_NANOS * 5) {
+            match.skip((end - next) / TICK_NANOS);
+            match.deadline = end;
+        }
+
+        busyNanos.addAndGet(end - start);
+        windowTicks.incrementAndGet();
+        if (overrun) windowOverruns.incrementAndGet();
+        if (end - windowStart >= WINDOW_NANOS) measure(end);
+        return true;
+    }
+
+    private synchronized void measure(long now) {
+        long span = now - windowStart;
+        if (span < WINDOW_NANOS) return;
+        long ticks = windowTicks.getAndSet(0);
+        load = busyNanos.getAndSet(0) / (float)(span * workers);
+        overrunRate = ticks == 0 ? 0 : windowOverruns.getAndSet(0) / (float)ticks;
+        measuredMatches = matches.size();
+        windowStart = now;
+    }
+
+    private void finish(HostedMatch match) {
+        matches.remove(match);
+        try {
+            match.server.close();
+        } catch (IOException e) {
+            System.err.println("Closing match " + match.id + ": " + e);
+        }
+    }
+
+    /** Matches being hosted. */
+    public List<HostedMatch> getMatches() {
+        return Collections.unmodifiableList(matches);
+    }
+
+    /** Share of worker time spent ticking over the last second. */
+    public float getLoad() {
+        return load;
+    }
+
+    /** Share of ticks that overran over the last second. */
+    public float getOverrunRate() {
+        return overrunRate;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /** Stops every match and waits for the threads to finish. */
+    @Override
+    public void close() {
+        running = false;
+        List<Thread> all;
+        synchronized (threads) {
+            all = new ArrayList<>(threads);
+        }
+        for (Thread thread : all) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        // Nothing ticks any more, so whatever is left can be closed from here
+        due.clear();
+        for (HostedMatch match : matches) finish(match);
+    }
+}
@@ -0,0 +1,133 @@
+package com.phantom_strike.server;
+
+import com.phantom_strike.sim.GameRules;
+import com.phantom_strike.sim.MatchConfig;
+import com.phantom_strike.sim.Rng;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Finds how many matches one process can host. Bot-only matches are added to a
+ * {@link MatchScheduler} a batch at a time, each batch left to run for a while, until the
+ * scheduler's admission control refuses one. Every step reports the load, tick rate,
+ * overruns and tick times across all matches, so the point where it saturates shows.
+ * <p>
+ * Options: {@code --workers N} (default one per core) or {@code --workers virtual},
+ * {@code --players N} (per team, default 8), {@code --batch N} (default 10),
+ * {@code --seconds N} per step (default 2), {@code --max-matches N} (default 1000),
+ * {@code --max-load SHARE} (default 0.75) and {@code --seed N}. Exits non-zero if the first
+ * step's matches don't keep {@link GameRules#TICK_RATE}. A refusal is only taken as
+ * saturation if the scheduler still refuses after another step.
+ */
+public class PackingBenchmark {
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private boolean virtualThreads;
+    private final MatchConfig config = new MatchConfig();
+    private int batch = 10;
+    private float seconds = 2;
+    private int maxMatches = 1000;
+    private float maxLoad = 0.75f;
+    private long seed = 1;
+
+    public static void main(String[] args) throws Exception {
+        PackingBenchmark benchmark = new PackingBenchmark();
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + option);
+            String value = args[++i];
+            switch (option) {
+                case "--workers":
+                    benchmark.virtualThreads = value.equals("virtual");
+                    if (!benchmark.virtualThreads) benchmark.workers = Integer.parseInt(value);
+                    break;
+                case "--players": benchmark.config.playersPerTeam = Integer.parseInt(value); break;
+                case "--batch": benchmark.batch = Integer.parseInt(value); break;
+                case "--seconds": benchmark.seconds = Float.parseFloat(value); break;
+                case "--max-matches": benchmark.maxMatches = Integer.parseInt(value); break;
+                case "--max-load": benchmark.maxLoad = Float.parseFloat(value); break;
+                case "--seed": benchmark.seed = Long.parseLong(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+        System.exit(benchmark.run() ? 0 : 1);
+    }
+
+    private boolean run() throws Exception {
+        boolean ok = true;
+        try (MatchScheduler scheduler = new MatchScheduler(workers, virtualThreads, maxMatches, maxLoad)) {
+            System.out.printf(Locale.ROOT, "%s, %d players per team, load limit %.2f%n",
+                              scheduler.usesVirtualThreads() ? "virtual threads" : scheduler.getWorkers() + " workers",
+                              config.playersPerTeam, maxLoad);
+            System.out.printf(Locale.ROOT, "%8s %6s %10s %10s %11s %11s %10s%n", "matches", "load", "ticks/s",
+                              "overruns", "mean tick", "max tick", "max late");
+            int hosted = 0;
+            boolean first = true;
+            boolean refused = false;
+            while (true) {
+                int added = 0;
+                for (int i = 0; i < batch; i++) {
+                    MatchConfig match = config.copy();
+                    match.seed = Rng.derive(seed, hosted);
+                    if (scheduler.host(match, new InetSocketAddress("127.0.0.1", 0)) == null) break;
+                    hosted++;
+                    added++;
+                }
+                if (added == 0 && !refused) {
+                    // Could be a passing hiccup, such as warming up; give it another step
+                    refused = true;
+                    step(scheduler);
+                    continue;
+                }
+                if (added == 0) {
+                    System.out.printf(Locale.ROOT, "Saturated at %d matches: projected load %.2f, overruns %.2f%%%n",
+                                      hosted, scheduler.getProjectedLoad(), 100 * scheduler.getOverrunRate());
+                    break;
+                }
+                refused = false;
+                double rate = step(scheduler);
+                if (first && rate < GameRules.TICK_RATE * 0.95) {
+                    System.out.println("FAIL: the first " + hosted + " matches didn't keep the tick rate");
+                    ok = false;
+                    break;
+                }
+                first = false;
+                if (hosted >= maxMatches) {
+                    System.out.println("Stopped at the match limit of " + maxMatches);
+                    break;
+                }
+            }
+        }
+        return ok;
+    }
+
+    // Lets the matches run for a step and prints how they did; returns the mean ticks per second per match
+    private double step(MatchScheduler scheduler) throws InterruptedException {
+        List<HostedMatch> matches = scheduler.getMatches();
+        long[] ticks = new long[matches.size()];
+        long[] overruns = new long[matches.size()];
+        for (int i = 0; i < ticks.length; i++) {
+            ticks[i] = matches.get(i).getTicks();
+            overruns[i] = matches.get(i).getOverruns();
+        }
+        long start = System.nanoTime();
+        Thread.sleep((long)(seconds * 1000));
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        long ran = 0, overran = 0, mean = 0, max = 0, late = 0;
+        for (int i = 0; i < ticks.length; i++) {
+            HostedMatch match = matches.get(i);
+            ran += match.getTicks() - ticks[i];
+            overran += match.getOverruns() - overruns[i];
+            mean += match.getMeanTickNanos();
+            max = Math.max(max, match.getMaxTickNanos());
+            late = Math.max(late, match.getMaxLateNanos());
+        }
+        double rate = ran / elapsed / ticks.length;
+        System.out.printf(Locale.ROOT, "%8d %6.2f %10.1f %9.2f%% %9.0fus %9.0fus %8.1fms%n", ticks.length,
+                          scheduler.getLoad(), rate, 100.0 * overran / Math.max(1, ran), mean / 1e3 / ticks.length,
+                          max / 1e3, late / 1e6);
+        return rate;
+    }
+}
@@ -0,0 +1,128 @@
+package com.phantom_strike.server;
+
+import com.phantom_strike.net.GameClient;
+import com.phantom_strike.net.Prediction;
+import com.phantom_strike.sim.Match;
+import com.phantom_strike.sim.MatchConfig;
+import com.phantom_strike.sim.PlayerInput;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Measures how often client-side prediction has to be corrected. A server and one client
+ * run over loopback through a {@link LatencyProxy}; the client wanders about with
+ * scripted input for a while and the harness reports how many predicted commands the
+ * server's result disagreed with, and by how far.
+ * <p>
+ * Options: {@code --latency MILLIS} each way, {@code --jitter MILLIS}, {@code --loss
+ * PERCENT}, {@code --seconds N} per run (default 10) and {@code --seed N}. Without latency,
+ * jitter or loss it runs a few typical network conditions in turn. Exits non-zero if the
+ * client never got far enough to check a prediction.
+ */
+public class PredictionHarness {
+    // Latency, jitter (ms) and loss (%) of the default runs
+    private static final int[][] CONDITIONS = {{0, 0, 0}, {25, 5, 0}, {50, 10, 1}, {100, 20, 5}};
+    private static final long FRAME_MILLIS = 16;
+
+    private float seconds = 10;
+    private long seed = 11;
+    private int failures;
+
+    public static void main(String[] args) throws Exception {
+        PredictionHarness harness = new PredictionHarness();
+        int[] condition = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--latency": condition = set(condition, 0, Integer.parseInt(args[i + 1])); break;
+                case "--jitter": condition = set(condition, 1, Integer.parseInt(args[i + 1])); break;
+                case "--loss": condition = set(condition, 2, Integer.parseInt(args[i + 1])); break;
+                case "--seconds": harness.seconds = Float.parseFloat(args[i + 1]); break;
+                case "--seed": harness.seed = Long.parseLong(args[i + 1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        System.out.printf(Locale.ROOT, "%8s %7s %5s %9s %8s %12s %7s %9s %8s %10s%n", "latency", "jitter",
+                          "loss", "commands", "checked", "corrections", "rate", "mean px", "max px", "snapshots");
+        for (int[] c : condition != null ? new int[][] {condition} : CONDITIONS) {
+            harness.run(c[0], c[1], c[2]);
+        }
+        System.out.println(harness.failures == 0 ? "PASS" : "FAIL (" + harness.failures + " runs)");
+        System.exit(harness.failures == 0 ? 0 : 1);
+    }
+
+    private static int[] set(int[] condition, int index, int value) {
+        int[] c = condition != null ? condition : new int[3];
+        c[index] = value;
+        return c;
+    }
+
+    private void run(int latency, int jitter, int loss) throws Exception {
+        MatchConfig config = new MatchConfig();
+        config.seed = seed;
+        config.playersPerTeam = 4;
+        GameServer server = new GameServer(config, new InetSocketAddress("127.0.0.1", 0));
+        LatencyProxy proxy = new LatencyProxy(server.getAddress(), latency, jitter, loss / 100.0, seed);
+        Thread serverThread = new Thread(server, "server");
+        Thread proxyThread = new Thread(proxy, "proxy");
+        serverThread.start();
+        proxyThread.start();
+        GameClient client = new GameClient(proxy.getAddress());
+        try {
+            long end = System.currentTimeMillis() + 5000;
+            while (!client.isConnected() && System.currentTimeMillis() < end) {
+                client.poll();
+                Thread.sleep(FRAME_MILLIS);
+            }
+            if (!client.isConnected()) {
+                System.out.printf(Locale.ROOT, "%6dms %5dms %4d%%  never connected%n", latency, jitter, loss);
+                failures++;
+                return;
+            }
+            drive(client);
+            Prediction prediction = client.getPrediction();
+            int checked = prediction.getChecked();
+            System.out.printf(Locale.ROOT, "%6dms %5dms %4d%% %9d %8d %12d %6.1f%% %9.1f %8.1f %10d%n",
+                              latency, jitter, loss, prediction.newest(), checked, prediction.getCorrections(),
+                              100f * prediction.getCorrections() / Math.max(1, checked),
+                              prediction.getMeanCorrection(), prediction.getMaxCorrection(),
+                              client.getSnapshotCount());
+            if (checked == 0) failures++;
+        } finally {
+            client.close();
+            server.stop();
+            proxy.stop();
+            serverThread.join();
+            proxyThread.join();
+            server.close();
+            proxy.close();
+        }
+    }
+
+    // Walks in a new direction every so often, a frame at a time
+    private void drive(GameClient client) throws IOException, InterruptedException {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] directions = {0, PlayerInput.LEFT, PlayerInput.RIGHT, PlayerInput.UP, PlayerInput.DOWN,
+            PlayerInput.LEFT | PlayerInput.UP, PlayerInput.RIGHT | PlayerInput.DOWN};
+        Match match = client.getMatch();
+        int buttons = 0;
+        long now = System.nanoTime();
+        long end = now + (long)(seconds * 1e9);
+        long nextTurn = now;
+        long last = now;
+        while (now < end) {
+            if (now >= nextTurn) {
+                buttons = directions[random.nextInt(directions.length)];
+                nextTurn = now + 400_000_000L + random.nextLong(800_000_000L);
+            }
+            boolean idle = match.isRespawning(client.getPlayer()) || match.isGameOver();
+            client.update((now - last) / 1e9f, idle ? 0 : buttons, false, false);
+            client.poll();
+            last = now;
+            Thread.sleep(FRAME_MILLIS);
+            now = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.phantom_strike.server;
+
+import com.phantom_strike.net.Protocol;
+import com.phantom_strike.sim.GameMap;
+import com.phantom_strike.sim.MatchConfig;
+import com.phantom_strike.sim.Rng;
+
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Starts a dedicated server and serves until the process is killed.
+ * <p>
+ * Options: {@code --port N}, {@code --bind HOST}, {@code --players N} (per team, every one a
+ * bot until a client takes it over), {@code --seed N} and {@code --map FILE}, which clients
+ * have to be started with too. {@code --record FILE} records the match as a replay; with
+ * several matches it's a directory, and match {@code i} goes to {@code match-<i>.psr} in it. {@code --stats FILE} likewise logs shots, hits, kills, pickups
+ * and teleports, to {@code match-<i>.pss} with several matches.
+ * <p>
+ * With {@code --matches N} it hosts N matches on consecutive ports from {@code --port}, on
+ * a {@link MatchScheduler} with {@code --workers N} threads (default one per core) or
+ * {@code --workers virtual} for a virtual thread per match. {@code --max-load SHARE}
+ * (default 0.75) is the worker load past which further matches are refused. A status line
+ * is printed every {@code --report SECONDS} (default 10).
+ */
+public class ServerLauncher {
+    public static void main(String[] args) throws Exception {
+        MatchConfig config = new MatchConfig();
+        String host = "0.0.0.0";
+        int port = Protocol.DEFAULT_PORT;
+        int matches = 1;
+        int workers = Runtime.getRuntime().availableProcessors();
+        boolean virtualThreads = false;
+        float maxLoad = 0.75f;
+        float report = 10;
+        String record = null;
+        String stats = null;
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + option);
+            String value = args[++i];
+            switch (option) {
+                case "--port": port = Integer.parseInt(value); break;
+                case "--bind": host = value; break;
+                case "--players": config.playersPerTeam = Integer.parseInt(value); break;
+                case "--seed": config.seed = Long.parseLong(value); break;
+                case "--map": config.map = GameMap.open(Paths.get(value)); break;
+                case "--matches": matches = Integer.parseInt(value); break;
+                case "--workers":
+                    virtualThreads = value.equals("virtual");
+                    if (!virtualThreads) workers = Integer.parseInt(value);
+                    break;
+                case "--max-load": maxLoad = Float.parseFloat(value); break;
+                case "--report": report = Float.parseFloat(value); break;
+                case "--record": record = value; break;
+                case "--stats": stats = value; break;
+                default: throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+
+        if (matches > 1) {
+            hostMany(config, host, port, matches, workers, virtualThreads, maxLoad, report, record, stats);
+            return;
+        }
+        GameServer server = new GameServer(config, new InetSocketAddress(host, port));
+        if (record != null) server.record(Paths.get(record));
+        if (stats != null) server.logStats(Paths.get(stats));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        System.out.println("Serving seed " + server.getMatch().getSeed() + " on " + server.getAddress());
+        server.run();
+        server.close();
+    }
+
+    private static void hostMany(MatchConfig config, String host, int port, int matches, int workers,
+                                 boolean virtualThreads, float maxLoad, float report, String record,
+                                 String stats) throws Exception {
+        MatchScheduler scheduler = new MatchScheduler(workers, virtualThreads, matches, maxLoad);
+        if (virtualThreads && !scheduler.usesVirtualThreads()) {
+            System.out.println("This JDK has no virtual threads; using " + workers + " workers");
+        }
+        Thread main = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            scheduler.close();
+            main.interrupt();
+        }));
+        long base = config.seed;
+        if (record != null) Files.createDirectories(Paths.get(record));
+        if (stats != null) Files.createDirectories(Paths.get(stats));
+        for (int i = 0; i < matches; i++) {
+            MatchConfig match = config.copy();
+            // Each match its own seed, still reproducible when one was given
+            if (base != 0) match.seed = Rng.derive(base, i);
+            Path file = record != null ? Paths.get(record, "match-" + i + ".psr") : null;
+            Path log = stats != null ? Paths.get(stats, "match-" + i + ".pss") : null;
+            HostedMatch hosted = scheduler.host(match, new InetSocketAddress(host, port + i), file, log);
+            if (hosted == null) {
+                System.out.printf(Locale.ROOT, "Refused match %d of %d: projected load %.2f, overruns %.1f%%%n",
+                                  i + 1, matches, scheduler.getProjectedLoad(), 100 * scheduler.getOverrunRate());
+                break;
+            }
+            System.out.println("Serving seed " + hosted.getServer().getMatch().getSeed() + " on "
+                               + hosted.getServer().getAddress());
+        }
+
+        try {
+            while (true) {
+                Thread.sleep((long)(report * 1000));
+                int clients = 0;
+                long overruns = 0, ticks = 0;
+                for (HostedMatch hosted : scheduler.getMatches()) {
+                    clients += hosted.getServer().getClientCount();
+                    overruns += hosted.getOverruns();
+                    ticks += hosted.getTicks();
+                }
+                System.out.printf(Locale.ROOT, "%d matches, %d clients, load %.2f, overruns %.2f%% (%d of %d ticks)%n",
+                                  scheduler.getMatches().size(), clients, scheduler.getLoad(),
+                                  100 * scheduler.getOverrunRate(), overruns, ticks);
+            }
+        } catch (InterruptedException e) {
+            // Shutting down
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.phantom_strike.server;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.phantom_strike.net.BaselineRing;
+import com.phantom_strike.net.BitReader;
+import com.phantom_strike.net.BitWriter;
+import com.phantom_strike.net.BufferPool;
+import com.phantom_strike.net.Interest;
+import com.phantom_strike.net.InterestManager;
+import com.phantom_strike.net.Protocol;
+import com.phantom_strike.net.Snapshot;
+import com.phantom_strike.net.WorldState;
+import com.phantom_strike.sim.GameRules;
+import com.phantom_strike.sim.Match;
+import com.phantom_strike.sim.MatchConfig;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * Measures snapshot size and encode cost on real bot matches with 16, 128 and 1000
+ * players. One simulated client acknowledges each snapshot after a round trip of
+ * {@code --rtt} milliseconds, so diffs span a realistic number of ticks. Every encoded
+ * snapshot is also decoded and checked against the server's state.
+ * <p>
+ * The last columns are the same client sent only its {@link Interest}, as the server
+ * does: entities in view, bytes per snapshot including the far section, the time to update
+ * the grid and interest sets (shared by every client) and the time to build and encode the
+ * view (paid per client).
+ * <p>
+ * Options: {@code --seconds N} of game time measured per size (default 20),
+ * {@code --rtt MILLIS} (default 100) and {@code --seed N}.
+ */
+public class SnapshotBenchmark {
+    private static final int[] PLAYERS = {16, 128, 1000};
+    // Big enough that nothing is left out, so sizes are the real cost of the state
+    private static final int BUFFER_SIZE = 1 << 16;
+    // IPv4 and UDP headers
+    private static final int HEADER_BYTES = 28;
+
+    private float seconds = 20;
+    private int rttMillis = 100;
+    private long seed = 7;
+
+    public static void main(String[] args) {
+        SnapshotBenchmark benchmark = new SnapshotBenchmark();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--seconds": benchmark.seconds = Float.parseFloat(args[i + 1]); break;
+                case "--rtt": benchmark.rttMillis = Integer.parseInt(args[i + 1]); break;
+                case "--seed": benchmark.seed = Long.parseLong(args[i + 1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        System.out.printf(Locale.ROOT, "Snapshots every %d ticks (%d/s), client round trip %d ms%n",
+                          Protocol.SNAPSHOT_INTERVAL, GameRules.TICK_RATE / Protocol.SNAPSHOT_INTERVAL,
+                          benchmark.rttMillis);
+        System.out.printf(Locale.ROOT, "%8s %9s %10s %10s %12s %10s %10s %9s %8s %6s %8s %12s %8s %8s%n",
+                          "players", "entities", "full B", "delta B", "B/client/s", "capture", "encode",
+                          "fit 1200", "alloc", "view", "view B", "B/client/s", "update", "view");
+        for (int players : PLAYERS) {
+            benchmark.run(players);
+        }
+    }
+
+    private void run(int players) {
+        MatchConfig config = new MatchConfig();
+        config.seed = seed;
+        config.humanPlayer = false;
+        config.playersPerTeam = players / 2;
+        Match match = new Match(config);
+
+        WorldState current = new WorldState();
+        WorldState full = new WorldState();
+        BaselineRing sent = new BaselineRing();
+        BaselineRing received = new BaselineRing();
+        BufferPool buffers = new BufferPool(BUFFER_SIZE);
+        BitWriter writer = new BitWriter();
+        BitReader reader = new BitReader();
+        IntArray removed = new IntArray();
+        // The same client again, sent only its interest
+        InterestManager interests = new InterestManager(match);
+        Interest interest = interests.add(match.getPlayers().get(0));
+        WorldState view = new WorldState();
+        BaselineRing viewSent = new BaselineRing();
+        BaselineRing viewReceived = new BaselineRing();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        boolean countAllocations = threads instanceof com.sun.management.ThreadMXBean;
+
+        long ackDelay = GameRules.ticks(rttMillis / 1000f);
+        long warmup = GameRules.ticks(5);
+        long end = warmup + GameRules.ticks(seconds);
+        long snapshots = 0, entities = 0, fullBytes = 0, deltaBytes = 0, fits = 0;
+        long captureNanos = 0, encodeNanos = 0, allocated = 0, mismatches = 0;
+        long viewEntities = 0, viewBytes = 0, updateNanos = 0, viewNanos = 0;
+        long ackTick = -1;
+
+        while (match.getTick() < end) {
+            match.step();
+            if (match.getTick() % Protocol.SNAPSHOT_INTERVAL != 0) continue;
+            long tick = match.getTick();
+            boolean measure = tick > warmup;
+            long allocatedBefore = countAllocations ? allocatedBytes(threads) : 0;
+
+            long start = System.nanoTime();
+            current.capture(match);
+            long captured = System.nanoTime();
+
+            // The client acknowledges what it got a round trip ago
+            long acked = tick - ackDelay;
+            if (received.get(acked - acked % Protocol.SNAPSHOT_INTERVAL) != null) {
+                ackTick = acked - acked % Protocol.SNAPSHOT_INTERVAL;
+            }
+            WorldState baseline = tick - ackTick < BaselineRing.SIZE ? sent.get(ackTick) : null;
+            ByteBuffer out = buffers.acquire();
+            out.put(Protocol.SNAPSHOT);
+            writer.wrap(out);
+            Snapshot.encode(current, baseline, sent.claim(tick), writer);
+            writer.flush();
+            long encoded = System.nanoTime();
+            if (countAllocations) allocated += measure ? allocatedBytes(threads) - allocatedBefore : 0;
+
+            // Size of the same state without a baseline, for comparison
+            ByteBuffer fullOut = buffers.acquire();
+            writer.wrap(fullOut);
+            Snapshot.encode(current, null, full, writer);
+            writer.flush();
+
+            // Decode on the "client" and check nothing was lost
+            out.flip();
+            out.get();
+            WorldState decoded = received.claim(tick);
+            Snapshot.decode(reader.wrap(out), baseline != null ? received.get(ackTick) : null, decoded, removed);
+            if (!decoded.sameAs(current)) mismatches++;
+
+            if (measure) {
+                snapshots++;
+                entities += current.size();
+                deltaBytes += out.limit();
+                fullBytes += fullOut.position();
+                if (out.limit() <= Protocol.MAX_PACKET) fits++;
+                captureNanos += captured - start;
+                encodeNanos += encoded - captured;
+            }
+            buffers.release(out);
+            buffers.release(fullOut);
+
+            // Interest-managed, with the same acknowledgement pattern
+            long viewStart = System.nanoTime();
+            interests.update();
+            long updated = System.nanoTime();
+            interest.buildView(match, view);
+            WorldState viewBaseline = tick - ackTick < BaselineRing.SIZE ? viewSent.get(ackTick) : null;
+            ByteBuffer viewOut = buffers.acquire();
+            viewOut.put(Protocol.SNAPSHOT);
+            writer.wrap(viewOut);
+            writer.reserve(Snapshot.FAR_BITS);
+            Snapshot.encode(view, viewBaseline, viewSent.claim(tick), writer);
+            writer.unreserve(Snapshot.FAR_BITS);
+            interest.writeFar(match, writer);
+            writer.flush();
+            long viewEnd = System.nanoTime();
+
+            viewOut.flip();
+            viewOut.get();
+            WorldState viewDecoded = viewReceived.claim(tick);
+            Snapshot.decode(reader.wrap(viewOut), viewBaseline != null ? viewReceived.get(ackTick) : null,
+                            viewDecoded, removed);
+            if (!viewDecoded.sameAs(view)) mismatches++;
+            if (measure) {
+                viewEntities += view.size();
+                viewBytes += viewOut.limit();
+                updateNanos += updated - viewStart;
+                viewNanos += viewEnd - updated;
+            }
+            buffers.release(viewOut);
+        }
+
+        double n = Math.max(1, snapshots);
+        double perSecond = GameRules.TICK_RATE / (double)Protocol.SNAPSHOT_INTERVAL;
+        System.out.printf(Locale.ROOT, "%8d %9.0f %10.0f %10.0f %12.0f %8.1fus %8.1fus %8.0f%% %8s"
+                          + " %6.0f %8.0f %12.0f %6.1fus %6.1fus%n",
+                          players, entities / n, fullBytes / n, deltaBytes / n,
+                          (deltaBytes / n + HEADER_BYTES) * perSecond, captureNanos / n / 1e3,
+                          encodeNanos / n / 1e3, 100 * fits / n,
+                          countAllocations ? Math.round(allocated / n) + "B" : "n/a", viewEntities / n,
+                          viewBytes / n, (viewBytes / n + HEADER_BYTES) * perSecond, updateNanos / n / 1e3,
+                          viewNanos / n / 1e3);
+        if (mismatches > 0) {
+            System.out.println("  " + mismatches + " snapshots decoded differently from what was encoded");
+        }
+    }
+
+    private static long allocatedBytes(ThreadMXBean threads) {
+        return ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,167 @@
+package com.phantom_strike.server;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.phantom_strike.check.Checks;
+import com.phantom_strike.ecs.Component;
+import com.phantom_strike.ecs.EntityWorld;
+import com.phantom_strike.ecs.Family;
+import com.phantom_strike.sim.GameRules;
+import com.phantom_strike.sim.Match;
+import com.phantom_strike.sim.MatchConfig;
+import com.phantom_strike.sim.PlayerInput;
+import com.phantom_strike.spatial.HitboxHistory;
+
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import static com.phantom_strike.sim.GameRules.*;
+
+/**
+ * Checks lag-compensated hits on a real match, then times the hitbox history. A target
+ * walks steadily upwards and a shooter fires at where it was some ticks ago, claiming to
+ * have seen the match that long ago: the shot should land only when that claim is within
+ * {@link GameRules#MAX_LAG_COMPENSATION}. The timing part records and queries histories
+ * of 16, 128 and 1000 hitboxes and compares the queries with scanning every box.
+ * <p>
+ * Options: {@code --seed N}. Prints a line per check and exits non-zero if any fail.
+ */
+public class LagCompensationHarness {
+    private static final int[] BOXES = {16, 128, 1000};
+    private static final int WALK_TICKS = 80;
+    private static final float START_Y = 200;
+    private static final int QUERIES = 200_000;
+
+    private long seed = 5;
+    private final Checks checks = new Checks();
+
+    public static void main(String[] args) {
+        LagCompensationHarness harness = new LagCompensationHarness();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--seed": harness.seed = Long.parseLong(args[i + 1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        int lag = (int)GameRules.ticks(0.2f);
+        int tooFar = (int)GameRules.ticks(MAX_LAG_COMPENSATION) * 3;
+        harness.checks.check(harness.shoot(0, 0), "a shot at where the target is now hits");
+        harness.checks.check(harness.shoot(lag, lag),
+                             "a shooter " + lag + " ticks behind hits where it saw the target");
+        harness.checks.check(!harness.shoot(lag, 0), "the same shot misses without compensation");
+        harness.checks.check(!harness.shoot(tooFar, tooFar), "nothing is compensated " + tooFar + " ticks back");
+        for (int boxes : BOXES) {
+            harness.time(boxes);
+        }
+        harness.checks.finish();
+    }
+
+    /**
+     * Fires at where the target was {@code aimTicks} ago, from a shooter that saw the match
+     * {@code viewTicks} ago. Returns whether the target took damage.
+     */
+    private boolean shoot(int aimTicks, int viewTicks) {
+        MatchConfig config = new MatchConfig();
+        config.seed = seed;
+        config.humanPlayer = false;
+        config.playersPerTeam = 1;
+        Match match = new Match(config);
+        EntityWorld world = match.getWorld();
+        int shooter = match.getPlayers().get(0);
+        int target = match.getPlayers().get(1);
+        world.remove(shooter, Component.AI);
+        world.remove(target, Component.AI);
+        // Out of the way until it fires
+        world.x[shooter] = 0;
+        world.y[shooter] = WORLD_HEIGHT - STICKMAN_HEIGHT;
+
+        world.x[target] = clearColumn(match);
+        world.y[target] = START_Y;
+        float[] xs = new float[WALK_TICKS];
+        float[] ys = new float[WALK_TICKS];
+        for (int t = 0; t < WALK_TICKS; t++) {
+            match.applyInput(target, PlayerInput.UP, false, false);
+            match.step();
+            xs[t] = world.x[target];
+            ys[t] = world.y[target];
+        }
+
+        // Stand just left of where the target was seen, the muzzle level with its middle
+        float seenX = xs[WALK_TICKS - 1 - aimTicks];
+        float seenY = ys[WALK_TICKS - 1 - aimTicks];
+        world.x[shooter] = seenX - 45;
+        world.y[shooter] = seenY + STICKMAN_HEIGHT / 2 - (STICKMAN_HEIGHT - 20);
+        world.facingRight[shooter] = true;
+        int health = world.health[target];
+        match.applyInput(shooter, 0, true, false, match.getTick() - viewTicks);
+        for (int t = 0; t < 10; t++) {
+            match.applyInput(target, PlayerInput.UP, false, false);
+            match.step();
+        }
+        return world.health[target] < health;
+    }
+
+    // An x where the target can walk up from START_Y without bumping into anything
+    private static float clearColumn(Match match) {
+        EntityWorld world = match.getWorld();
+        Family colliders = match.getColliders();
+        for (float x = 300; x < WORLD_WIDTH - 300; x += 50) {
+            boolean clear = true;
+            for (int i = 0; i < colliders.size() && clear; i++) {
+                int c = colliders.get(i);
+                clear = world.x[c] > x + 100 || world.x[c] + world.width[c] < x - 100
+                    || world.y[c] > START_Y + 600 || world.y[c] + world.height[c] < START_Y - 100;
+            }
+            if (clear) return x;
+        }
+        throw new IllegalStateException("No clear column on this map; try another seed");
+    }
+
+    private void time(int boxes) {
+        int ticks = (int)GameRules.ticks(MAX_LAG_COMPENSATION) + 1;
+        HitboxHistory history = new HitboxHistory(ticks, STICKMAN_WIDTH, STICKMAN_HEIGHT, WORLD_WIDTH,
+                                                  WORLD_HEIGHT, 100);
+        SplittableRandom random = new SplittableRandom(seed);
+        float[][] xs = new float[history.ticks()][boxes];
+        float[][] ys = new float[history.ticks()][boxes];
+        long recordNanos = 0;
+        for (int tick = 0; tick < history.ticks(); tick++) {
+            for (int i = 0; i < boxes; i++) {
+                xs[tick][i] = (float)random.nextDouble(WORLD_WIDTH);
+                ys[tick][i] = (float)random.nextDouble(WORLD_HEIGHT);
+            }
+            long start = System.nanoTime();
+            history.begin(tick);
+            for (int i = 0; i < boxes; i++) history.add(i, xs[tick][i], ys[tick][i]);
+            history.end();
+            recordNanos += System.nanoTime() - start;
+        }
+
+        IntArray found = new IntArray();
+        long queryNanos = 0, scanNanos = 0, hits = 0;
+        int wrong = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            int tick = random.nextInt(history.ticks());
+            float x = (float)random.nextDouble(WORLD_WIDTH), y = (float)random.nextDouble(WORLD_HEIGHT);
+            float r = BULLET_RADIUS;
+            long start = System.nanoTime();
+            found.clear();
+            history.query(tick, x - r, y - r, x + r, y + r, found);
+            long queried = System.nanoTime();
+            int expected = 0;
+            for (int i = 0; i < boxes; i++) {
+                if (xs[tick][i] <= x + r && xs[tick][i] + STICKMAN_WIDTH >= x - r
+                    && ys[tick][i] <= y + r && ys[tick][i] + STICKMAN_HEIGHT >= y - r) {
+                    expected++;
+                }
+            }
+            scanNanos += System.nanoTime() - queried;
+            queryNanos += queried - start;
+            hits += found.size;
+            if (found.size != expected) wrong++;
+        }
+        System.out.printf(Locale.ROOT, "%5d boxes: record %6.1fus/tick, query %5.0fns, scan every box %6.0fns,"
+                          + " %.3f hits/query%n", boxes, recordNanos / 1e3 / history.ticks(),
+                          queryNanos / (double)QUERIES, scanNanos / (double)QUERIES, hits / (double)QUERIES);
+        checks.check(wrong == 0, boxes + " boxes: queries agree with a full scan");
+    }
+}
@@ -0,0 +1,250 @@
+package com.phantom_strike.server;
+
+import com.phantom_strike.check.Checks;
+import com.phantom_strike.ecs.Component;
+import com.phantom_strike.ecs.EntityWorld;
+import com.phantom_strike.ecs.Family;
+import com.phantom_strike.net.GameClient;
+import com.phantom_strike.replay.ReplayPlayer;
+import com.phantom_strike.sim.Match;
+import com.phantom_strike.sim.MatchConfig;
+import com.phantom_strike.sim.PlayerInput;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+/**
+ * End-to-end check of the server and client over loopback, all in one JVM: a server on a
+ * free port and a handful of {@link GameClient}s driven the way the desktop client drives
+ * one. Prints a line per check and exits non-zero if any fail.
+ * <p>
+ * Options: {@code --clients N} (default 4), {@code --seed N}.
+ */
+public class LoopbackHarness {
+    private static final long FRAME_MILLIS = 16;
+
+    private int clientCount = 4;
+    private long seed = 42;
+    private final Checks checks = new Checks();
+
+    public static void main(String[] args) throws Exception {
+        LoopbackHarness harness = new LoopbackHarness();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--clients": harness.clientCount = Integer.parseInt(args[i + 1]); break;
+                case "--seed": harness.seed = Long.parseLong(args[i + 1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        harness.run();
+        harness.checks.finish();
+    }
+
+    private void run() throws Exception {
+        MatchConfig config = new MatchConfig();
+        config.seed = seed;
+        config.playersPerTeam = 4;
+        GameServer server = new GameServer(config, new InetSocketAddress("127.0.0.1", 0));
+        Path replay = Files.createTempFile("loopback", ".psr");
+        server.record(replay);
+        Thread thread = new Thread(server, "server");
+        thread.start();
+        InetSocketAddress address = server.getAddress();
+        List<GameClient> clients = new ArrayList<>();
+        try {
+            for (int i = 0; i < clientCount; i++) {
+                clients.add(new GameClient(address));
+            }
+            checkJoin(server, clients);
+            checkSnapshots(clients);
+            checkFarPlayers(server, clients.get(0));
+            checkMovement(clients.get(0));
+            checkShooting(clients.get(0));
+            checkLeave(server, clients);
+        } finally {
+            // Stop the server first, so its match ends on a tick rather than on the clients' goodbyes
+            server.stop();
+            thread.join();
+            for (GameClient client : clients) client.close();
+            server.close();
+        }
+        checkReplay(server, replay);
+        checkFull();
+    }
+
+    private void checkJoin(GameServer server, List<GameClient> clients) throws IOException {
+        boolean joined = pump(clients, 5000, () -> {
+            for (GameClient client : clients) {
+                if (!client.isConnected()) return false;
+            }
+            return true;
+        });
+        checks.check(joined, "every client is accepted");
+        if (!joined) return;
+
+        Set<Integer> players = new HashSet<>();
+        for (GameClient client : clients) players.add(client.getPlayer());
+        checks.check(players.size() == clients.size(), "each client gets its own player");
+        checks.check(server.getClientCount() == clients.size(), "server counts " + clients.size() + " clients");
+
+        // The client rebuilt the map from the seed; static objects must line up id for id
+        Match local = clients.get(0).getMatch();
+        EntityWorld remote = server.getMatch().getWorld();
+        Family colliders = local.getColliders();
+        boolean same = local.getSeed() == server.getMatch().getSeed();
+        for (int i = 0; i < colliders.size(); i++) {
+            int e = colliders.get(i);
+            EntityWorld world = local.getWorld();
+            same &= world.x[e] == remote.x[e] && world.y[e] == remote.y[e]
+                && world.objectType[e] == remote.objectType[e];
+        }
+        checks.check(same, "client map matches the server's");
+    }
+
+    private void checkSnapshots(List<GameClient> clients) throws IOException {
+        int[] before = new int[clients.size()];
+        for (int i = 0; i < clients.size(); i++) before[i] = clients.get(i).getSnapshotCount();
+        pump(clients, 1000, () -> false);
+        // 30 a second are sent; allow for scheduling slop on a busy machine
+        for (int i = 0; i < clients.size(); i++) {
+            int received = clients.get(i).getSnapshotCount() - before[i];
+            checks.check(received >= 15, "client " + i + " received " + received + " snapshots in a second");
+        }
+    }
+
+    private void checkFarPlayers(GameServer server, GameClient client) throws IOException {
+        // Players out of view only get coarse, occasional records, but should still be roughly in place
+        Match local = client.getMatch();
+        EntityWorld remote = server.getMatch().getWorld();
+        Family players = local.getPlayers();
+        float[] worst = new float[1];
+        boolean close = pump(client, 3000, () -> {
+            worst[0] = 0;
+            EntityWorld world = local.getWorld();
+            for (int i = 0; i < players.size(); i++) {
+                int p = players.get(i);
+                worst[0] = Math.max(worst[0], Math.abs(world.x[p] - remote.x[p]) + Math.abs(world.y[p] - remote.y[p]));
+            }
+            return worst[0] < 150;
+        });
+        checks.check(close, "every player, near or far, is within " + (int)worst[0] + " px of the server's");
+    }
+
+    private void checkMovement(GameClient client) throws IOException {
+        Match match = client.getMatch();
+        int p = client.getPlayer();
+        pump(client, 5000, () -> !match.isRespawning(p));
+        float startX = match.getWorld().x[p];
+        float startY = match.getWorld().y[p];
+        // Head for the middle of the map so walls don't stop us
+        int buttons = startX < 2000 ? PlayerInput.RIGHT : PlayerInput.LEFT;
+        buttons |= startY < 600 ? PlayerInput.UP : PlayerInput.DOWN;
+        long end = System.currentTimeMillis() + 500;
+        long last = System.nanoTime();
+        while (System.currentTimeMillis() < end) {
+            long now = System.nanoTime();
+            client.update((now - last) / 1e9f, buttons, false, false);
+            last = now;
+            pump(client, FRAME_MILLIS, () -> false);
+        }
+        float moved = Math.abs(match.getWorld().x[p] - startX) + Math.abs(match.getWorld().y[p] - startY);
+        checks.check(moved > 40, "held input moved the player " + (int)moved + " px");
+        // Inputs carry acks, so the server should have switched to diffs
+        checks.check(client.getDeltaSnapshotCount() > 0, client.getDeltaSnapshotCount() + " of "
+                     + client.getSnapshotCount() + " snapshots were deltas against an acknowledged one");
+    }
+
+    private void checkShooting(GameClient client) throws IOException {
+        Match match = client.getMatch();
+        int p = client.getPlayer();
+        pump(client, 5000, () -> !match.isRespawning(p));
+        client.update(FRAME_MILLIS / 1000f, PlayerInput.FIRE, true, false);
+        boolean[] sawOwnBullet = new boolean[1];
+        boolean shooting = pump(client, 1000, () -> {
+            EntityWorld world = match.getWorld();
+            Family bullets = match.getBullets();
+            for (int i = 0; i < bullets.size(); i++) {
+                int b = bullets.get(i);
+                if (Math.abs(world.y[b] - world.y[p]) < 60 && Math.abs(world.x[b] - world.x[p]) < 100) {
+                    sawOwnBullet[0] = true;
+                }
+            }
+            return world.shooting[p] && sawOwnBullet[0];
+        });
+        checks.check(shooting, "fire input shows the shooting pose and a bullet by the player");
+    }
+
+    private void checkLeave(GameServer server, List<GameClient> clients) throws IOException {
+        GameClient leaving = clients.remove(0);
+        int p = leaving.getPlayer();
+        leaving.close();
+        boolean released = pump(clients, 1000, () -> server.getClientCount() == clients.size());
+        checks.check(released, "server forgets a client that disconnects");
+        checks.check(server.getMatch().getWorld().has(p, Component.AI), "its player goes back to the AI");
+    }
+
+    private void checkReplay(GameServer server, Path file) throws IOException {
+        // Everything the clients did went through the server, so the recording replays it exactly
+        ReplayPlayer replay = ReplayPlayer.open(file);
+        while (replay.step()) {
+            // To the end
+        }
+        Match match = server.getMatch();
+        checks.check(replay.getLength() == match.getTick() && replay.getDesyncTick() < 0
+                     && replay.getMatch().stateHash() == match.stateHash(),
+                     "the recorded match replays exactly (" + replay.getLength() + " ticks, "
+                     + Files.size(file) + " bytes)");
+        Files.delete(file);
+    }
+
+    private void checkFull() throws Exception {
+        MatchConfig config = new MatchConfig();
+        config.seed = seed;
+        config.playersPerTeam = 1;
+        GameServer server = new GameServer(config, new InetSocketAddress("127.0.0.1", 0));
+        Thread thread = new Thread(server, "server-full");
+        thread.start();
+        List<GameClient> clients = new ArrayList<>();
+        try {
+            for (int i = 0; i < 3; i++) clients.add(new GameClient(server.getAddress()));
+            pump(clients, 3000, () -> clients.get(0).isConnected() && clients.get(1).isConnected()
+                && clients.get(2).isRefused());
+            checks.check(clients.get(0).isConnected() && clients.get(1).isConnected(), "two clients fill a 1v1 server");
+            checks.check(clients.get(2).isRefused(), "a third client is turned away");
+        } finally {
+            for (GameClient client : clients) client.close();
+            server.stop();
+            thread.join();
+            server.close();
+        }
+    }
+
+    // Polls the clients once a frame until the condition holds or time runs out
+    private static boolean pump(List<GameClient> clients, long millis, BooleanSupplier done) throws IOException {
+        long end = System.currentTimeMillis() + millis;
+        while (true) {
+            for (GameClient client : clients) client.poll();
+            if (done.getAsBoolean()) return true;
+            if (System.currentTimeMillis() >= end) return false;
+            try {
+                Thread.sleep(FRAME_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    private static boolean pump(GameClient client, long millis, BooleanSupplier done) throws IOException {
+        List<GameClient> one = new ArrayList<>();
+        one.add(client);
+        return pump(one, millis, done);
+    }
+}